@@ -0,0 +1,37 @@
+package kroppeb.stareval.expression;
+
+import java.util.function.DoubleBinaryOperator;
+
+public class BinaryFunctionExpression implements Expression {
+	private final DoubleBinaryOperator function;
+	private final Expression left;
+	private final Expression right;
+
+	public BinaryFunctionExpression(DoubleBinaryOperator function, Expression left, Expression right) {
+		this.function = function;
+		this.left = left;
+		this.right = right;
+	}
+
+	public DoubleBinaryOperator getFunction() {
+		return this.function;
+	}
+
+	public Expression getLeft() {
+		return this.left;
+	}
+
+	public Expression getRight() {
+		return this.right;
+	}
+
+	@Override
+	public double evaluate(double[] variables) {
+		return this.function.applyAsDouble(this.left.evaluate(variables), this.right.evaluate(variables));
+	}
+
+	@Override
+	public String toString() {
+		return "BinaryFunction{ {" + this.left + "} " + this.function + " {" + this.right + "} }";
+	}
+}
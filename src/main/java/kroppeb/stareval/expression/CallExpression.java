@@ -0,0 +1,42 @@
+package kroppeb.stareval.expression;
+
+import java.util.Arrays;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Calls a function that takes any number of arguments, such as {@code min} or {@code max}.
+ */
+public class CallExpression implements Expression {
+	private final ToDoubleFunction<double[]> function;
+	private final Expression[] arguments;
+	// NB: Reused across evaluations, an expression is never evaluated recursively so this is never shared.
+	private final double[] values;
+
+	public CallExpression(ToDoubleFunction<double[]> function, Expression[] arguments) {
+		this.function = function;
+		this.arguments = arguments;
+		this.values = new double[arguments.length];
+	}
+
+	public ToDoubleFunction<double[]> getFunction() {
+		return this.function;
+	}
+
+	public Expression[] getArguments() {
+		return this.arguments;
+	}
+
+	@Override
+	public double evaluate(double[] variables) {
+		for (int i = 0; i < this.arguments.length; i++) {
+			this.values[i] = this.arguments[i].evaluate(variables);
+		}
+
+		return this.function.applyAsDouble(this.values);
+	}
+
+	@Override
+	public String toString() {
+		return "Call{" + this.function + " " + Arrays.toString(this.arguments) + "}";
+	}
+}
@@ -0,0 +1,52 @@
+package kroppeb.stareval.expression;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates to the value of the first branch whose condition is true, or to the fallback value if none of them are.
+ * Only the conditions up to and including the chosen branch, and the chosen value, are evaluated.
+ */
+public class ConditionalExpression implements Expression {
+	private final Expression[] conditions;
+	private final Expression[] values;
+	private final Expression fallback;
+
+	public ConditionalExpression(Expression[] conditions, Expression[] values, Expression fallback) {
+		if (conditions.length != values.length) {
+			throw new IllegalArgumentException("Every condition needs exactly one value");
+		}
+
+		this.conditions = conditions;
+		this.values = values;
+		this.fallback = fallback;
+	}
+
+	public Expression[] getConditions() {
+		return this.conditions;
+	}
+
+	public Expression[] getValues() {
+		return this.values;
+	}
+
+	public Expression getFallback() {
+		return this.fallback;
+	}
+
+	@Override
+	public double evaluate(double[] variables) {
+		for (int i = 0; i < this.conditions.length; i++) {
+			if (this.conditions[i].evaluate(variables) != 0.0) {
+				return this.values[i].evaluate(variables);
+			}
+		}
+
+		return this.fallback.evaluate(variables);
+	}
+
+	@Override
+	public String toString() {
+		return "Conditional{" + Arrays.toString(this.conditions) + " " + Arrays.toString(this.values) + " else {"
+				+ this.fallback + "} }";
+	}
+}
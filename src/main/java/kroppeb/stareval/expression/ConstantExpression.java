@@ -0,0 +1,23 @@
+package kroppeb.stareval.expression;
+
+public class ConstantExpression implements Expression {
+	private final double value;
+
+	public ConstantExpression(double value) {
+		this.value = value;
+	}
+
+	public double getValue() {
+		return this.value;
+	}
+
+	@Override
+	public double evaluate(double[] variables) {
+		return this.value;
+	}
+
+	@Override
+	public String toString() {
+		return "Constant{" + this.value + "}";
+	}
+}
@@ -0,0 +1,16 @@
+package kroppeb.stareval.expression;
+
+/**
+ * A resolved expression that can be evaluated repeatedly. Unlike the elements produced by the parser, every identifier
+ * and function of an expression has already been looked up, so evaluating it only does arithmetic.
+ *
+ * <p>All values are represented as doubles: booleans are {@code 1.0} for true and {@code 0.0} for false. Variables are
+ * read from an array of values that is passed in on every evaluation, which allows an expression to be evaluated
+ * without allocating anything.</p>
+ *
+ * <p>The functions passed to the expressions in this package are assumed to be pure, so an expression with state or
+ * side effects should implement this interface directly instead.</p>
+ */
+public interface Expression {
+	double evaluate(double[] variables);
+}
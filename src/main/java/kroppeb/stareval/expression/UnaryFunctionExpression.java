@@ -0,0 +1,31 @@
+package kroppeb.stareval.expression;
+
+import java.util.function.DoubleUnaryOperator;
+
+public class UnaryFunctionExpression implements Expression {
+	private final DoubleUnaryOperator function;
+	private final Expression inner;
+
+	public UnaryFunctionExpression(DoubleUnaryOperator function, Expression inner) {
+		this.function = function;
+		this.inner = inner;
+	}
+
+	public DoubleUnaryOperator getFunction() {
+		return this.function;
+	}
+
+	public Expression getInner() {
+		return this.inner;
+	}
+
+	@Override
+	public double evaluate(double[] variables) {
+		return this.function.applyAsDouble(this.inner.evaluate(variables));
+	}
+
+	@Override
+	public String toString() {
+		return "UnaryFunction{" + this.function + " {" + this.inner + "} }";
+	}
+}
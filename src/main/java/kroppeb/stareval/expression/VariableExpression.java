@@ -0,0 +1,26 @@
+package kroppeb.stareval.expression;
+
+public class VariableExpression implements Expression {
+	private final int index;
+
+	public VariableExpression(int index) {
+		this.index = index;
+	}
+
+	/**
+	 * @return the index of the variable in the array passed to {@link #evaluate}
+	 */
+	public int getIndex() {
+		return this.index;
+	}
+
+	@Override
+	public double evaluate(double[] variables) {
+		return variables[this.index];
+	}
+
+	@Override
+	public String toString() {
+		return "Variable{" + this.index + "}";
+	}
+}
@@ -10,9 +10,20 @@ public class BatchingDebugMessageHelper {
 			float effectiveness = effectivenessTimes10 / 10.0F;
 
 			return drawCalls + " draw calls / " + renderTypes + " render types = "
-					+ effectiveness + "% effective";
+					+ effectiveness + "% effective, " + toMegabytes(drawTracker.getUploadedBytes()) + " MB uploaded";
 		} else {
 			return "(no draw calls)";
 		}
 	}
+
+	public static String getMemoryDebugMessage(MemoryTrackingRenderBuffers memoryTracker) {
+		return toMegabytes(memoryTracker.getEntityBufferAllocatedSize()) + " MB allocated, "
+				+ toMegabytes(memoryTracker.getEntityBufferHighWaterMark()) + " MB peak, "
+				+ memoryTracker.getEntityBufferRegrowths() + " regrowths, "
+				+ memoryTracker.getEntityBufferResizes() + " resizes";
+	}
+
+	private static String toMegabytes(int bytes) {
+		return String.format("%.1f", bytes / (1024.0F * 1024.0F));
+	}
 }
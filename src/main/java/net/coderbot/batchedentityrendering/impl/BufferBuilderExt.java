@@ -8,4 +8,12 @@ public interface BufferBuilderExt {
     void setupBufferSlice(ByteBuffer buffer, BufferBuilder.DrawState drawState);
     void teardownBufferSlice();
     void splitStrip();
+
+    /**
+     * Replaces the backing buffer with a new one of the given size. This only works in between batches, when there
+     * are no pending vertices that would need to be copied over.
+     *
+     * @return whether the buffer was replaced
+     */
+    boolean resizeEmptyBuffer(int bytes);
 }
@@ -6,9 +6,9 @@ import net.minecraft.client.renderer.RenderType;
 import java.nio.ByteBuffer;
 
 public class BufferSegment {
-    private final ByteBuffer slice;
-    private final BufferBuilder.DrawState drawState;
-    private final RenderType type;
+    private ByteBuffer slice;
+    private BufferBuilder.DrawState drawState;
+    private RenderType type;
 
     public BufferSegment(ByteBuffer slice, BufferBuilder.DrawState drawState, RenderType type) {
         this.slice = slice;
@@ -16,6 +16,22 @@ public class BufferSegment {
         this.type = type;
     }
 
+    /**
+     * Creates an empty segment for {@link SegmentedBufferBuilder} to fill in with {@link #set}.
+     */
+    BufferSegment() {
+    }
+
+    /**
+     * Reuses this segment for a different part of the buffer. Only used by {@link SegmentedBufferBuilder}, which
+     * keeps a pool of segments so that it doesn't need to allocate new ones every frame.
+     */
+    void set(ByteBuffer slice, BufferBuilder.DrawState drawState, RenderType type) {
+        this.slice = slice;
+        this.drawState = drawState;
+        this.type = type;
+    }
+
     public ByteBuffer getSlice() {
         return slice;
     }
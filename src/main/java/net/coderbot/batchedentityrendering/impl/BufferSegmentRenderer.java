@@ -1,15 +1,33 @@
 package net.coderbot.batchedentityrendering.impl;
 
+import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.BufferUploader;
+import com.mojang.blaze3d.vertex.VertexFormat;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
 
 public class BufferSegmentRenderer {
     private final BufferBuilder fakeBufferBuilder;
     private final BufferBuilderExt fakeBufferBuilderExt;
+    private final MultiDrawBatch batch;
+    private final MultiDrawBatch.Sink batchSink;
+
+    private int batchMode;
+    private VertexFormat batchFormat;
+
+    private int drawCalls;
+    private int uploadedBytes;
 
     public BufferSegmentRenderer() {
         this.fakeBufferBuilder = new BufferBuilder(0);
         this.fakeBufferBuilderExt = (BufferBuilderExt) this.fakeBufferBuilder;
+        this.batch = new MultiDrawBatch();
+        this.batchSink = this::multiDraw;
     }
 
     /**
@@ -25,8 +43,71 @@ public class BufferSegmentRenderer {
      * Like draw(), but it doesn't setup / tear down the render type.
      */
     public void drawInner(BufferSegment segment) {
+        drawCalls += 1;
+        uploadedBytes += segment.getSlice().remaining();
+
         fakeBufferBuilderExt.setupBufferSlice(segment.getSlice(), segment.getDrawState());
         BufferUploader.end(fakeBufferBuilder);
         fakeBufferBuilderExt.teardownBufferSlice();
     }
+
+    /**
+     * Draws a list of segments in order, without setting up / tearing down their render type. Runs of segments with
+     * the same draw mode and vertex format are merged into a single multi-draw call.
+     */
+    public void drawInner(List<BufferSegment> segments) {
+        if (segments.size() == 1) {
+            // Copying the vertices wouldn't save anything here.
+            drawInner(segments.get(0));
+            return;
+        }
+
+        for (int i = 0; i < segments.size(); i++) {
+            BufferSegment segment = segments.get(i);
+            BufferBuilder.DrawState drawState = segment.getDrawState();
+
+            if (!batch.isEmpty() && (drawState.mode() != batchMode || drawState.format() != batchFormat)) {
+                batch.flush(batchSink);
+            }
+
+            batchMode = drawState.mode();
+            batchFormat = drawState.format();
+            batch.add(segment.getSlice(), drawState.vertexCount());
+        }
+
+        batch.flush(batchSink);
+        batchFormat = null;
+    }
+
+    private void multiDraw(ByteBuffer vertices, IntBuffer firsts, IntBuffer counts) {
+        RenderSystem.assertThread(RenderSystem::isOnRenderThread);
+
+        drawCalls += 1;
+        uploadedBytes += vertices.remaining();
+
+        // Mirrors what BufferUploader does for a single buffer, so that Iris still gets a chance to swap in its
+        // extended vertex formats.
+        batchFormat.setupBufferState(MemoryUtil.memAddress(vertices));
+        GL14.glMultiDrawArrays(batchMode, firsts, counts);
+        batchFormat.clearBufferState();
+    }
+
+    /**
+     * @return the number of draw calls that were issued since the last reset, counting each multi-draw call once
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * @return the number of vertex bytes that were handed to OpenGL since the last reset
+     */
+    public int getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    public void resetStats() {
+        drawCalls = 0;
+        uploadedBytes = 0;
+    }
 }
@@ -0,0 +1,137 @@
+package net.coderbot.batchedentityrendering.impl;
+
+import java.util.Arrays;
+
+/**
+ * Decides how large the buffer of a {@link SegmentedBufferBuilder} should be, based on how much of it was used by
+ * recent batches.
+ *
+ * <p>A BufferBuilder only ever grows, and it grows in the middle of a batch, copying everything that has been written
+ * so far. Instead, the buffer is resized in between batches, when it's empty and resizing is just an allocation: it is
+ * grown ahead of time to fit a high percentile of the recent batches, and shrunk again once it has been much larger
+ * than needed for a while.</p>
+ */
+public class BufferSizeHistory {
+	/**
+	 * The number of batches that are considered when estimating the size of the next one.
+	 */
+	static final int WINDOW = 64;
+
+	/**
+	 * The percentile of the recent batches that the buffer is sized for, with {@link #HEADROOM} added on top.
+	 */
+	private static final double PERCENTILE = 0.95;
+	private static final double HEADROOM = 1.25;
+
+	/**
+	 * The number of batches in a row that the buffer needs to be more than {@link #SHRINK_FACTOR} times larger than
+	 * the estimate before it is shrunk, so that short lulls don't cause it to bounce between sizes.
+	 */
+	static final int SHRINK_DELAY = 600;
+	private static final int SHRINK_FACTOR = 2;
+
+	/**
+	 * Sizes are rounded up to a multiple of this, and the buffer is never shrunk below it.
+	 */
+	static final int GRANULARITY = 256 * 1024;
+
+	private final int[] recentUsage;
+	private final int[] sortScratch;
+	private int samples;
+	private int nextSample;
+	private int oversizedBatches;
+
+	private int highWaterMark;
+	private int regrowths;
+	private int resizes;
+
+	public BufferSizeHistory() {
+		this.recentUsage = new int[WINDOW];
+		this.sortScratch = new int[WINDOW];
+	}
+
+	/**
+	 * Records a finished batch.
+	 *
+	 * @param usedBytes the number of bytes that the batch wrote to the buffer
+	 * @param initialCapacity the capacity of the buffer when the batch started
+	 * @param capacity the capacity of the buffer now
+	 * @return the capacity that the buffer should be resized to before the next batch, or -1 to leave it as is
+	 */
+	public int recordBatch(int usedBytes, int initialCapacity, int capacity) {
+		if (capacity > initialCapacity) {
+			regrowths += 1;
+		}
+
+		highWaterMark = Math.max(highWaterMark, usedBytes);
+
+		recentUsage[nextSample] = usedBytes;
+		nextSample = (nextSample + 1) % WINDOW;
+		samples = Math.min(samples + 1, WINDOW);
+
+		int target = getTargetCapacity();
+
+		if (target > capacity) {
+			oversizedBatches = 0;
+			resizes += 1;
+
+			return target;
+		}
+
+		if (capacity > target * SHRINK_FACTOR) {
+			oversizedBatches += 1;
+
+			if (oversizedBatches >= SHRINK_DELAY) {
+				oversizedBatches = 0;
+				resizes += 1;
+
+				return target;
+			}
+		} else {
+			oversizedBatches = 0;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return the capacity that fits the recent batches
+	 */
+	public int getTargetCapacity() {
+		if (samples == 0) {
+			return GRANULARITY;
+		}
+
+		System.arraycopy(recentUsage, 0, sortScratch, 0, samples);
+		Arrays.sort(sortScratch, 0, samples);
+
+		int percentile = sortScratch[(int) Math.ceil(PERCENTILE * samples) - 1];
+		long target = (long) (percentile * HEADROOM);
+
+		// Round up, while making sure that we don't overflow
+		target = (target + GRANULARITY - 1) / GRANULARITY * GRANULARITY;
+
+		return (int) Math.min(Math.max(target, GRANULARITY), Integer.MAX_VALUE - GRANULARITY + 1);
+	}
+
+	/**
+	 * @return the most bytes that a single batch has ever used
+	 */
+	public int getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	/**
+	 * @return the number of batches that didn't fit in the buffer and caused it to grow while they were being built
+	 */
+	public int getRegrowths() {
+		return regrowths;
+	}
+
+	/**
+	 * @return the number of times that the buffer was resized in between batches
+	 */
+	public int getResizes() {
+		return resizes;
+	}
+}
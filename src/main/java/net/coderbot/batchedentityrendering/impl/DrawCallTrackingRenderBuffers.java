@@ -3,5 +3,6 @@ package net.coderbot.batchedentityrendering.impl;
 public interface DrawCallTrackingRenderBuffers {
 	int getDrawCalls();
 	int getRenderTypes();
+	int getUploadedBytes();
 	void resetDrawCounts();
 }
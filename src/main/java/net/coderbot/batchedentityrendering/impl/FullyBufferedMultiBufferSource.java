@@ -4,6 +4,7 @@ import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.VertexConsumer;
 import net.coderbot.batchedentityrendering.impl.ordering.GraphTranslucencyRenderOrderManager;
 import net.coderbot.batchedentityrendering.impl.ordering.RenderOrderManager;
+import net.coderbot.iris.Iris;
 import net.coderbot.iris.fantastic.WrappingMultiBufferSource;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.MultiBufferSource;
@@ -12,11 +13,11 @@ import net.minecraft.util.profiling.ProfilerFiller;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class FullyBufferedMultiBufferSource extends MultiBufferSource.BufferSource implements MemoryTrackingBuffer, Groupable, WrappingMultiBufferSource {
@@ -28,9 +29,20 @@ public class FullyBufferedMultiBufferSource extends MultiBufferSource.BufferSour
 	 * An LRU cache mapping RenderType objects to a relevant buffer.
 	 */
 	private final LinkedHashMap<RenderType, Integer> affinities;
-	private int drawCalls;
 	private int renderTypes;
 
+	/**
+	 * The segments of each render type, collected from all of the builders. This is cleared rather than reallocated at
+	 * the end of every batch.
+	 */
+	private final ReusableGroups<RenderType, BufferSegment> typeToSegment;
+
+	/**
+	 * Segments of translucent render types whose quads were left unsorted by their builder, so that they can be sorted
+	 * in parallel before drawing.
+	 */
+	private final List<BufferSegment> unsortedSegments;
+
 	private final BufferSegmentRenderer segmentRenderer;
 	private final UnflushableWrapper unflushableWrapper;
 	private final List<Function<RenderType, RenderType>> wrappingFunctionStack;
@@ -49,7 +61,9 @@ public class FullyBufferedMultiBufferSource extends MultiBufferSource.BufferSour
 		// use accessOrder=true so our LinkedHashMap works as an LRU cache.
 		this.affinities = new LinkedHashMap<>(32, 0.75F, true);
 
-		this.drawCalls = 0;
+		this.typeToSegment = new ReusableGroups<>();
+		this.unsortedSegments = new ArrayList<>();
+
 		this.segmentRenderer = new BufferSegmentRenderer();
 		this.unflushableWrapper = new UnflushableWrapper(this);
 		this.wrappingFunctionStack = new ArrayList<>();
@@ -93,16 +107,21 @@ public class FullyBufferedMultiBufferSource extends MultiBufferSource.BufferSour
 
 		profiler.push("collect");
 
-		Map<RenderType, List<BufferSegment>> typeToSegment = new HashMap<>();
-
 		for (SegmentedBufferBuilder builder : builders) {
 			List<BufferSegment> segments = builder.getSegments();
 
-			for (BufferSegment segment : segments) {
-				typeToSegment.computeIfAbsent(segment.getRenderType(), (type) -> new ArrayList<>()).add(segment);
+			for (int i = 0; i < segments.size(); i++) {
+				BufferSegment segment = segments.get(i);
+				typeToSegment.add(segment.getRenderType(), segment);
 			}
+
+			unsortedSegments.addAll(builder.getUnsortedSegments());
 		}
 
+		profiler.popPush("sort");
+
+		sortUnsortedSegments();
+
 		profiler.popPush("resolve ordering");
 
 		Iterable<RenderType> renderOrder = renderOrderManager.getRenderOrder();
@@ -114,9 +133,10 @@ public class FullyBufferedMultiBufferSource extends MultiBufferSource.BufferSour
 
 			renderTypes += 1;
 
-			for (BufferSegment segment : typeToSegment.getOrDefault(type, Collections.emptyList())) {
-				segmentRenderer.drawInner(segment);
-				drawCalls += 1;
+			List<BufferSegment> segments = typeToSegment.get(type);
+
+			if (segments != null) {
+				segmentRenderer.drawInner(segments);
 			}
 
 			type.clearRenderState();
@@ -126,20 +146,51 @@ public class FullyBufferedMultiBufferSource extends MultiBufferSource.BufferSour
 
 		renderOrderManager.reset();
 		affinities.clear();
+		typeToSegment.clear();
+		unsortedSegments.clear();
+
+		// NB: Each segment remembers whether its sorting was deferred, so this could change at any time. Only checking
+		// it in between batches just keeps it off of the hot path.
+		boolean deferSorting = Iris.getIrisConfig().isParallelEntitySortingEnabled();
+
+		for (SegmentedBufferBuilder builder : builders) {
+			builder.setDeferSorting(deferSorting);
+		}
 
 		profiler.pop();
 	}
 
+	private void sortUnsortedSegments() {
+		if (unsortedSegments.isEmpty()) {
+			return;
+		}
+
+		// Each segment is a separate part of its buffer, so they can be sorted independently of each other. The result
+		// doesn't depend on which thread sorts which segment.
+		Consumer<BufferSegment> sorter =
+			segment -> QuadSorter.sortQuads(segment.getSlice(), segment.getDrawState().vertexCount());
+
+		if (unsortedSegments.size() == 1) {
+			sorter.accept(unsortedSegments.get(0));
+		} else {
+			unsortedSegments.parallelStream().forEach(sorter);
+		}
+	}
+
 	public int getDrawCalls() {
-		return drawCalls;
+		return segmentRenderer.getDrawCalls();
 	}
 
 	public int getRenderTypes() {
 		return renderTypes;
 	}
 
+	public int getUploadedBytes() {
+		return segmentRenderer.getUploadedBytes();
+	}
+
 	public void resetDrawCalls() {
-		drawCalls = 0;
+		segmentRenderer.resetStats();
 		renderTypes = 0;
 	}
 
@@ -174,6 +225,36 @@ public class FullyBufferedMultiBufferSource extends MultiBufferSource.BufferSour
 		return size;
 	}
 
+	public int getHighWaterMark() {
+		int size = 0;
+
+		for (SegmentedBufferBuilder builder : builders) {
+			size += builder.getSizeHistory().getHighWaterMark();
+		}
+
+		return size;
+	}
+
+	public int getRegrowths() {
+		int regrowths = 0;
+
+		for (SegmentedBufferBuilder builder : builders) {
+			regrowths += builder.getSizeHistory().getRegrowths();
+		}
+
+		return regrowths;
+	}
+
+	public int getResizes() {
+		int resizes = 0;
+
+		for (SegmentedBufferBuilder builder : builders) {
+			resizes += builder.getSizeHistory().getResizes();
+		}
+
+		return resizes;
+	}
+
 	@Override
 	public void startGroup() {
 		renderOrderManager.startGroup();
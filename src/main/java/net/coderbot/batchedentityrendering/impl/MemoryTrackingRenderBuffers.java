@@ -2,6 +2,9 @@ package net.coderbot.batchedentityrendering.impl;
 
 public interface MemoryTrackingRenderBuffers {
     int getEntityBufferAllocatedSize();
+    int getEntityBufferHighWaterMark();
+    int getEntityBufferRegrowths();
+    int getEntityBufferResizes();
     int getMiscBufferAllocatedSize();
     int getMaxBegins();
 }
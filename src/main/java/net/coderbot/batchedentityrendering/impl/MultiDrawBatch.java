@@ -0,0 +1,114 @@
+package net.coderbot.batchedentityrendering.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Collects the vertices of several buffer segments that share the same render state into one contiguous buffer, so
+ * that all of them can be drawn with a single {@code glMultiDrawArrays} call instead of one draw call per segment.
+ *
+ * <p>Every segment is kept as its own draw within the multi-draw, since merging them into one draw would join the
+ * strips of strip-based draw modes together.</p>
+ */
+public class MultiDrawBatch {
+	/**
+	 * Receives a merged batch. The vertex buffer holds the vertices of every draw back to back, and the first / count
+	 * buffers hold one entry for each draw, in the order that they were added.
+	 */
+	public interface Sink {
+		void multiDraw(ByteBuffer vertices, IntBuffer firsts, IntBuffer counts);
+	}
+
+	private ByteBuffer vertices;
+	private IntBuffer firsts;
+	private IntBuffer counts;
+	private int draws;
+	private int vertexCount;
+
+	public MultiDrawBatch() {
+		this.vertices = allocate(256 * 1024);
+		this.firsts = allocate(64 * 4).asIntBuffer();
+		this.counts = allocate(64 * 4).asIntBuffer();
+	}
+
+	/**
+	 * Copies the vertices of a segment to the end of the batch. The caller is responsible for making sure that every
+	 * segment in a batch has the same draw mode and vertex format.
+	 *
+	 * @param slice the vertices of the segment, from its position up to its limit. The slice itself isn't modified.
+	 */
+	public void add(ByteBuffer slice, int segmentVertexCount) {
+		if (segmentVertexCount == 0) {
+			// Nothing to draw, just like BufferUploader skips empty buffers.
+			return;
+		}
+
+		int bytes = slice.remaining();
+
+		ensureCapacity(bytes);
+
+		vertices.put(slice.duplicate());
+		firsts.put(draws, vertexCount);
+		counts.put(draws, segmentVertexCount);
+
+		draws += 1;
+		vertexCount += segmentVertexCount;
+	}
+
+	public boolean isEmpty() {
+		return draws == 0;
+	}
+
+	/**
+	 * Hands the batch over to the sink, if there is anything to draw, and then clears it for the next batch.
+	 */
+	public void flush(Sink sink) {
+		if (draws == 0) {
+			return;
+		}
+
+		vertices.flip();
+		firsts.position(0).limit(draws);
+		counts.position(0).limit(draws);
+
+		sink.multiDraw(vertices, firsts, counts);
+
+		vertices.clear();
+		firsts.clear();
+		counts.clear();
+		draws = 0;
+		vertexCount = 0;
+	}
+
+	private void ensureCapacity(int bytes) {
+		if (vertices.remaining() < bytes) {
+			int required = vertices.position() + bytes;
+			ByteBuffer grown = allocate(Math.max(required, vertices.capacity() * 2));
+
+			vertices.flip();
+			grown.put(vertices);
+			vertices = grown;
+		}
+
+		if (draws == firsts.capacity()) {
+			firsts = grow(firsts);
+			counts = grow(counts);
+		}
+	}
+
+	private static IntBuffer grow(IntBuffer buffer) {
+		IntBuffer grown = allocate(buffer.capacity() * 2 * 4).asIntBuffer();
+
+		buffer.clear();
+		grown.put(buffer);
+		grown.clear();
+
+		return grown;
+	}
+
+	private static ByteBuffer allocate(int bytes) {
+		// NB: The buffers are read by OpenGL, so they need to be direct and in the native byte order.
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+}
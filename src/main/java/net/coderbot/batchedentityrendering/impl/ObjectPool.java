@@ -0,0 +1,48 @@
+package net.coderbot.batchedentityrendering.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A pool of objects that are reused from one batch to the next. Objects are taken from the pool while a batch is
+ * being built, and are all returned to it at once when the batch is finished, so once the pool has grown to the size
+ * of a typical batch, taking objects from it doesn't allocate anything.
+ */
+public class ObjectPool<T> {
+	private final Supplier<T> factory;
+	private final List<T> objects;
+	private int used;
+
+	public ObjectPool(Supplier<T> factory) {
+		this.factory = factory;
+		this.objects = new ArrayList<>();
+		this.used = 0;
+	}
+
+	/**
+	 * Takes an object from the pool, creating a new one if every pooled object is already in use. The object still
+	 * holds whatever state it was last given, so callers need to overwrite that.
+	 */
+	public T take() {
+		if (used == objects.size()) {
+			objects.add(factory.get());
+		}
+
+		return objects.get(used++);
+	}
+
+	/**
+	 * Returns every object taken since the last call to the pool. The objects must not be used by anything after this.
+	 */
+	public void releaseAll() {
+		used = 0;
+	}
+
+	/**
+	 * @return the number of objects that have been created by this pool
+	 */
+	public int getCreated() {
+		return objects.size();
+	}
+}
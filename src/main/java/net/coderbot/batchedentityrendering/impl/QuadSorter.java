@@ -0,0 +1,118 @@
+package net.coderbot.batchedentityrendering.impl;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Sorts the quads of a finished buffer segment back to front, producing exactly the same bytes as
+ * {@code BufferBuilder.sortQuads(0, 0, 0)} would have if it had been called before the segment was ended.
+ *
+ * <p>Unlike BufferBuilder, this only touches the given segment, so several segments can be sorted at the same time on
+ * different threads.</p>
+ */
+public final class QuadSorter {
+	private static final int VERTICES_PER_QUAD = 4;
+
+	/**
+	 * Segments are sorted on the threads of the common pool, so each of those threads gets arrays of its own. They only
+	 * ever grow, up to the size of the largest segment that the thread has sorted.
+	 */
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+	private QuadSorter() {
+		// no construction allowed
+	}
+
+	/**
+	 * Sorts the quads of a segment in place, from the farthest to the closest to the origin. Quads at the same
+	 * distance keep their relative order.
+	 *
+	 * @param slice the vertices of the segment, from its position up to its limit. The position of each vertex must
+	 *              be stored as three floats at its start.
+	 */
+	public static void sortQuads(ByteBuffer slice, int vertexCount) {
+		int quadCount = vertexCount / VERTICES_PER_QUAD;
+
+		if (quadCount < 2) {
+			return;
+		}
+
+		// NB: Slicing a buffer resets its byte order to big endian, but the vertices were written in the native byte
+		// order by BufferBuilder.
+		ByteBuffer vertices = slice.duplicate().order(ByteOrder.nativeOrder());
+
+		int base = vertices.position();
+		int vertexSize = vertices.remaining() / vertexCount;
+		int quadSize = vertexSize * VERTICES_PER_QUAD;
+
+		Scratch scratch = SCRATCH.get();
+		scratch.ensureCapacity(quadCount, quadCount * quadSize);
+
+		float[] distances = scratch.distances;
+		int[] order = scratch.order;
+		int[] orderCopy = scratch.orderCopy;
+
+		for (int quad = 0; quad < quadCount; quad++) {
+			distances[quad] = getQuadDistanceFromOrigin(vertices, base + quad * quadSize, vertexSize);
+			order[quad] = quad;
+			orderCopy[quad] = quad;
+		}
+
+		// NB: This needs to be a stable sort to match vanilla. Passing the support array ourselves is the same sort,
+		// it just keeps mergeSort from cloning the order array.
+		IntArrays.mergeSort(order, 0, quadCount, scratch.comparator, orderCopy);
+
+		byte[] unsorted = scratch.bytes;
+
+		vertices.get(unsorted, 0, quadCount * quadSize);
+		vertices.position(base);
+
+		for (int quad = 0; quad < quadCount; quad++) {
+			vertices.put(unsorted, order[quad] * quadSize, quadSize);
+		}
+	}
+
+	private static float getQuadDistanceFromOrigin(ByteBuffer buffer, int offset, int vertexSize) {
+		float x = 0.0F;
+		float y = 0.0F;
+		float z = 0.0F;
+
+		// NB: The components are summed in the same order as vanilla to get the exact same rounding.
+		for (int vertex = 0; vertex < VERTICES_PER_QUAD; vertex++) {
+			int position = offset + vertex * vertexSize;
+
+			x += buffer.getFloat(position);
+			y += buffer.getFloat(position + 4);
+			z += buffer.getFloat(position + 8);
+		}
+
+		x *= 0.25F;
+		y *= 0.25F;
+		z *= 0.25F;
+
+		return x * x + y * y + z * z;
+	}
+
+	private static final class Scratch {
+		private float[] distances = new float[0];
+		private int[] order = new int[0];
+		private int[] orderCopy = new int[0];
+		private byte[] bytes = new byte[0];
+		private final IntComparator comparator = (a, b) -> Float.compare(distances[b], distances[a]);
+
+		void ensureCapacity(int quadCount, int byteCount) {
+			if (distances.length < quadCount) {
+				distances = new float[quadCount];
+				order = new int[quadCount];
+				orderCopy = new int[quadCount];
+			}
+
+			if (bytes.length < byteCount) {
+				bytes = new byte[byteCount];
+			}
+		}
+	}
+}
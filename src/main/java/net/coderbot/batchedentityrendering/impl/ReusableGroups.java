@@ -0,0 +1,57 @@
+package net.coderbot.batchedentityrendering.impl;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups values by a key, such as the segments of a batch by their render type. The lists holding each group are
+ * cleared rather than dropped when the groups are cleared, so that they can be reused along with their backing arrays
+ * by the next batch.
+ */
+public class ReusableGroups<K, V> {
+	private final Object2ObjectOpenHashMap<K, List<V>> groups;
+	private final List<List<V>> listPool;
+	private int listsUsed;
+
+	public ReusableGroups() {
+		this.groups = new Object2ObjectOpenHashMap<>();
+		this.listPool = new ArrayList<>();
+		this.listsUsed = 0;
+	}
+
+	public void add(K key, V value) {
+		List<V> group = groups.get(key);
+
+		if (group == null) {
+			if (listsUsed == listPool.size()) {
+				listPool.add(new ArrayList<>());
+			}
+
+			group = listPool.get(listsUsed++);
+			groups.put(key, group);
+		}
+
+		group.add(value);
+	}
+
+	/**
+	 * @return the values added with the given key since the groups were last cleared, or null if there aren't any
+	 */
+	@Nullable
+	public List<V> get(K key) {
+		return groups.get(key);
+	}
+
+	public void clear() {
+		for (int i = 0; i < listsUsed; i++) {
+			listPool.get(i).clear();
+		}
+
+		// NB: Clearing an Object2ObjectOpenHashMap keeps its table, so this doesn't allocate either.
+		listsUsed = 0;
+		groups.clear();
+	}
+}
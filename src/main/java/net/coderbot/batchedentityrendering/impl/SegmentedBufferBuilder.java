@@ -6,22 +6,36 @@ import com.mojang.datafixers.util.Pair;
 import net.coderbot.batchedentityrendering.mixin.RenderTypeAccessor;
 import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.client.renderer.RenderType;
+import org.lwjgl.opengl.GL11;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
 
 public class SegmentedBufferBuilder implements MultiBufferSource, MemoryTrackingBuffer {
     private final BufferBuilder buffer;
     private final List<RenderType> usedTypes;
+    private final List<BufferSegment> segments;
+    private final ObjectPool<BufferSegment> segmentPool;
+    private final BitSet deferredSorts;
+    private final List<BufferSegment> unsortedSegments;
+    private boolean deferSorting;
+    private final BufferSizeHistory sizeHistory;
     private RenderType currentType;
+    private int batchStartCapacity;
 
     public SegmentedBufferBuilder() {
         // 2 MB initial allocation
         this.buffer = new BufferBuilder(512 * 1024);
+        this.sizeHistory = new BufferSizeHistory();
+        this.batchStartCapacity = getAllocatedSize();
         this.usedTypes = new ArrayList<>(256);
+        this.segments = new ArrayList<>(256);
+        this.segmentPool = new ObjectPool<>(BufferSegment::new);
+        this.deferredSorts = new BitSet();
+        this.unsortedSegments = new ArrayList<>();
 
         this.currentType = null;
     }
@@ -30,12 +44,7 @@ public class SegmentedBufferBuilder implements MultiBufferSource, MemoryTracking
     public VertexConsumer getBuffer(RenderType renderType) {
         if (!Objects.equals(currentType, renderType)) {
             if (currentType != null) {
-                if (shouldSortOnUpload(currentType)) {
-                    buffer.sortQuads(0, 0, 0);
-                }
-
-                buffer.end();
-                usedTypes.add(currentType);
+                endCurrentType();
             }
 
             buffer.begin(renderType.mode(), renderType.format());
@@ -54,36 +63,98 @@ public class SegmentedBufferBuilder implements MultiBufferSource, MemoryTracking
         return buffer;
     }
 
+    /**
+     * Finishes building and splits the buffer into one segment for each run of vertices with the same render type.
+     *
+     * <p>The returned list and the segments in it are reused by the next call, so they are only valid until then.</p>
+     */
     public List<BufferSegment> getSegments() {
-        if (currentType == null) {
-            return Collections.emptyList();
-        }
-
-        usedTypes.add(currentType);
+        segments.clear();
+        unsortedSegments.clear();
+        segmentPool.releaseAll();
 
-        if (shouldSortOnUpload(currentType)) {
-            buffer.sortQuads(0, 0, 0);
+        if (currentType == null) {
+            return segments;
         }
 
-        buffer.end();
+        endCurrentType();
         currentType = null;
 
-        List<BufferSegment> segments = new ArrayList<>(usedTypes.size());
+        int usedBytes = 0;
 
-        for (RenderType type : usedTypes) {
+        for (int i = 0; i < usedTypes.size(); i++) {
             Pair<BufferBuilder.DrawState, ByteBuffer> pair = buffer.popNextBuffer();
 
             BufferBuilder.DrawState drawState = pair.getFirst();
             ByteBuffer slice = pair.getSecond();
+            usedBytes += slice.remaining();
 
-            segments.add(new BufferSegment(slice, drawState, type));
+            BufferSegment segment = segmentPool.take();
+            segment.set(slice, drawState, usedTypes.get(i));
+            segments.add(segment);
+
+            if (deferredSorts.get(i)) {
+                unsortedSegments.add(segment);
+            }
         }
 
         usedTypes.clear();
+        deferredSorts.clear();
+        adaptCapacity(usedBytes);
 
         return segments;
     }
 
+    /**
+     * Resizes the now-empty buffer to fit the next batch, so that it doesn't need to grow while the batch is being
+     * built. The segments of the batch that just finished are unaffected, since they still point to the old buffer.
+     */
+    private void adaptCapacity(int usedBytes) {
+        int capacity = getAllocatedSize();
+        int newCapacity = sizeHistory.recordBatch(usedBytes, batchStartCapacity, capacity);
+
+        if (newCapacity != -1 && ((BufferBuilderExt) buffer).resizeEmptyBuffer(newCapacity)) {
+            capacity = newCapacity;
+        }
+
+        batchStartCapacity = capacity;
+    }
+
+    public BufferSizeHistory getSizeHistory() {
+        return sizeHistory;
+    }
+
+    private void endCurrentType() {
+        if (shouldSortOnUpload(currentType)) {
+            // QuadSorter only knows how to sort quads, anything else is left to BufferBuilder.
+            if (deferSorting && currentType.mode() == GL11.GL_QUADS) {
+                deferredSorts.set(usedTypes.size());
+            } else {
+                buffer.sortQuads(0, 0, 0);
+            }
+        }
+
+        buffer.end();
+        usedTypes.add(currentType);
+    }
+
+    /**
+     * Sets whether the quads of render types that are sorted on upload should be left unsorted when their segment is
+     * finished. The segments that still need to be sorted are then returned by {@link #getUnsortedSegments()}, so that
+     * they can all be sorted at once, possibly in parallel.
+     */
+    public void setDeferSorting(boolean deferSorting) {
+        this.deferSorting = deferSorting;
+    }
+
+    /**
+     * @return the segments returned by the last call to {@link #getSegments()} that still need to be sorted with
+     *         {@link QuadSorter}
+     */
+    public List<BufferSegment> getUnsortedSegments() {
+        return unsortedSegments;
+    }
+
     private static boolean shouldSortOnUpload(RenderType type) {
         return ((RenderTypeAccessor) type).shouldSortOnUpload();
     }
@@ -0,0 +1,156 @@
+package net.coderbot.batchedentityrendering.impl.ordering;
+
+import de.odysseus.ithaka.digraph.Digraph;
+import de.odysseus.ithaka.digraph.Digraphs;
+import de.odysseus.ithaka.digraph.MapDigraph;
+import de.odysseus.ithaka.digraph.util.fas.FeedbackArcSet;
+import de.odysseus.ithaka.digraph.util.fas.FeedbackArcSetPolicy;
+import de.odysseus.ithaka.digraph.util.fas.FeedbackArcSetProvider;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the topological order of a graph that barely changes from frame to frame, such as the render types of one
+ * transparency type. The order from the last frame is usually still a valid order for the next frame, in which case
+ * it is repaired and reused instead of breaking cycles and sorting the graph again.
+ */
+public class GraphOrderCache<V> {
+    private final FeedbackArcSetProvider feedbackArcSetProvider;
+
+    private final List<V> order;
+    /**
+     * The edges that had to be removed from the graph to break cycles when the order was last computed from scratch.
+     */
+    private Digraph<V> feedbackArcs;
+    private final Object2IntOpenHashMap<V> previousPositions;
+    private final List<V> addedVertices;
+    private int cacheHits;
+    private int cacheMisses;
+
+    public GraphOrderCache(FeedbackArcSetProvider feedbackArcSetProvider) {
+        this.feedbackArcSetProvider = feedbackArcSetProvider;
+        this.order = new ArrayList<>();
+        this.feedbackArcs = new MapDigraph<>();
+        this.previousPositions = new Object2IntOpenHashMap<>();
+        this.previousPositions.defaultReturnValue(-1);
+        this.addedVertices = new ArrayList<>();
+    }
+
+    /**
+     * Finds an order for the vertices of the given graph in which every edge points forwards, other than the edges
+     * that need to be removed to break cycles. If the order has to be computed from scratch, those edges are removed
+     * from the graph.
+     *
+     * <p>The returned list is reused by the next call, so it is only valid until then.</p>
+     */
+    public List<V> update(Digraph<V> graph) {
+        if (repairPreviousOrder(graph)) {
+            cacheHits += 1;
+        } else {
+            cacheMisses += 1;
+
+            feedbackArcs = breakCycles(graph);
+
+            order.clear();
+            order.addAll(Digraphs.toposort(graph, false));
+        }
+
+        return order;
+    }
+
+    /**
+     * Tries to turn the order from the last frame into a valid order for the given graph. This works as long as every
+     * edge of the graph still points forwards in the old order, other than the edges that were removed to break cycles
+     * in the last frame: vertices that are gone are dropped, and new vertices that don't have any edges are added at
+     * the end. Anything else needs a full sort.
+     *
+     * @return whether the order was repaired, if not it is left in an unspecified state
+     */
+    private boolean repairPreviousOrder(Digraph<V> graph) {
+        previousPositions.clear();
+        addedVertices.clear();
+
+        for (int i = 0; i < order.size(); i++) {
+            previousPositions.put(order.get(i), i);
+        }
+
+        for (V source : graph.vertices()) {
+            int sourcePosition = previousPositions.getInt(source);
+
+            // NB: A render type that is used more than once in a row within a group has an edge to itself. Those
+            // edges can't be satisfied by any order, so like the feedback arc set, they are ignored here.
+            if (sourcePosition == -1) {
+                // NB: Incoming edges of a new vertex are caught when checking the edges of their sources.
+                for (V target : graph.targets(source)) {
+                    if (!target.equals(source)) {
+                        return false;
+                    }
+                }
+
+                addedVertices.add(source);
+                continue;
+            }
+
+            for (V target : graph.targets(source)) {
+                if (!target.equals(source) && previousPositions.getInt(target) <= sourcePosition
+                        && !feedbackArcs.contains(source, target)) {
+                    return false;
+                }
+            }
+        }
+
+        if (order.size() + addedVertices.size() != graph.getVertexCount()) {
+            order.removeIf(vertex -> !graph.contains(vertex));
+        }
+
+        order.addAll(addedVertices);
+        addedVertices.clear();
+
+        return true;
+    }
+
+    /**
+     * Removes edges from the graph until it doesn't have any cycles left.
+     *
+     * @return the edges that were removed
+     */
+    private FeedbackArcSet<V> breakCycles(Digraph<V> graph) {
+        // TODO: Make sure that FAS can't become a bottleneck!
+        // Running NP-hard algorithms in a real time rendering loop might not be an amazing idea.
+        // This shouldn't be necessary in sane scenes, though, and if there aren't cycles,
+        // then this *should* be relatively inexpensive, since it'll bail out and return an empty set.
+        FeedbackArcSet<V> arcSet =
+                feedbackArcSetProvider.getFeedbackArcSet(graph, graph, FeedbackArcSetPolicy.MIN_WEIGHT);
+
+        if (arcSet.getEdgeCount() > 0) {
+            // This means that our dependency graph had cycles!!!
+            // This is very weird and isn't expected - but we try to handle it gracefully anyways.
+
+            // Our feedback arc set algorithm finds some dependency links that can be removed hopefully
+            // without disrupting the overall order too much. Hopefully it isn't too slow!
+            for (V source : arcSet.vertices()) {
+                for (V target : arcSet.targets(source)) {
+                    graph.remove(source, target);
+                }
+            }
+        }
+
+        return arcSet;
+    }
+
+    /**
+     * @return the number of times that the order was reused from the previous frame
+     */
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return the number of times that the order had to be computed from scratch
+     */
+    public int getCacheMisses() {
+        return cacheMisses;
+    }
+}
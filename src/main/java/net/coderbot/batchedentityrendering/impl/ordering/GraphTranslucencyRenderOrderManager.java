@@ -1,10 +1,7 @@
 package net.coderbot.batchedentityrendering.impl.ordering;
 
 import de.odysseus.ithaka.digraph.Digraph;
-import de.odysseus.ithaka.digraph.Digraphs;
 import de.odysseus.ithaka.digraph.MapDigraph;
-import de.odysseus.ithaka.digraph.util.fas.FeedbackArcSet;
-import de.odysseus.ithaka.digraph.util.fas.FeedbackArcSetPolicy;
 import de.odysseus.ithaka.digraph.util.fas.FeedbackArcSetProvider;
 import de.odysseus.ithaka.digraph.util.fas.SimpleFeedbackArcSetProvider;
 import net.coderbot.batchedentityrendering.impl.BlendingStateHolder;
@@ -23,13 +20,20 @@ public class GraphTranslucencyRenderOrderManager implements RenderOrderManager {
     private boolean inGroup = false;
     private final EnumMap<TransparencyType, RenderType> currentTypes;
 
+    /**
+     * The order of each graph, which is reused from frame to frame as long as it still fits.
+     */
+    private final EnumMap<TransparencyType, GraphOrderCache<RenderType>> orders;
+
     public GraphTranslucencyRenderOrderManager() {
         feedbackArcSetProvider = new SimpleFeedbackArcSetProvider();
         types = new EnumMap<>(TransparencyType.class);
         currentTypes = new EnumMap<>(TransparencyType.class);
+        orders = new EnumMap<>(TransparencyType.class);
 
         for (TransparencyType type : TransparencyType.values()) {
             types.put(type, new MapDigraph<>());
+            orders.put(type, new GraphOrderCache<>(feedbackArcSetProvider));
         }
     }
 
@@ -111,30 +115,36 @@ public class GraphTranslucencyRenderOrderManager implements RenderOrderManager {
 
         List<RenderType> allLayers = new ArrayList<>(layerCount);
 
-        for (Digraph<RenderType> graph : types.values()) {
-            // TODO: Make sure that FAS can't become a bottleneck!
-            // Running NP-hard algorithms in a real time rendering loop might not be an amazing idea.
-            // This shouldn't be necessary in sane scenes, though, and if there aren't cycles,
-            // then this *should* be relatively inexpensive, since it'll bail out and return an empty set.
-            FeedbackArcSet<RenderType> arcSet =
-                    feedbackArcSetProvider.getFeedbackArcSet(graph, graph, FeedbackArcSetPolicy.MIN_WEIGHT);
-
-            if (arcSet.getEdgeCount() > 0) {
-                // This means that our dependency graph had cycles!!!
-                // This is very weird and isn't expected - but we try to handle it gracefully anyways.
-
-                // Our feedback arc set algorithm finds some dependency links that can be removed hopefully
-                // without disrupting the overall order too much. Hopefully it isn't too slow!
-                for (RenderType source : arcSet.vertices()) {
-                    for (RenderType target : arcSet.targets(source)) {
-                        graph.remove(source, target);
-                    }
-                }
-            }
-
-            allLayers.addAll(Digraphs.toposort(graph, false));
+        for (TransparencyType transparencyType : TransparencyType.values()) {
+            allLayers.addAll(orders.get(transparencyType).update(types.get(transparencyType)));
         }
 
         return allLayers;
     }
+
+    /**
+     * @return the number of times that the order of a graph was reused from the previous frame
+     */
+    public int getCacheHits() {
+        int cacheHits = 0;
+
+        for (GraphOrderCache<RenderType> order : orders.values()) {
+            cacheHits += order.getCacheHits();
+        }
+
+        return cacheHits;
+    }
+
+    /**
+     * @return the number of times that the order of a graph had to be computed from scratch
+     */
+    public int getCacheMisses() {
+        int cacheMisses = 0;
+
+        for (GraphOrderCache<RenderType> order : orders.values()) {
+            cacheMisses += order.getCacheMisses();
+        }
+
+        return cacheMisses;
+    }
 }
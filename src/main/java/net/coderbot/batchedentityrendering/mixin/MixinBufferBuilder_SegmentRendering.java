@@ -1,5 +1,6 @@
 package net.coderbot.batchedentityrendering.mixin;
 
+import com.mojang.blaze3d.platform.MemoryTracker;
 import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.VertexFormat;
 import net.coderbot.batchedentityrendering.impl.BufferBuilderExt;
@@ -82,6 +83,21 @@ public class MixinBufferBuilder_SegmentRendering implements BufferBuilderExt {
         // The final 3 booleans are also irrelevant.
     }
 
+    @Shadow
+    private boolean building;
+
+    @Override
+    public boolean resizeEmptyBuffer(int bytes) {
+        // Any slices that were popped from the old buffer stay valid, since they keep a reference to it.
+        if (building || nextElementByte != 0 || totalRenderedBytes != 0 || !vertexCounts.isEmpty()) {
+            return false;
+        }
+
+        this.buffer = MemoryTracker.createByteBuffer(bytes);
+
+        return true;
+    }
+
     @Shadow
     private VertexFormat format;
 
@@ -2,6 +2,7 @@ package net.coderbot.batchedentityrendering.mixin;
 
 import net.coderbot.batchedentityrendering.impl.BatchingDebugMessageHelper;
 import net.coderbot.batchedentityrendering.impl.DrawCallTrackingRenderBuffers;
+import net.coderbot.batchedentityrendering.impl.MemoryTrackingRenderBuffers;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.components.DebugScreenOverlay;
 import org.spongepowered.asm.mixin.Mixin;
@@ -18,9 +19,11 @@ public abstract class MixinDebugScreenOverlay {
         List<String> messages = cir.getReturnValue();
 
 		DrawCallTrackingRenderBuffers drawTracker = (DrawCallTrackingRenderBuffers) Minecraft.getInstance().renderBuffers();
+		MemoryTrackingRenderBuffers memoryTracker = (MemoryTrackingRenderBuffers) Minecraft.getInstance().renderBuffers();
 
         // blank line separator
         messages.add("");
 		messages.add("[Entity Batching] " + BatchingDebugMessageHelper.getDebugMessage(drawTracker));
+		messages.add("[Entity Batching] Buffers: " + BatchingDebugMessageHelper.getMemoryDebugMessage(memoryTracker));
     }
 }
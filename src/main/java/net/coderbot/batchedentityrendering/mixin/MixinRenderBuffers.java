@@ -95,6 +95,21 @@ public class MixinRenderBuffers implements RenderBuffersExt, MemoryTrackingRende
 		return ((MemoryTrackingBuffer) buffered).getAllocatedSize();
 	}
 
+	@Override
+	public int getEntityBufferHighWaterMark() {
+		return buffered.getHighWaterMark();
+	}
+
+	@Override
+	public int getEntityBufferRegrowths() {
+		return buffered.getRegrowths();
+	}
+
+	@Override
+	public int getEntityBufferResizes() {
+		return buffered.getResizes();
+	}
+
 	@Override
 	public int getMiscBufferAllocatedSize() {
 		return ((MemoryTrackingBuffer) bufferSource).getAllocatedSize();
@@ -115,6 +130,11 @@ public class MixinRenderBuffers implements RenderBuffersExt, MemoryTrackingRende
 		return buffered.getRenderTypes();
 	}
 
+	@Override
+	public int getUploadedBytes() {
+		return buffered.getUploadedBytes();
+	}
+
 	@Override
 	public void resetDrawCounts() {
 		buffered.resetDrawCalls();
@@ -9,10 +9,15 @@ import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.zip.ZipError;
 import java.util.zip.ZipException;
 
@@ -22,6 +27,8 @@ import com.mojang.brigadier.arguments.BoolArgumentType;
 import net.coderbot.iris.compat.sodium.SodiumVersionCheck;
 import net.coderbot.iris.config.IrisConfig;
 import net.coderbot.iris.gl.GLDebug;
+import net.coderbot.iris.gl.program.ProgramBuilder;
+import net.coderbot.iris.gl.shader.ProgramBinaryCache;
 import net.coderbot.iris.gui.screen.ShaderPackScreen;
 import net.coderbot.iris.pipeline.*;
 import net.coderbot.iris.shaderpack.DimensionId;
@@ -31,6 +38,11 @@ import net.coderbot.iris.shaderpack.ShaderPack;
 import net.coderbot.iris.shaderpack.option.OptionSet;
 import net.coderbot.iris.shaderpack.option.Profile;
 import net.coderbot.iris.shaderpack.discovery.ShaderpackDirectoryManager;
+import net.coderbot.iris.shaderpack.loading.BackgroundPackLoader;
+import net.coderbot.iris.shaderpack.loading.LoadProgress;
+import net.coderbot.iris.shaderpack.loading.PackSource;
+import net.coderbot.iris.shaderpack.loading.PreprocessedSourceCache;
+import net.coderbot.iris.shaderpack.loading.ZipPackSource;
 import net.coderbot.iris.shaderpack.option.values.MutableOptionValues;
 import net.coderbot.iris.shaderpack.option.values.OptionValues;
 import net.fabricmc.fabric.api.client.command.v1.ClientCommandManager;
@@ -47,6 +59,7 @@ import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.glfw.GLFW;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
@@ -68,6 +81,9 @@ public class Iris implements ClientModInitializer {
 	private static PipelineManager pipelineManager;
 	private static IrisConfig irisConfig;
 	private static FileSystem zipFileSystem;
+	private static ProgramBinaryCache programBinaryCache;
+	private static final BackgroundPackLoader<LoadedShaderPack> packLoader =
+			new BackgroundPackLoader<>(BackgroundPackLoader.createExecutor(), LoadedShaderPack::close);
 	private static KeyMapping reloadKeybind;
 	private static KeyMapping toggleShadersKeybind;
 	private static KeyMapping shaderpackScreenKeybind;
@@ -146,11 +162,7 @@ public class Iris implements ClientModInitializer {
 			return 0;
 		}))).then(ClientCommandManager.literal("reload").executes(context -> {
 			try {
-				reload();
-
-				if (instance.player != null) {
-					instance.player.displayClientMessage(new TranslatableComponent("iris.shaders.reloaded"), false);
-				}
+				reload().whenComplete((result, e) -> onReloaded(instance, e));
 			} catch (IOException e) {
 				e.printStackTrace();
 				return -1;
@@ -176,31 +188,15 @@ public class Iris implements ClientModInitializer {
 	public static void handleKeybinds(Minecraft minecraft) {
 		if (reloadKeybind.consumeClick()) {
 			try {
-				reload();
-
-				if (minecraft.player != null) {
-					minecraft.player.displayClientMessage(new TranslatableComponent("iris.shaders.reloaded"), false);
-				}
-
+				reload().whenComplete((result, e) -> onReloaded(minecraft, e));
 			} catch (Exception e) {
-				logger.error("Error while reloading Shaders for Iris!", e);
-
-				if (minecraft.player != null) {
-					minecraft.player.displayClientMessage(new TranslatableComponent("iris.shaders.reloaded.failure", Throwables.getRootCause(e).getMessage()).withStyle(ChatFormatting.RED), false);
-				}
+				onReloaded(minecraft, e);
 			}
 		} else if (toggleShadersKeybind.consumeClick()) {
 			try {
 				toggleShaders(minecraft, !irisConfig.areShadersEnabled());
 			} catch (Exception e) {
-				logger.error("Error while toggling shaders!", e);
-
-				if (minecraft.player != null) {
-					minecraft.player.displayClientMessage(new TranslatableComponent("iris.shaders.toggled.failure", Throwables.getRootCause(e).getMessage()).withStyle(ChatFormatting.RED), false);
-				}
-
-				setShadersDisabled();
-				currentPackName = "(off) [fallback, check your logs for errors]";
+				onToggleFailed(minecraft, e);
 			}
 		} else if (shaderpackScreenKeybind.consumeClick()) {
 			minecraft.setScreen(new ShaderPackScreen(null));
@@ -211,13 +207,91 @@ public class Iris implements ClientModInitializer {
 		irisConfig.setShadersEnabled(enabled);
 		irisConfig.save();
 
-		reload();
+		reload().whenComplete((result, e) -> {
+			Throwable cause = unwrapCompletion(e);
+
+			if (cause instanceof CancellationException) {
+				// Superseded by a newer reload
+				return;
+			} else if (cause != null) {
+				onToggleFailed(minecraft, cause);
+				return;
+			}
+
+			if (minecraft.player != null) {
+				minecraft.player.displayClientMessage(enabled ? new TranslatableComponent("iris.shaders.toggled", currentPackName) : new TranslatableComponent("iris.shaders.disabled"), false);
+			}
+		});
+	}
+
+	private static void onReloaded(Minecraft minecraft, @Nullable Throwable e) {
+		e = unwrapCompletion(e);
+
+		if (e instanceof CancellationException) {
+			// Superseded by a newer reload, which reports its own outcome
+			return;
+		} else if (e != null) {
+			logger.error("Error while reloading Shaders for Iris!", e);
+
+			if (minecraft.player != null) {
+				minecraft.player.displayClientMessage(new TranslatableComponent("iris.shaders.reloaded.failure", Throwables.getRootCause(e).getMessage()).withStyle(ChatFormatting.RED), false);
+			}
+
+			return;
+		}
+
+		if (minecraft.player != null) {
+			minecraft.player.displayClientMessage(new TranslatableComponent("iris.shaders.reloaded"), false);
+		}
+	}
+
+	private static void onToggleFailed(Minecraft minecraft, Throwable e) {
+		logger.error("Error while toggling shaders!", e);
+
 		if (minecraft.player != null) {
-			minecraft.player.displayClientMessage(enabled ? new TranslatableComponent("iris.shaders.toggled", currentPackName) : new TranslatableComponent("iris.shaders.disabled"), false);
+			minecraft.player.displayClientMessage(new TranslatableComponent("iris.shaders.toggled.failure", Throwables.getRootCause(e).getMessage()).withStyle(ChatFormatting.RED), false);
 		}
+
+		setShadersDisabled();
+		currentPackName = "(off) [fallback, check your logs for errors]";
+	}
+
+	@Nullable
+	static Throwable unwrapCompletion(@Nullable Throwable e) {
+		if (e instanceof CompletionException && e.getCause() != null) {
+			return e.getCause();
+		}
+
+		return e;
 	}
 
+	/**
+	 * Loads the selected shader pack on the calling thread, and applies it immediately.
+	 */
 	public static void loadShaderpack() {
+		packLoader.loadNow(createLoadTask(), Iris::applyShaderPack);
+	}
+
+	/**
+	 * Applies a shader pack that finished loading in the background, if there is one. Called every tick from the
+	 * render thread.
+	 */
+	public static void pollShaderPackLoading() {
+		packLoader.poll();
+	}
+
+	/**
+	 * @return the progress of the shader pack that is currently being loaded in the background, if any
+	 */
+	public static Optional<LoadProgress> getShaderPackLoadProgress() {
+		return packLoader.getProgress();
+	}
+
+	/**
+	 * Captures everything that loading needs from the current state of Iris. This runs on the render thread, while
+	 * the returned task runs on the loader thread.
+	 */
+	private static BackgroundPackLoader.LoadTask<LoadedShaderPack> createLoadTask() {
 		if (irisConfig == null) {
 			if (!initialized) {
 				throw new IllegalStateException("Iris::loadShaderpack was called, but Iris::onInitializeClient wasn't" +
@@ -230,9 +304,7 @@ public class Iris implements ClientModInitializer {
 		if (!irisConfig.areShadersEnabled()) {
 			logger.info("Shaders are disabled because enableShaders is set to false in iris.properties");
 
-			setShadersDisabled();
-
-			return;
+			return progress -> LoadedShaderPack.disabled("(off)", Collections.emptyMap(), false);
 		}
 
 		// Attempt to load an external shaderpack if it is available
@@ -241,19 +313,80 @@ public class Iris implements ClientModInitializer {
 		if (!externalName.isPresent()) {
 			logger.info("Shaders are disabled because no valid shaderpack is selected");
 
-			setShadersDisabled();
+			return progress -> LoadedShaderPack.disabled("(off)", Collections.emptyMap(), false);
+		}
 
-			return;
+		String name = externalName.get();
+
+		// NB: The queue stays untouched until the load is applied, so that a load superseding this one still sees
+		//     every option that was queued before it.
+		Map<String, String> queuedOptions = new HashMap<>(shaderPackOptionQueue);
+		boolean resetOptions = resetShaderPackOptions;
+		PreprocessedSourceCache sourceCache = createSourceCache();
+
+		// NB: MACRO_CONSTANTS queries the GL context when it is first initialized, so make sure that this happens here
+		//     on the render thread rather than on the loader thread.
+		Objects.requireNonNull(ProgramBuilder.MACRO_CONSTANTS);
+
+		return progress -> {
+			LoadedShaderPack loaded = loadExternalShaderpack(name, queuedOptions, resetOptions, sourceCache, progress);
+
+			if (loaded == null) {
+				logger.warn("Falling back to normal rendering without shaders because the shaderpack could not be loaded");
+
+				return LoadedShaderPack.disabled("(off) [fallback, check your logs for errors]", queuedOptions,
+						resetOptions);
+			}
+
+			return loaded;
+		};
+	}
+
+	/**
+	 * Replaces the current shader pack with a loaded one. This runs on the render thread.
+	 */
+	private static void applyShaderPack(LoadedShaderPack loaded) {
+		// Destroy all allocated resources
+		destroyEverything();
+
+		zipFileSystem = loaded.zipFileSystem;
+
+		// Options that were queued while the pack was loading haven't been applied yet, so they stay queued.
+		shaderPackOptionQueue.entrySet().removeAll(loaded.queuedOptions.entrySet());
+
+		if (loaded.resetOptions) {
+			resetShaderPackOptions = false;
 		}
 
-		if (!loadExternalShaderpack(externalName.get())) {
-			logger.warn("Falling back to normal rendering without shaders because the shaderpack could not be loaded");
+		if (loaded.pack == null) {
 			setShadersDisabled();
-			currentPackName = "(off) [fallback, check your logs for errors]";
+			currentPackName = loaded.name;
+
+			return;
 		}
+
+		currentPack = loaded.pack;
+		currentPackName = loaded.name;
+
+		// Keep the archive of the new pack cached for the next reload, but don't keep the old one mapped.
+		ZipPackSource.releaseCachedExcept(loaded.packSource);
+
+		tryUpdateConfigPropertiesFile(loaded.configPath, loaded.configsToSave);
+
+		logger.info("Using shaderpack: " + loaded.name);
 	}
 
-	private static boolean loadExternalShaderpack(String name) {
+	/**
+	 * Reads a shader pack from the shaderpacks directory. This runs on the loader thread.
+	 *
+	 * @return the loaded shader pack, or null if it could not be loaded
+	 * @throws CancellationException if the load was cancelled
+	 */
+	@Nullable
+	private static LoadedShaderPack loadExternalShaderpack(String name, Map<String, String> queuedOptions,
+														   boolean resetOptions,
+														   @Nullable PreprocessedSourceCache sourceCache,
+														   LoadProgress progress) {
 		Path shaderPackRoot;
 		Path shaderPackConfigTxt;
 
@@ -263,93 +396,140 @@ public class Iris implements ClientModInitializer {
 		} catch (InvalidPathException e) {
 			logger.error("Failed to load the shaderpack \"{}\" because it contains invalid characters in its path", name);
 
-			return false;
+			return null;
 		}
 
 		Path shaderPackPath;
+		PackSource packSource = PackSource.FILES;
+		FileSystem zipSystem = null;
+		boolean loaded = false;
 
-		if (shaderPackRoot.toString().endsWith(".zip")) {
-			Optional<Path> optionalPath;
+		try {
+			if (shaderPackRoot.toString().endsWith(".zip")) {
+				Optional<Path> optionalPath;
 
-			try {
-				optionalPath = loadExternalZipShaderpack(shaderPackRoot);
-			} catch (FileSystemNotFoundException | NoSuchFileException e) {
-				logger.error("Failed to load the shaderpack \"{}\" because it does not exist in your shaderpacks folder!", name);
+				try {
+					zipSystem = FileSystems.newFileSystem(shaderPackRoot, Iris.class.getClassLoader());
+					optionalPath = loadExternalZipShaderpack(zipSystem);
+				} catch (FileSystemNotFoundException | NoSuchFileException e) {
+					logger.error("Failed to load the shaderpack \"{}\" because it does not exist in your shaderpacks folder!", name);
 
-				return false;
-			} catch (ZipException e) {
-				logger.error("The shaderpack \"{}\" appears to be corrupted, please try downloading it again!", name);
+					return null;
+				} catch (ZipException e) {
+					logger.error("The shaderpack \"{}\" appears to be corrupted, please try downloading it again!", name);
 
-				return false;
-			} catch (IOException e) {
-				logger.error("Failed to load the shaderpack \"{}\"!", name);
-				logger.error("", e);
+					return null;
+				} catch (IOException e) {
+					logger.error("Failed to load the shaderpack \"{}\"!", name);
+					logger.error("", e);
 
-				return false;
-			}
+					return null;
+				}
 
-			if (optionalPath.isPresent()) {
-				shaderPackPath = optionalPath.get();
+				if (optionalPath.isPresent()) {
+					shaderPackPath = optionalPath.get();
+					packSource = openZipPackSource(shaderPackRoot);
+				} else {
+					logger.error("Could not load the shaderpack \"{}\" because it appears to lack a \"shaders\" directory", name);
+					return null;
+				}
 			} else {
-				logger.error("Could not load the shaderpack \"{}\" because it appears to lack a \"shaders\" directory", name);
-				return false;
+				if (!Files.exists(shaderPackRoot)) {
+					logger.error("Failed to load the shaderpack \"{}\" because it does not exist!", name);
+					return null;
+				}
+
+				// If it's a folder-based shaderpack, just use the shaders subdirectory
+				shaderPackPath = shaderPackRoot.resolve("shaders");
 			}
-		} else {
-			if (!Files.exists(shaderPackRoot)) {
-				logger.error("Failed to load the shaderpack \"{}\" because it does not exist!", name);
-				return false;
+
+			if (!Files.exists(shaderPackPath)) {
+				logger.error("Could not load the shaderpack \"{}\" because it appears to lack a \"shaders\" directory", name);
+				return null;
 			}
 
-			// If it's a folder-based shaderpack, just use the shaders subdirectory
-			shaderPackPath = shaderPackRoot.resolve("shaders");
-		}
+			Map<String, String> changedConfigs = tryReadConfigProperties(shaderPackConfigTxt)
+					.map(properties -> (Map<String, String>) (Map) properties)
+					.orElse(new HashMap<>());
 
-		if (!Files.exists(shaderPackPath)) {
-			logger.error("Could not load the shaderpack \"{}\" because it appears to lack a \"shaders\" directory", name);
-			return false;
-		}
+			changedConfigs.putAll(queuedOptions);
 
-		Map<String, String> changedConfigs = tryReadConfigProperties(shaderPackConfigTxt)
-				.map(properties -> (Map<String, String>) (Map) properties)
-				.orElse(new HashMap<>());
+			if (resetOptions) {
+				changedConfigs.clear();
+			}
 
-		changedConfigs.putAll(shaderPackOptionQueue);
-		clearShaderPackOptionQueue();
+			ShaderPack pack;
+			Properties configsToSave = new Properties();
 
-		if (resetShaderPackOptions) {
-			changedConfigs.clear();
-		}
-		resetShaderPackOptions = false;
+			try {
+				pack = new ShaderPack(shaderPackPath, changedConfigs, sourceCache, packSource, progress);
 
-		try {
-			currentPack = new ShaderPack(shaderPackPath, changedConfigs);
+				MutableOptionValues changedConfigsValues = pack.getShaderPackOptions().getOptionValues().mutableCopy();
+
+				// Store changed values from those currently in use by the shader pack
+				changedConfigsValues.getBooleanValues().forEach((k, v) -> configsToSave.setProperty(k, Boolean.toString(v)));
+				changedConfigsValues.getStringValues().forEach(configsToSave::setProperty);
+			} catch (CancellationException e) {
+				throw e;
+			} catch (Exception e) {
+				logger.error("Failed to load the shaderpack \"{}\"!", name);
+				logger.error("", e);
 
-			MutableOptionValues changedConfigsValues = currentPack.getShaderPackOptions().getOptionValues().mutableCopy();
+				return null;
+			}
 
-			// Store changed values from those currently in use by the shader pack
-			Properties configsToSave = new Properties();
-			changedConfigsValues.getBooleanValues().forEach((k, v) -> configsToSave.setProperty(k, Boolean.toString(v)));
-			changedConfigsValues.getStringValues().forEach(configsToSave::setProperty);
+			loaded = true;
 
-			tryUpdateConfigPropertiesFile(shaderPackConfigTxt, configsToSave);
-		} catch (Exception e) {
-			logger.error("Failed to load the shaderpack \"{}\"!", name);
-			logger.error("", e);
+			return new LoadedShaderPack(pack, name, zipSystem, packSource, shaderPackConfigTxt, configsToSave,
+					queuedOptions, resetOptions);
+		} finally {
+			if (!loaded) {
+				closeZipFileSystem(zipSystem);
+			}
+		}
+	}
 
-			return false;
+	private static PreprocessedSourceCache createSourceCache() {
+		if (!irisConfig.isSourceCacheEnabled()) {
+			return null;
 		}
 
-		currentPackName = name;
+		// Kept next to iris.properties so that it is never mistaken for a shader pack.
+		return new PreprocessedSourceCache(FabricLoader.getInstance().getConfigDir().resolve("iris-source-cache"),
+				irisConfig.shouldVerifySourceCache());
+	}
 
-		logger.info("Using shaderpack: " + name);
+	/**
+	 * Returns the cache of linked program binaries, evicting stale entries the first time it is used.
+	 *
+	 * @return the cache, or null if it has been disabled
+	 */
+	@Nullable
+	public static ProgramBinaryCache getProgramBinaryCache() {
+		if (!irisConfig.isProgramBinaryCacheEnabled()) {
+			return null;
+		}
 
-		return true;
+		if (programBinaryCache == null) {
+			programBinaryCache = new ProgramBinaryCache(FabricLoader.getInstance().getConfigDir().resolve("iris-program-cache"));
+			programBinaryCache.evict();
+		}
+
+		return programBinaryCache;
 	}
 
-	private static Optional<Path> loadExternalZipShaderpack(Path shaderpackPath) throws IOException {
-		FileSystem zipSystem = FileSystems.newFileSystem(shaderpackPath, Iris.class.getClassLoader());
-		zipFileSystem = zipSystem;
+	private static PackSource openZipPackSource(Path shaderpackPath) {
+		try {
+			return ZipPackSource.open(shaderpackPath);
+		} catch (IOException e) {
+			// The zip file system can still read some archives that the memory-mapped reader can't, such as ZIP64 ones
+			logger.warn("Falling back to reading the shaderpack zip through the zip file system: " + e.getMessage());
+
+			return PackSource.FILES;
+		}
+	}
 
+	private static Optional<Path> loadExternalZipShaderpack(FileSystem zipSystem) throws IOException {
 		// Should only be one root directory for a zip shaderpack
 		Path root = zipSystem.getRootDirectories().iterator().next();
 
@@ -375,6 +555,8 @@ public class Iris implements ClientModInitializer {
 		currentPack = null;
 		currentPackName = "(off)";
 
+		ZipPackSource.releaseCachedExcept(null);
+
 		logger.info("Shaders are disabled");
 	}
 
@@ -520,15 +702,18 @@ public class Iris implements ClientModInitializer {
 		resetShaderPackOptions = true;
 	}
 
-	public static void reload() throws IOException {
+	/**
+	 * Starts reloading the selected shader pack in the background, cancelling any reload that is still in progress.
+	 * The current shader pack keeps rendering until the new one has finished loading.
+	 *
+	 * @return a future that completes on the render thread once the new shader pack has been applied
+	 */
+	public static CompletableFuture<Void> reload() throws IOException {
 		// allows shaderpacks to be changed at runtime
 		irisConfig.initialize();
 
-		// Destroy all allocated resources
-		destroyEverything();
-
 		// Load the new shaderpack
-		loadShaderpack();
+		return packLoader.submit(createLoadTask(), Iris::applyShaderPack).thenAccept(loaded -> {});
 	}
 
 	/**
@@ -542,9 +727,14 @@ public class Iris implements ClientModInitializer {
 		// Close the zip filesystem that the shaderpack was loaded from
 		//
 		// This prevents a FileSystemAlreadyExistsException when reloading shaderpacks.
-		if (zipFileSystem != null) {
+		closeZipFileSystem(zipFileSystem);
+		zipFileSystem = null;
+	}
+
+	private static void closeZipFileSystem(@Nullable FileSystem zipSystem) {
+		if (zipSystem != null) {
 			try {
-				zipFileSystem.close();
+				zipSystem.close();
 			} catch (NoSuchFileException e) {
 				logger.warn("Failed to close the shaderpack zip when reloading because it was deleted, proceeding anyways.");
 			} catch (IOException e) {
@@ -668,4 +858,45 @@ public class Iris implements ClientModInitializer {
 
 		return shaderpacksDirectoryManager;
 	}
+
+	/**
+	 * The outcome of loading a shader pack, which is handed from the loader thread to the render thread.
+	 */
+	private static final class LoadedShaderPack {
+		@Nullable
+		private final ShaderPack pack;
+		private final String name;
+		@Nullable
+		private final FileSystem zipFileSystem;
+		@Nullable
+		private final PackSource packSource;
+		@Nullable
+		private final Path configPath;
+		@Nullable
+		private final Properties configsToSave;
+		private final Map<String, String> queuedOptions;
+		private final boolean resetOptions;
+
+		private LoadedShaderPack(@Nullable ShaderPack pack, String name, @Nullable FileSystem zipFileSystem,
+								 @Nullable PackSource packSource, @Nullable Path configPath,
+								 @Nullable Properties configsToSave, Map<String, String> queuedOptions,
+								 boolean resetOptions) {
+			this.pack = pack;
+			this.name = name;
+			this.zipFileSystem = zipFileSystem;
+			this.packSource = packSource;
+			this.configPath = configPath;
+			this.configsToSave = configsToSave;
+			this.queuedOptions = queuedOptions;
+			this.resetOptions = resetOptions;
+		}
+
+		private static LoadedShaderPack disabled(String name, Map<String, String> queuedOptions, boolean resetOptions) {
+			return new LoadedShaderPack(null, name, null, null, null, null, queuedOptions, resetOptions);
+		}
+
+		private void close() {
+			closeZipFileSystem(zipFileSystem);
+		}
+	}
 }
@@ -4,6 +4,7 @@ import net.coderbot.iris.config.IrisConfig;
 import net.irisshaders.iris.api.v0.IrisApiConfig;
 
 import java.io.IOException;
+import java.util.concurrent.CancellationException;
 
 public class IrisApiV0ConfigImpl implements IrisApiConfig {
 	@Override
@@ -24,7 +25,14 @@ public class IrisApiV0ConfigImpl implements IrisApiConfig {
 		}
 
 		try {
-			Iris.reload();
+			Iris.reload().whenComplete((result, e) -> {
+				Throwable cause = Iris.unwrapCompletion(e);
+
+				// NB: A cancelled reload was superseded by a newer one, which reports its own outcome.
+				if (cause != null && !(cause instanceof CancellationException)) {
+					Iris.logger.error("Error reloading shader pack while applying changes!", cause);
+				}
+			});
 		} catch (IOException e) {
 			Iris.logger.error("Error reloading shader pack while applying changes!", e);
 		}
@@ -3,35 +3,131 @@ package net.coderbot.iris.block_rendering;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.coderbot.iris.Iris;
 import net.coderbot.iris.shaderpack.materialmap.BlockEntry;
 import net.coderbot.iris.shaderpack.materialmap.NamespacedId;
 import net.minecraft.core.Registry;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.StateDefinition;
 import net.minecraft.world.level.block.state.properties.Property;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class BlockMaterialMapping {
+	/**
+	 * The block state registry, with the registry ID of each state cached through {@link BlockStateExt}.
+	 */
+	public static final RegistryIdSource<BlockState> BLOCK_STATE_REGISTRY = new RegistryIdSource<BlockState>() {
+		@Override
+		public int size() {
+			return Block.BLOCK_STATE_REGISTRY.size();
+		}
+
+		@Nullable
+		@Override
+		public BlockState byId(int registryId) {
+			return Block.BLOCK_STATE_REGISTRY.byId(registryId);
+		}
+
+		@Override
+		public int getCachedId(BlockState state) {
+			return ((BlockStateExt) state).iris$getRegistryId();
+		}
+
+		@Override
+		public void setCachedId(BlockState state, int registryId) {
+			((BlockStateExt) state).iris$setRegistryId(registryId);
+		}
+	};
+
+	private static final class IdEntry {
+		private final int intId;
+		private final BlockEntry entry;
+
+		IdEntry(int intId, BlockEntry entry) {
+			this.intId = intId;
+			this.entry = entry;
+		}
+	}
+
 	public static Object2IntMap<BlockState> createBlockStateIdMap(Int2ObjectMap<List<BlockEntry>> blockPropertiesMap) {
-		Object2IntMap<BlockState> blockStateIds = new Object2IntOpenHashMap<>();
+		List<IdEntry> idEntries = new ArrayList<>();
 
 		blockPropertiesMap.forEach((intId, entries) -> {
 			for (BlockEntry entry : entries) {
-				addBlockStates(entry, blockStateIds, intId);
+				idEntries.add(new IdEntry(intId, entry));
 			}
 		});
 
+		// Resolving each entry to its states is independent of every other entry, so that part can be done in parallel.
+		// The results are kept in the original order though, so that when more than one entry matches a state, the
+		// same entry wins as when this was done in a single pass.
+		List<List<BlockState>> resolvedStates = idEntries.parallelStream()
+				.map(idEntry -> resolveBlockStates(idEntry.entry, idEntry.intId))
+				.collect(Collectors.toList());
+
+		Object2IntMap<BlockState> blockStateIds = new Object2IntOpenHashMap<>();
+
+		for (int i = 0; i < idEntries.size(); i++) {
+			int intId = idEntries.get(i).intId;
+
+			for (BlockState state : resolvedStates.get(i)) {
+				blockStateIds.put(state, intId);
+			}
+		}
+
 		return blockStateIds;
 	}
 
-	private static void addBlockStates(BlockEntry entry, Object2IntMap<BlockState> idMap, int intId) {
+	/**
+	 * Resolves the entity ID map against the entity type registry, so that the ID of an entity can be found from its
+	 * type directly without needing to build a {@link NamespacedId} for it.
+	 */
+	public static Reference2IntMap<EntityType<?>> createEntityTypeIdMap(Object2IntMap<NamespacedId> entityIdMap) {
+		return resolveRegistryIds(Registry.ENTITY_TYPE, entityIdMap);
+	}
+
+	/**
+	 * Resolves the item ID map against the item registry, see {@link #createEntityTypeIdMap}.
+	 */
+	public static Reference2IntMap<Item> createItemIdMap(Object2IntMap<NamespacedId> itemIdMap) {
+		return resolveRegistryIds(Registry.ITEM, itemIdMap);
+	}
+
+	private static <T> Reference2IntMap<T> resolveRegistryIds(Registry<T> registry, Object2IntMap<NamespacedId> idMap) {
+		Reference2IntMap<T> resolved = new Reference2IntOpenHashMap<>(idMap.size());
+		resolved.defaultReturnValue(-1);
+
+		for (Object2IntMap.Entry<NamespacedId> entry : idMap.object2IntEntrySet()) {
+			NamespacedId id = entry.getKey();
+			ResourceLocation resourceLocation = ResourceLocation.tryParse(id.getNamespace() + ":" + id.getName());
+
+			if (resourceLocation == null) {
+				continue;
+			}
+
+			// NB: Use getOptional, since get returns the default entry (pigs and air) for IDs that don't exist.
+			registry.getOptional(resourceLocation).ifPresent(value -> resolved.put(value, entry.getIntValue()));
+		}
+
+		return resolved;
+	}
+
+	private static List<BlockState> resolveBlockStates(BlockEntry entry, int intId) {
 		NamespacedId id = entry.getId();
 		ResourceLocation resourceLocation = new ResourceLocation(id.getNamespace(), id.getName());
 
@@ -40,62 +136,80 @@ public class BlockMaterialMapping {
 		// If the block doesn't exist, by default the registry will return AIR. That probably isn't what we want.
 		// TODO: Assuming that Registry.BLOCK.getDefaultId() == "minecraft:air" here
 		if (block == Blocks.AIR) {
-			return;
+			return Collections.emptyList();
 		}
 
 		Map<String, String> propertyPredicates = entry.getPropertyPredicates();
+		StateDefinition<Block, BlockState> stateManager = block.getStateDefinition();
 
 		if (propertyPredicates.isEmpty()) {
 			// Just add all the states if there aren't any predicates
-			for (BlockState state : block.getStateDefinition().getPossibleStates()) {
-				idMap.put(state, intId);
-			}
-
-			return;
+			return stateManager.getPossibleStates();
 		}
 
 		// As a result, we first collect each key=value pair in order to determine what properties we need to filter on.
-		// We already get this from BlockEntry, but we convert the keys to `Property`s to ensure they exist and to avoid
-		// string comparisons later.
-		Map<Property<?>, String> properties = new HashMap<>();
-		StateDefinition<Block, BlockState> stateManager = block.getStateDefinition();
+		// We already get this from BlockEntry, but we convert the keys to `Property`s and the values to the values of
+		// those properties to ensure they exist and to avoid string comparisons for every state later.
+		Map<Property<?>, Comparable<?>> properties = new HashMap<>();
 
-		propertyPredicates.forEach((key, value) -> {
+		for (Map.Entry<String, String> predicate : propertyPredicates.entrySet()) {
+			String key = predicate.getKey();
 			Property<?> property = stateManager.getProperty(key);
 
 			if (property == null) {
 				Iris.logger.warn("Error while parsing the block ID map entry for \"" + "block." + intId + "\":");
 				Iris.logger.warn("- The block " + resourceLocation + " has no property with the name " + key + ", ignoring!");
 
-				return;
+				continue;
 			}
 
-			properties.put(property, value);
-		});
+			Optional<? extends Comparable<?>> value = findValue(property, predicate.getValue());
+
+			if (!value.isPresent()) {
+				// A value that the property can't have never matched anything when the values were compared as
+				// strings, so keep it that way instead of ignoring the predicate like with an unknown property.
+				Iris.logger.warn("Error while parsing the block ID map entry for \"" + "block." + intId + "\":");
+				Iris.logger.warn("- The property " + key + " of the block " + resourceLocation + " can't have the value " + predicate.getValue() + ", no states will match!");
+
+				return Collections.emptyList();
+			}
+
+			properties.put(property, value.get());
+		}
 
 		// Once we have a list of properties and their expected values, we iterate over every possible state of this
 		// block and check for ones that match the filters. This isn't particularly efficient, but it works!
+		List<BlockState> states = new ArrayList<>();
+
 		for (BlockState state : stateManager.getPossibleStates()) {
 			if (checkState(state, properties)) {
-				idMap.put(state, intId);
+				states.add(state);
 			}
 		}
+
+		return states;
 	}
 
-	// We ignore generics here, the actual types don't matter because we just convert
-	// them to strings anyways, and the compiler checks just get in the way.
-	//
-	// If you're able to rewrite this function without SuppressWarnings, feel free.
-	// But otherwise it works fine.
-	@SuppressWarnings({"rawtypes", "unchecked"})
-	private static boolean checkState(BlockState state, Map<Property<?>, String> expectedValues) {
-		for (Map.Entry<Property<?>, String> condition : expectedValues.entrySet()) {
-			Property property = condition.getKey();
-			String expectedValue = condition.getValue();
+	/**
+	 * Finds the value of a property by its exact name. Unlike {@link Property#getValue(String)}, this doesn't accept
+	 * names that only parse to a value, like "01" or "+1" for an integer property, since those never matched when the
+	 * values of every state were compared as strings.
+	 */
+	private static <T extends Comparable<T>> Optional<T> findValue(Property<T> property, String name) {
+		for (T value : property.getPossibleValues()) {
+			if (property.getName(value).equals(name)) {
+				return Optional.of(value);
+			}
+		}
 
-			String actualValue = property.getName(state.getValue(property));
+		return Optional.empty();
+	}
 
-			if (!expectedValue.equals(actualValue)) {
+	private static boolean checkState(BlockState state, Map<Property<?>, Comparable<?>> expectedValues) {
+		for (Map.Entry<Property<?>, Comparable<?>> condition : expectedValues.entrySet()) {
+			// NB: The values of a property are either enum constants, booleans, or interned integers, so this could be
+			// an identity comparison, but equals is just as cheap here and doesn't rely on that.
+			if (!condition.getValue().equals(state.getValue(condition.getKey()))) {
 				return false;
 			}
 		}
@@ -1,8 +1,8 @@
 package net.coderbot.iris.block_rendering;
 
-import it.unimi.dsi.fastutil.objects.Object2IntFunction;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
-import net.coderbot.iris.shaderpack.materialmap.NamespacedId;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.level.block.state.BlockState;
 import org.jetbrains.annotations.Nullable;
 
@@ -10,15 +10,15 @@ public class BlockRenderingSettings {
 	public static final BlockRenderingSettings INSTANCE = new BlockRenderingSettings();
 
 	private boolean reloadRequired;
-	private Object2IntMap<BlockState> blockStateIds;
-	private Object2IntFunction<NamespacedId> entityIds;
+	private final BlockStateIdTableCache<BlockState> blockStateIds;
+	private Reference2IntMap<EntityType<?>> entityIds;
 	private float ambientOcclusionLevel;
 	private boolean disableDirectionalShading;
 	private boolean useSeparateAo;
 
 	public BlockRenderingSettings() {
 		reloadRequired = false;
-		blockStateIds = null;
+		blockStateIds = new BlockStateIdTableCache<>(BlockMaterialMapping.BLOCK_STATE_REGISTRY);
 		ambientOcclusionLevel = 1.0F;
 		disableDirectionalShading = false;
 		useSeparateAo = false;
@@ -34,25 +34,33 @@ public class BlockRenderingSettings {
 
 	@Nullable
 	public Object2IntMap<BlockState> getBlockStateIds() {
-		return blockStateIds;
+		return blockStateIds.getIds();
+	}
+
+	/**
+	 * The same IDs as {@link #getBlockStateIds()}, in a form that is faster to look up. This is what should be used in
+	 * the chunk builders.
+	 */
+	@Nullable
+	public BlockStateIdTable getBlockStateIdTable() {
+		return blockStateIds.getTable();
 	}
 
 	// TODO (coderbot): This doesn't belong here. But I couldn't think of a nicer place to put it.
 	@Nullable
-	public Object2IntFunction<NamespacedId> getEntityIds() {
+	public Reference2IntMap<EntityType<?>> getEntityIds() {
 		return entityIds;
 	}
 
-	public void setBlockStateIds(Object2IntMap<BlockState> blockStateIds) {
-		if (this.blockStateIds != null && this.blockStateIds.equals(blockStateIds)) {
-			return;
+	public void setBlockStateIds(@Nullable Object2IntMap<BlockState> blockStateIds) {
+		// The chunk builders keep using the table that they started with, so they need to be reloaded whenever the table
+		// changes, even if only the registry IDs changed.
+		if (this.blockStateIds.update(blockStateIds)) {
+			this.reloadRequired = true;
 		}
-
-		this.reloadRequired = true;
-		this.blockStateIds = blockStateIds;
 	}
 
-	public void setEntityIds(Object2IntFunction<NamespacedId> entityIds) {
+	public void setEntityIds(Reference2IntMap<EntityType<?>> entityIds) {
 		// note: no reload needed, entities are rebuilt every frame.
 		this.entityIds = entityIds;
 	}
@@ -0,0 +1,11 @@
+package net.coderbot.iris.block_rendering;
+
+/**
+ * Implemented on every {@link net.minecraft.world.level.block.state.BlockState} to cache the ID that the state has in
+ * {@link net.minecraft.world.level.block.Block#BLOCK_STATE_REGISTRY}, so that {@link BlockStateIdTable} can find a
+ * state without hashing it.
+ */
+public interface BlockStateExt {
+	int iris$getRegistryId();
+	void iris$setRegistryId(int registryId);
+}
@@ -0,0 +1,99 @@
+package net.coderbot.iris.block_rendering;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.util.Arrays;
+
+/**
+ * A dense version of the block state ID map, indexed by the ID of each state in the block state registry. This is what
+ * the chunk builders use to look up the material ID of every block that they render, so the lookup is just a field
+ * read and an array load instead of a hash map lookup.
+ *
+ * @see BlockStateIdTableCache
+ */
+public class BlockStateIdTable {
+	public static final BlockStateIdTable EMPTY = new BlockStateIdTable(new short[0], 0);
+
+	private final short[] ids;
+	private final int registrySize;
+
+	private BlockStateIdTable(short[] ids, int registrySize) {
+		this.ids = ids;
+		this.registrySize = registrySize;
+	}
+
+	/**
+	 * Flattens an ID map into a table indexed by the registry ID of each entry. This also caches the current registry
+	 * ID on every entry, since the registry only offers a hash lookup in that direction.
+	 */
+	public static <T> BlockStateIdTable create(RegistryIdSource<T> registry, Object2IntMap<T> entryIds) {
+		int registrySize = registry.size();
+
+		// NB: The registry IDs are cached again every time that a table is created, rather than once, since they can
+		// be remapped when joining a server that has a different set of blocks.
+		for (int registryId = 0; registryId < registrySize; registryId++) {
+			T entry = registry.byId(registryId);
+
+			if (entry != null) {
+				registry.setCachedId(entry, registryId);
+			}
+		}
+
+		short[] ids = new short[registrySize];
+		Arrays.fill(ids, (short) -1);
+
+		for (Object2IntMap.Entry<T> entry : entryIds.object2IntEntrySet()) {
+			int registryId = registry.getCachedId(entry.getKey());
+
+			if (registryId >= 0 && registryId < registrySize) {
+				ids[registryId] = (short) entry.getIntValue();
+			}
+		}
+
+		return new BlockStateIdTable(ids, registrySize);
+	}
+
+	/**
+	 * Checks whether the registry IDs cached by {@link #create} still match the registry, so that the table doesn't
+	 * need to be created again. Unlike creating a table, this only looks entries up by their ID, which is a plain list
+	 * access.
+	 */
+	public <T> boolean isCurrent(RegistryIdSource<T> registry) {
+		int registrySize = registry.size();
+
+		if (registrySize != this.registrySize) {
+			return false;
+		}
+
+		for (int registryId = 0; registryId < registrySize; registryId++) {
+			T entry = registry.byId(registryId);
+
+			if (entry == null || registry.getCachedId(entry) != registryId) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the material ID of the given state, or -1 if the shader pack doesn't assign it one
+	 */
+	public short get(BlockState state) {
+		return getByRegistryId(((BlockStateExt) state).iris$getRegistryId());
+	}
+
+	/**
+	 * @return the material ID of the entry with the given registry ID, or -1 if the shader pack doesn't assign it one
+	 */
+	public short getByRegistryId(int registryId) {
+		// NB: States that were added to the registry after this table was created won't have an entry, and states that
+		// aren't in the registry at all have an ID of -1.
+		if (registryId < 0 || registryId >= ids.length) {
+			return -1;
+		}
+
+		return ids[registryId];
+	}
+}
@@ -0,0 +1,57 @@
+package net.coderbot.iris.block_rendering;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps a {@link BlockStateIdTable} in sync with the block state IDs of the shader pack and with the registry that the
+ * table is indexed by, only creating the table again when either of them changed.
+ */
+public class BlockStateIdTableCache<T> {
+	private final RegistryIdSource<T> registry;
+	@Nullable
+	private Object2IntMap<T> ids;
+	@Nullable
+	private BlockStateIdTable table;
+
+	public BlockStateIdTableCache(RegistryIdSource<T> registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * @return whether the table changed, in which case anything still using the previous table needs to be reloaded
+	 */
+	public boolean update(@Nullable Object2IntMap<T> ids) {
+		if (ids == null) {
+			boolean hadIds = this.ids != null;
+
+			this.ids = null;
+			this.table = null;
+
+			return hadIds;
+		}
+
+		boolean idsChanged = this.ids == null || !this.ids.equals(ids);
+
+		// NB: The registry IDs that the table is indexed by can change even if the IDs from the shader pack don't, for
+		// example when joining a server that remaps them. Checking for that is much cheaper than creating the table.
+		if (!idsChanged && table != null && table.isCurrent(registry)) {
+			return false;
+		}
+
+		this.table = BlockStateIdTable.create(registry, ids);
+		this.ids = ids;
+
+		return true;
+	}
+
+	@Nullable
+	public Object2IntMap<T> getIds() {
+		return ids;
+	}
+
+	@Nullable
+	public BlockStateIdTable getTable() {
+		return table;
+	}
+}
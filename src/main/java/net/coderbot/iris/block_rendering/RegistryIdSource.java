@@ -0,0 +1,23 @@
+package net.coderbot.iris.block_rendering;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A registry that assigns a dense ID to each of its entries, along with a copy of that ID cached on each entry, like
+ * the one that {@link BlockStateExt} caches on every block state. This is what {@link BlockStateIdTable} is indexed by.
+ *
+ * @see BlockMaterialMapping#BLOCK_STATE_REGISTRY
+ */
+public interface RegistryIdSource<T> {
+	int size();
+
+	@Nullable
+	T byId(int registryId);
+
+	/**
+	 * @return the registry ID last cached on the entry, or -1 if none has been cached yet
+	 */
+	int getCachedId(T entry);
+
+	void setCachedId(T entry, int registryId);
+}
@@ -31,12 +31,62 @@ public class IrisConfig {
 	 */
 	private boolean enableDebug;
 
+	/**
+	 * Whether preprocessed shader program sources should be cached on disk, speeding up reloads of unchanged packs.
+	 */
+	private boolean enableSourceCache;
+
+	/**
+	 * If cached program sources should be checked against a full run of the preprocessor. Only useful for debugging
+	 * the source cache itself, since it removes any speedup from using the cache.
+	 */
+	private boolean verifySourceCache;
+
+	/**
+	 * Whether the driver binaries of linked shader programs should be cached on disk, allowing later launches to skip
+	 * compiling programs that haven't changed.
+	 */
+	private boolean enableProgramBinaryCache;
+
+	/**
+	 * Whether gbuffer passes that haven't been used yet should be created in the background once the driver has
+	 * finished compiling them, instead of only when they are first used. Without warm-up, gbuffer programs aren't
+	 * queued up front, and they don't share compiled shaders with each other.
+	 */
+	private boolean enablePassWarmUp;
+
+	/**
+	 * Whether common per-frame and per-tick uniforms should be provided to gbuffer programs through a single uniform
+	 * buffer that is written once per frame, instead of being set on each program individually.
+	 */
+	private boolean enableCommonUniformBuffer;
+
+	/**
+	 * Whether the expressions of custom uniforms should be compiled to bytecode when a shader pack is loaded, instead
+	 * of being interpreted on every frame. This is off by default, since the generated classes are a new way for
+	 * loading a shader pack to fail.
+	 */
+	private boolean enableCustomUniformCompiler;
+
+	/**
+	 * Whether the translucent quads of batched entities should be sorted on worker threads once all entities have been
+	 * buffered, instead of on the render thread while they are still being buffered.
+	 */
+	private boolean enableParallelEntitySorting;
+
 	private final Path propertiesPath;
 
 	public IrisConfig(Path propertiesPath) {
 		shaderPackName = null;
 		enableShaders = true;
 		enableDebug = false;
+		enableSourceCache = true;
+		verifySourceCache = false;
+		enableProgramBinaryCache = true;
+		enablePassWarmUp = true;
+		enableCommonUniformBuffer = false;
+		enableCustomUniformCompiler = false;
+		enableParallelEntitySorting = false;
 		this.propertiesPath = propertiesPath;
 	}
 
@@ -98,6 +148,34 @@ public class IrisConfig {
 		enableDebug = enabled;
 	}
 
+	public boolean isSourceCacheEnabled() {
+		return enableSourceCache;
+	}
+
+	public boolean shouldVerifySourceCache() {
+		return verifySourceCache;
+	}
+
+	public boolean isProgramBinaryCacheEnabled() {
+		return enableProgramBinaryCache;
+	}
+
+	public boolean isPassWarmUpEnabled() {
+		return enablePassWarmUp;
+	}
+
+	public boolean isCommonUniformBufferEnabled() {
+		return enableCommonUniformBuffer;
+	}
+
+	public boolean isCustomUniformCompilerEnabled() {
+		return enableCustomUniformCompiler;
+	}
+
+	public boolean isParallelEntitySortingEnabled() {
+		return enableParallelEntitySorting;
+	}
+
 	/**
 	 * Sets whether shaders should be used for rendering.
 	 */
@@ -122,6 +200,13 @@ public class IrisConfig {
 		shaderPackName = properties.getProperty("shaderPack");
 		enableShaders = !"false".equals(properties.getProperty("enableShaders"));
 		enableDebug = !"false".equals(properties.getProperty("enableDebug"));
+		enableSourceCache = !"false".equals(properties.getProperty("enableSourceCache"));
+		verifySourceCache = "true".equals(properties.getProperty("verifySourceCache"));
+		enableProgramBinaryCache = !"false".equals(properties.getProperty("enableProgramBinaryCache"));
+		enablePassWarmUp = !"false".equals(properties.getProperty("enablePassWarmUp"));
+		enableCommonUniformBuffer = "true".equals(properties.getProperty("enableCommonUniformBuffer"));
+		enableCustomUniformCompiler = "true".equals(properties.getProperty("enableCustomUniformCompiler"));
+		enableParallelEntitySorting = "true".equals(properties.getProperty("enableParallelEntitySorting"));
 		try {
 			IrisVideoSettings.shadowDistance = Integer.parseInt(properties.getProperty("maxShadowRenderDistance", "32"));
 		} catch (NumberFormatException e) {
@@ -147,6 +232,13 @@ public class IrisConfig {
 		properties.setProperty("shaderPack", getShaderPackName().orElse(""));
 		properties.setProperty("enableShaders", enableShaders ? "true" : "false");
 		properties.setProperty("enableDebug", enableDebug ? "true" : "false");
+		properties.setProperty("enableSourceCache", enableSourceCache ? "true" : "false");
+		properties.setProperty("verifySourceCache", verifySourceCache ? "true" : "false");
+		properties.setProperty("enableProgramBinaryCache", enableProgramBinaryCache ? "true" : "false");
+		properties.setProperty("enablePassWarmUp", enablePassWarmUp ? "true" : "false");
+		properties.setProperty("enableCommonUniformBuffer", enableCommonUniformBuffer ? "true" : "false");
+		properties.setProperty("enableCustomUniformCompiler", enableCustomUniformCompiler ? "true" : "false");
+		properties.setProperty("enableParallelEntitySorting", enableParallelEntitySorting ? "true" : "false");
 		properties.setProperty("maxShadowRenderDistance", String.valueOf(IrisVideoSettings.shadowDistance));
 		// NB: This uses ISO-8859-1 with unicode escapes as the encoding
 		properties.store(Files.newOutputStream(propertiesPath), COMMENT);
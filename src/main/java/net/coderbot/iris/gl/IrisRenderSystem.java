@@ -9,6 +9,7 @@ import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL21;
 import org.lwjgl.opengl.GL30C;
+import org.lwjgl.opengl.GL31C;
 import org.lwjgl.opengl.GL42C;
 
 import java.nio.ByteBuffer;
@@ -19,6 +20,10 @@ import java.nio.IntBuffer;
  * This class is responsible for abstracting calls to OpenGL and asserting that calls are run on the render thread.
  */
 public class IrisRenderSystem {
+	private static final UniformSink GL_UNIFORM_SINK = new GlUniformSink();
+
+	private static UniformSink uniformSink = GL_UNIFORM_SINK;
+
 	public static void generateMipmaps(int mipmapTarget) {
 		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
 		GL30C.glGenerateMipmap(mipmapTarget);
@@ -35,43 +40,45 @@ public class IrisRenderSystem {
 	}
 
 	public static void uniformMatrix4fv(int location, boolean transpose, FloatBuffer matrix) {
-		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
-		GL30C.glUniformMatrix4fv(location, transpose, matrix);
+		uniformSink.uniformMatrix4fv(location, transpose, matrix);
 	}
 
 	public static void uniform1f(int location, float v0) {
-		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
-		GL30C.glUniform1f(location, v0);
+		uniformSink.uniform1f(location, v0);
 	}
 
 	public static void uniform1i(int location, int v0) {
-		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
-		GL30C.glUniform1i(location, v0);
+		uniformSink.uniform1i(location, v0);
 	}
 
 	public static void uniform2f(int location, float v0, float v1) {
-		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
-        GL30C.glUniform2f(location, v0, v1);
+		uniformSink.uniform2f(location, v0, v1);
 	}
 
 	public static void uniform2i(int location, int v0, int v1) {
-		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
-        GL30C.glUniform2i(location, v0, v1);
+		uniformSink.uniform2i(location, v0, v1);
 	}
 
 	public static void uniform3f(int location, float v0, float v1, float v2) {
-		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
-        GL30C.glUniform3f(location, v0, v1, v2);
+		uniformSink.uniform3f(location, v0, v1, v2);
 	}
 
 	public static void uniform4f(int location, float v0, float v1, float v2, float v3) {
-		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
-        GL30C.glUniform4f(location, v0, v1, v2, v3);
+		uniformSink.uniform4f(location, v0, v1, v2, v3);
 	}
 
 	public static void uniform4i(int location, int v0, int v1, int v2, int v3) {
-		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
-		GL30C.glUniform4i(location, v0, v1, v2, v3);
+		uniformSink.uniform4i(location, v0, v1, v2, v3);
+	}
+
+	/**
+	 * Replaces the destination of all uniform updates. Outside of tests, which have no OpenGL context to upload
+	 * uniforms to, this should never be called.
+	 *
+	 * @param sink the new destination, or null to go back to setting uniforms through OpenGL
+	 */
+	public static void setUniformSink(@Nullable UniformSink sink) {
+		uniformSink = sink != null ? sink : GL_UNIFORM_SINK;
 	}
 
 	public static int getAttribLocation(int programId, String name) {
@@ -129,6 +136,36 @@ public class IrisRenderSystem {
 		GL30C.glBufferData(target, data, usage);
 	}
 
+	public static void bufferData(int target, long size, int usage) {
+		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+		GL30C.glBufferData(target, size, usage);
+	}
+
+	public static void bufferSubData(int target, long offset, ByteBuffer data) {
+		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+		GL30C.glBufferSubData(target, offset, data);
+	}
+
+	public static void bindBufferBase(int target, int index, int buffer) {
+		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+		GL30C.glBindBufferBase(target, index, buffer);
+	}
+
+	public static int getUniformBlockIndex(int program, CharSequence name) {
+		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+		// NB: This is also provided by ARB_uniform_buffer_object on OpenGL 3.0 drivers.
+		return GL31C.glGetUniformBlockIndex(program, name);
+	}
+
+	public static void uniformBlockBinding(int program, int blockIndex, int binding) {
+		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+		GL31C.glUniformBlockBinding(program, blockIndex, binding);
+	}
+
+	public static boolean supportsUniformBuffers() {
+		return GL.getCapabilities().OpenGL31 || GL.getCapabilities().GL_ARB_uniform_buffer_object;
+	}
+
 	public static void vertexAttrib4f(int index, float v0, float v1, float v2, float v3) {
 		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
 		GL30C.glVertexAttrib4f(index, v0, v1, v2, v3);
@@ -175,4 +212,75 @@ public class IrisRenderSystem {
 		RenderSystem.popMatrix();
 		RenderSystem.matrixMode(GL11.GL_MODELVIEW);
 	}
+
+	/**
+	 * Receives the values of uniforms of the program that is currently in use.
+	 */
+	public interface UniformSink {
+		void uniformMatrix4fv(int location, boolean transpose, FloatBuffer matrix);
+
+		void uniform1f(int location, float v0);
+
+		void uniform1i(int location, int v0);
+
+		void uniform2f(int location, float v0, float v1);
+
+		void uniform2i(int location, int v0, int v1);
+
+		void uniform3f(int location, float v0, float v1, float v2);
+
+		void uniform4f(int location, float v0, float v1, float v2, float v3);
+
+		void uniform4i(int location, int v0, int v1, int v2, int v3);
+	}
+
+	private static final class GlUniformSink implements UniformSink {
+		@Override
+		public void uniformMatrix4fv(int location, boolean transpose, FloatBuffer matrix) {
+			RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+			GL30C.glUniformMatrix4fv(location, transpose, matrix);
+		}
+
+		@Override
+		public void uniform1f(int location, float v0) {
+			RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+			GL30C.glUniform1f(location, v0);
+		}
+
+		@Override
+		public void uniform1i(int location, int v0) {
+			RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+			GL30C.glUniform1i(location, v0);
+		}
+
+		@Override
+		public void uniform2f(int location, float v0, float v1) {
+			RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+			GL30C.glUniform2f(location, v0, v1);
+		}
+
+		@Override
+		public void uniform2i(int location, int v0, int v1) {
+			RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+			GL30C.glUniform2i(location, v0, v1);
+		}
+
+		@Override
+		public void uniform3f(int location, float v0, float v1, float v2) {
+			RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+			GL30C.glUniform3f(location, v0, v1, v2);
+		}
+
+		@Override
+		public void uniform4f(int location, float v0, float v1, float v2, float v3) {
+			RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+			GL30C.glUniform4f(location, v0, v1, v2, v3);
+		}
+
+		@Override
+		public void uniform4i(int location, int v0, int v1, int v2, int v3) {
+			RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+			GL30C.glUniform4i(location, v0, v1, v2, v3);
+		}
+	}
 }
@@ -5,10 +5,9 @@ import com.mojang.blaze3d.systems.RenderSystem;
 import net.coderbot.iris.gl.IrisRenderSystem;
 import net.coderbot.iris.gl.image.ImageHolder;
 import net.coderbot.iris.gl.sampler.SamplerHolder;
-import net.coderbot.iris.gl.shader.GlShader;
-import net.coderbot.iris.gl.shader.ProgramCreator;
+import net.coderbot.iris.gl.shader.GlProgramCompilerBackend;
+import net.coderbot.iris.gl.shader.ProgramCompiler;
 import net.coderbot.iris.gl.shader.ShaderConstants;
-import net.coderbot.iris.gl.shader.ShaderType;
 import net.coderbot.iris.gl.shader.StandardMacros;
 import net.coderbot.iris.gl.texture.InternalTextureFormat;
 import net.coderbot.iris.pipeline.HandRenderer;
@@ -16,12 +15,11 @@ import net.coderbot.iris.pipeline.HandRenderer;
 import org.jetbrains.annotations.Nullable;
 import org.lwjgl.opengl.GL20C;
 import org.lwjgl.opengl.GL21C;
+import org.lwjgl.opengl.GL31C;
 
 import java.util.function.IntSupplier;
 
 public class ProgramBuilder extends ProgramUniforms.Builder implements SamplerHolder, ImageHolder {
-	private static final ShaderConstants EMPTY_CONSTANTS = ShaderConstants.builder().build();
-
 	public static final ShaderConstants MACRO_CONSTANTS = ShaderConstants.builder()
 		.define(StandardMacros.getOsString())
 		.define("MC_VERSION", StandardMacros.getMcVersion())
@@ -53,39 +51,41 @@ public class ProgramBuilder extends ProgramUniforms.Builder implements SamplerHo
 		IrisRenderSystem.bindAttributeLocation(program, index, name);
 	}
 
-	public static ProgramBuilder begin(String name, @Nullable String vertexSource, @Nullable String geometrySource,
-									   @Nullable String fragmentSource, ImmutableSet<Integer> reservedTextureUnits) {
-		RenderSystem.assertThread(RenderSystem::isOnRenderThread);
-
-		GlShader vertex;
-		GlShader geometry;
-		GlShader fragment;
+	/**
+	 * Makes the program read the given uniform block from the buffer bound to the binding point, if the program
+	 * declares that block at all.
+	 */
+	public void bindUniformBlock(String name, int binding) {
+		int blockIndex = IrisRenderSystem.getUniformBlockIndex(program, name);
 
-		vertex = buildShader(ShaderType.VERTEX, name + ".vsh", vertexSource);
-
-		if (geometrySource != null) {
-			geometry = buildShader(ShaderType.GEOMETRY, name + ".gsh", geometrySource);
-		} else {
-			geometry = null;
+		if (blockIndex != GL31C.GL_INVALID_INDEX) {
+			IrisRenderSystem.uniformBlockBinding(program, blockIndex, binding);
 		}
+	}
 
-		fragment = buildShader(ShaderType.FRAGMENT, name + ".fsh", fragmentSource);
+	public static ProgramBuilder begin(String name, @Nullable String vertexSource, @Nullable String geometrySource,
+									   @Nullable String fragmentSource, ImmutableSet<Integer> reservedTextureUnits) {
+		RenderSystem.assertThread(RenderSystem::isOnRenderThread);
 
-		int programId;
+		ProgramCompiler compiler = new ProgramCompiler(new GlProgramCompilerBackend(), null);
 
-		if (geometry != null) {
-			programId = ProgramCreator.create(name, vertex, geometry, fragment);
-		} else {
-			programId = ProgramCreator.create(name, vertex, fragment);
+		try {
+			return begin(compiler, name, vertexSource, geometrySource, fragmentSource, reservedTextureUnits);
+		} finally {
+			compiler.close();
 		}
+	}
 
-		vertex.destroy();
-
-		if (geometry != null) {
-			geometry.destroy();
-		}
+	/**
+	 * Begins building a program, creating it through the given compiler. Programs that were queued on the compiler
+	 * beforehand are compiled alongside each other, and identical programs are only compiled once.
+	 */
+	public static ProgramBuilder begin(ProgramCompiler compiler, String name, @Nullable String vertexSource,
+									   @Nullable String geometrySource, @Nullable String fragmentSource,
+									   ImmutableSet<Integer> reservedTextureUnits) {
+		RenderSystem.assertThread(RenderSystem::isOnRenderThread);
 
-		fragment.destroy();
+		int programId = compiler.compile(name, vertexSource, geometrySource, fragmentSource);
 
 		return new ProgramBuilder(name, programId, reservedTextureUnits);
 	}
@@ -94,14 +94,6 @@ public class ProgramBuilder extends ProgramUniforms.Builder implements SamplerHo
 		return new Program(program, super.buildUniforms(), this.samplers.build(), this.images.build());
 	}
 
-	private static GlShader buildShader(ShaderType shaderType, String name, @Nullable String source) {
-		try {
-			return new GlShader(shaderType, name, source, EMPTY_CONSTANTS);
-		} catch (RuntimeException e) {
-			throw new RuntimeException("Failed to compile " + shaderType + " shader for program " + name, e);
-		}
-	}
-
 	@Override
 	public void addExternalSampler(int textureUnit, String... names) {
 		samplers.addExternalSampler(textureUnit, names);
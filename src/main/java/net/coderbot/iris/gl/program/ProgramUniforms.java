@@ -3,6 +3,7 @@ package net.coderbot.iris.gl.program;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -13,7 +14,9 @@ import com.mojang.blaze3d.platform.GlStateManager;
 import net.coderbot.iris.Iris;
 import net.coderbot.iris.gl.IrisRenderSystem;
 import net.coderbot.iris.gl.uniform.DynamicLocationalUniformHolder;
+import net.coderbot.iris.gl.uniform.DynamicUniformHolder;
 import net.coderbot.iris.gl.uniform.Uniform;
+import net.coderbot.iris.gl.uniform.UniformDependency;
 import net.coderbot.iris.gl.uniform.UniformHolder;
 import net.coderbot.iris.gl.uniform.UniformType;
 import net.coderbot.iris.gl.uniform.UniformUpdateFrequency;
@@ -29,6 +32,7 @@ public class ProgramUniforms {
 	private final ImmutableList<Uniform> perTick;
 	private final ImmutableList<Uniform> perFrame;
 	private final ImmutableList<Uniform> dynamic;
+	private final ImmutableList<DependentGroup> dependent;
 	private final ImmutableList<ValueUpdateNotifier> notifiersToReset;
 
 	private ImmutableList<Uniform> once;
@@ -36,17 +40,37 @@ public class ProgramUniforms {
 	int lastFrame = -1;
 
 	public ProgramUniforms(ImmutableList<Uniform> once, ImmutableList<Uniform> perTick, ImmutableList<Uniform> perFrame,
-						   ImmutableList<Uniform> dynamic, ImmutableList<ValueUpdateNotifier> notifiersToReset) {
+						   ImmutableList<Uniform> dynamic, ImmutableList<DependentGroup> dependent,
+						   ImmutableList<ValueUpdateNotifier> notifiersToReset) {
 		this.once = once;
 		this.perTick = perTick;
 		this.perFrame = perFrame;
 		this.dynamic = dynamic;
+		this.dependent = dependent;
 		this.notifiersToReset = notifiersToReset;
 	}
 
 	private void updateStage(ImmutableList<Uniform> uniforms) {
-		for (Uniform uniform : uniforms) {
-			uniform.update();
+		// NB: Use an index instead of an iterator, since this runs every time that a program is used.
+		for (int i = 0; i < uniforms.size(); i++) {
+			uniforms.get(i).update();
+		}
+	}
+
+	/**
+	 * Polls the uniforms of each group whose dependency has changed since this program last polled them.
+	 *
+	 * @param force whether all groups should be polled regardless of their dependencies
+	 */
+	private void updateDependent(boolean force) {
+		for (int i = 0; i < dependent.size(); i++) {
+			DependentGroup group = dependent.get(i);
+			int version = group.dependency.getVersion();
+
+			if (force || group.lastVersion != version) {
+				group.lastVersion = version;
+				updateStage(group.uniforms);
+			}
 		}
 	}
 
@@ -55,6 +79,15 @@ public class ProgramUniforms {
 	}
 
 	public void update() {
+		// TODO: Move the frame counter to a different place?
+		update(getCurrentTick(), SystemTimeUniforms.COUNTER.getAsInt());
+	}
+
+	/**
+	 * Updates the uniforms of this program as of the given tick and frame. This doesn't depend on the state of the
+	 * client, which allows driving the uniforms without a running game.
+	 */
+	public void update(long currentTick, int currentFrame) {
 		if (active != null) {
 			active.removeListeners();
 		}
@@ -67,35 +100,34 @@ public class ProgramUniforms {
 			updateStage(once);
 			updateStage(perTick);
 			updateStage(perFrame);
-			lastTick = getCurrentTick();
+			updateDependent(true);
+			lastTick = currentTick;
 
 			once = null;
 			return;
 		}
 
-		long currentTick = getCurrentTick();
-
 		if (lastTick != currentTick) {
 			lastTick = currentTick;
 
 			updateStage(perTick);
 		}
 
-		// TODO: Move the frame counter to a different place?
-		int currentFrame = SystemTimeUniforms.COUNTER.getAsInt();
-
 		if (lastFrame != currentFrame) {
 			lastFrame = currentFrame;
 
 			updateStage(perFrame);
 		}
+
+		// NB: This is checked on every use instead of once per frame, since a dependency can be invalidated at any time.
+		updateDependent(false);
 	}
 
 	public void removeListeners() {
 		active = null;
 
-		for (ValueUpdateNotifier notifier : notifiersToReset) {
-			notifier.setListener(null);
+		for (int i = 0; i < notifiersToReset.size(); i++) {
+			notifiersToReset.get(i).setListener(null);
 		}
 	}
 
@@ -109,6 +141,20 @@ public class ProgramUniforms {
 		return new Builder(name, program);
 	}
 
+	/**
+	 * A group of per-frame uniforms that all depend on the same {@link UniformDependency}.
+	 */
+	public static final class DependentGroup {
+		private final UniformDependency dependency;
+		private final ImmutableList<Uniform> uniforms;
+		private int lastVersion;
+
+		public DependentGroup(UniformDependency dependency, ImmutableList<Uniform> uniforms) {
+			this.dependency = dependency;
+			this.uniforms = uniforms;
+		}
+	}
+
 	public static class Builder implements DynamicLocationalUniformHolder {
 		private final String name;
 		private final int program;
@@ -118,6 +164,7 @@ public class ProgramUniforms {
 		private final Map<String, Uniform> perTick;
 		private final Map<String, Uniform> perFrame;
 		private final Map<String, Uniform> dynamic;
+		private final Map<UniformDependency, Map<String, Uniform>> dependent;
 		private final Map<String, UniformType> uniformNames;
 		private final Map<String, UniformType> externalUniformNames;
 		private final List<ValueUpdateNotifier> notifiersToReset;
@@ -131,6 +178,7 @@ public class ProgramUniforms {
 			perTick = new HashMap<>();
 			perFrame = new HashMap<>();
 			dynamic = new HashMap<>();
+			dependent = new LinkedHashMap<>();
 			uniformNames = new HashMap<>();
 			externalUniformNames = new HashMap<>();
 			notifiersToReset = new ArrayList<>();
@@ -153,9 +201,13 @@ public class ProgramUniforms {
 			return this;
 		}
 
+		private void addDependentUniform(UniformDependency dependency, Uniform uniform) {
+			dependent.computeIfAbsent(dependency, d -> new HashMap<>()).put(locations.get(uniform.getLocation()), uniform);
+		}
+
 		@Override
 		public OptionalInt location(String name, UniformType type) {
-			int id = IrisRenderSystem.getUniformLocation(program, name);
+			int id = getUniformLocation(name);
 
 			if (id == -1) {
 				return OptionalInt.empty();
@@ -177,7 +229,7 @@ public class ProgramUniforms {
 		public ProgramUniforms buildUniforms() {
 			// Check for any unsupported uniforms and warn about them so that we can easily figure out what uniforms we
 			// need to add.
-			int activeUniforms = GlStateManager.glGetProgrami(program, GL20C.GL_ACTIVE_UNIFORMS);
+			int activeUniforms = getActiveUniformCount();
 			IntBuffer sizeBuf = BufferUtils.createIntBuffer(1);
 			IntBuffer typeBuf = BufferUtils.createIntBuffer(1);
 
@@ -247,11 +299,34 @@ public class ProgramUniforms {
 					perTick.remove(name);
 					perFrame.remove(name);
 					dynamic.remove(name);
+
+					for (Map<String, Uniform> group : dependent.values()) {
+						group.remove(name);
+					}
 				}
 			}
 
+			ImmutableList.Builder<DependentGroup> groups = ImmutableList.builder();
+
+			dependent.forEach((dependency, uniforms) -> {
+				if (!uniforms.isEmpty()) {
+					groups.add(new DependentGroup(dependency, ImmutableList.copyOf(uniforms.values())));
+				}
+			});
+
 			return new ProgramUniforms(ImmutableList.copyOf(once.values()), ImmutableList.copyOf(perTick.values()), ImmutableList.copyOf(perFrame.values()),
-					ImmutableList.copyOf(dynamic.values()), ImmutableList.copyOf(notifiersToReset));
+					ImmutableList.copyOf(dynamic.values()), groups.build(), ImmutableList.copyOf(notifiersToReset));
+		}
+
+		/**
+		 * @return the location of the uniform with the given name, or -1 if the program doesn't have it
+		 */
+		protected int getUniformLocation(String name) {
+			return IrisRenderSystem.getUniformLocation(program, name);
+		}
+
+		protected int getActiveUniformCount() {
+			return GlStateManager.glGetProgrami(program, GL20C.GL_ACTIVE_UNIFORMS);
 		}
 
 		@Override
@@ -268,6 +343,57 @@ public class ProgramUniforms {
 
 			return this;
 		}
+
+		@Override
+		public DynamicUniformHolder dependingOn(UniformDependency dependency) {
+			return new DependentUniformHolder(dependency);
+		}
+
+		/**
+		 * Registers per-frame uniforms into the group of a dependency, and everything else with the builder as usual.
+		 */
+		private final class DependentUniformHolder implements DynamicLocationalUniformHolder {
+			private final UniformDependency dependency;
+
+			private DependentUniformHolder(UniformDependency dependency) {
+				this.dependency = dependency;
+			}
+
+			@Override
+			public DependentUniformHolder addUniform(UniformUpdateFrequency updateFrequency, Uniform uniform) {
+				if (updateFrequency == UniformUpdateFrequency.PER_FRAME) {
+					addDependentUniform(dependency, uniform);
+				} else {
+					Builder.this.addUniform(updateFrequency, uniform);
+				}
+
+				return this;
+			}
+
+			@Override
+			public OptionalInt location(String name, UniformType type) {
+				return Builder.this.location(name, type);
+			}
+
+			@Override
+			public DependentUniformHolder addDynamicUniform(Uniform uniform, ValueUpdateNotifier notifier) {
+				Builder.this.addDynamicUniform(uniform, notifier);
+
+				return this;
+			}
+
+			@Override
+			public DependentUniformHolder externallyManagedUniform(String name, UniformType type) {
+				Builder.this.externallyManagedUniform(name, type);
+
+				return this;
+			}
+
+			@Override
+			public DynamicUniformHolder dependingOn(UniformDependency dependency) {
+				return Builder.this.dependingOn(dependency);
+			}
+		}
 	}
 
 	private static String getTypeName(int type) {
@@ -0,0 +1,165 @@
+package net.coderbot.iris.gl.shader;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.platform.GlUtil;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.coderbot.iris.gl.IrisRenderSystem;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.ARBParallelShaderCompile;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL20C;
+import org.lwjgl.opengl.GL41C;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.opengl.KHRParallelShaderCompile;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implements {@link ProgramCompilerBackend} using the current OpenGL context.
+ */
+public class GlProgramCompilerBackend implements ProgramCompilerBackend {
+	private final boolean programBinaries;
+	private final boolean completionStatus;
+
+	public GlProgramCompilerBackend() {
+		RenderSystem.assertThread(RenderSystem::isOnRenderThreadOrInit);
+
+		GLCapabilities capabilities = GL.getCapabilities();
+
+		// Some drivers only compile on background threads once they have been told how many threads they may use,
+		// 0xFFFFFFFF lets the driver pick the maximum number that it supports.
+		if (capabilities.GL_KHR_parallel_shader_compile) {
+			KHRParallelShaderCompile.glMaxShaderCompilerThreadsKHR(0xFFFFFFFF);
+		} else if (capabilities.GL_ARB_parallel_shader_compile) {
+			ARBParallelShaderCompile.glMaxShaderCompilerThreadsARB(0xFFFFFFFF);
+		}
+
+		// NB: Both extensions use the same value for GL_COMPLETION_STATUS.
+		this.completionStatus = capabilities.GL_KHR_parallel_shader_compile
+			|| capabilities.GL_ARB_parallel_shader_compile;
+
+		// NB: ARB_get_program_binary uses the same entry points as OpenGL 4.1. Some drivers expose the extension without
+		// actually supporting any binary formats, in which case binaries can't be used either.
+		this.programBinaries = (capabilities.OpenGL41 || capabilities.GL_ARB_get_program_binary)
+			&& GlStateManager._getInteger(GL41C.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+	}
+
+	@Override
+	public int compileShader(ShaderType type, String source) {
+		int handle = GlStateManager.glCreateShader(type.id);
+		ShaderWorkarounds.safeShaderSource(handle, source);
+		GlStateManager.glCompileShader(handle);
+
+		return handle;
+	}
+
+	@Override
+	public boolean getCompileStatus(int shader) {
+		return GlStateManager.glGetShaderi(shader, GL20C.GL_COMPILE_STATUS) == GL20C.GL_TRUE;
+	}
+
+	@Override
+	public String getShaderInfoLog(int shader) {
+		return IrisRenderSystem.getShaderInfoLog(shader);
+	}
+
+	@Override
+	public void deleteShader(int shader) {
+		GlStateManager.glDeleteShader(shader);
+	}
+
+	@Override
+	public int createProgram() {
+		int program = GlStateManager.glCreateProgram();
+
+		if (programBinaries) {
+			// Without this hint, drivers are allowed to not keep around the information needed to return a binary.
+			GL41C.glProgramParameteri(program, GL41C.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL20C.GL_TRUE);
+		}
+
+		return program;
+	}
+
+	@Override
+	public void bindAttributeLocation(int program, int index, String name) {
+		IrisRenderSystem.bindAttributeLocation(program, index, name);
+	}
+
+	@Override
+	public void attachShader(int program, int shader) {
+		GlStateManager.glAttachShader(program, shader);
+	}
+
+	@Override
+	public void detachShader(int program, int shader) {
+		IrisRenderSystem.detachShader(program, shader);
+	}
+
+	@Override
+	public void linkProgram(int program) {
+		GlStateManager.glLinkProgram(program);
+	}
+
+	@Override
+	public boolean getLinkStatus(int program) {
+		return GlStateManager.glGetProgrami(program, GL20C.GL_LINK_STATUS) == GL20C.GL_TRUE;
+	}
+
+	@Override
+	public boolean isLinkComplete(int program) {
+		if (!completionStatus) {
+			return true;
+		}
+
+		return GlStateManager.glGetProgrami(program, KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR) == GL20C.GL_TRUE;
+	}
+
+	@Override
+	public String getProgramInfoLog(int program) {
+		return IrisRenderSystem.getProgramInfoLog(program);
+	}
+
+	@Override
+	public void deleteProgram(int program) {
+		GlStateManager.glDeleteProgram(program);
+	}
+
+	@Override
+	public boolean supportsProgramBinaries() {
+		return programBinaries;
+	}
+
+	@Nullable
+	@Override
+	public ProgramBinary getProgramBinary(int program) {
+		int length = GlStateManager.glGetProgrami(program, GL41C.GL_PROGRAM_BINARY_LENGTH);
+
+		if (length <= 0) {
+			return null;
+		}
+
+		ByteBuffer data = ByteBuffer.allocateDirect(length);
+		int[] written = new int[1];
+		int[] format = new int[1];
+
+		GL41C.glGetProgramBinary(program, written, format, data);
+
+		if (written[0] <= 0) {
+			return null;
+		}
+
+		data.limit(written[0]);
+
+		return new ProgramBinary(format[0], data);
+	}
+
+	@Override
+	public void loadProgramBinary(int program, ProgramBinary binary) {
+		GL41C.glProgramBinary(program, binary.getFormat(), binary.getData());
+	}
+
+	@Override
+	public String getDriverString() {
+		return GlUtil.getVendor() + "\n" + GlUtil.getRenderer() + "\n" + GlUtil.getOpenGLVersion();
+	}
+}
@@ -0,0 +1,30 @@
+package net.coderbot.iris.gl.shader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A driver-specific binary representation of a linked program, as returned by glGetProgramBinary.
+ */
+public final class ProgramBinary {
+	private final int format;
+	private final ByteBuffer data;
+
+	/**
+	 * @param data A direct buffer holding the binary between its position and its limit.
+	 */
+	public ProgramBinary(int format, ByteBuffer data) {
+		this.format = format;
+		this.data = data;
+	}
+
+	public int getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return a view of the binary data, which is a direct buffer.
+	 */
+	public ByteBuffer getData() {
+		return data.duplicate();
+	}
+}
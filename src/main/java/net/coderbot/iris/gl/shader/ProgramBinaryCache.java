@@ -0,0 +1,196 @@
+package net.coderbot.iris.gl.shader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A persistent on-disk cache of linked program binaries, allowing programs to be loaded without compiling them again
+ * on later launches.
+ *
+ * <p>Entries are keyed by an opaque string chosen by {@link ProgramCompiler}, which covers the program sources and the
+ * driver that created the binary. Entries are never explicitly invalidated, stale entries are eventually removed by the
+ * size / age based eviction. Since drivers are free to reject binaries at any time, a binary read from the cache is
+ * never trusted until the driver has accepted it.</p>
+ */
+public class ProgramBinaryCache {
+	private static final Logger LOGGER = LogManager.getLogger(ProgramBinaryCache.class);
+
+	private static final String EXTENSION = ".bin";
+
+	private static final long MAX_SIZE_BYTES = 128L * 1024 * 1024;
+	private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+	private final Path directory;
+	private final long maxSizeBytes;
+	private final long maxAgeMillis;
+
+	public ProgramBinaryCache(Path directory) {
+		this(directory, MAX_SIZE_BYTES, MAX_AGE_MILLIS);
+	}
+
+	public ProgramBinaryCache(Path directory, long maxSizeBytes, long maxAgeMillis) {
+		this.directory = directory;
+		this.maxSizeBytes = maxSizeBytes;
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	/**
+	 * @return the cached binary, or null if there is no usable entry for the key
+	 */
+	@Nullable
+	public ProgramBinary read(String key) {
+		Path entry = directory.resolve(key + EXTENSION);
+
+		try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+			long size = channel.size();
+
+			if (size <= Integer.BYTES || size > Integer.MAX_VALUE) {
+				return null;
+			}
+
+			// NB: glProgramBinary only accepts direct buffers.
+			ByteBuffer contents = ByteBuffer.allocateDirect((int) size).order(ByteOrder.LITTLE_ENDIAN);
+
+			while (contents.hasRemaining()) {
+				if (channel.read(contents) < 0) {
+					return null;
+				}
+			}
+
+			contents.flip();
+
+			int format = contents.getInt();
+			ByteBuffer data = contents.slice();
+
+			// Mark the entry as recently used so that it is not evicted.
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+
+			return new ProgramBinary(format, data);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			LOGGER.warn("Failed to read the cached program binary at " + entry, e);
+
+			return null;
+		}
+	}
+
+	public void write(String key, ProgramBinary binary) {
+		Path entry = directory.resolve(key + EXTENSION);
+
+		try {
+			Files.createDirectories(directory);
+
+			ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(binary.getFormat()).flip();
+
+			ByteBuffer data = binary.getData();
+
+			// Write to a temporary file first, so that a crash or concurrent launch never observes a partial entry.
+			Path temporary = Files.createTempFile(directory, "tmp", ".part");
+
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				while (header.hasRemaining()) {
+					channel.write(header);
+				}
+
+				while (data.hasRemaining()) {
+					channel.write(data);
+				}
+			}
+
+			Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LOGGER.warn("Failed to write the program binary cache entry at " + entry, e);
+		}
+	}
+
+	/**
+	 * Removes entries that haven't been used within the maximum age, and then removes the least recently used entries
+	 * until the total size of the cache is within the size limit.
+	 */
+	public void evict() {
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+
+		List<Path> entries;
+
+		try (Stream<Path> stream = Files.list(directory)) {
+			entries = stream.filter(path -> path.getFileName().toString().endsWith(EXTENSION)).collect(Collectors.toList());
+		} catch (IOException e) {
+			LOGGER.warn("Failed to list the program binary cache at " + directory, e);
+
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		long totalSize = 0;
+		List<CachedEntry> remaining = new ArrayList<>();
+
+		for (Path entry : entries) {
+			try {
+				long lastUsed = Files.getLastModifiedTime(entry).toMillis();
+				long size = Files.size(entry);
+
+				if (now - lastUsed > maxAgeMillis) {
+					Files.deleteIfExists(entry);
+				} else {
+					remaining.add(new CachedEntry(entry, lastUsed, size));
+					totalSize += size;
+				}
+			} catch (IOException e) {
+				// Removed by something else in the meantime, or otherwise unusable. Either way, nothing to do.
+			}
+		}
+
+		if (totalSize <= maxSizeBytes) {
+			return;
+		}
+
+		remaining.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+
+		for (CachedEntry entry : remaining) {
+			if (totalSize <= maxSizeBytes) {
+				break;
+			}
+
+			try {
+				Files.deleteIfExists(entry.path);
+				totalSize -= entry.size;
+			} catch (IOException e) {
+				LOGGER.warn("Failed to evict the program binary cache entry at " + entry.path, e);
+			}
+		}
+	}
+
+	private static final class CachedEntry {
+		private final Path path;
+		private final long lastUsed;
+		private final long size;
+
+		private CachedEntry(Path path, long lastUsed, long size) {
+			this.path = path;
+			this.lastUsed = lastUsed;
+			this.size = size;
+		}
+	}
+}
@@ -0,0 +1,455 @@
+package net.coderbot.iris.gl.shader;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compiles and links shader programs in batches.
+ *
+ * <p>Queueing a program issues all of the commands needed to compile and link it, but doesn't check whether they
+ * succeeded. The results are only queried once a queued program is actually needed. Querying the status of a shader or
+ * program blocks until the driver is done with it, so checking right after issuing each compile would serialize all of
+ * the work. Drivers that compile on background threads, such as drivers supporting KHR_parallel_shader_compile, can
+ * instead work on every queued program at the same time, and {@link #isReady} allows callers to wait for a program to
+ * finish without blocking.</p>
+ *
+ * <p>Shaders with identical sources are only compiled once, and programs with identical sources are only linked once.
+ * Since each program object has its own uniform and sampler state, every request for a program still receives a
+ * separate program object, with any additional copies being created from the program binary of the first one where
+ * possible.</p>
+ *
+ * <p>If a {@link ProgramBinaryCache} is provided, the binaries of successfully linked programs are stored in it, keyed
+ * by the program sources and the driver, so that later launches can load them instead of compiling them again.</p>
+ *
+ * <p>This must only be used from the render thread.</p>
+ */
+public final class ProgramCompiler {
+	private static final Logger LOGGER = LogManager.getLogger(ProgramCompiler.class);
+
+	/**
+	 * Bump this whenever the way that programs are created changes, such as when the attribute bindings are changed, so
+	 * that cached binaries of programs created the old way are never used.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	// TODO: This is *really* hardcoded, we need to refactor this to support external calls to glBindAttribLocation
+	private static final int[] ATTRIBUTE_LOCATIONS = { 11, 12, 13 };
+	private static final String[] ATTRIBUTE_NAMES = { "mc_Entity", "mc_midTexCoord", "at_tangent" };
+
+	private final ProgramCompilerBackend backend;
+	@Nullable
+	private final ProgramBinaryCache binaryCache;
+	private final boolean programBinaries;
+
+	private final Map<String, CompiledShader> shaders;
+	private final Map<String, QueuedProgram> programs;
+
+	private int programsQueued;
+	private int shadersCompiled;
+	private int programsLinked;
+	private int binaryCacheHits;
+	private int duplicatePrograms;
+
+	/**
+	 * @param binaryCache The cache to load program binaries from and store them in, or null to always compile
+	 *                    programs from source.
+	 */
+	public ProgramCompiler(ProgramCompilerBackend backend, @Nullable ProgramBinaryCache binaryCache) {
+		this.backend = backend;
+		this.programBinaries = backend.supportsProgramBinaries();
+		this.binaryCache = programBinaries ? binaryCache : null;
+
+		this.shaders = new HashMap<>();
+		this.programs = new HashMap<>();
+	}
+
+	/**
+	 * Starts compiling a program without waiting for it, so that it is ready or at least in progress once it is
+	 * requested through {@link #compile}. Queueing a program that is identical to an already queued program does
+	 * nothing.
+	 *
+	 * @return a handle that can be passed to {@link #isReady}, which is only valid until the compiler is closed
+	 */
+	public QueuedProgram queue(String name, String vertexSource, @Nullable String geometrySource, String fragmentSource) {
+		return getOrQueue(name, vertexSource, geometrySource, fragmentSource);
+	}
+
+	/**
+	 * Returns whether the driver has finished working on a queued program, in which case {@link #compile} won't have
+	 * to wait for it. This never blocks. Drivers without KHR_parallel_shader_compile can't report this, so programs are
+	 * always reported as ready with them.
+	 */
+	public boolean isReady(QueuedProgram program) {
+		return program.resolved || backend.isLinkComplete(program.id);
+	}
+
+	/**
+	 * Creates a program, queueing it first if it hasn't been queued yet. Only the requested program is checked, any
+	 * other queued programs are left to the driver until they are needed.
+	 *
+	 * @return the name of the linked program object, which is owned by the caller from now on
+	 * @throws RuntimeException if the program failed to compile or link
+	 */
+	public int compile(String name, String vertexSource, @Nullable String geometrySource, String fragmentSource) {
+		QueuedProgram program = getOrQueue(name, vertexSource, geometrySource, fragmentSource);
+
+		if (!program.resolved) {
+			try {
+				resolve(program);
+			} catch (RuntimeException e) {
+				backend.deleteProgram(program.id);
+				program.id = 0;
+				program.error = e;
+			}
+
+			program.resolved = true;
+		}
+
+		if (program.error != null) {
+			throw program.error;
+		}
+
+		if (!program.claimed) {
+			program.claimed = true;
+
+			return program.id;
+		}
+
+		duplicatePrograms += 1;
+
+		return copy(program, name);
+	}
+
+	/**
+	 * Deletes every shader object created by this compiler, along with every queued program that was never requested.
+	 * Programs returned by {@link #compile} are not affected. The compiler can still be used afterwards, but it won't
+	 * be able to reuse anything that was compiled before.
+	 */
+	public void close() {
+		for (CompiledShader shader : shaders.values()) {
+			backend.deleteShader(shader.id);
+		}
+
+		for (QueuedProgram program : programs.values()) {
+			if (!program.claimed && program.id != 0) {
+				backend.deleteProgram(program.id);
+			}
+		}
+
+		shaders.clear();
+		programs.clear();
+	}
+
+	private QueuedProgram getOrQueue(String name, String vertexSource, @Nullable String geometrySource,
+									 String fragmentSource) {
+		Objects.requireNonNull(vertexSource, "Missing vertex shader source for program " + name);
+		Objects.requireNonNull(fragmentSource, "Missing fragment shader source for program " + name);
+
+		String key = hashProgram(vertexSource, geometrySource, fragmentSource);
+		QueuedProgram program = programs.get(key);
+
+		if (program != null) {
+			return program;
+		}
+
+		program = new QueuedProgram(name, key, vertexSource, geometrySource, fragmentSource);
+		programs.put(key, program);
+		programsQueued += 1;
+
+		ProgramBinary binary = binaryCache != null ? binaryCache.read(getBinaryKey(program)) : null;
+
+		if (binary != null) {
+			program.id = backend.createProgram();
+			program.binary = binary;
+			backend.loadProgramBinary(program.id, binary);
+		} else {
+			program.id = link(program);
+		}
+
+		return program;
+	}
+
+	private void resolve(QueuedProgram program) {
+		if (program.binary != null) {
+			if (backend.getLinkStatus(program.id)) {
+				binaryCacheHits += 1;
+
+				return;
+			}
+
+			// Drivers can reject binaries at any time, for example after an update that didn't change the version string.
+			LOGGER.debug("The cached binary of program " + program.name + " was rejected by the driver, compiling it from source");
+
+			backend.deleteProgram(program.id);
+			program.binary = null;
+			program.id = link(program);
+		}
+
+		check(program, program.id);
+
+		if (binaryCache != null) {
+			program.binary = backend.getProgramBinary(program.id);
+
+			if (program.binary != null) {
+				binaryCache.write(getBinaryKey(program), program.binary);
+			}
+		}
+	}
+
+	/**
+	 * Creates another program object for a program that has already been handed out.
+	 */
+	private int copy(QueuedProgram program, String name) {
+		if (programBinaries) {
+			if (program.binary == null) {
+				program.binary = backend.getProgramBinary(program.id);
+			}
+
+			if (program.binary != null) {
+				int id = backend.createProgram();
+				backend.loadProgramBinary(id, program.binary);
+
+				if (backend.getLinkStatus(id)) {
+					return id;
+				}
+
+				backend.deleteProgram(id);
+			}
+		}
+
+		// If the program was loaded from a binary, this is where its shaders are compiled for the first time.
+		int id = link(program);
+
+		try {
+			check(program, id);
+		} catch (RuntimeException e) {
+			backend.deleteProgram(id);
+
+			throw new RuntimeException("Failed to create a copy of program " + program.name + " for " + name, e);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Issues the commands to compile any shaders of the program that haven't been compiled yet, and to link a new
+	 * program object from them.
+	 */
+	private int link(QueuedProgram program) {
+		if (program.stages.isEmpty()) {
+			program.stages.add(getOrCompile(ShaderType.VERTEX, program.name + ".vsh", program.vertexSource));
+
+			if (program.geometrySource != null) {
+				program.stages.add(getOrCompile(ShaderType.GEOMETRY, program.name + ".gsh", program.geometrySource));
+			}
+
+			program.stages.add(getOrCompile(ShaderType.FRAGMENT, program.name + ".fsh", program.fragmentSource));
+		}
+
+		int id = backend.createProgram();
+
+		for (int i = 0; i < ATTRIBUTE_LOCATIONS.length; i++) {
+			backend.bindAttributeLocation(id, ATTRIBUTE_LOCATIONS[i], ATTRIBUTE_NAMES[i]);
+		}
+
+		for (CompiledShader shader : program.stages) {
+			backend.attachShader(id, shader.id);
+		}
+
+		backend.linkProgram(id);
+
+		//Always detach shaders according to https://www.khronos.org/opengl/wiki/Shader_Compilation#Cleanup
+		for (CompiledShader shader : program.stages) {
+			backend.detachShader(id, shader.id);
+		}
+
+		programsLinked += 1;
+
+		return id;
+	}
+
+	private CompiledShader getOrCompile(ShaderType type, String name, String source) {
+		Hasher hasher = Hashing.sha256().newHasher();
+		putString(hasher, type.name());
+		putString(hasher, source);
+
+		return shaders.computeIfAbsent(hasher.hash().toString(), key -> {
+			shadersCompiled += 1;
+
+			return new CompiledShader(type, name, backend.compileShader(type, source));
+		});
+	}
+
+	private void check(QueuedProgram program, int id) {
+		for (CompiledShader shader : program.stages) {
+			shader.check();
+		}
+
+		String log = backend.getProgramInfoLog(id);
+
+		if (!log.isEmpty()) {
+			LOGGER.warn("Program link log for " + program.name + ": " + log);
+		}
+
+		if (!backend.getLinkStatus(id)) {
+			throw new RuntimeException("Shader program linking failed, see log for details");
+		}
+	}
+
+	private String getBinaryKey(QueuedProgram program) {
+		Hasher hasher = Hashing.sha256().newHasher();
+		putString(hasher, program.key);
+		putString(hasher, backend.getDriverString());
+
+		return hasher.hash().toString();
+	}
+
+	private static String hashProgram(String vertexSource, @Nullable String geometrySource, String fragmentSource) {
+		Hasher hasher = Hashing.sha256().newHasher();
+
+		hasher.putInt(FORMAT_VERSION);
+
+		for (int i = 0; i < ATTRIBUTE_LOCATIONS.length; i++) {
+			hasher.putInt(ATTRIBUTE_LOCATIONS[i]);
+			putString(hasher, ATTRIBUTE_NAMES[i]);
+		}
+
+		putString(hasher, vertexSource);
+		hasher.putBoolean(geometrySource != null);
+
+		if (geometrySource != null) {
+			putString(hasher, geometrySource);
+		}
+
+		putString(hasher, fragmentSource);
+
+		return hasher.hash().toString();
+	}
+
+	private static void putString(Hasher hasher, String string) {
+		// Length-prefix every string so that different sequences of strings can't produce the same byte stream.
+		hasher.putInt(string.length());
+		hasher.putString(string, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the number of distinct programs that have been queued
+	 */
+	public int getProgramsQueued() {
+		return programsQueued;
+	}
+
+	/**
+	 * @return the number of shader objects compiled from source
+	 */
+	public int getShadersCompiled() {
+		return shadersCompiled;
+	}
+
+	/**
+	 * @return the number of program objects linked from compiled shaders
+	 */
+	public int getProgramsLinked() {
+		return programsLinked;
+	}
+
+	/**
+	 * @return the number of programs successfully loaded from the program binary cache
+	 */
+	public int getBinaryCacheHits() {
+		return binaryCacheHits;
+	}
+
+	/**
+	 * @return the number of programs that were requested more than once
+	 */
+	public int getDuplicatePrograms() {
+		return duplicatePrograms;
+	}
+
+	@Override
+	public String toString() {
+		return programsQueued + " unique programs, " + shadersCompiled + " shaders compiled, " + programsLinked
+			+ " programs linked, " + binaryCacheHits + " loaded from the binary cache, " + duplicatePrograms
+			+ " duplicate programs";
+	}
+
+	/**
+	 * A program that has been queued with {@link #queue}.
+	 */
+	public static final class QueuedProgram {
+		private final String name;
+		private final String key;
+		private final String vertexSource;
+		@Nullable
+		private final String geometrySource;
+		private final String fragmentSource;
+		private final List<CompiledShader> stages;
+
+		private int id;
+		@Nullable
+		private ProgramBinary binary;
+		private boolean resolved;
+		private boolean claimed;
+		@Nullable
+		private RuntimeException error;
+
+		private QueuedProgram(String name, String key, String vertexSource, @Nullable String geometrySource,
+							  String fragmentSource) {
+			this.name = name;
+			this.key = key;
+			this.vertexSource = vertexSource;
+			this.geometrySource = geometrySource;
+			this.fragmentSource = fragmentSource;
+			this.stages = new ArrayList<>(3);
+		}
+	}
+
+	private final class CompiledShader {
+		private final ShaderType type;
+		private final String name;
+		private final int id;
+
+		private boolean checked;
+		private boolean compiled;
+
+		private CompiledShader(ShaderType type, String name, int id) {
+			this.type = type;
+			this.name = name;
+			this.id = id;
+		}
+
+		/**
+		 * Checks the compile status of the shader, only logging the compilation log the first time around since the
+		 * shader may be shared by multiple programs.
+		 */
+		private void check() {
+			if (!checked) {
+				checked = true;
+
+				String log = backend.getShaderInfoLog(id);
+
+				if (!log.isEmpty()) {
+					LOGGER.warn("Shader compilation log for " + name + ": " + log);
+				}
+
+				compiled = backend.getCompileStatus(id);
+			}
+
+			if (!compiled) {
+				throw new RuntimeException("Failed to compile " + type + " shader for program " + name,
+					new RuntimeException("Shader compilation failed, see log for details"));
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package net.coderbot.iris.gl.shader;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The OpenGL calls used by {@link ProgramCompiler}. This exists so that the compiler can be tested without a GL
+ * context.
+ */
+public interface ProgramCompilerBackend {
+	/**
+	 * Creates a shader object and issues the command to compile it, without waiting for compilation to finish.
+	 *
+	 * @return the name of the new shader object
+	 */
+	int compileShader(ShaderType type, String source);
+
+	/**
+	 * Returns whether a shader compiled successfully. This blocks until compilation of that shader has finished.
+	 */
+	boolean getCompileStatus(int shader);
+
+	String getShaderInfoLog(int shader);
+
+	void deleteShader(int shader);
+
+	int createProgram();
+
+	void bindAttributeLocation(int program, int index, String name);
+
+	void attachShader(int program, int shader);
+
+	void detachShader(int program, int shader);
+
+	/**
+	 * Issues the command to link a program, without waiting for linking to finish.
+	 */
+	void linkProgram(int program);
+
+	/**
+	 * Returns whether a program linked successfully. This blocks until linking of that program has finished.
+	 */
+	boolean getLinkStatus(int program);
+
+	/**
+	 * Returns whether the driver has finished compiling and linking a program, without blocking. Backends that can't
+	 * tell must always return true.
+	 */
+	boolean isLinkComplete(int program);
+
+	String getProgramInfoLog(int program);
+
+	void deleteProgram(int program);
+
+	/**
+	 * @return whether program binaries can be retrieved and loaded at all, which requires ARB_get_program_binary and at
+	 *         least one binary format supported by the driver
+	 */
+	boolean supportsProgramBinaries();
+
+	/**
+	 * Retrieves the binary of a successfully linked program.
+	 *
+	 * @return the binary, or null if the driver did not return one
+	 */
+	@Nullable
+	ProgramBinary getProgramBinary(int program);
+
+	/**
+	 * Loads a binary into a program, replacing any previous contents. Whether the driver accepted the binary is
+	 * reported by the link status of the program.
+	 */
+	void loadProgramBinary(int program, ProgramBinary binary);
+
+	/**
+	 * @return a string identifying the driver, which must change whenever program binaries created by one driver could
+	 *         be incompatible with the current one
+	 */
+	String getDriverString();
+}
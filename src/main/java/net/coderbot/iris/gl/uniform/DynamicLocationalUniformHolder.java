@@ -41,6 +41,12 @@ public interface DynamicLocationalUniformHolder extends LocationalUniformHolder,
 		return this;
 	}
 
+	default DynamicLocationalUniformHolder uniform2i(String name, ValueWriter<Vector2i> value, ValueUpdateNotifier notifier) {
+		location(name, UniformType.VEC2I).ifPresent(id -> addDynamicUniform(new Vector2IntegerJomlUniform(id, value, notifier), notifier));
+
+		return this;
+	}
+
 	default DynamicUniformHolder uniform4f(String name, Supplier<Vector4f> value, ValueUpdateNotifier notifier) {
 		location(name, UniformType.VEC4).ifPresent(id -> addDynamicUniform(new Vector4Uniform(id, value, notifier), notifier));
 
@@ -52,4 +58,10 @@ public interface DynamicLocationalUniformHolder extends LocationalUniformHolder,
 
 		return this;
 	}
+
+	default DynamicUniformHolder uniform4i(String name, ValueWriter<Vector4i> value, ValueUpdateNotifier notifier) {
+		location(name, UniformType.VEC4I).ifPresent(id -> addDynamicUniform(new Vector4IntegerJomlUniform(id, value, notifier), notifier));
+
+		return this;
+	}
 }
@@ -14,6 +14,13 @@ public interface DynamicUniformHolder extends UniformHolder {
 	DynamicUniformHolder uniform1f(String name, DoubleSupplier value, ValueUpdateNotifier notifier);
 	DynamicUniformHolder uniform1i(String name, IntSupplier value, ValueUpdateNotifier notifier);
 	DynamicUniformHolder uniform2i(String name, Supplier<Vector2i> value, ValueUpdateNotifier notifier);
+	DynamicUniformHolder uniform2i(String name, ValueWriter<Vector2i> value, ValueUpdateNotifier notifier);
 	DynamicUniformHolder uniform4f(String name, Supplier<Vector4f> value, ValueUpdateNotifier notifier);
 	DynamicUniformHolder uniform4i(String name, Supplier<Vector4i> value, ValueUpdateNotifier notifier);
+	DynamicUniformHolder uniform4i(String name, ValueWriter<Vector4i> value, ValueUpdateNotifier notifier);
+
+	@Override
+	default DynamicUniformHolder dependingOn(UniformDependency dependency) {
+		return this;
+	}
 }
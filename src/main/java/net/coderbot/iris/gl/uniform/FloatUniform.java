@@ -5,6 +5,7 @@ import net.coderbot.iris.gl.IrisRenderSystem;
 public class FloatUniform extends Uniform {
 	private float cachedValue;
 	private final FloatSupplier value;
+	private final Runnable listener;
 
 	FloatUniform(int location, FloatSupplier value) {
 		this(location, value, null);
@@ -15,6 +16,7 @@ public class FloatUniform extends Uniform {
 
 		this.cachedValue = 0;
 		this.value = value;
+		this.listener = this::updateValue;
 	}
 
 	@Override
@@ -22,7 +24,7 @@ public class FloatUniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
@@ -7,6 +7,7 @@ import net.coderbot.iris.gl.IrisRenderSystem;
 public class IntUniform extends Uniform {
 	private int cachedValue;
 	private final IntSupplier value;
+	private final Runnable listener;
 
 	IntUniform(int location, IntSupplier value) {
 		this(location, value, null);
@@ -17,6 +18,7 @@ public class IntUniform extends Uniform {
 
 		this.cachedValue = 0;
 		this.value = value;
+		this.listener = this::updateValue;
 	}
 
 	@Override
@@ -24,7 +26,7 @@ public class IntUniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
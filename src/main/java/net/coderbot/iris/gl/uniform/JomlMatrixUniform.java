@@ -8,26 +8,35 @@ import java.nio.FloatBuffer;
 import java.util.function.Supplier;
 
 public class JomlMatrixUniform extends Uniform {
-	private FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
+	private final FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
+	private final Matrix4f newValue;
 	private Matrix4f cachedValue;
-	private final Supplier<Matrix4f> value;
+	private final ValueWriter<Matrix4f> value;
 
 	JomlMatrixUniform(int location, Supplier<Matrix4f> value) {
+		this(location, destination -> destination.set(value.get()));
+	}
+
+	JomlMatrixUniform(int location, ValueWriter<Matrix4f> value) {
 		super(location);
 
+		this.newValue = new Matrix4f();
 		this.cachedValue = null;
 		this.value = value;
 	}
 
 	@Override
 	public void update() {
-		Matrix4f newValue = value.get();
+		value.write(newValue);
 
 		if (!newValue.equals(cachedValue)) {
-			cachedValue = new Matrix4f(newValue);
+			if (cachedValue == null) {
+				cachedValue = new Matrix4f();
+			}
+
+			cachedValue.set(newValue);
 
 			cachedValue.get(buffer);
-			buffer.rewind();
 
 			IrisRenderSystem.uniformMatrix4fv(location, false, buffer);
 		}
@@ -67,6 +67,13 @@ public interface LocationalUniformHolder extends UniformHolder {
 		return this;
 	}
 
+	@Override
+	default LocationalUniformHolder uniform2i(UniformUpdateFrequency updateFrequency, String name, ValueWriter<Vector2i> value) {
+		location(name, UniformType.VEC2I).ifPresent(id -> addUniform(updateFrequency, new Vector2IntegerJomlUniform(id, value)));
+
+		return this;
+	}
+
 	@Override
 	default LocationalUniformHolder uniform3f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector3f> value) {
 		location(name, UniformType.VEC3).ifPresent(id -> addUniform(updateFrequency, new Vector3Uniform(id, value)));
@@ -74,6 +81,13 @@ public interface LocationalUniformHolder extends UniformHolder {
 		return this;
 	}
 
+	@Override
+	default LocationalUniformHolder uniform3f(UniformUpdateFrequency updateFrequency, String name, ValueWriter<Vector3f> value) {
+		location(name, UniformType.VEC3).ifPresent(id -> addUniform(updateFrequency, new Vector3Uniform(id, value)));
+
+		return this;
+	}
+
 	@Override
 	default LocationalUniformHolder uniformTruncated3f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector4f> value) {
 		location(name, UniformType.VEC3).ifPresent(id -> addUniform(updateFrequency, Vector3Uniform.truncated(id, value)));
@@ -109,6 +123,13 @@ public interface LocationalUniformHolder extends UniformHolder {
 		return this;
 	}
 
+	@Override
+	default LocationalUniformHolder uniformJomlMatrix(UniformUpdateFrequency updateFrequency, String name, ValueWriter<net.coderbot.iris.vendored.joml.Matrix4f> value) {
+		location(name, UniformType.MAT4).ifPresent(id -> addUniform(updateFrequency, new JomlMatrixUniform(id, value)));
+
+		return this;
+	}
+
 	@Override
 	default LocationalUniformHolder uniformMatrixFromArray(UniformUpdateFrequency updateFrequency, String name, Supplier<float[]> value) {
 		location(name, UniformType.MAT4).ifPresent(id -> addUniform(updateFrequency, new MatrixFromFloatArrayUniform(id, value)));
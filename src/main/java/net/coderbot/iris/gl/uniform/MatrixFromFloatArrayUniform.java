@@ -8,7 +8,7 @@ import java.util.Arrays;
 import java.util.function.Supplier;
 
 public class MatrixFromFloatArrayUniform extends Uniform {
-	private FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
+	private final FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
 	private float[] cachedValue;
 	private final Supplier<float[]> value;
 
@@ -24,7 +24,11 @@ public class MatrixFromFloatArrayUniform extends Uniform {
 		float[] newValue = value.get();
 
 		if (!Arrays.equals(newValue, cachedValue)) {
-			cachedValue = Arrays.copyOf(newValue, 16);
+			if (cachedValue == null) {
+				cachedValue = new float[16];
+			}
+
+			System.arraycopy(newValue, 0, cachedValue, 0, 16);
 
 			buffer.put(cachedValue);
 			buffer.rewind();
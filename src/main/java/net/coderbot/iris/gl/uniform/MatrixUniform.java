@@ -8,28 +8,42 @@ import net.coderbot.iris.gl.IrisRenderSystem;
 import org.lwjgl.BufferUtils;
 
 public class MatrixUniform extends Uniform {
-	private FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
-	private Matrix4f cachedValue;
+	private final FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
+	private final float[] cachedValue;
+	private boolean hasCachedValue;
 	private final Supplier<Matrix4f> value;
 
 	MatrixUniform(int location, Supplier<Matrix4f> value) {
 		super(location);
 
-		this.cachedValue = null;
+		this.cachedValue = new float[16];
+		this.hasCachedValue = false;
 		this.value = value;
 	}
 
 	@Override
 	public void update() {
-		Matrix4f newValue = value.get();
+		// NB: Compare the stored values instead of copying the matrix, which would allocate a new one every time.
+		value.get().store(buffer);
 
-		if (!newValue.equals(cachedValue)) {
-			cachedValue = newValue.copy();
+		if (hasCachedValue && matchesCachedValue()) {
+			return;
+		}
+
+		buffer.get(cachedValue);
+		buffer.rewind();
+		hasCachedValue = true;
 
-			cachedValue.store(buffer);
-			buffer.rewind();
+		IrisRenderSystem.uniformMatrix4fv(location, false, buffer);
+	}
 
-			IrisRenderSystem.uniformMatrix4fv(location, false, buffer);
+	private boolean matchesCachedValue() {
+		for (int i = 0; i < 16; i++) {
+			if (Float.compare(buffer.get(i), cachedValue[i]) != 0) {
+				return false;
+			}
 		}
+
+		return true;
 	}
 }
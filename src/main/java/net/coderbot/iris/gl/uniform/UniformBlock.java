@@ -0,0 +1,477 @@
+package net.coderbot.iris.gl.uniform;
+
+import com.google.common.collect.ImmutableList;
+import com.mojang.math.Matrix4f;
+import net.coderbot.iris.vendored.joml.Vector2f;
+import net.coderbot.iris.vendored.joml.Vector2i;
+import net.coderbot.iris.vendored.joml.Vector3d;
+import net.coderbot.iris.vendored.joml.Vector3f;
+import net.coderbot.iris.vendored.joml.Vector4f;
+import net.coderbot.iris.vendored.joml.Vector4i;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The std140 layout of a uniform block holding per-frame and per-tick uniforms, along with the suppliers of their
+ * values. Values are only computed for members that are actually read by at least one program.
+ *
+ * <p>Members are named by prefixing the name of the uniform that they replace, so that they never clash with other
+ * identifiers in the programs that declare the block.</p>
+ */
+public final class UniformBlock {
+	private static final String MEMBER_PREFIX = "iris_";
+
+	private final String name;
+	private final ImmutableList<Member> members;
+	private final Map<String, Member> membersByUniform;
+	private final int size;
+
+	private UniformBlock(String name, ImmutableList<Member> members, int size) {
+		this.name = name;
+		this.members = members;
+		this.membersByUniform = new HashMap<>();
+		this.size = size;
+
+		for (Member member : members) {
+			membersByUniform.put(member.uniform, member);
+		}
+	}
+
+	public static Builder builder(String name) {
+		return new Builder(name);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public ImmutableList<Member> getMembers() {
+		return members;
+	}
+
+	/**
+	 * @return the size of the block in bytes, including the padding required by std140
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the GLSL declaration of the block. Every program must use this exact declaration, otherwise the layout
+	 *         of the block could differ between programs.
+	 */
+	public String getDeclaration() {
+		StringBuilder declaration = new StringBuilder("layout(std140) uniform ").append(name).append(" {\n");
+
+		for (Member member : members) {
+			declaration.append('\t').append(member.getGlslType()).append(' ').append(member.getMemberName()).append(";\n");
+		}
+
+		return declaration.append("};").toString();
+	}
+
+	/**
+	 * Marks the member replacing the given uniform as being read by a program, so that its value is written from now on.
+	 */
+	public void markUsed(String uniform) {
+		Member member = membersByUniform.get(uniform);
+
+		if (member == null) {
+			throw new IllegalArgumentException("Uniform " + uniform + " is not a member of the block " + name);
+		}
+
+		member.used = true;
+	}
+
+	public boolean hasUsedMembers() {
+		for (Member member : members) {
+			if (member.used) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Writes the current values of all used members into the buffer, using absolute offsets from the start of the
+	 * buffer. The byte order of the buffer must be the native byte order.
+	 */
+	public void write(ByteBuffer buffer) {
+		// NB: Use an index instead of an iterator, so that this doesn't allocate.
+		for (int i = 0; i < members.size(); i++) {
+			Member member = members.get(i);
+
+			if (member.used) {
+				member.writer.write(buffer, member.offset);
+			}
+		}
+	}
+
+	public static final class Member {
+		private final String uniform;
+		private final UniformType type;
+		private final int offset;
+		private final Writer writer;
+		private boolean used;
+
+		private Member(String uniform, UniformType type, int offset, Writer writer) {
+			this.uniform = uniform;
+			this.type = type;
+			this.offset = offset;
+			this.writer = writer;
+		}
+
+		/**
+		 * @return the name of the uniform that this member replaces
+		 */
+		public String getUniformName() {
+			return uniform;
+		}
+
+		public String getMemberName() {
+			return MEMBER_PREFIX + uniform;
+		}
+
+		public UniformType getType() {
+			return type;
+		}
+
+		public String getGlslType() {
+			switch (type) {
+				case INT:
+					return "int";
+				case FLOAT:
+					return "float";
+				case MAT4:
+					return "mat4";
+				case VEC2:
+					return "vec2";
+				case VEC2I:
+					return "ivec2";
+				case VEC3:
+					return "vec3";
+				case VEC4:
+					return "vec4";
+				case VEC4I:
+					return "ivec4";
+				default:
+					throw new IllegalStateException("Unknown uniform type: " + type);
+			}
+		}
+
+		public int getOffset() {
+			return offset;
+		}
+
+		public boolean isUsed() {
+			return used;
+		}
+	}
+
+	private interface Writer {
+		void write(ByteBuffer buffer, int offset);
+	}
+
+	/**
+	 * Collects the per-frame and per-tick uniforms registered through the {@link UniformHolder} interface as members of
+	 * the block. Uniforms that are set only once or that depend on the render state are skipped, they are always set
+	 * on each program individually.
+	 */
+	public static final class Builder implements DynamicUniformHolder {
+		private final String name;
+		private final List<Member> members;
+		private final Map<String, Member> membersByUniform;
+		private final FloatBuffer matrixBuffer;
+		private final Vector2i vector2i;
+		private final Vector3f vector3f;
+		private final net.coderbot.iris.vendored.joml.Matrix4f matrix;
+		private int size;
+
+		private Builder(String name) {
+			this.name = name;
+			this.members = new ArrayList<>();
+			this.membersByUniform = new HashMap<>();
+			this.matrixBuffer = FloatBuffer.allocate(16);
+			this.vector2i = new Vector2i();
+			this.vector3f = new Vector3f();
+			this.matrix = new net.coderbot.iris.vendored.joml.Matrix4f();
+		}
+
+		private Builder add(UniformUpdateFrequency updateFrequency, String uniform, UniformType type, Writer writer) {
+			if (updateFrequency == UniformUpdateFrequency.ONCE || membersByUniform.containsKey(uniform)) {
+				return this;
+			}
+
+			int offset = align(size, getAlignment(type));
+			Member member = new Member(uniform, type, offset, writer);
+
+			members.add(member);
+			membersByUniform.put(uniform, member);
+			size = offset + getSize(type);
+
+			return this;
+		}
+
+		public UniformBlock build() {
+			// NB: The size of a block is rounded up to the alignment of a vec4, as if it were a member of an array.
+			return new UniformBlock(name, ImmutableList.copyOf(members), align(size, 16));
+		}
+
+		private static int align(int offset, int alignment) {
+			return (offset + alignment - 1) / alignment * alignment;
+		}
+
+		private static int getAlignment(UniformType type) {
+			switch (type) {
+				case INT:
+				case FLOAT:
+					return 4;
+				case VEC2:
+				case VEC2I:
+					return 8;
+				default:
+					// vec3 is aligned like a vec4, and a mat4 is laid out as an array of four vec4 columns.
+					return 16;
+			}
+		}
+
+		private static int getSize(UniformType type) {
+			switch (type) {
+				case INT:
+				case FLOAT:
+					return 4;
+				case VEC2:
+				case VEC2I:
+					return 8;
+				case VEC3:
+					return 12;
+				case VEC4:
+				case VEC4I:
+					return 16;
+				case MAT4:
+					return 64;
+				default:
+					throw new IllegalStateException("Unknown uniform type: " + type);
+			}
+		}
+
+		private static void putVec3(ByteBuffer buffer, int offset, float x, float y, float z) {
+			buffer.putFloat(offset, x);
+			buffer.putFloat(offset + 4, y);
+			buffer.putFloat(offset + 8, z);
+		}
+
+		private static void putMatrix(ByteBuffer buffer, int offset, FloatBuffer matrix) {
+			for (int i = 0; i < 16; i++) {
+				buffer.putFloat(offset + i * 4, matrix.get(i));
+			}
+		}
+
+		@Override
+		public Builder uniform1f(UniformUpdateFrequency updateFrequency, String name, FloatSupplier value) {
+			return add(updateFrequency, name, UniformType.FLOAT,
+				(buffer, offset) -> buffer.putFloat(offset, value.getAsFloat()));
+		}
+
+		@Override
+		public Builder uniform1f(UniformUpdateFrequency updateFrequency, String name, IntSupplier value) {
+			return add(updateFrequency, name, UniformType.FLOAT,
+				(buffer, offset) -> buffer.putFloat(offset, (float) value.getAsInt()));
+		}
+
+		@Override
+		public Builder uniform1f(UniformUpdateFrequency updateFrequency, String name, DoubleSupplier value) {
+			return add(updateFrequency, name, UniformType.FLOAT,
+				(buffer, offset) -> buffer.putFloat(offset, (float) value.getAsDouble()));
+		}
+
+		@Override
+		public Builder uniform1i(UniformUpdateFrequency updateFrequency, String name, IntSupplier value) {
+			return add(updateFrequency, name, UniformType.INT,
+				(buffer, offset) -> buffer.putInt(offset, value.getAsInt()));
+		}
+
+		@Override
+		public Builder uniform1b(UniformUpdateFrequency updateFrequency, String name, BooleanSupplier value) {
+			return add(updateFrequency, name, UniformType.INT,
+				(buffer, offset) -> buffer.putInt(offset, value.getAsBoolean() ? 1 : 0));
+		}
+
+		@Override
+		public Builder uniform2f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector2f> value) {
+			return add(updateFrequency, name, UniformType.VEC2, (buffer, offset) -> {
+				Vector2f vector = value.get();
+
+				buffer.putFloat(offset, vector.x);
+				buffer.putFloat(offset + 4, vector.y);
+			});
+		}
+
+		@Override
+		public Builder uniform2i(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector2i> value) {
+			return add(updateFrequency, name, UniformType.VEC2I, (buffer, offset) -> {
+				Vector2i vector = value.get();
+
+				buffer.putInt(offset, vector.x);
+				buffer.putInt(offset + 4, vector.y);
+			});
+		}
+
+		@Override
+		public Builder uniform2i(UniformUpdateFrequency updateFrequency, String name, ValueWriter<Vector2i> value) {
+			return add(updateFrequency, name, UniformType.VEC2I, (buffer, offset) -> {
+				value.write(vector2i);
+
+				buffer.putInt(offset, vector2i.x);
+				buffer.putInt(offset + 4, vector2i.y);
+			});
+		}
+
+		@Override
+		public Builder uniform3f(UniformUpdateFrequency updateFrequency, String name, ValueWriter<Vector3f> value) {
+			return add(updateFrequency, name, UniformType.VEC3, (buffer, offset) -> {
+				value.write(vector3f);
+
+				putVec3(buffer, offset, vector3f.x, vector3f.y, vector3f.z);
+			});
+		}
+
+		@Override
+		public Builder uniform3f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector3f> value) {
+			return add(updateFrequency, name, UniformType.VEC3, (buffer, offset) -> {
+				Vector3f vector = value.get();
+
+				putVec3(buffer, offset, vector.x, vector.y, vector.z);
+			});
+		}
+
+		@Override
+		public Builder uniformTruncated3f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector4f> value) {
+			return add(updateFrequency, name, UniformType.VEC3, (buffer, offset) -> {
+				Vector4f vector = value.get();
+
+				putVec3(buffer, offset, vector.x, vector.y, vector.z);
+			});
+		}
+
+		@Override
+		public Builder uniform3d(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector3d> value) {
+			return add(updateFrequency, name, UniformType.VEC3, (buffer, offset) -> {
+				Vector3d vector = value.get();
+
+				putVec3(buffer, offset, (float) vector.x, (float) vector.y, (float) vector.z);
+			});
+		}
+
+		@Override
+		public Builder uniform4f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector4f> value) {
+			return add(updateFrequency, name, UniformType.VEC4, (buffer, offset) -> {
+				Vector4f vector = value.get();
+
+				buffer.putFloat(offset, vector.x);
+				buffer.putFloat(offset + 4, vector.y);
+				buffer.putFloat(offset + 8, vector.z);
+				buffer.putFloat(offset + 12, vector.w);
+			});
+		}
+
+		@Override
+		public Builder uniformMatrix(UniformUpdateFrequency updateFrequency, String name, Supplier<Matrix4f> value) {
+			return add(updateFrequency, name, UniformType.MAT4, (buffer, offset) -> {
+				// NB: Both this and std140 use column-major order.
+				value.get().store(matrixBuffer);
+				putMatrix(buffer, offset, matrixBuffer);
+			});
+		}
+
+		@Override
+		public Builder uniformJomlMatrix(UniformUpdateFrequency updateFrequency, String name, Supplier<net.coderbot.iris.vendored.joml.Matrix4f> value) {
+			return add(updateFrequency, name, UniformType.MAT4, (buffer, offset) -> {
+				value.get().get(matrixBuffer);
+				putMatrix(buffer, offset, matrixBuffer);
+			});
+		}
+
+		@Override
+		public Builder uniformJomlMatrix(UniformUpdateFrequency updateFrequency, String name, ValueWriter<net.coderbot.iris.vendored.joml.Matrix4f> value) {
+			return add(updateFrequency, name, UniformType.MAT4, (buffer, offset) -> {
+				value.write(matrix);
+				matrix.get(matrixBuffer);
+				putMatrix(buffer, offset, matrixBuffer);
+			});
+		}
+
+		@Override
+		public Builder uniformMatrixFromArray(UniformUpdateFrequency updateFrequency, String name, Supplier<float[]> value) {
+			return add(updateFrequency, name, UniformType.MAT4, (buffer, offset) -> {
+				float[] matrix = value.get();
+
+				for (int i = 0; i < 16; i++) {
+					buffer.putFloat(offset + i * 4, matrix[i]);
+				}
+			});
+		}
+
+		@Override
+		public Builder externallyManagedUniform(String name, UniformType type) {
+			return this;
+		}
+
+		// Dynamic uniforms depend on the render state, which changes many times over the course of a frame.
+
+		@Override
+		public Builder uniform1f(String name, FloatSupplier value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform1f(String name, IntSupplier value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform1f(String name, DoubleSupplier value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform1i(String name, IntSupplier value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform2i(String name, Supplier<Vector2i> value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform4f(String name, Supplier<Vector4f> value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform4i(String name, Supplier<Vector4i> value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform2i(String name, ValueWriter<Vector2i> value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform4i(String name, ValueWriter<Vector4i> value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package net.coderbot.iris.gl.uniform;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import net.coderbot.iris.gl.GlResource;
+import net.coderbot.iris.gl.IrisRenderSystem;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL31C;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A uniform buffer holding the values of a {@link UniformBlock}, bound to a fixed binding point that programs
+ * declaring the block read from.
+ */
+public class UniformBuffer extends GlResource {
+	private final UniformBlock block;
+	private final int binding;
+	private final ByteBuffer contents;
+
+	public UniformBuffer(UniformBlock block, int binding) {
+		super(GlStateManager._glGenBuffers());
+
+		this.block = block;
+		this.binding = binding;
+		// NB: BufferUtils buffers use the native byte order, as required by OpenGL.
+		this.contents = BufferUtils.createByteBuffer(block.getSize());
+
+		GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, getGlId());
+		IrisRenderSystem.bufferData(GL31C.GL_UNIFORM_BUFFER, block.getSize(), GL31C.GL_DYNAMIC_DRAW);
+		GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, 0);
+	}
+
+	public UniformBlock getBlock() {
+		return block;
+	}
+
+	public int getBinding() {
+		return binding;
+	}
+
+	/**
+	 * Writes the current values of the block to the buffer and binds it to its binding point. This should be called
+	 * once per frame, before any program reading from the block is used.
+	 */
+	public void upload() {
+		if (!block.hasUsedMembers()) {
+			return;
+		}
+
+		block.write(contents);
+
+		GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, getGlId());
+		IrisRenderSystem.bufferSubData(GL31C.GL_UNIFORM_BUFFER, 0, contents);
+		GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, 0);
+
+		// Rebind every frame, since nothing else keeps track of the indexed binding points.
+		IrisRenderSystem.bindBufferBase(GL31C.GL_UNIFORM_BUFFER, binding, getGlId());
+	}
+
+	@Override
+	protected void destroyInternal() {
+		GlStateManager._glDeleteBuffers(getGlId());
+	}
+}
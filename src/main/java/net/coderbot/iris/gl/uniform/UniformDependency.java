@@ -0,0 +1,55 @@
+package net.coderbot.iris.gl.uniform;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Some piece of game state that the values of a group of per-frame uniforms are computed from, such as the position of
+ * the camera or the size of the window. Each time that the state changes, the version of the dependency is bumped.
+ *
+ * <p>A program remembers the version that it last saw for each dependency of its uniforms, and as long as that version
+ * stays the same, it doesn't need to poll any of the uniforms that depend on it. This is only correct if the values of
+ * those uniforms can't change without the dependency noticing, so a uniform should only declare a dependency if its
+ * value is computed from nothing else.</p>
+ *
+ * @see UniformHolder#dependingOn(UniformDependency)
+ */
+public final class UniformDependency {
+	private final String name;
+	private final BooleanSupplier changeDetector;
+	private int version;
+
+	/**
+	 * @param changeDetector returns whether the state has changed since the last time that it was called
+	 */
+	public UniformDependency(String name, BooleanSupplier changeDetector) {
+		this.name = name;
+		this.changeDetector = changeDetector;
+	}
+
+	/**
+	 * Checks whether the state has changed. Must be called once at the start of every frame, before any program is
+	 * used.
+	 */
+	public void update() {
+		if (changeDetector.getAsBoolean()) {
+			invalidate();
+		}
+	}
+
+	/**
+	 * Forces every uniform that depends on this to be polled again the next time that a program is used, for state
+	 * that is known to have changed outside of {@link #update()}.
+	 */
+	public void invalidate() {
+		version += 1;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	@Override
+	public String toString() {
+		return "UniformDependency{" + name + " version " + version + "}";
+	}
+}
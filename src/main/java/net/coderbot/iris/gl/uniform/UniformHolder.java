@@ -27,8 +27,12 @@ public interface UniformHolder {
 
 	UniformHolder uniform2i(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector2i> value);
 
+	UniformHolder uniform2i(UniformUpdateFrequency updateFrequency, String name, ValueWriter<Vector2i> value);
+
 	UniformHolder uniform3f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector3f> value);
 
+	UniformHolder uniform3f(UniformUpdateFrequency updateFrequency, String name, ValueWriter<Vector3f> value);
+
 	UniformHolder uniformTruncated3f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector4f> value);
 
 	UniformHolder uniform3d(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector3d> value);
@@ -39,7 +43,19 @@ public interface UniformHolder {
 
 	UniformHolder uniformJomlMatrix(UniformUpdateFrequency updateFrequency, String name, Supplier<net.coderbot.iris.vendored.joml.Matrix4f> value);
 
+	UniformHolder uniformJomlMatrix(UniformUpdateFrequency updateFrequency, String name, ValueWriter<net.coderbot.iris.vendored.joml.Matrix4f> value);
+
 	UniformHolder uniformMatrixFromArray(UniformUpdateFrequency updateFrequency, String name, Supplier<float[]> value);
 
 	UniformHolder externallyManagedUniform(String name, UniformType type);
+
+	/**
+	 * Declares that the values of per-frame uniforms registered through the returned holder only change when the given
+	 * dependency changes, allowing programs to skip polling them otherwise. Other uniforms are registered as usual.
+	 *
+	 * <p>Holders that can't make use of this just return themselves.</p>
+	 */
+	default UniformHolder dependingOn(UniformDependency dependency) {
+		return this;
+	}
 }
@@ -0,0 +1,497 @@
+package net.coderbot.iris.gl.uniform;
+
+import com.mojang.math.Matrix4f;
+import net.coderbot.iris.vendored.joml.Vector2f;
+import net.coderbot.iris.vendored.joml.Vector2i;
+import net.coderbot.iris.vendored.joml.Vector3d;
+import net.coderbot.iris.vendored.joml.Vector3f;
+import net.coderbot.iris.vendored.joml.Vector4f;
+import net.coderbot.iris.vendored.joml.Vector4i;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Stores the values of per-frame and per-tick uniforms, so that every program of a pipeline shares a single value for
+ * each uniform instead of computing it separately.
+ *
+ * <p>Each program has its own set of uniforms, which used to mean that a uniform like {@code sunPosition} was computed
+ * once per program per frame even though it has the same value in all of them. Uniforms registered through a holder
+ * returned by {@link #wrap} instead share an entry keyed by their name, type, and update frequency. The first time
+ * that a value is needed in a frame (or tick), the entry computes it using the supplier that was registered first,
+ * and every later request in the same frame only returns the stored value. Uploading the value to each program is
+ * still up to the individual uniforms, which compare it against the value they last uploaded as before.</p>
+ *
+ * <p>Since a stored value is computed by the first supplier registered under its name, suppliers registered under the
+ * same name must be interchangeable. This holds for the built-in uniforms, which don't depend on the program that they
+ * are registered for. Uniforms updated {@link UniformUpdateFrequency#ONCE once} and dynamic uniforms aren't cached.</p>
+ */
+public final class UniformValueCache {
+	private final LongSupplier tickSource;
+	private final Map<String, Entry> entries;
+
+	private long frameGeneration;
+	private long tickGeneration;
+	private long lastTick;
+
+	private int requested;
+	private int computed;
+	private int requestedLastFrame;
+	private int computedLastFrame;
+
+	/**
+	 * @param tickSource Supplies the current game time, which is used to detect the start of a new tick.
+	 */
+	public UniformValueCache(LongSupplier tickSource) {
+		this.tickSource = tickSource;
+		this.entries = new HashMap<>();
+		this.lastTick = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Invalidates all per-frame values, as well as all per-tick values if a new tick has started since the last frame.
+	 * Must be called at the start of every frame, before any program is used.
+	 */
+	public void beginFrame() {
+		frameGeneration += 1;
+
+		long tick = tickSource.getAsLong();
+
+		if (tick != lastTick) {
+			lastTick = tick;
+			tickGeneration += 1;
+		}
+
+		requestedLastFrame = requested;
+		computedLastFrame = computed;
+		requested = 0;
+		computed = 0;
+	}
+
+	/**
+	 * @return a holder that registers uniforms with the given holder, sharing the values of per-frame and per-tick
+	 *         uniforms through this cache
+	 */
+	public DynamicUniformHolder wrap(DynamicUniformHolder holder) {
+		return new CachingUniformHolder(holder);
+	}
+
+	/**
+	 * @return the number of uniform values that programs requested during the last frame, which is the number of
+	 *         times that the suppliers would have been called without this cache
+	 */
+	public int getRequestedLastFrame() {
+		return requestedLastFrame;
+	}
+
+	/**
+	 * @return the number of uniform values that actually had to be computed during the last frame
+	 */
+	public int getComputedLastFrame() {
+		return computedLastFrame;
+	}
+
+	@Override
+	public String toString() {
+		return computedLastFrame + " of " + requestedLastFrame + " uniform values computed last frame";
+	}
+
+	private <E extends Entry> E getEntry(String key, E entry) {
+		Entry existing = entries.putIfAbsent(key, entry);
+
+		@SuppressWarnings("unchecked")
+		E result = existing != null ? (E) existing : entry;
+
+		return result;
+	}
+
+	private static String key(UniformUpdateFrequency frequency, String type, String name) {
+		return frequency + " " + type + " " + name;
+	}
+
+	/**
+	 * Returns whether the entry needs to be computed again, and if so, marks it as computed for the current frame or
+	 * tick. The entry must be computed right after this returns true.
+	 */
+	private boolean isStale(Entry entry) {
+		requested += 1;
+
+		long generation = entry.frequency == UniformUpdateFrequency.PER_TICK ? tickGeneration : frameGeneration;
+
+		if (entry.generation == generation) {
+			return false;
+		}
+
+		entry.generation = generation;
+		computed += 1;
+
+		return true;
+	}
+
+	FloatSupplier cacheFloat(UniformUpdateFrequency frequency, String name, FloatSupplier supplier) {
+		if (frequency == UniformUpdateFrequency.ONCE) {
+			return supplier;
+		}
+
+		FloatEntry entry = getEntry(key(frequency, "float", name), new FloatEntry(frequency, supplier));
+
+		return () -> {
+			if (isStale(entry)) {
+				entry.value = entry.supplier.getAsFloat();
+			}
+
+			return entry.value;
+		};
+	}
+
+	IntSupplier cacheInt(UniformUpdateFrequency frequency, String name, IntSupplier supplier) {
+		if (frequency == UniformUpdateFrequency.ONCE) {
+			return supplier;
+		}
+
+		IntEntry entry = getEntry(key(frequency, "int", name), new IntEntry(frequency, supplier));
+
+		return () -> {
+			if (isStale(entry)) {
+				entry.value = entry.supplier.getAsInt();
+			}
+
+			return entry.value;
+		};
+	}
+
+	BooleanSupplier cacheBoolean(UniformUpdateFrequency frequency, String name, BooleanSupplier supplier) {
+		if (frequency == UniformUpdateFrequency.ONCE) {
+			return supplier;
+		}
+
+		BooleanEntry entry = getEntry(key(frequency, "boolean", name), new BooleanEntry(frequency, supplier));
+
+		return () -> {
+			if (isStale(entry)) {
+				entry.value = entry.supplier.getAsBoolean();
+			}
+
+			return entry.value;
+		};
+	}
+
+	/**
+	 * @param type Distinguishes suppliers of different types registered under the same name, since their values can't
+	 *             be shared.
+	 */
+	<T> Supplier<T> cacheObject(UniformUpdateFrequency frequency, String type, String name, Supplier<T> supplier) {
+		if (frequency == UniformUpdateFrequency.ONCE) {
+			return supplier;
+		}
+
+		ObjectEntry<T> entry = getEntry(key(frequency, type, name), new ObjectEntry<>(frequency, supplier));
+
+		return () -> {
+			if (isStale(entry)) {
+				entry.value = entry.supplier.get();
+			}
+
+			return entry.value;
+		};
+	}
+
+	/**
+	 * @param value The object that the stored value is written into, which is then copied into the destination of
+	 *              each request.
+	 */
+	<T> ValueWriter<T> cacheWriter(UniformUpdateFrequency frequency, String type, String name, ValueWriter<T> writer,
+								   T value, BiConsumer<T, T> copy) {
+		if (frequency == UniformUpdateFrequency.ONCE) {
+			return writer;
+		}
+
+		WriterEntry<T> entry = getEntry(key(frequency, type, name), new WriterEntry<>(frequency, writer, value));
+
+		return destination -> {
+			if (isStale(entry)) {
+				entry.writer.write(entry.value);
+			}
+
+			copy.accept(entry.value, destination);
+		};
+	}
+
+	private static class Entry {
+		private final UniformUpdateFrequency frequency;
+		private long generation;
+
+		private Entry(UniformUpdateFrequency frequency) {
+			this.frequency = frequency;
+			this.generation = -1;
+		}
+	}
+
+	private static final class FloatEntry extends Entry {
+		private final FloatSupplier supplier;
+		private float value;
+
+		private FloatEntry(UniformUpdateFrequency frequency, FloatSupplier supplier) {
+			super(frequency);
+			this.supplier = supplier;
+		}
+	}
+
+	private static final class IntEntry extends Entry {
+		private final IntSupplier supplier;
+		private int value;
+
+		private IntEntry(UniformUpdateFrequency frequency, IntSupplier supplier) {
+			super(frequency);
+			this.supplier = supplier;
+		}
+	}
+
+	private static final class BooleanEntry extends Entry {
+		private final BooleanSupplier supplier;
+		private boolean value;
+
+		private BooleanEntry(UniformUpdateFrequency frequency, BooleanSupplier supplier) {
+			super(frequency);
+			this.supplier = supplier;
+		}
+	}
+
+	private static final class ObjectEntry<T> extends Entry {
+		private final Supplier<T> supplier;
+		private T value;
+
+		private ObjectEntry(UniformUpdateFrequency frequency, Supplier<T> supplier) {
+			super(frequency);
+			this.supplier = supplier;
+		}
+	}
+
+	private static final class WriterEntry<T> extends Entry {
+		private final ValueWriter<T> writer;
+		private final T value;
+
+		private WriterEntry(UniformUpdateFrequency frequency, ValueWriter<T> writer, T value) {
+			super(frequency);
+			this.writer = writer;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Forwards every uniform to another holder, routing the suppliers of per-frame and per-tick uniforms through the
+	 * cache.
+	 */
+	private final class CachingUniformHolder implements DynamicUniformHolder {
+		private final DynamicUniformHolder holder;
+
+		private CachingUniformHolder(DynamicUniformHolder holder) {
+			this.holder = holder;
+		}
+
+		@Override
+		public CachingUniformHolder uniform1f(UniformUpdateFrequency updateFrequency, String name, FloatSupplier value) {
+			holder.uniform1f(updateFrequency, name, cacheFloat(updateFrequency, name, value));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform1f(UniformUpdateFrequency updateFrequency, String name, IntSupplier value) {
+			holder.uniform1f(updateFrequency, name, cacheFloat(updateFrequency, name, () -> (float) value.getAsInt()));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform1f(UniformUpdateFrequency updateFrequency, String name, DoubleSupplier value) {
+			holder.uniform1f(updateFrequency, name, cacheFloat(updateFrequency, name, () -> (float) value.getAsDouble()));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform1i(UniformUpdateFrequency updateFrequency, String name, IntSupplier value) {
+			holder.uniform1i(updateFrequency, name, cacheInt(updateFrequency, name, value));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform1b(UniformUpdateFrequency updateFrequency, String name, BooleanSupplier value) {
+			holder.uniform1b(updateFrequency, name, cacheBoolean(updateFrequency, name, value));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform2f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector2f> value) {
+			holder.uniform2f(updateFrequency, name, cacheObject(updateFrequency, "vec2", name, value));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform2i(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector2i> value) {
+			holder.uniform2i(updateFrequency, name, cacheObject(updateFrequency, "vec2i", name, value));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform2i(UniformUpdateFrequency updateFrequency, String name, ValueWriter<Vector2i> value) {
+			holder.uniform2i(updateFrequency, name, cacheWriter(updateFrequency, "vec2i writer", name, value,
+				new Vector2i(), (cached, destination) -> destination.set(cached)));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform3f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector3f> value) {
+			holder.uniform3f(updateFrequency, name, cacheObject(updateFrequency, "vec3", name, value));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform3f(UniformUpdateFrequency updateFrequency, String name, ValueWriter<Vector3f> value) {
+			holder.uniform3f(updateFrequency, name, cacheWriter(updateFrequency, "vec3 writer", name, value,
+				new Vector3f(), (cached, destination) -> destination.set(cached)));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniformTruncated3f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector4f> value) {
+			holder.uniformTruncated3f(updateFrequency, name, cacheObject(updateFrequency, "vec4 as vec3", name, value));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform3d(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector3d> value) {
+			holder.uniform3d(updateFrequency, name, cacheObject(updateFrequency, "dvec3", name, value));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform4f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector4f> value) {
+			holder.uniform4f(updateFrequency, name, cacheObject(updateFrequency, "vec4", name, value));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniformMatrix(UniformUpdateFrequency updateFrequency, String name, Supplier<Matrix4f> value) {
+			holder.uniformMatrix(updateFrequency, name, cacheObject(updateFrequency, "mat4", name, value));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniformJomlMatrix(UniformUpdateFrequency updateFrequency, String name, Supplier<net.coderbot.iris.vendored.joml.Matrix4f> value) {
+			holder.uniformJomlMatrix(updateFrequency, name, cacheObject(updateFrequency, "joml mat4", name, value));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniformJomlMatrix(UniformUpdateFrequency updateFrequency, String name, ValueWriter<net.coderbot.iris.vendored.joml.Matrix4f> value) {
+			holder.uniformJomlMatrix(updateFrequency, name, cacheWriter(updateFrequency, "joml mat4 writer", name, value,
+				new net.coderbot.iris.vendored.joml.Matrix4f(), (cached, destination) -> destination.set(cached)));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniformMatrixFromArray(UniformUpdateFrequency updateFrequency, String name, Supplier<float[]> value) {
+			holder.uniformMatrixFromArray(updateFrequency, name, cacheObject(updateFrequency, "float[16]", name, value));
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder externallyManagedUniform(String name, UniformType type) {
+			holder.externallyManagedUniform(name, type);
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder dependingOn(UniformDependency dependency) {
+			return new CachingUniformHolder(holder.dependingOn(dependency));
+		}
+
+		// Dynamic uniforms are updated whenever their notifier fires, not once per frame, so they are never cached.
+
+		@Override
+		public CachingUniformHolder uniform1f(String name, FloatSupplier value, ValueUpdateNotifier notifier) {
+			holder.uniform1f(name, value, notifier);
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform1f(String name, IntSupplier value, ValueUpdateNotifier notifier) {
+			holder.uniform1f(name, value, notifier);
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform1f(String name, DoubleSupplier value, ValueUpdateNotifier notifier) {
+			holder.uniform1f(name, value, notifier);
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform1i(String name, IntSupplier value, ValueUpdateNotifier notifier) {
+			holder.uniform1i(name, value, notifier);
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform2i(String name, Supplier<Vector2i> value, ValueUpdateNotifier notifier) {
+			holder.uniform2i(name, value, notifier);
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform2i(String name, ValueWriter<Vector2i> value, ValueUpdateNotifier notifier) {
+			holder.uniform2i(name, value, notifier);
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform4f(String name, Supplier<Vector4f> value, ValueUpdateNotifier notifier) {
+			holder.uniform4f(name, value, notifier);
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform4i(String name, Supplier<Vector4i> value, ValueUpdateNotifier notifier) {
+			holder.uniform4i(name, value, notifier);
+
+			return this;
+		}
+
+		@Override
+		public CachingUniformHolder uniform4i(String name, ValueWriter<Vector4i> value, ValueUpdateNotifier notifier) {
+			holder.uniform4i(name, value, notifier);
+
+			return this;
+		}
+	}
+}
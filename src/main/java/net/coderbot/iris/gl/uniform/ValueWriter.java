@@ -0,0 +1,10 @@
+package net.coderbot.iris.gl.uniform;
+
+/**
+ * Supplies a value by writing it into an existing object, so that the value of a vector or matrix uniform can be
+ * computed every frame without allocating a new object each time.
+ */
+@FunctionalInterface
+public interface ValueWriter<T> {
+	void write(T destination);
+}
@@ -2,23 +2,35 @@ package net.coderbot.iris.gl.uniform;
 
 import net.coderbot.iris.gl.IrisRenderSystem;
 import net.coderbot.iris.vendored.joml.Vector2i;
-import org.lwjgl.opengl.GL20;
 
 import java.util.function.Supplier;
 
 public class Vector2IntegerJomlUniform extends Uniform {
-	private Vector2i cachedValue;
-	private final Supplier<Vector2i> value;
+	private final Vector2i newValue;
+	private final Vector2i cachedValue;
+	private final ValueWriter<Vector2i> value;
+	private final Runnable listener;
 
 	Vector2IntegerJomlUniform(int location, Supplier<Vector2i> value) {
 		this(location, value, null);
 	}
 
 	Vector2IntegerJomlUniform(int location, Supplier<Vector2i> value, ValueUpdateNotifier notifier) {
+		this(location, destination -> destination.set(value.get()), notifier);
+	}
+
+	Vector2IntegerJomlUniform(int location, ValueWriter<Vector2i> value) {
+		this(location, value, null);
+	}
+
+	Vector2IntegerJomlUniform(int location, ValueWriter<Vector2i> value, ValueUpdateNotifier notifier) {
 		super(location, notifier);
 
-		this.cachedValue = null;
+		// NB: Uniforms are initialized to zero when a program is linked.
+		this.newValue = new Vector2i();
+		this.cachedValue = new Vector2i();
 		this.value = value;
+		this.listener = this::updateValue;
 	}
 
 	@Override
@@ -26,15 +38,15 @@ public class Vector2IntegerJomlUniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
 	private void updateValue() {
-		Vector2i newValue = value.get();
+		value.write(newValue);
 
-		if (cachedValue == null || !newValue.equals(cachedValue)) {
-			cachedValue = newValue;
+		if (!newValue.equals(cachedValue)) {
+			cachedValue.set(newValue);
 			IrisRenderSystem.uniform2i(this.location, newValue.x, newValue.y);
 		}
 	}
@@ -8,46 +8,44 @@ import net.coderbot.iris.vendored.joml.Vector3f;
 import net.coderbot.iris.vendored.joml.Vector4f;
 
 public class Vector3Uniform extends Uniform {
+	private final Vector3f newValue;
 	private final Vector3f cachedValue;
-	private final Supplier<Vector3f> value;
+	private final ValueWriter<Vector3f> value;
 
 	Vector3Uniform(int location, Supplier<Vector3f> value) {
+		this(location, destination -> destination.set(value.get()));
+	}
+
+	Vector3Uniform(int location, ValueWriter<Vector3f> value) {
 		super(location);
 
+		this.newValue = new Vector3f();
 		this.cachedValue = new Vector3f();
 		this.value = value;
 	}
 
 	static Vector3Uniform converted(int location, Supplier<Vector3d> value) {
-		Vector3f held = new Vector3f();
-
-		return new Vector3Uniform(location, () -> {
+		return new Vector3Uniform(location, destination -> {
 			Vector3d updated = value.get();
 
-			held.set((float) updated.x, (float) updated.y, (float) updated.z);
-
-			return held;
+			destination.set((float) updated.x, (float) updated.y, (float) updated.z);
 		});
 	}
 
 	static Vector3Uniform truncated(int location, Supplier<Vector4f> value) {
-		Vector3f held = new Vector3f();
-
-		return new Vector3Uniform(location, () -> {
+		return new Vector3Uniform(location, destination -> {
 			Vector4f updated = value.get();
 
-			held.set(updated.x(), updated.y(), updated.z());
-
-			return held;
+			destination.set(updated.x(), updated.y(), updated.z());
 		});
 	}
 
 	@Override
 	public void update() {
-		Vector3f newValue = value.get();
+		value.write(newValue);
 
 		if (!newValue.equals(cachedValue)) {
-			cachedValue.set(newValue.x(), newValue.y(), newValue.z());
+			cachedValue.set(newValue);
 			IrisRenderSystem.uniform3f(location, cachedValue.x(), cachedValue.y(), cachedValue.z());
 		}
 	}
@@ -2,23 +2,31 @@ package net.coderbot.iris.gl.uniform;
 
 import net.coderbot.iris.gl.IrisRenderSystem;
 import net.coderbot.iris.vendored.joml.Vector4i;
-import org.lwjgl.opengl.GL20;
 
 import java.util.function.Supplier;
 
 public class Vector4IntegerJomlUniform extends Uniform {
-	private Vector4i cachedValue;
-	private final Supplier<Vector4i> value;
+	private final Vector4i newValue;
+	private final Vector4i cachedValue;
+	private final ValueWriter<Vector4i> value;
+	private final Runnable listener;
 
 	Vector4IntegerJomlUniform(int location, Supplier<Vector4i> value) {
 		this(location, value, null);
 	}
 
 	Vector4IntegerJomlUniform(int location, Supplier<Vector4i> value, ValueUpdateNotifier notifier) {
+		this(location, destination -> destination.set(value.get()), notifier);
+	}
+
+	Vector4IntegerJomlUniform(int location, ValueWriter<Vector4i> value, ValueUpdateNotifier notifier) {
 		super(location, notifier);
 
-		this.cachedValue = null;
+		// NB: Uniforms are initialized to zero when a program is linked.
+		this.newValue = new Vector4i();
+		this.cachedValue = new Vector4i();
 		this.value = value;
+		this.listener = this::updateValue;
 	}
 
 	@Override
@@ -26,15 +34,15 @@ public class Vector4IntegerJomlUniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
 	private void updateValue() {
-		Vector4i newValue = value.get();
+		value.write(newValue);
 
-		if (cachedValue == null || !newValue.equals(cachedValue)) {
-			cachedValue = newValue;
+		if (!newValue.equals(cachedValue)) {
+			cachedValue.set(newValue);
 			IrisRenderSystem.uniform4i(this.location, newValue.x, newValue.y, newValue.z, newValue.w);
 		}
 	}
@@ -8,6 +8,7 @@ import net.coderbot.iris.vendored.joml.Vector4f;
 public class Vector4Uniform extends Uniform {
 	private final Vector4f cachedValue;
 	private final Supplier<Vector4f> value;
+	private final Runnable listener;
 
 	Vector4Uniform(int location, Supplier<Vector4f> value) {
 		this(location, value, null);
@@ -18,6 +19,7 @@ public class Vector4Uniform extends Uniform {
 
 		this.cachedValue = new Vector4f();
 		this.value = value;
+		this.listener = this::updateValue;
 	}
 
 	@Override
@@ -25,7 +27,7 @@ public class Vector4Uniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
@@ -9,6 +9,7 @@ import net.coderbot.iris.gui.element.ShaderPackSelectionList;
 import net.coderbot.iris.gui.element.widget.AbstractElementWidget;
 import net.coderbot.iris.gui.element.widget.CommentedElementWidget;
 import net.coderbot.iris.shaderpack.ShaderPack;
+import net.coderbot.iris.shaderpack.loading.LoadProgress;
 import net.irisshaders.iris.api.v0.IrisApi;
 import net.minecraft.ChatFormatting;
 import net.minecraft.Util;
@@ -53,6 +54,7 @@ public class ShaderPackScreen extends Screen implements HudHideable {
 
 	private @Nullable ShaderPackOptionList shaderOptionList = null;
 	private @Nullable NavigationController navigation = null;
+	private @Nullable ShaderPack displayedPack = null;
 	private Button screenSwitchButton;
 
 	private Component notificationDialog = null;
@@ -92,8 +94,15 @@ public class ShaderPackScreen extends Screen implements HudHideable {
 
 		drawCenteredString(poseStack, this.font, this.title, (int)(this.width * 0.5), 8, 0xFFFFFF);
 
+		Optional<LoadProgress> loadProgress = Iris.getShaderPackLoadProgress();
+
 		if (notificationDialog != null && notificationDialogTimer > 0) {
 			drawCenteredString(poseStack, this.font, notificationDialog, (int)(this.width * 0.5), 21, 0xFFFFFF);
+		} else if (loadProgress.isPresent()) {
+			Component loading = new TranslatableComponent("pack.iris.loading", (int) (loadProgress.get().getFraction() * 100))
+				.withStyle(ChatFormatting.GRAY, ChatFormatting.ITALIC);
+
+			drawCenteredString(poseStack, this.font, loading, (int)(this.width * 0.5), 21, 0xFFFFFF);
 		} else {
 			if (optionMenuOpen) {
 				drawCenteredString(poseStack, this.font, CONFIGURE_TITLE, (int)(this.width * 0.5), 21, 0xFFFFFF);
@@ -186,6 +195,8 @@ public class ShaderPackScreen extends Screen implements HudHideable {
 	}
 
 	public void refreshForChangedPack() {
+		this.displayedPack = Iris.getCurrentPack().orElse(null);
+
 		if (Iris.getCurrentPack().isPresent()) {
 			ShaderPack currentPack = Iris.getCurrentPack().get();
 
@@ -221,6 +232,11 @@ public class ShaderPackScreen extends Screen implements HudHideable {
 			this.notificationDialogTimer--;
 		}
 
+		// Shader packs are loaded in the background after applying changes, so pick up the new pack once it's ready
+		if (Iris.getCurrentPack().orElse(null) != this.displayedPack) {
+			refreshForChangedPack();
+		}
+
 		if (this.hoveredElement != null) {
 			this.hoveredElementCommentTimer++;
 		} else {
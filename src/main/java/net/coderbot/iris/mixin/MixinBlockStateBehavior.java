@@ -1,6 +1,7 @@
 package net.coderbot.iris.mixin;
 
 import net.coderbot.iris.block_rendering.BlockRenderingSettings;
+import net.coderbot.iris.block_rendering.BlockStateExt;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.BlockGetter;
 import net.minecraft.world.level.block.Block;
@@ -9,9 +10,13 @@ import net.minecraft.world.level.block.state.BlockState;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Overwrite;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 
 @Mixin(BlockBehaviour.BlockStateBase.class)
-public abstract class MixinBlockStateBehavior {
+public abstract class MixinBlockStateBehavior implements BlockStateExt {
+	@Unique
+	private int registryId = -1;
+
 	@Shadow
 	public abstract Block getBlock();
 
@@ -29,4 +34,14 @@ public abstract class MixinBlockStateBehavior {
 		float aoLightValue = BlockRenderingSettings.INSTANCE.getAmbientOcclusionLevel();
 		return 1.0F - aoLightValue * (1.0F - originalValue);
 	}
+
+	@Override
+	public int iris$getRegistryId() {
+		return registryId;
+	}
+
+	@Override
+	public void iris$setRegistryId(int registryId) {
+		this.registryId = registryId;
+	}
 }
@@ -11,7 +11,8 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 /**
- * Small hook giving Iris a chance to check for keyboard input for its keybindings.
+ * Small hook giving Iris a chance to check for keyboard input for its keybindings, and to apply shader packs that
+ * finished loading in the background.
  *
  * <p>This is equivalent to the END_CLIENT_TICK event in Fabric API, but since it's a super simple mixin and we
  * only need this event (out of the many events provided by Fabric API) I've just implemented it myself. This
@@ -28,6 +29,10 @@ public class MixinMinecraft {
 
 		Iris.handleKeybinds((Minecraft) (Object) this);
 
+		this.profiler.popPush("iris_pack_loading");
+
+		Iris.pollShaderPackLoading();
+
 		this.profiler.pop();
 	}
 
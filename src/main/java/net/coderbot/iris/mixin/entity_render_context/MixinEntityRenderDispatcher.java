@@ -1,18 +1,16 @@
 package net.coderbot.iris.mixin.entity_render_context;
 
 import com.mojang.blaze3d.vertex.PoseStack;
-import it.unimi.dsi.fastutil.objects.Object2IntFunction;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
 import net.coderbot.iris.block_rendering.BlockRenderingSettings;
 import net.coderbot.iris.fantastic.WrappingMultiBufferSource;
 import net.coderbot.iris.layer.EntityRenderStateShard;
 import net.coderbot.iris.layer.OuterWrappedRenderType;
-import net.coderbot.iris.shaderpack.materialmap.NamespacedId;
 import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.client.renderer.RenderStateShard;
 import net.minecraft.client.renderer.entity.EntityRenderDispatcher;
-import net.minecraft.core.Registry;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.EntityType;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
@@ -38,15 +36,13 @@ public class MixinEntityRenderDispatcher {
 			return;
 		}
 
-		ResourceLocation entityId = Registry.ENTITY_TYPE.getKey(entity.getType());
-
-		Object2IntFunction<NamespacedId> entityIds = BlockRenderingSettings.INSTANCE.getEntityIds();
+		Reference2IntMap<EntityType<?>> entityIds = BlockRenderingSettings.INSTANCE.getEntityIds();
 
 		if (entityIds == null) {
 			return;
 		}
 
-		int intId = entityIds.applyAsInt(new NamespacedId(entityId.getNamespace(), entityId.getPath()));
+		int intId = entityIds.getInt(entity.getType());
 		RenderStateShard phase = EntityRenderStateShard.forId(intId);
 
 		((WrappingMultiBufferSource) bufferSource).pushWrappingFunction(layer ->
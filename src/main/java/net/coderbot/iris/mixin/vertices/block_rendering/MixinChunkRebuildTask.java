@@ -2,8 +2,8 @@ package net.coderbot.iris.mixin.vertices.block_rendering;
 
 import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.PoseStack;
-import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import net.coderbot.iris.block_rendering.BlockRenderingSettings;
+import net.coderbot.iris.block_rendering.BlockStateIdTable;
 import net.coderbot.iris.vertices.BlockSensitiveBufferBuilder;
 import net.minecraft.client.renderer.ChunkBufferBuilderPack;
 import net.minecraft.client.renderer.RenderType;
@@ -41,11 +41,11 @@ public class MixinChunkRebuildTask {
 
 	// Resolve the ID map on the main thread to avoid thread safety issues
 	@Unique
-	private final Object2IntMap<BlockState> blockStateIds = getBlockStateIds();
+	private final BlockStateIdTable blockStateIds = getBlockStateIds();
 
 	@Unique
-	private Object2IntMap<BlockState> getBlockStateIds() {
-		return BlockRenderingSettings.INSTANCE.getBlockStateIds();
+	private BlockStateIdTable getBlockStateIds() {
+		return BlockRenderingSettings.INSTANCE.getBlockStateIdTable();
 	}
 
 	@Unique
@@ -54,7 +54,7 @@ public class MixinChunkRebuildTask {
 			return -1;
 		}
 
-		return (short) blockStateIds.getOrDefault(state, -1);
+		return blockStateIds.get(state);
 	}
 
 	@Inject(method = RENDER, at = @At(value = "INVOKE", target = "Lnet/minecraft/client/renderer/block/BlockRenderDispatcher;renderLiquid(Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/BlockAndTintGetter;Lcom/mojang/blaze3d/vertex/VertexConsumer;Lnet/minecraft/world/level/material/FluidState;)Z"), locals = LocalCapture.CAPTURE_FAILHARD)
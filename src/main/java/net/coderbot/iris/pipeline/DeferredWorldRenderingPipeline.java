@@ -6,6 +6,7 @@ import com.mojang.blaze3d.pipeline.RenderTarget;
 import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.systems.RenderSystem;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMaps;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
 import net.coderbot.iris.Iris;
 import net.coderbot.iris.block_rendering.BlockMaterialMapping;
 import net.coderbot.iris.block_rendering.BlockRenderingSettings;
@@ -17,7 +18,12 @@ import net.coderbot.iris.gl.program.Program;
 import net.coderbot.iris.gl.program.ProgramBuilder;
 import net.coderbot.iris.gl.program.ProgramImages;
 import net.coderbot.iris.gl.program.ProgramSamplers;
+import net.coderbot.iris.gl.shader.GlProgramCompilerBackend;
+import net.coderbot.iris.gl.shader.ProgramCompiler;
 import net.coderbot.iris.gl.shader.ShaderType;
+import net.coderbot.iris.gl.uniform.UniformBlock;
+import net.coderbot.iris.gl.uniform.UniformBuffer;
+import net.coderbot.iris.gl.uniform.UniformValueCache;
 import net.coderbot.iris.layer.GbufferProgram;
 import net.coderbot.iris.layer.GbufferPrograms;
 import net.coderbot.iris.mixin.LevelRendererAccessor;
@@ -28,29 +34,35 @@ import net.coderbot.iris.postprocess.FinalPassRenderer;
 import net.coderbot.iris.rendertarget.RenderTargets;
 import net.coderbot.iris.samplers.IrisImages;
 import net.coderbot.iris.samplers.IrisSamplers;
-import net.coderbot.iris.shaderpack.IdMap;
 import net.coderbot.iris.shaderpack.PackDirectives;
 import net.coderbot.iris.shaderpack.PackShadowDirectives;
 import net.coderbot.iris.shaderpack.ProgramDirectives;
 import net.coderbot.iris.shaderpack.ProgramSet;
 import net.coderbot.iris.shaderpack.ProgramSource;
 import net.coderbot.iris.shaderpack.texture.TextureStage;
+import net.coderbot.iris.shaderpack.transform.UniformBlockTransformer;
 import net.coderbot.iris.shadows.EmptyShadowMapRenderer;
 import net.coderbot.iris.shadows.ShadowMapRenderer;
 import net.coderbot.iris.uniforms.CapturedRenderingState;
 import net.coderbot.iris.uniforms.CommonUniforms;
 import net.coderbot.iris.uniforms.FrameUpdateNotifier;
+import net.coderbot.iris.uniforms.SystemTimeUniforms;
+import net.coderbot.iris.uniforms.UniformDependencies;
+import net.coderbot.iris.uniforms.custom.CustomUniforms;
+import net.coderbot.iris.uniforms.transforms.SmoothedSignals;
 import net.coderbot.iris.vendored.joml.Vector3d;
 import net.coderbot.iris.vendored.joml.Vector4f;
 import net.minecraft.client.Camera;
 import net.minecraft.client.Minecraft;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Item;
 import org.jetbrains.annotations.Nullable;
 import org.lwjgl.opengl.GL15C;
 import org.lwjgl.opengl.GL20C;
 import org.lwjgl.opengl.GL30C;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
@@ -58,63 +70,68 @@ import java.util.OptionalInt;
 import java.util.Set;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Encapsulates the compiled shader program objects for the currently loaded shaderpack.
  */
 public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
+	private static final String COMMON_UNIFORM_BLOCK = "iris_CommonUniforms";
+	private static final int COMMON_UNIFORM_BINDING = 0;
+
 	private final RenderTargets renderTargets;
 
 	private final List<Pass> allPasses;
+	private final List<LazyPass> lazyPasses;
 
 	@Nullable
-	private final Pass basic;
+	private final LazyPass basic;
 	@Nullable
-	private final Pass textured;
+	private final LazyPass textured;
 	@Nullable
-	private final Pass texturedLit;
+	private final LazyPass texturedLit;
 	@Nullable
-	private final Pass basicOverlay;
+	private final LazyPass basicOverlay;
 	@Nullable
-	private final Pass texturedOverlay;
+	private final LazyPass texturedOverlay;
 	@Nullable
-	private final Pass texturedLitOverlay;
+	private final LazyPass texturedLitOverlay;
 	@Nullable
-	private final Pass skyBasic;
+	private final LazyPass skyBasic;
 	@Nullable
-	private final Pass skyTextured;
+	private final LazyPass skyTextured;
 	@Nullable
-	private final Pass clouds;
+	private final LazyPass clouds;
 	@Nullable
-	private final Pass terrain;
+	private final LazyPass terrain;
 	@Nullable
-	private final Pass translucent;
+	private final LazyPass translucent;
 	@Nullable
-	private final Pass damagedBlock;
+	private final LazyPass damagedBlock;
 	@Nullable
-	private final Pass weather;
+	private final LazyPass weather;
 	@Nullable
-	private final Pass beaconBeam;
+	private final LazyPass beaconBeam;
 	@Nullable
-	private final Pass entities;
+	private final LazyPass entities;
 	@Nullable
-	private final Pass entityNoOverlay;
+	private final LazyPass entityNoOverlay;
 	@Nullable
-	private final Pass blockEntities;
+	private final LazyPass blockEntities;
 	@Nullable
-	private final Pass hand;
+	private final LazyPass hand;
 	@Nullable
-	private final Pass handNoOverlay;
+	private final LazyPass handNoOverlay;
 	@Nullable
-	private final Pass handTranslucent;
+	private final LazyPass handTranslucent;
 	@Nullable
-	private final Pass glowingEntities;
+	private final LazyPass glowingEntities;
 	@Nullable
-	private final Pass glint;
+	private final LazyPass glint;
 	@Nullable
-	private final Pass eyes;
+	private final LazyPass eyes;
 	@Nullable
-	private final Pass eyesNoOverlay;
+	private final LazyPass eyesNoOverlay;
 
 	private final ImmutableList<ClearPass> clearPassesFull;
 	private final ImmutableList<ClearPass> clearPasses;
@@ -129,6 +146,14 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 	private final FinalPassRenderer finalPassRenderer;
 	private final CustomTextureManager customTextureManager;
 	private final FrameUpdateNotifier updateNotifier;
+	private final SmoothedSignals smoothedSignals;
+	private final UniformValueCache uniformValues;
+	private final CustomUniforms customUniforms;
+	private final Reference2IntMap<Item> itemIds;
+	@Nullable
+	private final UniformBuffer commonUniformBuffer;
+	@Nullable
+	private final UniformBlockTransformer commonUniformTransformer;
 	private final CenterDepthSampler centerDepthSampler;
 
 	private final ImmutableSet<Integer> flippedAfterPrepare;
@@ -136,6 +161,10 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 
 	private final SodiumTerrainPipeline sodiumTerrainPipeline;
 
+	private final ProgramCompiler programCompiler;
+	private boolean programCompilerClosed;
+	private final boolean warmUpPasses;
+
 	private boolean isBeforeTranslucent;
 
 	private final float sunPathRotation;
@@ -162,8 +191,25 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 		this.shouldRenderParticlesBeforeDeferred = programs.getPackDirectives().areParticlesBeforeDeferred();
 		this.oldLighting = programs.getPackDirectives().isOldLighting();
 		this.updateNotifier = new FrameUpdateNotifier();
+		this.smoothedSignals = new SmoothedSignals(updateNotifier);
+		this.uniformValues = new UniformValueCache(() -> Objects.requireNonNull(Minecraft.getInstance().level).getGameTime());
+		this.updateNotifier.addListener(uniformValues::beginFrame);
+
+		// Like the entity IDs below, the item IDs are only resolved against the registry once for the whole pipeline.
+		this.itemIds = BlockMaterialMapping.createItemIdMap(programs.getPack().getIdMap().getItemIdMap());
+
+		// NB: Custom uniforms are computed once per frame for the whole pipeline, from the same cached built-in values
+		// that every program sees.
+		CustomUniforms.Builder customUniformBuilder = CustomUniforms.builder(programs.getPackDirectives().getCustomUniforms(),
+				SystemTimeUniforms.TIMER::getLastFrameTime);
+		CommonUniforms.addBuiltinUniforms(customUniformBuilder, itemIds, programs.getPackDirectives(),
+				updateNotifier, smoothedSignals, uniformValues);
+		this.customUniforms = customUniformBuilder
+				.compileExpressions(Iris.getIrisConfig().isCustomUniformCompilerEnabled())
+				.build();
 
 		this.allPasses = new ArrayList<>();
+		this.lazyPasses = new ArrayList<>();
 
 		this.renderTargets = new RenderTargets(Minecraft.getInstance().getMainRenderTarget(), programs.getPackDirectives().getRenderTargetDirectives());
 		this.sunPathRotation = programs.getPackDirectives().getSunPathRotation();
@@ -185,7 +231,8 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 		BlockRenderingSettings.INSTANCE.setBlockStateIds(
 				BlockMaterialMapping.createBlockStateIdMap(programs.getPack().getIdMap().getBlockProperties()));
 
-		BlockRenderingSettings.INSTANCE.setEntityIds(programs.getPack().getIdMap().getEntityIdMap());
+		BlockRenderingSettings.INSTANCE.setEntityIds(
+				BlockMaterialMapping.createEntityTypeIdMap(programs.getPack().getIdMap().getEntityIdMap()));
 		BlockRenderingSettings.INSTANCE.setAmbientOcclusionLevel(programs.getPackDirectives().getAmbientOcclusionLevel());
 		BlockRenderingSettings.INSTANCE.setDisableDirectionalShading(shouldDisableDirectionalShading());
 		BlockRenderingSettings.INSTANCE.setUseSeparateAo(programs.getPackDirectives().shouldUseSeparateAo());
@@ -197,19 +244,67 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 
 		GlStateManager._activeTexture(GL20C.GL_TEXTURE0);
 
+		this.programCompiler = new ProgramCompiler(new GlProgramCompilerBackend(), Iris.getProgramBinaryCache());
+		this.warmUpPasses = Iris.getIrisConfig().isPassWarmUpEnabled();
+
+		if (Iris.getIrisConfig().isCommonUniformBufferEnabled() && IrisRenderSystem.supportsUniformBuffers()) {
+			// NB: This must happen before any pass is set up, so that the transformer can rewire their sources.
+			UniformBlock.Builder commonUniforms = UniformBlock.builder(COMMON_UNIFORM_BLOCK);
+			CommonUniforms.addCommonUniforms(commonUniforms, itemIds, programs.getPackDirectives(),
+					updateNotifier, smoothedSignals, uniformValues, customUniforms);
+
+			this.commonUniformBuffer = new UniformBuffer(commonUniforms.build(), COMMON_UNIFORM_BINDING);
+			this.commonUniformTransformer = new UniformBlockTransformer(commonUniformBuffer.getBlock());
+		} else {
+			this.commonUniformBuffer = null;
+			this.commonUniformTransformer = null;
+		}
+
+		// NB: Gbuffer passes are only created once they are first used, or once the driver has finished compiling them
+		// in the background. With warm-up, creating these queues their programs, so that the driver can start working on
+		// them right away.
+		this.basic = programs.getGbuffersBasic().map(source -> createLazyPass(source, null)).orElse(null);
+		this.textured = programs.getGbuffersTextured().map(source -> createLazyPass(source, basic)).orElse(basic);
+		this.texturedLit = programs.getGbuffersTexturedLit().map(source -> createLazyPass(source, textured)).orElse(textured);
+		this.basicOverlay = programs.getGbuffersBasic().map(source -> createLazyEntityPass(source, null)).orElse(null);
+		this.texturedOverlay = programs.getGbuffersTextured().map(source -> createLazyEntityPass(source, basicOverlay)).orElse(basicOverlay);
+		this.texturedLitOverlay = programs.getGbuffersTexturedLit().map(source -> createLazyEntityPass(source, texturedOverlay)).orElse(texturedOverlay);
+		this.skyBasic = programs.getGbuffersSkyBasic().map(source -> createLazyPass(source, basic)).orElse(basic);
+		this.skyTextured = programs.getGbuffersSkyTextured().map(source -> createLazyPass(source, textured)).orElse(textured);
+		this.clouds = programs.getGbuffersClouds().map(source -> createLazyPass(source, textured)).orElse(textured);
+		this.terrain = programs.getGbuffersTerrain().map(source -> createLazyPass(source, texturedLit)).orElse(texturedLit);
+		this.translucent = programs.getGbuffersWater().map(source -> createLazyPass(source, terrain)).orElse(terrain);
+		this.damagedBlock = programs.getGbuffersDamagedBlock().map(source -> createLazyPass(source, terrain)).orElse(terrain);
+		this.weather = programs.getGbuffersWeather().map(source -> createLazyPass(source, texturedLit)).orElse(texturedLit);
+		this.beaconBeam = programs.getGbuffersBeaconBeam().map(source -> createLazyPass(source, textured)).orElse(textured);
+		this.entities = programs.getGbuffersEntities().map(source -> createLazyEntityPass(source, texturedLitOverlay)).orElse(texturedLitOverlay);
+		this.entityNoOverlay = programs.getGbuffersEntities().map(source -> createLazyPass(source, texturedLit)).orElse(texturedLit);
+		this.blockEntities = programs.getGbuffersBlock().map(source -> createLazyPass(source, terrain)).orElse(terrain);
+		this.hand = programs.getGbuffersHand().map(source -> createLazyEntityPass(source, texturedLitOverlay)).orElse(texturedLitOverlay);
+		this.handNoOverlay = programs.getGbuffersHand().map(source -> createLazyPass(source, texturedLit)).orElse(texturedLit);
+		this.handTranslucent = programs.getGbuffersHandWater().map(source -> createLazyEntityPass(source, hand)).orElse(hand);
+		this.glowingEntities = programs.getGbuffersEntitiesGlowing().map(source -> createLazyEntityPass(source, entities)).orElse(entities);
+		this.glint = programs.getGbuffersGlint().map(source -> createLazyPass(source, textured)).orElse(textured);
+		this.eyes = programs.getGbuffersEntityEyes().map(source -> createLazyEntityPass(source, texturedOverlay)).orElse(texturedOverlay);
+		this.eyesNoOverlay = programs.getGbuffersEntityEyes().map(source -> createLazyPass(source, textured)).orElse(textured);
+
+		queuePrograms(programs);
+
 		ImmutableSet<Integer> flippedBeforeShadow = ImmutableSet.of();
 
 		createShadowMapRenderer = () -> {
 			shadowMapRenderer = new ShadowRenderer(this, programs.getShadow().orElse(null),
 					programs.getPackDirectives(), () -> flippedBeforeShadow, renderTargets,
 					customTextureManager.getNormals(), customTextureManager.getSpecular(), customTextureManager.getNoiseTexture(),
-					programs, customTextureManager.getCustomTextureIdMap().getOrDefault(TextureStage.GBUFFERS_AND_SHADOW, Object2ObjectMaps.emptyMap()));
+					programs, customTextureManager.getCustomTextureIdMap().getOrDefault(TextureStage.GBUFFERS_AND_SHADOW, Object2ObjectMaps.emptyMap()),
+					programCompiler);
 			createShadowMapRenderer = () -> {};
 		};
 
 		BufferFlipper flipper = new BufferFlipper();
 
-		this.centerDepthSampler = new CenterDepthSampler(renderTargets, updateNotifier);
+		this.centerDepthSampler = new CenterDepthSampler(renderTargets, smoothedSignals,
+				programs.getPackDirectives().getCenterDepthHalfLife());
 
 		Supplier<ShadowMapRenderer> shadowMapRendererSupplier = () -> {
 			createShadowMapRenderer.run();
@@ -217,27 +312,27 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 		};
 
 		this.prepareRenderer = new CompositeRenderer(programs.getPackDirectives(), programs.getPrepare(), renderTargets,
-				customTextureManager.getNoiseTexture(), updateNotifier, centerDepthSampler, flipper, shadowMapRendererSupplier,
+				customTextureManager.getNoiseTexture(), updateNotifier, smoothedSignals, uniformValues, customUniforms, itemIds, centerDepthSampler, flipper, shadowMapRendererSupplier,
 				customTextureManager.getCustomTextureIdMap().getOrDefault(TextureStage.PREPARE, Object2ObjectMaps.emptyMap()),
-				programs.getPackDirectives().getExplicitFlips("prepare_pre"));
+				programs.getPackDirectives().getExplicitFlips("prepare_pre"), programCompiler);
 
 		flippedAfterPrepare = flipper.snapshot();
 
 		this.deferredRenderer = new CompositeRenderer(programs.getPackDirectives(), programs.getDeferred(), renderTargets,
-				customTextureManager.getNoiseTexture(), updateNotifier, centerDepthSampler, flipper, shadowMapRendererSupplier,
+				customTextureManager.getNoiseTexture(), updateNotifier, smoothedSignals, uniformValues, customUniforms, itemIds, centerDepthSampler, flipper, shadowMapRendererSupplier,
 				customTextureManager.getCustomTextureIdMap().getOrDefault(TextureStage.DEFERRED, Object2ObjectMaps.emptyMap()),
-				programs.getPackDirectives().getExplicitFlips("deferred_pre"));
+				programs.getPackDirectives().getExplicitFlips("deferred_pre"), programCompiler);
 
 		flippedAfterTranslucent = flipper.snapshot();
 
 		this.compositeRenderer = new CompositeRenderer(programs.getPackDirectives(), programs.getComposite(), renderTargets,
-				customTextureManager.getNoiseTexture(), updateNotifier, centerDepthSampler, flipper, shadowMapRendererSupplier,
+				customTextureManager.getNoiseTexture(), updateNotifier, smoothedSignals, uniformValues, customUniforms, itemIds, centerDepthSampler, flipper, shadowMapRendererSupplier,
 				customTextureManager.getCustomTextureIdMap().getOrDefault(TextureStage.COMPOSITE_AND_FINAL, Object2ObjectMaps.emptyMap()),
-				programs.getPackDirectives().getExplicitFlips("composite_pre"));
-		this.finalPassRenderer = new FinalPassRenderer(programs, renderTargets, customTextureManager.getNoiseTexture(), updateNotifier, flipper.snapshot(),
+				programs.getPackDirectives().getExplicitFlips("composite_pre"), programCompiler);
+		this.finalPassRenderer = new FinalPassRenderer(programs, renderTargets, customTextureManager.getNoiseTexture(), updateNotifier, smoothedSignals, uniformValues, customUniforms, itemIds, flipper.snapshot(),
 				centerDepthSampler, shadowMapRendererSupplier,
 				customTextureManager.getCustomTextureIdMap().getOrDefault(TextureStage.COMPOSITE_AND_FINAL, Object2ObjectMaps.emptyMap()),
-				this.compositeRenderer.getFlippedAtLeastOnceFinal());
+				this.compositeRenderer.getFlippedAtLeastOnceFinal(), programCompiler);
 
 		Supplier<ImmutableSet<Integer>> flipped =
 				() -> isBeforeTranslucent ? flippedAfterPrepare : flippedAfterTranslucent;
@@ -301,31 +396,6 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 			return builder.build();
 		};
 
-		this.basic = programs.getGbuffersBasic().map(this::createPass).orElse(null);
-		this.textured = programs.getGbuffersTextured().map(this::createPass).orElse(basic);
-		this.texturedLit = programs.getGbuffersTexturedLit().map(this::createPass).orElse(textured);
-		this.basicOverlay = programs.getGbuffersBasic().map(this::createEntityPass).orElse(null);
-		this.texturedOverlay = programs.getGbuffersTextured().map(this::createEntityPass).orElse(basicOverlay);
-		this.texturedLitOverlay = programs.getGbuffersTexturedLit().map(this::createEntityPass).orElse(texturedOverlay);
-		this.skyBasic = programs.getGbuffersSkyBasic().map(this::createPass).orElse(basic);
-		this.skyTextured = programs.getGbuffersSkyTextured().map(this::createPass).orElse(textured);
-		this.clouds = programs.getGbuffersClouds().map(this::createPass).orElse(textured);
-		this.terrain = programs.getGbuffersTerrain().map(this::createPass).orElse(texturedLit);
-		this.translucent = programs.getGbuffersWater().map(this::createPass).orElse(terrain);
-		this.damagedBlock = programs.getGbuffersDamagedBlock().map(this::createPass).orElse(terrain);
-		this.weather = programs.getGbuffersWeather().map(this::createPass).orElse(texturedLit);
-		this.beaconBeam = programs.getGbuffersBeaconBeam().map(this::createPass).orElse(textured);
-		this.entities = programs.getGbuffersEntities().map(this::createEntityPass).orElse(texturedLitOverlay);
-		this.entityNoOverlay = programs.getGbuffersEntities().map(this::createPass).orElse(texturedLit);
-		this.blockEntities = programs.getGbuffersBlock().map(this::createPass).orElse(terrain);
-		this.hand = programs.getGbuffersHand().map(this::createEntityPass).orElse(texturedLitOverlay);
-		this.handNoOverlay = programs.getGbuffersHand().map(this::createPass).orElse(texturedLit);
-		this.handTranslucent = programs.getGbuffersHandWater().map(this::createEntityPass).orElse(hand);
-		this.glowingEntities = programs.getGbuffersEntitiesGlowing().map(this::createEntityPass).orElse(entities);
-		this.glint = programs.getGbuffersGlint().map(this::createPass).orElse(textured);
-		this.eyes = programs.getGbuffersEntityEyes().map(this::createEntityPass).orElse(texturedOverlay);
-		this.eyesNoOverlay = programs.getGbuffersEntityEyes().map(this::createPass).orElse(textured);
-
 		this.clearPassesFull = ClearPassCreator.createClearPasses(renderTargets, true,
 				programs.getPackDirectives().getRenderTargetDirectives());
 		this.clearPasses = ClearPassCreator.createClearPasses(renderTargets, false,
@@ -333,10 +403,19 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 
 		this.baseline = renderTargets.createFramebufferWritingToMain(new int[] {0});
 
+		// The gbuffer passes that would otherwise create the shadow map renderer might not be created until much later,
+		// but the shadow map renderer needs to exist by now for the Sodium terrain pipeline.
+		if (programs.getShadow().isPresent()) {
+			createShadowMapRenderer.run();
+		}
+
 		if (shadowMapRenderer == null) {
 			// Fallback just in case.
 			// TODO: Can we remove this?
 			this.shadowMapRenderer = new EmptyShadowMapRenderer(programs.getPackDirectives().getShadowDirectives().getResolution());
+
+			// Passes created later on will sample the empty shadow map instead.
+			createShadowMapRenderer = () -> {};
 		}
 
 		this.phase = WorldRenderingPhase.NONE;
@@ -344,6 +423,12 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 		this.sodiumTerrainPipeline = new SodiumTerrainPipeline(this, programs, createTerrainSamplers,
 			shadowMapRenderer instanceof EmptyShadowMapRenderer || shadowMapRenderer == null ? null : createShadowTerrainSamplers,
 			createTerrainImages, createShadowTerrainImages);
+
+		if (!warmUpPasses) {
+			// Every program that is built eagerly exists by now. Without warm-up, the remaining gbuffer passes might not
+			// be created for a long time, if ever, so don't keep the shaders shared between programs around for them.
+			closeProgramCompiler();
+		}
 	}
 
 	private void checkWorld() {
@@ -417,7 +502,15 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 		useProgram(toUse);
 	}
 
+	@Nullable
 	private Pass getPass(GbufferProgram program) {
+		LazyPass pass = getLazyPass(program);
+
+		return pass != null ? pass.get() : null;
+	}
+
+	@Nullable
+	private LazyPass getLazyPass(GbufferProgram program) {
 		switch (program) {
 			case TERRAIN:
 				return terrain;
@@ -480,13 +573,9 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 		Pass pass = getPass(program);
 		beginPass(pass);
 
-		if (program == GbufferProgram.TERRAIN) {
-			if (terrain != null) {
-				setupAttributeDefaults(terrain);
-			}
-		} else if (program == GbufferProgram.TRANSLUCENT_TERRAIN) {
-			if (translucent != null) {
-				setupAttributeDefaults(translucent);
+		if (program == GbufferProgram.TERRAIN || program == GbufferProgram.TRANSLUCENT_TERRAIN) {
+			if (pass != null) {
+				setupAttributeDefaults(pass);
 			}
 		}
 	}
@@ -546,21 +635,14 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 		}
 	}
 
-	private Pass createPass(ProgramSource source) {
+	private LazyPass createLazyPass(ProgramSource source, @Nullable LazyPass fallback) {
 		// TODO: Properly handle empty shaders
-		ProgramBuilder builder;
-		try {
-			builder = ProgramBuilder.begin(source.getName(), source.getVertexSource().orElseThrow(NullPointerException::new), source.getGeometrySource().orElse(null),
-					source.getFragmentSource().orElseThrow(NullPointerException::new), IrisSamplers.WORLD_RESERVED_TEXTURE_UNITS);
-		} catch (RuntimeException e) {
-			// TODO: Better error handling
-			throw new RuntimeException("Shader compilation failed!", e);
-		}
-
-		return createPassInner(builder, source.getParent().getPack().getIdMap(), source.getDirectives(), source.getParent().getPackDirectives());
+		return new LazyPass(source, source.getVertexSource().orElseThrow(NullPointerException::new),
+				source.getGeometrySource().orElse(null), source.getFragmentSource().orElseThrow(NullPointerException::new),
+				fallback);
 	}
 
-	private Pass createEntityPass(ProgramSource source) {
+	private LazyPass createLazyEntityPass(ProgramSource source, @Nullable LazyPass fallback) {
 		// TODO: Properly handle empty shaders
 		String geometry = source.getGeometrySource().orElse(null);
 		String vertex = AttributeShaderTransformer.patch(source.getVertexSource().orElseThrow(NullPointerException::new),
@@ -568,21 +650,66 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 		String fragment = AttributeShaderTransformer.patch(source.getFragmentSource().orElseThrow(NullPointerException::new),
 				ShaderType.FRAGMENT, geometry != null);
 
+		return new LazyPass(source, vertex, geometry, fragment, fallback);
+	}
+
+	/**
+	 * @param blockMembers the members of the common uniform block that the sources read, if any. They are only marked
+	 *                     as used once the program has been built successfully.
+	 */
+	private Pass createPass(ProgramSource source, String vertex, @Nullable String geometry, String fragment,
+							Set<UniformBlock.Member> blockMembers) {
 		ProgramBuilder builder;
 		try {
-			builder = ProgramBuilder.begin(source.getName(), vertex, geometry,
-					fragment, IrisSamplers.WORLD_RESERVED_TEXTURE_UNITS);
+			builder = ProgramBuilder.begin(programCompiler, source.getName(), vertex, geometry, fragment,
+					IrisSamplers.WORLD_RESERVED_TEXTURE_UNITS);
 		} catch (RuntimeException e) {
 			// TODO: Better error handling
 			throw new RuntimeException("Shader compilation failed!", e);
 		}
 
-		return createPassInner(builder, source.getParent().getPack().getIdMap(), source.getDirectives(), source.getParent().getPackDirectives());
+		if (!blockMembers.isEmpty()) {
+			Objects.requireNonNull(commonUniformBuffer);
+
+			builder.bindUniformBlock(COMMON_UNIFORM_BLOCK, COMMON_UNIFORM_BINDING);
+
+			for (UniformBlock.Member member : blockMembers) {
+				builder.externallyManagedUniform(member.getMemberName(), member.getType());
+			}
+		}
+
+		Pass pass = createPassInner(builder, source.getDirectives(), source.getParent().getPackDirectives());
+
+		for (UniformBlock.Member member : blockMembers) {
+			commonUniformBuffer.getBlock().markUsed(member.getUniformName());
+		}
+
+		return pass;
+	}
+
+	/**
+	 * Queues the programs that the renderers of this pipeline create up front, so that they can all be compiled at the
+	 * same time instead of one after another. Gbuffer programs are queued when their lazy passes are set up.
+	 */
+	private void queuePrograms(ProgramSet programs) {
+		programs.getShadow().ifPresent(this::queueProgram);
+
+		Stream.of(programs.getPrepare(), programs.getDeferred(), programs.getComposite())
+			.flatMap(List::stream)
+			.filter(ProgramSource::isValid)
+			.forEach(this::queueProgram);
+
+		programs.getCompositeFinal().ifPresent(this::queueProgram);
+	}
+
+	private void queueProgram(ProgramSource source) {
+		programCompiler.queue(source.getName(), source.getVertexSource().orElseThrow(NullPointerException::new),
+				source.getGeometrySource().orElse(null), source.getFragmentSource().orElseThrow(NullPointerException::new));
 	}
 
-	private Pass createPassInner(ProgramBuilder builder, IdMap map, ProgramDirectives programDirectives, PackDirectives packDirectives) {
+	private Pass createPassInner(ProgramBuilder builder, ProgramDirectives programDirectives, PackDirectives packDirectives) {
 
-		CommonUniforms.addCommonUniforms(builder, map, packDirectives, updateNotifier);
+		CommonUniforms.addCommonUniforms(builder, itemIds, packDirectives, updateNotifier, smoothedSignals, uniformValues, customUniforms);
 
 		Supplier<ImmutableSet<Integer>> flipped =
 				() -> isBeforeTranslucent ? flippedAfterPrepare : flippedAfterTranslucent;
@@ -682,9 +809,137 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 		}
 	}
 
+	/**
+	 * A gbuffer pass that is only created once it is first used, or once its program is ready during warm-up. If the
+	 * pass can't be created, its fallback pass is used instead.
+	 *
+	 * <p>If common uniforms are provided through a uniform buffer, the sources are rewired to read from it where
+	 * possible. Should the rewired program fail to compile, the pass is created from the original sources.</p>
+	 */
+	private final class LazyPass {
+		private final ProgramSource source;
+		private final String vertex;
+		@Nullable
+		private final String geometry;
+		private final String fragment;
+		@Nullable
+		private final String[] rewiredSources;
+		private final Set<UniformBlock.Member> rewiredMembers;
+		@Nullable
+		private final LazyPass fallback;
+		@Nullable
+		private final ProgramCompiler.QueuedProgram program;
+
+		private boolean created;
+		@Nullable
+		private Pass pass;
+
+		private LazyPass(ProgramSource source, String vertex, @Nullable String geometry, String fragment,
+						 @Nullable LazyPass fallback) {
+			this.source = source;
+			this.vertex = vertex;
+			this.geometry = geometry;
+			this.fragment = fragment;
+			this.fallback = fallback;
+			this.rewiredMembers = new HashSet<>();
+			this.rewiredSources = rewireCommonUniforms(vertex, geometry, fragment);
+
+			if (!warmUpPasses) {
+				// NB: The compiler is closed once the pipeline has been constructed, which would delete the queued
+				// program again before it is ever used.
+				this.program = null;
+			} else if (rewiredSources != null) {
+				this.program = programCompiler.queue(source.getName(), rewiredSources[0], rewiredSources[1], rewiredSources[2]);
+			} else {
+				this.program = programCompiler.queue(source.getName(), vertex, geometry, fragment);
+			}
+
+			lazyPasses.add(this);
+		}
+
+		/**
+		 * @return the rewired vertex, geometry, and fragment sources, or null if no stage reads from the uniform buffer
+		 */
+		@Nullable
+		private String[] rewireCommonUniforms(String vertex, @Nullable String geometry, String fragment) {
+			if (commonUniformTransformer == null) {
+				return null;
+			}
+
+			String[] rewired = new String[] {
+				commonUniformTransformer.patch(vertex, rewiredMembers),
+				geometry != null ? commonUniformTransformer.patch(geometry, rewiredMembers) : null,
+				commonUniformTransformer.patch(fragment, rewiredMembers)
+			};
+
+			// NB: patch returns the very same source if nothing was rewired.
+			if (rewired[0] == vertex && rewired[1] == geometry && rewired[2] == fragment) {
+				return null;
+			}
+
+			return rewired;
+		}
+
+		private Pass createPass() {
+			if (rewiredSources != null) {
+				try {
+					return DeferredWorldRenderingPipeline.this.createPass(source, rewiredSources[0], rewiredSources[1],
+							rewiredSources[2], rewiredMembers);
+				} catch (RuntimeException e) {
+					Iris.logger.warn("Failed to create the " + source.getName() + " pass with common uniforms read from a" +
+							" uniform buffer, setting them on the program instead", e);
+				}
+			}
+
+			return DeferredWorldRenderingPipeline.this.createPass(source, vertex, geometry, fragment,
+					Collections.emptySet());
+		}
+
+		@Nullable
+		public Pass get() {
+			if (!created) {
+				created = true;
+
+				try {
+					pass = createPass();
+				} catch (RuntimeException e) {
+					Iris.logger.error("Failed to create the " + source.getName() + " pass, using its fallback instead", e);
+
+					pass = fallback != null ? fallback.get() : null;
+				}
+
+				if (programCompilerClosed) {
+					// Don't keep the shaders of a pass created after the compiler was closed around either.
+					programCompiler.close();
+				}
+			}
+
+			return pass;
+		}
+
+		public boolean isCreated() {
+			return created;
+		}
+
+		/**
+		 * @return whether the pass can be created without waiting on the driver, this never blocks
+		 */
+		public boolean isReady() {
+			return program != null && programCompiler.isReady(program);
+		}
+	}
+
 	public void destroy() {
 		destroyPasses(allPasses);
 
+		if (commonUniformBuffer != null) {
+			commonUniformBuffer.destroy();
+		}
+
+		if (!programCompilerClosed) {
+			programCompiler.close();
+		}
+
 		// Destroy the composite rendering pipeline
 		//
 		// This destroys all of the loaded composite programs as well.
@@ -823,6 +1078,10 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 
 	@Override
 	public void addDebugText(List<String> messages) {
+		messages.add("");
+		messages.add("[Iris] Uniforms: " + uniformValues);
+		messages.add("[Iris] Smoothed values: " + smoothedSignals.size());
+
 		if (shadowMapRenderer != null) {
 			messages.add("");
 			shadowMapRenderer.addDebugText(messages);
@@ -856,6 +1115,12 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 		}
 
 		updateNotifier.onNewFrame();
+		UniformDependencies.update();
+		customUniforms.update();
+
+		if (commonUniformBuffer != null) {
+			commonUniformBuffer.upload();
+		}
 
 		// Get ready for world rendering
 		prepareRenderTargets();
@@ -889,6 +1154,59 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 
 		compositeRenderer.renderAll();
 		finalPassRenderer.renderFinalPass();
+
+		warmUpPasses();
+	}
+
+	/**
+	 * Creates at most one gbuffer pass that hasn't been used yet per frame, and only once the driver has finished
+	 * compiling its program, so that the pass doesn't cause a hitch when it is first used without warming up causing
+	 * hitches of its own. Once every pass exists, the program compiler is closed.
+	 */
+	private void warmUpPasses() {
+		if (programCompilerClosed) {
+			return;
+		}
+
+		LazyPass next = null;
+		boolean pending = false;
+
+		for (LazyPass pass : lazyPasses) {
+			if (pass.isCreated()) {
+				continue;
+			}
+
+			pending = true;
+
+			if (warmUpPasses && pass.isReady()) {
+				next = pass;
+				break;
+			}
+		}
+
+		if (!pending) {
+			closeProgramCompiler();
+
+			return;
+		}
+
+		if (next != null) {
+			next.get();
+
+			// Creating a pass binds its framebuffers, so restore the state that the final pass left behind.
+			Program.unbind();
+			Minecraft.getInstance().getMainRenderTarget().bindWrite(true);
+		}
+	}
+
+	/**
+	 * Releases the shaders shared between programs, and any queued programs that didn't end up being used.
+	 */
+	private void closeProgramCompiler() {
+		Iris.logger.info("Closing the shader program compiler: " + programCompiler);
+
+		programCompiler.close();
+		programCompilerClosed = true;
 	}
 
 	@Override
@@ -901,6 +1219,26 @@ public class DeferredWorldRenderingPipeline implements WorldRenderingPipeline {
 		return updateNotifier;
 	}
 
+	@Override
+	public SmoothedSignals getSmoothedSignals() {
+		return smoothedSignals;
+	}
+
+	@Override
+	public UniformValueCache getUniformValueCache() {
+		return uniformValues;
+	}
+
+	@Override
+	public CustomUniforms getCustomUniforms() {
+		return customUniforms;
+	}
+
+	@Override
+	public Reference2IntMap<Item> getItemIds() {
+		return itemIds;
+	}
+
 	@Override
 	public WorldRenderingPhase getPhase() {
 		return phase;
@@ -1,12 +1,19 @@
 package net.coderbot.iris.pipeline;
 
 import com.mojang.blaze3d.platform.GlStateManager;
+import it.unimi.dsi.fastutil.objects.Object2IntMaps;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import net.coderbot.iris.block_rendering.BlockMaterialMapping;
 import net.coderbot.iris.block_rendering.BlockRenderingSettings;
+import net.coderbot.iris.gl.uniform.UniformValueCache;
 import net.coderbot.iris.layer.GbufferProgram;
 import net.coderbot.iris.mixin.LevelRendererAccessor;
 import net.coderbot.iris.uniforms.FrameUpdateNotifier;
+import net.coderbot.iris.uniforms.custom.CustomUniforms;
+import net.coderbot.iris.uniforms.transforms.SmoothedSignals;
 import net.minecraft.client.Camera;
 import net.minecraft.client.Minecraft;
+import net.minecraft.world.item.Item;
 import java.util.List;
 import java.util.OptionalInt;
 
@@ -101,6 +108,30 @@ public class FixedFunctionWorldRenderingPipeline implements WorldRenderingPipeli
 		return new FrameUpdateNotifier();
 	}
 
+	@Override
+	public SmoothedSignals getSmoothedSignals() {
+		// return a dummy registry
+		return new SmoothedSignals(new FrameUpdateNotifier());
+	}
+
+	@Override
+	public UniformValueCache getUniformValueCache() {
+		// return a dummy cache
+		return new UniformValueCache(() -> 0);
+	}
+
+	@Override
+	public CustomUniforms getCustomUniforms() {
+		// no shaders, so no custom uniforms either
+		return CustomUniforms.empty();
+	}
+
+	@Override
+	public Reference2IntMap<Item> getItemIds() {
+		// no shaders, so no item IDs either
+		return BlockMaterialMapping.createItemIdMap(Object2IntMaps.emptyMap());
+	}
+
 	@Override
 	public boolean shouldDisableVanillaEntityShadows() {
 		return false;
@@ -17,6 +17,7 @@ import net.coderbot.iris.gl.blending.BlendModeOverride;
 import net.coderbot.iris.gl.program.Program;
 import net.coderbot.iris.gl.program.ProgramBuilder;
 import net.coderbot.iris.gl.program.ProgramSamplers;
+import net.coderbot.iris.gl.shader.ProgramCompiler;
 import net.coderbot.iris.gl.texture.InternalTextureFormat;
 import net.coderbot.iris.gui.option.IrisVideoSettings;
 import net.coderbot.iris.layer.GbufferProgram;
@@ -124,7 +125,7 @@ public class ShadowRenderer implements ShadowMapRenderer {
 	public ShadowRenderer(WorldRenderingPipeline pipeline, ProgramSource shadow, PackDirectives directives,
                           Supplier<ImmutableSet<Integer>> flipped, RenderTargets gbufferRenderTargets,
                           AbstractTexture normals, AbstractTexture specular, IntSupplier noise, ProgramSet programSet,
-													Object2ObjectMap<String, IntSupplier> customTextureIds) {
+													Object2ObjectMap<String, IntSupplier> customTextureIds, ProgramCompiler programCompiler) {
 		this.pipeline = pipeline;
 		this.profiler = Minecraft.getInstance().getProfiler();
 
@@ -161,7 +162,7 @@ public class ShadowRenderer implements ShadowMapRenderer {
 		this.customTextureIds = customTextureIds;
 
 		if (shadow != null) {
-			this.shadowProgram = createProgram(shadow, directives, flipped);
+			this.shadowProgram = createProgram(shadow, directives, flipped, programCompiler);
 
 			// Note: ProgramSet handles defaulting this to "OFF" on the shadow program.
 			this.blendModeOverride = shadow.getDirectives().getBlendModeOverride();
@@ -179,10 +180,11 @@ public class ShadowRenderer implements ShadowMapRenderer {
 			this.packCullingState = OptionalBoolean.DEFAULT;
 		}
 
-		ProgramSource[] composite = programSet.getComposite();
+		ImmutableList<ProgramSource> composite = programSet.getComposite();
 
-		if (composite.length > 0) {
-			String fsh = composite[0].getFragmentSource().orElse("");
+		// NB: Only the first composite pass (composite.fsh) is relevant here, not whichever pass happens to come first.
+		if (!composite.isEmpty() && composite.get(0).getName().equals("composite")) {
+			String fsh = composite.get(0).getFragmentSource().orElse("");
 
 			// Detect the sun-bounce GI in SEUS Renewed and SEUS v11.
 			// TODO: This is very hacky, we need a better way to detect sun-bounce GI.
@@ -282,14 +284,14 @@ public class ShadowRenderer implements ShadowMapRenderer {
 
 	// TODO: Don't just copy this from ShaderPipeline
 	private Program createProgram(ProgramSource source, PackDirectives directives,
-								  Supplier<ImmutableSet<Integer>> flipped) {
+								  Supplier<ImmutableSet<Integer>> flipped, ProgramCompiler programCompiler) {
 		// TODO: Properly handle empty shaders
 		Objects.requireNonNull(source.getVertexSource());
 		Objects.requireNonNull(source.getFragmentSource());
 		ProgramBuilder builder;
 
 		try {
-			builder = ProgramBuilder.begin(source.getName(), source.getVertexSource().orElse(null), source.getGeometrySource().orElse(null),
+			builder = ProgramBuilder.begin(programCompiler, source.getName(), source.getVertexSource().orElse(null), source.getGeometrySource().orElse(null),
 					source.getFragmentSource().orElse(null), IrisSamplers.WORLD_RESERVED_TEXTURE_UNITS);
 		} catch (RuntimeException e) {
 			// TODO: Better error handling
@@ -298,7 +300,7 @@ public class ShadowRenderer implements ShadowMapRenderer {
 
 		ProgramSamplers.CustomTextureSamplerInterceptor customTextureSamplerInterceptor = ProgramSamplers.customTextureSamplerInterceptor(builder, customTextureIds);
 
-		CommonUniforms.addCommonUniforms(builder, source.getParent().getPack().getIdMap(), directives, pipeline.getFrameUpdateNotifier());
+		CommonUniforms.addCommonUniforms(builder, pipeline.getItemIds(), directives, pipeline.getFrameUpdateNotifier(), pipeline.getSmoothedSignals(), pipeline.getUniformValueCache(), pipeline.getCustomUniforms());
 		IrisSamplers.addRenderTargetSamplers(customTextureSamplerInterceptor, flipped, gbufferRenderTargets, false);
 		IrisImages.addRenderTargetImages(builder, flipped, gbufferRenderTargets);
 
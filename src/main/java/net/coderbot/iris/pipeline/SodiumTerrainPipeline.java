@@ -205,7 +205,7 @@ public class SodiumTerrainPipeline {
 	public ProgramUniforms initUniforms(int programId) {
 		ProgramUniforms.Builder uniforms = ProgramUniforms.builder("<sodium shaders>", programId);
 
-		CommonUniforms.addCommonUniforms(uniforms, programSet.getPack().getIdMap(), programSet.getPackDirectives(), parent.getFrameUpdateNotifier());
+		CommonUniforms.addCommonUniforms(uniforms, parent.getItemIds(), programSet.getPackDirectives(), parent.getFrameUpdateNotifier(), parent.getSmoothedSignals(), parent.getUniformValueCache(), parent.getCustomUniforms());
 		BuiltinReplacementUniforms.addBuiltinReplacementUniforms(uniforms);
 
 		return uniforms.buildUniforms();
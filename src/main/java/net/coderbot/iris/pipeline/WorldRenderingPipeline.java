@@ -1,9 +1,14 @@
 package net.coderbot.iris.pipeline;
 
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import net.coderbot.iris.gl.uniform.UniformValueCache;
 import net.coderbot.iris.layer.GbufferProgram;
 import net.coderbot.iris.mixin.LevelRendererAccessor;
 import net.coderbot.iris.uniforms.FrameUpdateNotifier;
+import net.coderbot.iris.uniforms.custom.CustomUniforms;
+import net.coderbot.iris.uniforms.transforms.SmoothedSignals;
 import net.minecraft.client.Camera;
+import net.minecraft.world.item.Item;
 import java.util.List;
 import java.util.OptionalInt;
 
@@ -30,6 +35,14 @@ public interface WorldRenderingPipeline {
 
 	SodiumTerrainPipeline getSodiumTerrainPipeline();
 	FrameUpdateNotifier getFrameUpdateNotifier();
+	SmoothedSignals getSmoothedSignals();
+	UniformValueCache getUniformValueCache();
+	CustomUniforms getCustomUniforms();
+
+	/**
+	 * @return the item ID map of the shader pack, resolved against the item registry
+	 */
+	Reference2IntMap<Item> getItemIds();
 
 	boolean shouldDisableVanillaEntityShadows();
 	boolean shouldDisableDirectionalShading();
@@ -3,8 +3,8 @@ package net.coderbot.iris.postprocess;
 import net.coderbot.iris.gl.IrisRenderSystem;
 import net.coderbot.iris.gl.framebuffer.GlFramebuffer;
 import net.coderbot.iris.rendertarget.RenderTargets;
-import net.coderbot.iris.uniforms.FrameUpdateNotifier;
 import net.coderbot.iris.uniforms.transforms.SmoothedFloat;
+import net.coderbot.iris.uniforms.transforms.SmoothedSignals;
 import org.lwjgl.opengl.GL11C;
 
 public class CenterDepthSampler {
@@ -14,11 +14,11 @@ public class CenterDepthSampler {
 	private boolean hasFirstSample;
 	private boolean everRetrieved;
 
-	public CenterDepthSampler(RenderTargets renderTargets, FrameUpdateNotifier updateNotifier) {
+	public CenterDepthSampler(RenderTargets renderTargets, SmoothedSignals smoothedSignals, float halfLife) {
 		// NB: This will always be one frame behind compared to the current frame.
 		// That's probably for the best, since it can help avoid some pipeline stalls.
 		// We're still going to get stalls, though.
-		centerDepthSmooth = new SmoothedFloat(1.0f, 1.0f, this::sampleCenterDepth, updateNotifier);
+		centerDepthSmooth = smoothedSignals.smooth("centerDepth", halfLife, halfLife, this::sampleCenterDepth);
 
 		// Prior to OpenGL 4.1, all framebuffers must have at least 1 color target.
 		depthBufferHolder = renderTargets.createFramebufferWritingToMain(new int[] {0});
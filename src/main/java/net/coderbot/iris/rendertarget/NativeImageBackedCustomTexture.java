@@ -28,8 +28,14 @@ public class NativeImageBackedCustomTexture extends DynamicTexture {
 		}
 	}
 
-	private static NativeImage create(byte[] content) throws IOException {
-		ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+	private static NativeImage create(ByteBuffer content) throws IOException {
+		// NativeImage can only read images out of direct buffers. Textures from zipped shader packs already are one,
+		// so only contents that were read onto the heap need to be copied.
+		if (content.isDirect()) {
+			return NativeImage.read(content);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(content.remaining());
 		buffer.put(content);
 		buffer.flip();
 
@@ -3,7 +3,6 @@ package net.coderbot.iris.shaderpack;
 import java.io.IOException;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -18,11 +17,11 @@ import java.util.Properties;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2IntFunction;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMaps;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import net.coderbot.iris.Iris;
+import net.coderbot.iris.shaderpack.loading.PackSource;
 import net.coderbot.iris.shaderpack.materialmap.BlockEntry;
 import net.coderbot.iris.shaderpack.materialmap.BlockRenderType;
 import net.coderbot.iris.shaderpack.materialmap.NamespacedId;
@@ -53,14 +52,14 @@ public class IdMap {
 	 */
 	private Map<NamespacedId, BlockRenderType> blockRenderTypeMap;
 
-	IdMap(Path shaderPath, ShaderPackOptions shaderPackOptions) {
-		itemIdMap = loadProperties(shaderPath, "item.properties", shaderPackOptions)
+	IdMap(Path shaderPath, ShaderPackOptions shaderPackOptions, PackSource source) {
+		itemIdMap = loadProperties(shaderPath, "item.properties", shaderPackOptions, source)
 			.map(IdMap::parseItemIdMap).orElse(Object2IntMaps.emptyMap());
 
-		entityIdMap = loadProperties(shaderPath, "entity.properties", shaderPackOptions)
+		entityIdMap = loadProperties(shaderPath, "entity.properties", shaderPackOptions, source)
 			.map(IdMap::parseEntityIdMap).orElse(Object2IntMaps.emptyMap());
 
-		loadProperties(shaderPath, "block.properties", shaderPackOptions).ifPresent(blockProperties -> {
+		loadProperties(shaderPath, "block.properties", shaderPackOptions, source).ifPresent(blockProperties -> {
 			blockPropertiesMap = parseBlockMap(blockProperties, "block.", "block.properties");
 			blockRenderTypeMap = parseRenderTypeMap(blockProperties, "layer.", "block.properties");
 		});
@@ -81,8 +80,9 @@ public class IdMap {
 	/**
 	 * Loads properties from a properties file in a shaderpack path
 	 */
-	private static Optional<Properties> loadProperties(Path shaderPath, String name, ShaderPackOptions shaderPackOptions) {
-		String fileContents = readProperties(shaderPath, name);
+	private static Optional<Properties> loadProperties(Path shaderPath, String name, ShaderPackOptions shaderPackOptions,
+													   PackSource source) {
+		String fileContents = readProperties(shaderPath, name, source);
 		if (fileContents == null) {
 			return Optional.empty();
 		}
@@ -102,10 +102,10 @@ public class IdMap {
 		return Optional.of(properties);
 	}
 
-	private static String readProperties(Path shaderPath, String name) {
+	private static String readProperties(Path shaderPath, String name, PackSource source) {
 		try {
 			// ID maps should be encoded in ISO_8859_1.
-			return new String(Files.readAllBytes(shaderPath.resolve(name)), StandardCharsets.ISO_8859_1);
+			return source.readString(shaderPath.resolve(name), StandardCharsets.ISO_8859_1);
 		} catch (NoSuchFileException e) {
 			Iris.logger.debug("An " + name + " file was not found in the current shaderpack");
 
@@ -252,11 +252,11 @@ public class IdMap {
 		return blockPropertiesMap;
 	}
 
-	public Object2IntFunction<NamespacedId> getItemIdMap() {
+	public Object2IntMap<NamespacedId> getItemIdMap() {
 		return itemIdMap;
 	}
 
-	public Object2IntFunction<NamespacedId> getEntityIdMap() {
+	public Object2IntMap<NamespacedId> getEntityIdMap() {
 		return entityIdMap;
 	}
 
@@ -2,9 +2,10 @@ package net.coderbot.iris.shaderpack;
 
 import com.google.common.collect.ImmutableMap;
 import net.coderbot.iris.Iris;
+import net.coderbot.iris.shaderpack.loading.PackSource;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -19,6 +20,10 @@ public class LanguageMap {
 	private final Map<String, Map<String, String>> translationMaps;
 
 	public LanguageMap(Path root) throws IOException {
+		this(root, PackSource.FILES);
+	}
+
+	public LanguageMap(Path root, PackSource source) throws IOException {
 		this.translationMaps = new HashMap<>();
 
 		if (!Files.exists(root)) {
@@ -45,9 +50,9 @@ public class LanguageMap {
 			Properties properties = new Properties();
 
 			try {
-				// Use InputStreamReader to avoid the default charset of ISO-8859-1.
+				// Decode the file ourselves to avoid the default charset of ISO-8859-1.
 				// This is needed since shader language files are specified to be in UTF-8.
-				properties.load(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8));
+				properties.load(new StringReader(source.readString(path, StandardCharsets.UTF_8)));
 			} catch (IOException e) {
 				Iris.logger.error("Failed to parse shader pack language file " + path, e);
 			}
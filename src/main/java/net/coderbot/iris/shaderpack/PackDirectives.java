@@ -1,11 +1,13 @@
 package net.coderbot.iris.shaderpack;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import it.unimi.dsi.fastutil.objects.Object2BooleanMap;
 import it.unimi.dsi.fastutil.objects.Object2BooleanMaps;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import net.coderbot.iris.Iris;
+import net.coderbot.iris.uniforms.custom.CustomUniformDefinition;
 
 import java.util.Set;
 
@@ -13,6 +15,10 @@ public class PackDirectives {
 	private int noiseTextureResolution;
 	private float sunPathRotation;
 	private float ambientOcclusionLevel;
+	private float eyeBrightnessHalfLife;
+	private float wetnessHalfLife;
+	private float drynessHalfLife;
+	private float centerDepthHalfLife;
 	private boolean areCloudsEnabled;
 	private boolean underwaterOverlay;
 	private boolean vignette;
@@ -21,6 +27,7 @@ public class PackDirectives {
 	private boolean oldLighting;
 	private boolean particlesBeforeDeferred;
 	private Object2ObjectMap<String, Object2BooleanMap<String>> explicitFlips = new Object2ObjectOpenHashMap<>();
+	private ImmutableList<CustomUniformDefinition> customUniforms = ImmutableList.of();
 
 	private final PackRenderTargetDirectives renderTargetDirectives;
 	private final PackShadowDirectives shadowDirectives;
@@ -29,6 +36,12 @@ public class PackDirectives {
 		noiseTextureResolution = 256;
 		sunPathRotation = 0.0F;
 		ambientOcclusionLevel = 1.0F;
+		// These match the defaults of OptiFine, except for the dryness half life, which keeps the previous default of
+		// Iris so that wetness doesn't fade out faster than packs were tuned for.
+		eyeBrightnessHalfLife = 10.0F;
+		wetnessHalfLife = 600.0F;
+		drynessHalfLife = 600.0F;
+		centerDepthHalfLife = 1.0F;
 		renderTargetDirectives = new PackRenderTargetDirectives(supportedRenderTargets);
 		shadowDirectives = packShadowDirectives;
 	}
@@ -43,6 +56,7 @@ public class PackDirectives {
 		oldLighting = properties.getOldLighting().orElse(false);
 		explicitFlips = properties.getExplicitFlips();
 		particlesBeforeDeferred = properties.getParticlesBeforeDeferred().orElse(false);
+		customUniforms = ImmutableList.copyOf(properties.getCustomUniforms());
 	}
 
 	PackDirectives(Set<Integer> supportedRenderTargets, PackDirectives directives) {
@@ -52,6 +66,7 @@ public class PackDirectives {
 		oldLighting = directives.oldLighting;
 		explicitFlips = directives.explicitFlips;
 		particlesBeforeDeferred = directives.particlesBeforeDeferred;
+		customUniforms = directives.customUniforms;
 	}
 
 	public int getNoiseTextureResolution() {
@@ -66,6 +81,25 @@ public class PackDirectives {
 		return ambientOcclusionLevel;
 	}
 
+	/**
+	 * The half lives of the smoothed uniforms, in tenths of a second.
+	 */
+	public float getEyeBrightnessHalfLife() {
+		return eyeBrightnessHalfLife;
+	}
+
+	public float getWetnessHalfLife() {
+		return wetnessHalfLife;
+	}
+
+	public float getDrynessHalfLife() {
+		return drynessHalfLife;
+	}
+
+	public float getCenterDepthHalfLife() {
+		return centerDepthHalfLife;
+	}
+
 	public boolean areCloudsEnabled() {
 		return areCloudsEnabled;
 	}
@@ -94,6 +128,10 @@ public class PackDirectives {
 		return particlesBeforeDeferred;
 	}
 
+	public ImmutableList<CustomUniformDefinition> getCustomUniforms() {
+		return customUniforms;
+	}
+
 	public PackRenderTargetDirectives getRenderTargetDirectives() {
 		return renderTargetDirectives;
 	}
@@ -115,6 +153,17 @@ public class PackDirectives {
 		directives.acceptConstFloatDirective("ambientOcclusionLevel",
 				ambientOcclusionLevel -> this.ambientOcclusionLevel = ambientOcclusionLevel);
 
+		directives.acceptConstFloatDirective("eyeBrightnessHalflife",
+				eyeBrightnessHalfLife -> this.eyeBrightnessHalfLife = eyeBrightnessHalfLife);
+
+		directives.acceptConstFloatDirective("wetnessHalflife",
+				wetnessHalfLife -> this.wetnessHalfLife = wetnessHalfLife);
+
+		directives.acceptConstFloatDirective("drynessHalflife",
+				drynessHalfLife -> this.drynessHalfLife = drynessHalfLife);
+
+		directives.acceptConstFloatDirective("centerDepthHalflife",
+				centerDepthHalfLife -> this.centerDepthHalfLife = centerDepthHalfLife);
 	}
 
 	public ImmutableMap<Integer, Boolean> getExplicitFlips(String pass) {
@@ -1,8 +1,13 @@
 package net.coderbot.iris.shaderpack;
 
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.ints.IntAVLTreeSet;
+import it.unimi.dsi.fastutil.ints.IntSortedSet;
 import net.coderbot.iris.Iris;
 import net.coderbot.iris.gl.blending.BlendModeOverride;
 import net.coderbot.iris.shaderpack.include.AbsolutePackPath;
+import net.coderbot.iris.shaderpack.include.ShaderPackSourceIndex;
+import net.coderbot.iris.shaderpack.loading.ProgramArrayId;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -15,8 +20,8 @@ public class ProgramSet {
 
 	private final ProgramSource shadow;
 
-	private final ProgramSource[] shadowcomp;
-	private final ProgramSource[] prepare;
+	private final ImmutableList<ProgramSource> shadowcomp;
+	private final ImmutableList<ProgramSource> prepare;
 
 	private final ProgramSource gbuffersBasic;
 	private final ProgramSource gbuffersBeaconBeam;
@@ -35,18 +40,18 @@ public class ProgramSet {
 	private final ProgramSource gbuffersBlock;
 	private final ProgramSource gbuffersHand;
 
-	private final ProgramSource[] deferred;
+	private final ImmutableList<ProgramSource> deferred;
 
 	private final ProgramSource gbuffersWater;
 	private final ProgramSource gbuffersHandWater;
 
-	private final ProgramSource[] composite;
+	private final ImmutableList<ProgramSource> composite;
 	private final ProgramSource compositeFinal;
 
 	private final ShaderPack pack;
 
 	public ProgramSet(AbsolutePackPath directory, Function<AbsolutePackPath, String> sourceProvider,
-					  ShaderProperties shaderProperties, ShaderPack pack) {
+					  ShaderPackSourceIndex sourceIndex, ShaderProperties shaderProperties, ShaderPack pack) {
 		this.packDirectives = new PackDirectives(PackRenderTargetDirectives.BASELINE_SUPPORTED_RENDER_TARGETS, shaderProperties);
 		this.pack = pack;
 
@@ -63,8 +68,10 @@ public class ProgramSet {
 		this.shadow = readProgramSource(directory, sourceProvider, "shadow", this, shaderProperties,
 				BlendModeOverride.OFF);
 
-		this.shadowcomp = readProgramArray(directory, sourceProvider, "shadowcomp", shaderProperties);
-		this.prepare = readProgramArray(directory, sourceProvider, "prepare", shaderProperties);
+		this.shadowcomp = readProgramArray(directory, sourceProvider, sourceIndex, ProgramArrayId.ShadowComposite,
+				shaderProperties);
+		this.prepare = readProgramArray(directory, sourceProvider, sourceIndex, ProgramArrayId.Prepare,
+				shaderProperties);
 
 		this.gbuffersBasic = readProgramSource(directory, sourceProvider, "gbuffers_basic", this, shaderProperties);
 		this.gbuffersBeaconBeam = readProgramSource(directory, sourceProvider, "gbuffers_beaconbeam", this, shaderProperties);
@@ -83,12 +90,14 @@ public class ProgramSet {
 		this.gbuffersBlock = readProgramSource(directory, sourceProvider, "gbuffers_block", this, shaderProperties);
 		this.gbuffersHand = readProgramSource(directory, sourceProvider, "gbuffers_hand", this, shaderProperties);
 
-		this.deferred = readProgramArray(directory, sourceProvider, "deferred", shaderProperties);
+		this.deferred = readProgramArray(directory, sourceProvider, sourceIndex, ProgramArrayId.Deferred,
+				shaderProperties);
 
 		this.gbuffersWater = readProgramSource(directory, sourceProvider, "gbuffers_water", this, shaderProperties);
 		this.gbuffersHandWater = readProgramSource(directory, sourceProvider, "gbuffers_hand_water", this, shaderProperties);
 
-		this.composite = readProgramArray(directory, sourceProvider, "composite", shaderProperties);
+		this.composite = readProgramArray(directory, sourceProvider, sourceIndex, ProgramArrayId.Composite,
+				shaderProperties);
 		this.compositeFinal = readProgramSource(directory, sourceProvider, "final", this, shaderProperties);
 
 		locateDirectives();
@@ -115,26 +124,86 @@ public class ProgramSet {
 		return Optional.empty();
 	}
 
-	private ProgramSource[] readProgramArray(AbsolutePackPath directory,
-											 Function<AbsolutePackPath, String> sourceProvider, String name,
-											 ShaderProperties shaderProperties) {
-		ProgramSource[] programs = new ProgramSource[99];
+	/**
+	 * Reads the programs of a program array, such as composite, composite1, composite2, etc. Only the programs that
+	 * actually have source files present in the directory are read, so this doesn't depend on how many programs a
+	 * pack could potentially define.
+	 *
+	 * @return the present programs, sorted by their pass index
+	 */
+	private ImmutableList<ProgramSource> readProgramArray(AbsolutePackPath directory,
+														  Function<AbsolutePackPath, String> sourceProvider,
+														  ShaderPackSourceIndex sourceIndex, ProgramArrayId arrayId,
+														  ShaderProperties shaderProperties) {
+		String name = arrayId.getSourcePrefix();
+		IntSortedSet passIndices = new IntAVLTreeSet();
+
+		for (String fileName : sourceIndex.getPresentSources(directory)) {
+			int passIndex = parsePassIndex(fileName, name, arrayId.getNumPrograms());
+
+			if (passIndex != -1) {
+				passIndices.add(passIndex);
+			}
+		}
+
+		ImmutableList.Builder<ProgramSource> programs = ImmutableList.builder();
+
+		for (int passIndex : passIndices) {
+			String suffix = passIndex == 0 ? "" : Integer.toString(passIndex);
+
+			programs.add(readProgramSource(directory, sourceProvider, name + suffix, this, shaderProperties));
+		}
+
+		return programs.build();
+	}
+
+	/**
+	 * Finds the pass index of a program source file name within a program array, such as 3 for composite3.fsh.
+	 *
+	 * @return the pass index, or -1 if the file is not a vertex, geometry, or fragment shader in the array
+	 */
+	private static int parsePassIndex(String fileName, String name, int numPrograms) {
+		if (!fileName.startsWith(name)
+				|| !(fileName.endsWith(".vsh") || fileName.endsWith(".gsh") || fileName.endsWith(".fsh"))) {
+			return -1;
+		}
 
-		for (int i = 0; i < programs.length; i++) {
-			String suffix = i == 0 ? "" : Integer.toString(i);
+		String suffix = fileName.substring(name.length(), fileName.length() - ".vsh".length());
 
-			programs[i] = readProgramSource(directory, sourceProvider, name + suffix, this, shaderProperties);
+		if (suffix.isEmpty()) {
+			return 0;
+		}
+
+		// NB: Only the canonical form of each index is accepted, so composite01 is not the same as composite1.
+		if (suffix.charAt(0) == '0') {
+			return -1;
+		}
+
+		int passIndex = 0;
+
+		for (int i = 0; i < suffix.length(); i++) {
+			char c = suffix.charAt(i);
+
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+
+			passIndex = passIndex * 10 + (c - '0');
+
+			if (passIndex >= numPrograms) {
+				return -1;
+			}
 		}
 
-		return programs;
+		return passIndex;
 	}
 
 	private void locateDirectives() {
 		List<ProgramSource> programs = new ArrayList<>();
 
 		programs.add(shadow);
-		programs.addAll(Arrays.asList(shadowcomp));
-		programs.addAll(Arrays.asList(prepare));
+		programs.addAll(shadowcomp);
+		programs.addAll(prepare);
 
 		programs.addAll (Arrays.asList(
 				gbuffersBasic, gbuffersBeaconBeam, gbuffersTextured, gbuffersTexturedLit, gbuffersTerrain,
@@ -143,10 +212,10 @@ public class ProgramSet {
 				gbuffersHand
 		));
 
-		programs.addAll(Arrays.asList(deferred));
+		programs.addAll(deferred);
 		programs.add(gbuffersWater);
 		programs.add(gbuffersHandWater);
-		programs.addAll(Arrays.asList(composite));
+		programs.addAll(composite);
 		programs.add(compositeFinal);
 
 		DispatchingDirectiveHolder packDirectiveHolder = new DispatchingDirectiveHolder();
@@ -174,11 +243,11 @@ public class ProgramSet {
 		return shadow.requireValid();
 	}
 
-	public ProgramSource[] getShadowComposite() {
+	public ImmutableList<ProgramSource> getShadowComposite() {
 		return shadowcomp;
 	}
 
-	public ProgramSource[] getPrepare() {
+	public ImmutableList<ProgramSource> getPrepare() {
 		return prepare;
 	}
 
@@ -246,7 +315,7 @@ public class ProgramSet {
 		return gbuffersHand.requireValid();
 	}
 
-	public ProgramSource[] getDeferred() {
+	public ImmutableList<ProgramSource> getDeferred() {
 		return deferred;
 	}
 
@@ -258,7 +327,7 @@ public class ProgramSet {
 		return gbuffersHandWater.requireValid();
 	}
 
-	public ProgramSource[] getComposite() {
+	public ImmutableList<ProgramSource> getComposite() {
 		return composite;
 	}
 
@@ -9,29 +9,34 @@ import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import net.coderbot.iris.Iris;
 import net.coderbot.iris.gl.program.ProgramBuilder;
-import net.coderbot.iris.gl.shader.GlShader;
 import net.coderbot.iris.gl.shader.ShaderConstants;
 import net.coderbot.iris.shaderpack.include.AbsolutePackPath;
 import net.coderbot.iris.shaderpack.include.IncludeGraph;
 import net.coderbot.iris.shaderpack.include.IncludeProcessor;
+import net.coderbot.iris.shaderpack.include.IncludedSource;
+import net.coderbot.iris.shaderpack.include.ShaderPackSourceIndex;
 import net.coderbot.iris.shaderpack.include.ShaderPackSourceNames;
+import net.coderbot.iris.shaderpack.loading.LoadProgress;
+import net.coderbot.iris.shaderpack.loading.PackSource;
+import net.coderbot.iris.shaderpack.loading.PreprocessedSourceCache;
+import net.coderbot.iris.shaderpack.loading.StageTimings;
 import net.coderbot.iris.shaderpack.option.ProfileSet;
 import net.coderbot.iris.shaderpack.option.ShaderPackOptions;
 import net.coderbot.iris.shaderpack.option.menu.OptionMenuContainer;
 import net.coderbot.iris.shaderpack.option.values.MutableOptionValues;
 import net.coderbot.iris.shaderpack.option.values.OptionValues;
-import net.coderbot.iris.shaderpack.preprocessor.JcppProcessor;
+import net.coderbot.iris.shaderpack.preprocessor.GlslPreprocessor;
+import net.coderbot.iris.shaderpack.preprocessor.MacroTable;
 import net.coderbot.iris.shaderpack.texture.CustomTextureData;
 import net.coderbot.iris.shaderpack.texture.TextureFilteringData;
 import net.coderbot.iris.shaderpack.texture.TextureStage;
-import net.coderbot.iris.shaderpack.transform.line.LineTransform;
 import net.coderbot.iris.shaderpack.transform.line.VersionDirectiveNormalizer;
 import org.apache.logging.log4j.Level;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
@@ -44,9 +49,12 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class ShaderPack {
 	private static final Gson GSON = new Gson();
+	// The number of stages timed by the constructor, used to report loading progress
+	private static final int LOAD_STAGES = 9;
 
 	private final ProgramSet base;
 	@Nullable
@@ -63,6 +71,7 @@ public class ShaderPack {
 
 	private final ProfileSet.ProfileResult profile;
 	private final String profileInfo;
+	private final StageTimings loadTimings;
 
 	public ShaderPack(Path root) throws IOException {
 		this(root, Collections.emptyMap());
@@ -77,27 +86,59 @@ public class ShaderPack {
 	 * @throws IOException if there are any IO errors during shader pack loading.
 	 */
 	public ShaderPack(Path root, Map<String, String> changedConfigs) throws IOException {
+		this(root, changedConfigs, null);
+	}
+
+	/**
+	 * Reads a shader pack from the disk, reusing previously preprocessed program sources from the given cache where
+	 * possible.
+	 *
+	 * @param sourceCache The persistent cache of preprocessed sources, or null to always run the full preprocessor.
+	 * @see #ShaderPack(Path, Map)
+	 */
+	public ShaderPack(Path root, Map<String, String> changedConfigs, @Nullable PreprocessedSourceCache sourceCache)
+		throws IOException {
+		this(root, changedConfigs, sourceCache, PackSource.FILES, null);
+	}
+
+	/**
+	 * Reads a shader pack, reading the contents of all files through the given pack source.
+	 *
+	 * <p>This does not need to be called on the render thread, as long as {@link ProgramBuilder#MACRO_CONSTANTS} has
+	 * already been initialized on the render thread.</p>
+	 *
+	 * @param packSource The pack source used to read files within the shader pack, such as a {@link
+	 *                   net.coderbot.iris.shaderpack.loading.ZipPackSource} for zipped shader packs.
+	 * @param progress If not null, loading progress is reported to this tracker, and loading is aborted with a
+	 *                 {@link java.util.concurrent.CancellationException} once it is cancelled.
+	 * @see #ShaderPack(Path, Map, PreprocessedSourceCache)
+	 */
+	public ShaderPack(Path root, Map<String, String> changedConfigs, @Nullable PreprocessedSourceCache sourceCache,
+					  PackSource packSource, @Nullable LoadProgress progress) throws IOException {
 		// A null path is not allowed.
 		Objects.requireNonNull(root);
+		Objects.requireNonNull(packSource);
 
+		if (progress != null) {
+			progress.expectStages(LOAD_STAGES);
+		}
 
-		ImmutableList.Builder<AbsolutePackPath> starts = ImmutableList.builder();
-		ImmutableList<String> potentialFileNames = ShaderPackSourceNames.POTENTIAL_STARTS;
-
-		ShaderPackSourceNames.findPresentSources(starts, root, AbsolutePackPath.fromAbsolutePath("/"),
-				potentialFileNames);
+		StageTimings timings = new StageTimings(progress);
+		timings.begin("discovery");
 
-		boolean hasWorld0 = ShaderPackSourceNames.findPresentSources(starts, root,
-				AbsolutePackPath.fromAbsolutePath("/world0"), potentialFileNames);
+		AbsolutePackPath baseDirectory = AbsolutePackPath.fromAbsolutePath("/");
+		AbsolutePackPath overworldDirectory = AbsolutePackPath.fromAbsolutePath("/world0");
+		AbsolutePackPath netherDirectory = AbsolutePackPath.fromAbsolutePath("/world-1");
+		AbsolutePackPath endDirectory = AbsolutePackPath.fromAbsolutePath("/world1");
 
-		boolean hasNether = ShaderPackSourceNames.findPresentSources(starts, root,
-				AbsolutePackPath.fromAbsolutePath("/world-1"), potentialFileNames);
+		ShaderPackSourceIndex sourceIndex = ShaderPackSourceNames.indexPresentSources(root,
+				ImmutableList.of(baseDirectory, overworldDirectory, netherDirectory, endDirectory));
 
-		boolean hasEnd = ShaderPackSourceNames.findPresentSources(starts, root,
-				AbsolutePackPath.fromAbsolutePath("/world1"), potentialFileNames);
+		ImmutableList<AbsolutePackPath> startPaths = sourceIndex.getStarts();
 
 		// Read all files and included files recursively
-		IncludeGraph graph = new IncludeGraph(root, starts.build());
+		timings.begin("include graph");
+		IncludeGraph graph = new IncludeGraph(root, startPaths, packSource);
 
 		if (!graph.getFailures().isEmpty()) {
 			graph.getFailures().forEach((path, error) -> {
@@ -107,13 +148,16 @@ public class ShaderPack {
 			throw new IOException("Failed to resolve some #include directives, see previous messages for details");
 		}
 
-		this.languageMap = new LanguageMap(root.resolve("lang"));
+		timings.begin("language map");
+		this.languageMap = new LanguageMap(root.resolve("lang"), packSource);
 
 		// Discover, merge, and apply shader pack options
+		timings.begin("options");
 		this.shaderPackOptions = new ShaderPackOptions(graph, changedConfigs);
 		graph = this.shaderPackOptions.getIncludes();
 
-		ShaderProperties shaderProperties = loadProperties(root, "shaders.properties")
+		timings.begin("properties");
+		ShaderProperties shaderProperties = loadProperties(root, "shaders.properties", packSource)
 				.map(source -> new ShaderProperties(source, shaderPackOptions))
 				.orElseGet(ShaderProperties::empty);
 
@@ -141,59 +185,67 @@ public class ShaderPack {
 		// Prepare our include processor
 		IncludeProcessor includeProcessor = new IncludeProcessor(graph);
 
-		// Set up our source provider for creating ProgramSets
-		Function<AbsolutePackPath, String> sourceProvider = (path) -> {
-			String pathString = path.getPathString();
-			// Removes the first "/" in the path if present, and the file
-			// extension in order to represent the path as its program name
-			String programString = pathString.substring(pathString.indexOf("/") == 0 ? 1 : 0, pathString.lastIndexOf("."));
-
-			// Return an empty program source if the program is disabled by the current profile
-			if (disabledPrograms.contains(programString)) {
-				return null;
-			}
+		// NB: MACRO_CONSTANTS queries the GL context when it is first initialized, so it must be accessed here rather
+		//     than from one of the worker threads below. If this isn't the render thread, Iris will have already
+		//     initialized it before starting the load.
+		ShaderConstants constants = ProgramBuilder.MACRO_CONSTANTS;
 
-			ImmutableList<String> lines = includeProcessor.getIncludedFile(path);
+		// Parse the constants once instead of reparsing them from the source of every program.
+		MacroTable macroConstants = MacroTable.fromConstants(constants);
 
-			if (lines == null) {
-				return null;
-			}
+		PreprocessedSourceCache.Session cacheSession = sourceCache == null ? null
+				: sourceCache.begin(graph, this.shaderPackOptions.getOptionValues(), constants);
 
-			// Normalize version directives.
-			lines = LineTransform.apply(lines, VersionDirectiveNormalizer.INSTANCE);
+		// Preprocess every program source file up front. Each file is processed independently of every other file,
+		// so this work is spread across the common fork-join pool instead of running serially on the calling thread.
+		timings.begin("preprocess");
 
-			StringBuilder builder = new StringBuilder();
+		List<AbsolutePackPath> programPaths = startPaths.stream()
+				.filter(path -> !isDisabled(path, disabledPrograms))
+				.filter(path -> !path.getPathString().endsWith(".csh"))
+				.collect(Collectors.toList());
 
-			for (String line : lines) {
-				builder.append(line);
-				builder.append('\n');
-			}
+		List<String> processedSources = programPaths.parallelStream()
+				.map(path -> {
+					if (progress != null) {
+						progress.checkCancelled();
+					}
+
+					if (cacheSession == null) {
+						return preprocessSource(includeProcessor, macroConstants, path);
+					}
+
+					return cacheSession.process(path, () -> preprocessSource(includeProcessor, macroConstants, path));
+				})
+				.collect(Collectors.toList());
 
-			// Apply shader environment defines / constants
-			// TODO: Write our own code pathways for this
-			ShaderConstants constants = ProgramBuilder.MACRO_CONSTANTS;
-			String source = GlShader.processShader(builder.toString(), constants);
+		Map<AbsolutePackPath, String> processed = new HashMap<>();
 
-			// Apply GLSL preprocessor to source
-			source = JcppProcessor.glslPreprocessSource(source);
+		for (int i = 0; i < programPaths.size(); i++) {
+			String source = processedSources.get(i);
 
-			return source;
-		};
+			if (source != null) {
+				processed.put(programPaths.get(i), source);
+			}
+		}
+
+		// Set up our source provider for creating ProgramSets
+		Function<AbsolutePackPath, String> sourceProvider = processed::get;
 
-		this.base = new ProgramSet(AbsolutePackPath.fromAbsolutePath("/"), sourceProvider, shaderProperties, this);
+		timings.begin("program sets");
+		this.base = new ProgramSet(baseDirectory, sourceProvider, sourceIndex, shaderProperties, this);
 
-		this.overworld = loadOverrides(hasWorld0, AbsolutePackPath.fromAbsolutePath("/world0"), sourceProvider,
-				shaderProperties, this);
-		this.nether = loadOverrides(hasNether, AbsolutePackPath.fromAbsolutePath("/world-1"), sourceProvider,
-				shaderProperties, this);
-		this.end = loadOverrides(hasEnd, AbsolutePackPath.fromAbsolutePath("/world1"), sourceProvider,
-				shaderProperties, this);
+		this.overworld = loadOverrides(overworldDirectory, sourceProvider, sourceIndex, shaderProperties, this);
+		this.nether = loadOverrides(netherDirectory, sourceProvider, sourceIndex, shaderProperties, this);
+		this.end = loadOverrides(endDirectory, sourceProvider, sourceIndex, shaderProperties, this);
 
-		this.idMap = new IdMap(root, shaderPackOptions);
+		timings.begin("id maps");
+		this.idMap = new IdMap(root, shaderPackOptions, packSource);
 
+		timings.begin("textures");
 		customNoiseTexture = shaderProperties.getNoiseTexturePath().map(path -> {
 			try {
-				return readTexture(root, path);
+				return readTexture(packSource, root, path);
 			} catch (IOException e) {
 				Iris.logger.error("Unable to read the custom noise texture at " + path, e);
 
@@ -205,7 +257,7 @@ public class ShaderPack {
 			Object2ObjectMap<String, CustomTextureData> innerCustomTextureDataMap = new Object2ObjectOpenHashMap<>();
 			customTexturePropertiesMap.forEach((samplerName, path) -> {
 				try {
-					innerCustomTextureDataMap.put(samplerName, readTexture(root, path));
+					innerCustomTextureDataMap.put(samplerName, readTexture(packSource, root, path));
 				} catch (IOException e) {
 					Iris.logger.error("Unable to read the custom texture at " + path, e);
 				}
@@ -213,6 +265,41 @@ public class ShaderPack {
 
 			customTextureDataMap.put(textureStage, innerCustomTextureDataMap);
 		});
+
+		timings.end();
+
+		this.loadTimings = timings;
+
+		Iris.logger.info("Loaded shader pack sources in " + timings + ", preprocessed " + processed.size()
+				+ " program source files" + (cacheSession == null ? "" : " (source cache: " + cacheSession + ")"));
+	}
+
+	private static boolean isDisabled(AbsolutePackPath path, List<String> disabledPrograms) {
+		String pathString = path.getPathString();
+		// Removes the first "/" in the path if present, and the file
+		// extension in order to represent the path as its program name
+		String programString = pathString.substring(pathString.indexOf("/") == 0 ? 1 : 0, pathString.lastIndexOf("."));
+
+		return disabledPrograms.contains(programString);
+	}
+
+	/**
+	 * Runs the include, normalization, and preprocessing steps on a single program source file. This is called from
+	 * multiple threads at once, so it must not touch any mutable state other than the thread-safe include processor.
+	 */
+	private static String preprocessSource(IncludeProcessor includeProcessor, MacroTable constants,
+										   AbsolutePackPath path) {
+		IncludedSource included = includeProcessor.getIncludedSource(path);
+
+		if (included == null) {
+			return null;
+		}
+
+		// Flatten the included source into a single string, normalizing version directives along the way.
+		String source = included.flatten(VersionDirectiveNormalizer.INSTANCE);
+
+		// Apply GLSL preprocessor to source, defining the shader environment constants right after the #version line
+		return GlslPreprocessor.process(source, constants);
 	}
 
 	private String getCurrentProfileName() {
@@ -223,19 +310,27 @@ public class ShaderPack {
 		return profileInfo;
 	}
 
+	/**
+	 * @return a breakdown of how long each stage of loading this shader pack took
+	 */
+	public StageTimings getLoadTimings() {
+		return loadTimings;
+	}
+
 	@Nullable
-	private static ProgramSet loadOverrides(boolean has, AbsolutePackPath path, Function<AbsolutePackPath, String> sourceProvider,
-											ShaderProperties shaderProperties, ShaderPack pack) {
-		if (has) {
-			return new ProgramSet(path, sourceProvider, shaderProperties, pack);
+	private static ProgramSet loadOverrides(AbsolutePackPath path, Function<AbsolutePackPath, String> sourceProvider,
+											ShaderPackSourceIndex sourceIndex, ShaderProperties shaderProperties,
+											ShaderPack pack) {
+		if (sourceIndex.hasSources(path)) {
+			return new ProgramSet(path, sourceProvider, sourceIndex, shaderProperties, pack);
 		}
 
 		return null;
 	}
 
 	// TODO: Copy-paste from IdMap, find a way to deduplicate this
-	private static Optional<String> loadProperties(Path shaderPath, String name) {
-		String fileContents = readProperties(shaderPath, name);
+	private static Optional<String> loadProperties(Path shaderPath, String name, PackSource source) {
+		String fileContents = readProperties(shaderPath, name, source);
 		if (fileContents == null) {
 			return Optional.empty();
 		}
@@ -244,7 +339,7 @@ public class ShaderPack {
 	}
 
 	// TODO: Implement raw texture data types
-	public CustomTextureData readTexture(Path root, String path) throws IOException {
+	public CustomTextureData readTexture(PackSource source, Path root, String path) throws IOException {
 		CustomTextureData customTextureData;
 		if (path.contains(":")) {
 			String[] parts = path.split(":");
@@ -268,7 +363,7 @@ public class ShaderPack {
 			String mcMetaPath = path + ".mcmeta";
 			Path mcMetaResolvedPath = root.resolve(mcMetaPath);
 			if (Files.exists(mcMetaResolvedPath)) {
-				JsonObject meta = loadMcMeta(mcMetaResolvedPath);
+				JsonObject meta = loadMcMeta(source, mcMetaResolvedPath);
 				if (meta.get("texture") != null) {
 					if (meta.get("texture").getAsJsonObject().get("blur") != null) {
 						blur = meta.get("texture").getAsJsonObject().get("blur").getAsBoolean();
@@ -279,25 +374,25 @@ public class ShaderPack {
 				}
 			}
 
-			byte[] content = Files.readAllBytes(root.resolve(path));
+			// NB: Zipped shader packs hand out direct buffers here, which can be passed to NativeImage without a copy.
+			ByteBuffer content = source.read(root.resolve(path));
 
 			customTextureData = new CustomTextureData.PngData(new TextureFilteringData(blur, clamp), content);
 		}
 		return customTextureData;
 	}
 
-	private JsonObject loadMcMeta(Path mcMetaPath) throws IOException, JsonParseException {
-		BufferedReader reader =
-				new BufferedReader(new InputStreamReader(Files.newInputStream(mcMetaPath), StandardCharsets.UTF_8));
+	private JsonObject loadMcMeta(PackSource source, Path mcMetaPath) throws IOException, JsonParseException {
+		StringReader reader = new StringReader(source.readString(mcMetaPath, StandardCharsets.UTF_8));
 
 		JsonReader jsonReader = new JsonReader(reader);
 		return GSON.getAdapter(JsonObject.class).read(jsonReader);
 	}
 
-	private static String readProperties(Path shaderPath, String name) {
+	private static String readProperties(Path shaderPath, String name, PackSource source) {
 		try {
 			// Property files should be encoded in ISO_8859_1.
-			return new String(Files.readAllBytes(shaderPath.resolve(name)), StandardCharsets.ISO_8859_1);
+			return source.readString(shaderPath.resolve(name), StandardCharsets.ISO_8859_1);
 		} catch (NoSuchFileException e) {
 			Iris.logger.debug("An " + name + " file was not found in the current shaderpack");
 
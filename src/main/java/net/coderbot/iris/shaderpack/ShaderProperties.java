@@ -17,6 +17,8 @@ import net.coderbot.iris.gl.blending.BlendModeOverride;
 import net.coderbot.iris.shaderpack.option.ShaderPackOptions;
 import net.coderbot.iris.shaderpack.preprocessor.PropertiesPreprocessor;
 import net.coderbot.iris.shaderpack.texture.TextureStage;
+import net.coderbot.iris.uniforms.custom.CustomUniformDefinition;
+import net.coderbot.iris.uniforms.custom.CustomUniformType;
 import org.apache.logging.log4j.Level;
 
 import java.io.IOException;
@@ -60,7 +62,7 @@ public class ShaderProperties {
 	private Integer mainScreenColumnCount = null;
 	private final Map<String, Integer> subScreenColumnCount = new HashMap<>();
 	// TODO: private Map<String, String> optifineVersionRequirements;
-	// TODO: Parse custom uniforms / variables
+	private final List<CustomUniformDefinition> customUniforms = new ArrayList<>();
 	private final Object2ObjectMap<String, AlphaTestOverride> alphaTestOverrides = new Object2ObjectOpenHashMap<>();
 	private final Object2FloatMap<String> viewportScaleOverrides = new Object2FloatOpenHashMap<>();
 	private final Object2ObjectMap<String, BlendModeOverride> blendModeOverrides = new Object2ObjectOpenHashMap<>();
@@ -122,7 +124,9 @@ public class ShaderProperties {
 			handleBooleanDirective(key, value, "particles.before.deferred", bool -> particlesBeforeDeferred = bool);
 
 			// TODO: Min optifine versions, shader options layout / appearance / profiles
-			// TODO: Custom uniforms
+
+			handleTwoArgDirective("uniform.", key, value, (type, name) -> addCustomUniform(key, type, name, value, true));
+			handleTwoArgDirective("variable.", key, value, (type, name) -> addCustomUniform(key, type, name, value, false));
 
 			handlePassDirective("scale.", key, value, pass -> {
 				float scale;
@@ -253,6 +257,17 @@ public class ShaderProperties {
 		});
 	}
 
+	private void addCustomUniform(String key, String typeName, String name, String expression, boolean uniform) {
+		Optional<CustomUniformType> type = CustomUniformType.fromName(typeName);
+
+		if (!type.isPresent()) {
+			Iris.logger.warn("Unknown type " + typeName + ", ignoring custom uniform directive for " + key);
+			return;
+		}
+
+		customUniforms.add(new CustomUniformDefinition(type.get(), name, expression, uniform));
+	}
+
 	private static void handleBooleanValue(String key, String value, BooleanConsumer handler) {
 		if ("true".equals(value)) {
 			handler.accept(true);
@@ -348,6 +363,12 @@ public class ShaderProperties {
 	private static void handleTwoArgDirective(String prefix, String key, String value, BiConsumer<String, String> handler) {
 		if (key.startsWith(prefix)) {
 			int endOfPassIndex = key.indexOf(".", prefix.length());
+
+			if (endOfPassIndex == -1) {
+				Iris.logger.warn("Missing a part in the key of directive " + key + ", ignoring it");
+				return;
+			}
+
 			String stage = key.substring(prefix.length(), endOfPassIndex);
 			String sampler = key.substring(endOfPassIndex + 1);
 
@@ -494,4 +515,8 @@ public class ShaderProperties {
 	public Object2ObjectMap<String, Object2BooleanMap<String>> getExplicitFlips() {
 		return explicitFlips;
 	}
+
+	public List<CustomUniformDefinition> getCustomUniforms() {
+		return customUniforms;
+	}
 }
@@ -4,11 +4,11 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import net.coderbot.iris.Iris;
 import net.coderbot.iris.shaderpack.error.RusticError;
+import net.coderbot.iris.shaderpack.loading.PackSource;
 import net.coderbot.iris.shaderpack.transform.line.LineTransform;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * A directed graph data structure that holds the loaded source of all shader programs
@@ -66,6 +67,10 @@ public class IncludeGraph {
 	}
 
 	public IncludeGraph(Path root, ImmutableList<AbsolutePackPath> startingPaths) {
+		this(root, startingPaths, PackSource.FILES);
+	}
+
+	public IncludeGraph(Path root, ImmutableList<AbsolutePackPath> startingPaths, PackSource source) {
 		Map<AbsolutePackPath, AbsolutePackPath> cameFrom = new HashMap<>();
 		Map<AbsolutePackPath, Integer> lineNumberInclude = new HashMap<>();
 
@@ -75,14 +80,41 @@ public class IncludeGraph {
 		List<AbsolutePackPath> queue = new ArrayList<>(startingPaths);
 		Set<AbsolutePackPath> seen = new HashSet<>(startingPaths);
 
+		// Files that were read ahead of time, but haven't been taken off of the queue yet.
+		Map<AbsolutePackPath, ReadResult> readAhead = new HashMap<>();
+
 		while (!queue.isEmpty()) {
 			AbsolutePackPath next = queue.remove(queue.size() - 1);
+			ReadResult result = readAhead.remove(next);
+
+			if (result == null) {
+				// Read this file along with every other queued file that hasn't been read yet, spreading the I/O and
+				// line splitting across the common fork-join pool. Every queued file is taken off of the queue
+				// eventually, so none of these reads are wasted. The files are still merged into the graph one at a
+				// time in the order that they come off of the queue, so the traversal is the same as when reading
+				// them one by one.
+				List<AbsolutePackPath> batch = new ArrayList<>(queue.size() + 1);
+				batch.add(next);
+
+				for (AbsolutePackPath queued : queue) {
+					if (!readAhead.containsKey(queued)) {
+						batch.add(queued);
+					}
+				}
 
-			String source;
+				List<ReadResult> results = batch.parallelStream()
+					.map(path -> ReadResult.read(source, root, path))
+					.collect(Collectors.toList());
 
-			try {
-				source = readFile(next.resolved(root));
-			} catch (IOException e) {
+				for (int index = 1; index < batch.size(); index++) {
+					readAhead.put(batch.get(index), results.get(index));
+				}
+
+				result = results.get(0);
+			}
+
+			if (result.error != null) {
+				IOException e = result.error;
 				AbsolutePackPath src = cameFrom.get(next);
 
 				if (src == null) {
@@ -110,9 +142,8 @@ public class IncludeGraph {
 				continue;
 			}
 
-			ImmutableList<String> lines = ImmutableList.copyOf(source.split("\\R"));
-
-			FileNode node = new FileNode(next, lines);
+			FileNode node = result.node;
+			ImmutableList<String> lines = node.getLines();
 			boolean selfInclude = false;
 
 			for (Map.Entry<Integer, AbsolutePackPath> include : node.getIncludes().entrySet()) {
@@ -254,7 +285,34 @@ public class IncludeGraph {
 		return failures;
 	}
 
-	private static String readFile(Path path) throws IOException {
-		return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+	private static String readFile(PackSource source, Path path) throws IOException {
+		return source.readString(path, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * The outcome of reading and parsing a single file, which is either a parsed file node or an I/O error.
+	 */
+	private static final class ReadResult {
+		private final FileNode node;
+		private final IOException error;
+
+		private ReadResult(FileNode node, IOException error) {
+			this.node = node;
+			this.error = error;
+		}
+
+		private static ReadResult read(PackSource packSource, Path root, AbsolutePackPath path) {
+			String source;
+
+			try {
+				source = readFile(packSource, path.resolved(root));
+			} catch (IOException e) {
+				return new ReadResult(null, e);
+			}
+
+			ImmutableList<String> lines = ImmutableList.copyOf(source.split("\\R"));
+
+			return new ReadResult(new FileNode(path, lines), null);
+		}
 	}
 }
@@ -3,57 +3,68 @@ package net.coderbot.iris.shaderpack.include;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
-// TODO: Write tests for this code
 public class IncludeProcessor {
 	private final IncludeGraph graph;
-	private final Map<AbsolutePackPath, ImmutableList<String>> cache;
+	private final Map<AbsolutePackPath, IncludedSource> cache;
 
 	public IncludeProcessor(IncludeGraph graph) {
 		this.graph = graph;
-		this.cache = new HashMap<>();
+		// NB: This is accessed from multiple threads at once during shader pack loading.
+		this.cache = new ConcurrentHashMap<>();
 	}
 
 	// TODO: Actual error handling
 
-	public ImmutableList<String> getIncludedFile(AbsolutePackPath path) {
-		ImmutableList<String> lines = cache.get(path);
+	/**
+	 * Expands all #include directives in the given file. The returned source shares the expansions of included files
+	 * with every other file that includes them, so this is cheap to call for many files including the same headers.
+	 *
+	 * @return the expanded source, or null if the file is not part of the include graph
+	 */
+	public IncludedSource getIncludedSource(AbsolutePackPath path) {
+		IncludedSource source = cache.get(path);
 
-		if (lines == null) {
-			lines = process(path);
-			cache.put(path, lines);
+		if (source == null) {
+			source = process(path);
+
+			if (source == null) {
+				return null;
+			}
+
+			// NB: We can't use computeIfAbsent here since process() recursively modifies the cache. If two threads
+			//     race to process the same file, they'll compute identical results, so it doesn't matter which one wins.
+			IncludedSource existing = cache.putIfAbsent(path, source);
+
+			if (existing != null) {
+				source = existing;
+			}
 		}
 
-		return lines;
+		return source;
 	}
 
-	private ImmutableList<String> process(AbsolutePackPath path) {
+	private IncludedSource process(AbsolutePackPath path) {
 		FileNode fileNode = graph.getNodes().get(path);
 
 		if (fileNode == null) {
 			return null;
 		}
 
-		ImmutableList.Builder<String> builder = ImmutableList.builder();
-
 		ImmutableList<String> lines = fileNode.getLines();
 		ImmutableMap<Integer, AbsolutePackPath> includes = fileNode.getIncludes();
 
-		for (int i = 0; i < lines.size(); i++) {
-			AbsolutePackPath include = includes.get(i);
+		IncludedSource[] includedSources = new IncludedSource[lines.size()];
 
-			if (include != null) {
-				// TODO: Don't recurse like this, and check for cycles
-				// TODO: Better diagnostics
-				builder.addAll(Objects.requireNonNull(getIncludedFile(include)));
-			} else {
-				builder.add(lines.get(i));
-			}
+		for (Map.Entry<Integer, AbsolutePackPath> include : includes.entrySet()) {
+			// TODO: Don't recurse like this, and check for cycles
+			// TODO: Better diagnostics
+			includedSources[include.getKey()] = Objects.requireNonNull(getIncludedSource(include.getValue()));
 		}
 
-		return builder.build();
+		return new IncludedSource(fileNode, includedSources);
 	}
 }
@@ -0,0 +1,116 @@
+package net.coderbot.iris.shaderpack.include;
+
+import com.google.common.collect.ImmutableList;
+import net.coderbot.iris.shaderpack.transform.line.LineTransform;
+
+/**
+ * The source of a file with all of its #include directives expanded, represented as a tree of shared segments rather
+ * than as a flat list of lines.
+ *
+ * <p>Each included file is only ever expanded once and then referenced by every file that includes it. This matters
+ * since most shader packs have a large settings file that is included by nearly every program: expanding it into a
+ * fresh list of lines for every single program would copy it dozens of times over. The full source is only flattened
+ * into a single string once it actually needs to be handed off to the GLSL preprocessor or the driver.</p>
+ */
+public final class IncludedSource {
+	private final FileNode node;
+	// Indexed by line number, null for lines that aren't #include directives.
+	private final IncludedSource[] includes;
+	private final int lineCount;
+	private final int length;
+
+	IncludedSource(FileNode node, IncludedSource[] includes) {
+		ImmutableList<String> lines = node.getLines();
+
+		int lineCount = 0;
+		int length = 0;
+
+		for (int i = 0; i < lines.size(); i++) {
+			IncludedSource include = includes[i];
+
+			if (include != null) {
+				lineCount += include.lineCount;
+				length += include.length;
+			} else {
+				lineCount += 1;
+				// Each line is terminated by a newline.
+				length += lines.get(i).length() + 1;
+			}
+		}
+
+		this.node = node;
+		this.includes = includes;
+		this.lineCount = lineCount;
+		this.length = length;
+	}
+
+	/**
+	 * @return the number of lines in the fully expanded source
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @return the length of the fully expanded source in characters, including a newline after every line
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Flattens the expanded source into a single string, terminating every line with a newline.
+	 *
+	 * @param transform A transform applied to every line of the expanded source as it is flattened. The line indices
+	 *                  passed to the transform are relative to the start of the expanded source.
+	 */
+	public String flatten(LineTransform transform) {
+		StringBuilder builder = new StringBuilder(length);
+		appendTo(builder, transform, 0);
+
+		return builder.toString();
+	}
+
+	/**
+	 * Expands the source into a flat list of lines. Prefer {@link #flatten} where a string is needed, since this copies
+	 * every line reference of the expanded source.
+	 */
+	public ImmutableList<String> toLines() {
+		ImmutableList.Builder<String> builder = ImmutableList.builder();
+		addTo(builder);
+
+		return builder.build();
+	}
+
+	private int appendTo(StringBuilder builder, LineTransform transform, int index) {
+		ImmutableList<String> lines = node.getLines();
+
+		for (int i = 0; i < lines.size(); i++) {
+			IncludedSource include = includes[i];
+
+			if (include != null) {
+				index = include.appendTo(builder, transform, index);
+			} else {
+				builder.append(transform.transform(index, lines.get(i)));
+				builder.append('\n');
+				index += 1;
+			}
+		}
+
+		return index;
+	}
+
+	private void addTo(ImmutableList.Builder<String> builder) {
+		ImmutableList<String> lines = node.getLines();
+
+		for (int i = 0; i < lines.size(); i++) {
+			IncludedSource include = includes[i];
+
+			if (include != null) {
+				include.addTo(builder);
+			} else {
+				builder.add(lines.get(i));
+			}
+		}
+	}
+}
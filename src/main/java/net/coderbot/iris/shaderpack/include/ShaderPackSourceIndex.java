@@ -0,0 +1,46 @@
+package net.coderbot.iris.shaderpack.include;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+/**
+ * An index of the program source files that are present in each program directory of a shader pack, built by
+ * {@link ShaderPackSourceNames#indexPresentSources}. Consulting the index avoids probing the file system or the loaded
+ * sources for every program that a pack could potentially define.
+ */
+public class ShaderPackSourceIndex {
+	private final ImmutableMap<AbsolutePackPath, ImmutableList<String>> presentSources;
+
+	ShaderPackSourceIndex(ImmutableMap<AbsolutePackPath, ImmutableList<String>> presentSources) {
+		this.presentSources = presentSources;
+	}
+
+	/**
+	 * @return the file names of all program sources present in the given directory, in the same order as
+	 *         {@link ShaderPackSourceNames#POTENTIAL_STARTS}
+	 */
+	public ImmutableList<String> getPresentSources(AbsolutePackPath directory) {
+		return presentSources.getOrDefault(directory, ImmutableList.of());
+	}
+
+	public boolean hasSources(AbsolutePackPath directory) {
+		return !getPresentSources(directory).isEmpty();
+	}
+
+	/**
+	 * @return the paths of every program source file present in the pack, directory by directory
+	 */
+	public ImmutableList<AbsolutePackPath> getStarts() {
+		ImmutableList.Builder<AbsolutePackPath> starts = ImmutableList.builder();
+
+		for (Map.Entry<AbsolutePackPath, ImmutableList<String>> entry : presentSources.entrySet()) {
+			for (String fileName : entry.getValue()) {
+				starts.add(entry.getKey().resolve(fileName));
+			}
+		}
+
+		return starts.build();
+	}
+}
@@ -1,14 +1,19 @@
 package net.coderbot.iris.shaderpack.include;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import net.coderbot.iris.shaderpack.loading.ProgramArrayId;
 import net.coderbot.iris.shaderpack.loading.ProgramId;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Set;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Enumerates the possible program source file names to
@@ -16,30 +21,55 @@ import java.util.stream.Collectors;
 public class ShaderPackSourceNames {
 	public static final ImmutableList<String> POTENTIAL_STARTS = findPotentialStarts();
 
-	public static boolean findPresentSources(ImmutableList.Builder<AbsolutePackPath> starts, Path packRoot,
-										  AbsolutePackPath directory, ImmutableList<String> candidates) throws IOException {
+	private static final ImmutableMap<String, Integer> POTENTIAL_START_ORDER = indexPotentialStarts();
+
+	/**
+	 * Lists each of the given directories exactly once, recording which potential program source files are present.
+	 * Directories that do not exist are treated as if they were empty.
+	 */
+	public static ShaderPackSourceIndex indexPresentSources(Path packRoot, ImmutableList<AbsolutePackPath> directories)
+			throws IOException {
+		ImmutableMap.Builder<AbsolutePackPath, ImmutableList<String>> index = ImmutableMap.builder();
+
+		for (AbsolutePackPath directory : directories) {
+			index.put(directory, findPresentSources(packRoot, directory));
+		}
+
+		return new ShaderPackSourceIndex(index.build());
+	}
+
+	private static ImmutableList<String> findPresentSources(Path packRoot, AbsolutePackPath directory)
+			throws IOException {
 		Path directoryPath = directory.resolved(packRoot);
 
-		if (!Files.exists(directoryPath)) {
-			return false;
+		if (!Files.isDirectory(directoryPath)) {
+			return ImmutableList.of();
 		}
 
-		boolean anyFound = false;
+		List<String> found;
 
-		Set<String> found = Files.list(directoryPath)
-				.map(path -> path.getFileName().toString())
-				.collect(Collectors.toSet());
+		try (Stream<Path> files = Files.list(directoryPath)) {
+			found = files.map(path -> path.getFileName().toString())
+					.filter(POTENTIAL_START_ORDER::containsKey)
+					.collect(Collectors.toList());
+		}
 
-		for (String candidate : candidates) {
-			if (found.contains(candidate)) {
-				starts.add(directory.resolve(candidate));
-				anyFound = true;
-			}
+		// Keep the same order as POTENTIAL_STARTS regardless of the order that the file system lists files in.
+		found.sort(Comparator.comparing(POTENTIAL_START_ORDER::get));
+
+		return ImmutableList.copyOf(found);
+	}
+
+	private static ImmutableMap<String, Integer> indexPotentialStarts() {
+		Map<String, Integer> order = new HashMap<>();
+
+		for (String name : POTENTIAL_STARTS) {
+			order.putIfAbsent(name, order.size());
 		}
 
-		return anyFound;
+		return ImmutableMap.copyOf(order);
 	}
-	
+
 	private static ImmutableList<String> findPotentialStarts() {
 		ImmutableList.Builder<String> potentialFileNames = ImmutableList.builder();
 
@@ -0,0 +1,164 @@
+package net.coderbot.iris.shaderpack.loading;
+
+import net.coderbot.iris.Iris;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Runs shader pack loads on a background thread, handing the loaded result back to the render thread once it is
+ * ready. This allows the render thread to keep rendering with the current pipeline while a pack is loaded, and to only
+ * do the work that actually requires OpenGL once loading has finished.
+ *
+ * <p>Only one load is ever in flight: starting a new load cancels the previous one, and a superseded load is never
+ * applied, even if it has already finished. Apart from the constructor, all methods must be called from the render
+ * thread.</p>
+ */
+public class BackgroundPackLoader<T> {
+	private final Executor executor;
+	private final Consumer<T> discard;
+	private PendingLoad<T> pending;
+
+	/**
+	 * @param discard Releases any resources held by a loaded result that is never applied because its load was
+	 *                superseded. This may be called on any thread.
+	 */
+	public BackgroundPackLoader(Executor executor, Consumer<T> discard) {
+		this.executor = executor;
+		this.discard = discard;
+	}
+
+	/**
+	 * Creates an executor that runs loads one after another on a single daemon thread.
+	 */
+	public static ExecutorService createExecutor() {
+		return Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Iris Shader Pack Loader");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts loading in the background, cancelling any load that is still pending.
+	 *
+	 * @param apply Called on the render thread from {@link #poll()} with the result of the load once it has finished.
+	 * @return a future that completes on the render thread once the result has been applied, or completes
+	 *         exceptionally if loading failed or was cancelled.
+	 */
+	public CompletableFuture<T> submit(LoadTask<T> task, Consumer<T> apply) {
+		cancel();
+
+		LoadProgress progress = new LoadProgress();
+		CompletableFuture<T> loaded = CompletableFuture.supplyAsync(() -> task.load(progress), executor);
+
+		PendingLoad<T> load = new PendingLoad<>(progress, loaded, apply);
+		this.pending = load;
+
+		return load.applied;
+	}
+
+	/**
+	 * Runs a load on the calling thread and applies it immediately, cancelling any load that is still pending.
+	 */
+	public T loadNow(LoadTask<T> task, Consumer<T> apply) {
+		cancel();
+
+		T result = task.load(new LoadProgress());
+		apply.accept(result);
+
+		return result;
+	}
+
+	/**
+	 * Applies the pending load if it has finished. This should be called regularly from the render thread.
+	 */
+	public void poll() {
+		PendingLoad<T> load = this.pending;
+
+		if (load == null || !load.loaded.isDone()) {
+			return;
+		}
+
+		this.pending = null;
+
+		T result;
+
+		try {
+			result = load.loaded.join();
+		} catch (CompletionException | CancellationException e) {
+			load.applied.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+			return;
+		}
+
+		try {
+			load.apply.accept(result);
+		} catch (RuntimeException e) {
+			Iris.logger.error("Failed to apply a loaded shader pack", e);
+			load.applied.completeExceptionally(e);
+			return;
+		}
+
+		load.applied.complete(result);
+	}
+
+	/**
+	 * Cancels the pending load, if any. Its result will never be applied.
+	 */
+	public void cancel() {
+		PendingLoad<T> load = this.pending;
+
+		if (load == null) {
+			return;
+		}
+
+		this.pending = null;
+
+		load.progress.cancel();
+		load.applied.cancel(false);
+
+		// If the load manages to finish anyways, release whatever it holds on to.
+		load.loaded.thenAccept(discard);
+	}
+
+	/**
+	 * @return the progress of the pending load, if there is one
+	 */
+	public Optional<LoadProgress> getProgress() {
+		PendingLoad<T> load = this.pending;
+
+		return load == null ? Optional.empty() : Optional.of(load.progress);
+	}
+
+	@FunctionalInterface
+	public interface LoadTask<T> {
+		/**
+		 * Loads the shader pack. This is usually called on the loader thread, and should regularly report its progress
+		 * to, and check for cancellation through, the given progress tracker.
+		 *
+		 * @throws java.util.concurrent.CancellationException if the load was cancelled
+		 */
+		T load(LoadProgress progress);
+	}
+
+	private static final class PendingLoad<T> {
+		private final LoadProgress progress;
+		private final CompletableFuture<T> loaded;
+		private final Consumer<T> apply;
+		private final CompletableFuture<T> applied;
+
+		private PendingLoad(LoadProgress progress, CompletableFuture<T> loaded, Consumer<T> apply) {
+			this.progress = progress;
+			this.loaded = loaded;
+			this.apply = apply;
+			this.applied = new CompletableFuture<>();
+		}
+	}
+}
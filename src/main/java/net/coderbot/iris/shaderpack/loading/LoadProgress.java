@@ -0,0 +1,75 @@
+package net.coderbot.iris.shaderpack.loading;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Tracks the progress of a single shader pack load, which may be running on a background thread, and carries the
+ * request to cancel it once a newer load has superseded it.
+ *
+ * <p>Loading code reports progress by beginning stages, which is also where it checks for cancellation. The GUI reads
+ * the progress from the render thread.</p>
+ */
+public final class LoadProgress {
+	private volatile String stage;
+	private volatile int stagesBegun;
+	private volatile int expectedStages;
+	private volatile boolean cancelled;
+
+	/**
+	 * Sets how many stages the load is expected to go through in total, so that the progress can be reported as a
+	 * fraction.
+	 */
+	public void expectStages(int count) {
+		this.expectedStages = count;
+	}
+
+	/**
+	 * Marks the start of the next stage of loading.
+	 *
+	 * @throws CancellationException if the load has been cancelled
+	 */
+	public void beginStage(String stage) {
+		checkCancelled();
+
+		this.stage = stage;
+		this.stagesBegun++;
+	}
+
+	/**
+	 * @throws CancellationException if the load has been cancelled
+	 */
+	public void checkCancelled() {
+		if (cancelled) {
+			throw new CancellationException("The shader pack load was superseded by a newer one");
+		}
+	}
+
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return the name of the current stage, or null if no stage has begun yet
+	 */
+	public String getStage() {
+		return stage;
+	}
+
+	/**
+	 * @return an estimate of how much of the load has completed, from 0 to 1
+	 */
+	public float getFraction() {
+		int expected = expectedStages;
+
+		if (expected <= 0) {
+			return 0.0f;
+		}
+
+		// The current stage is still in progress, so it doesn't count as completed yet.
+		return Math.min(1.0f, Math.max(0, stagesBegun - 1) / (float) expected);
+	}
+}
@@ -0,0 +1,44 @@
+package net.coderbot.iris.shaderpack.loading;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Reads the contents of files within a shader pack. Paths are still used to navigate the shader pack, but all file
+ * contents are read through a pack source, which allows zipped shader packs to be read without going through the
+ * stream-based zip file system.
+ *
+ * <p>Implementations must be safe to use from multiple threads at once.</p>
+ */
+@FunctionalInterface
+public interface PackSource {
+	/**
+	 * Reads files directly through the file system that the paths belong to.
+	 */
+	PackSource FILES = path -> ByteBuffer.wrap(Files.readAllBytes(path));
+
+	/**
+	 * Reads the full contents of a file within the shader pack.
+	 *
+	 * @return a buffer holding the contents of the file between its position and its limit. The buffer may be a
+	 *         read-only view of data shared with other callers, and is a direct buffer if the contents could be
+	 *         provided without copying them onto the heap.
+	 * @throws NoSuchFileException if the file does not exist
+	 */
+	ByteBuffer read(Path path) throws IOException;
+
+	default String readString(Path path, Charset charset) throws IOException {
+		ByteBuffer contents = read(path);
+
+		if (contents.hasArray()) {
+			return new String(contents.array(), contents.arrayOffset() + contents.position(), contents.remaining(),
+				charset);
+		}
+
+		return charset.decode(contents).toString();
+	}
+}
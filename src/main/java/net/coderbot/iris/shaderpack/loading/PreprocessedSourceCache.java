@@ -0,0 +1,450 @@
+package net.coderbot.iris.shaderpack.loading;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import net.coderbot.iris.Iris;
+import net.coderbot.iris.gl.shader.ShaderConstants;
+import net.coderbot.iris.shaderpack.include.AbsolutePackPath;
+import net.coderbot.iris.shaderpack.include.FileNode;
+import net.coderbot.iris.shaderpack.include.IncludeGraph;
+import net.coderbot.iris.shaderpack.option.values.OptionValues;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A persistent on-disk cache of fully preprocessed program sources.
+ *
+ * <p>Each entry is keyed by a hash of everything that can influence the output of the preprocessing pipeline: the
+ * contents of the program source file and of every file it transitively includes, the applied option values, and the
+ * macro constants injected by {@link net.coderbot.iris.gl.program.ProgramBuilder#MACRO_CONSTANTS}. This means that
+ * entries never need to be explicitly invalidated - editing a file, changing an option, or switching GPU drivers simply
+ * results in a different key, and stale entries are eventually removed by the size / age based eviction.</p>
+ *
+ * <p>Every entry starts with a header line holding the length and hash of the source that follows it, so that entries
+ * which were truncated or otherwise damaged on disk are detected, deleted, and treated as a cache miss.</p>
+ *
+ * <p>Since a bug in the key computation would result in silently using outdated sources, the cache supports a
+ * verification mode that still runs the full pipeline on every cache hit and reports any differences.</p>
+ */
+public class PreprocessedSourceCache {
+	/**
+	 * Bump this whenever the preprocessing pipeline changes in a way that changes its output for the same input, so
+	 * that entries written by older versions are never used.
+	 */
+	private static final int FORMAT_VERSION = 3;
+	private static final String EXTENSION = ".glsl";
+	private static final String HEADER_MAGIC = "iris-preprocessed-source";
+
+	private static final long MAX_SIZE_BYTES = 64L * 1024 * 1024;
+	private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+	private final Path directory;
+	private final boolean verify;
+	private final long maxSizeBytes;
+	private final long maxAgeMillis;
+
+	public PreprocessedSourceCache(Path directory, boolean verify) {
+		this(directory, verify, MAX_SIZE_BYTES, MAX_AGE_MILLIS);
+	}
+
+	public PreprocessedSourceCache(Path directory, boolean verify, long maxSizeBytes, long maxAgeMillis) {
+		this.directory = directory;
+		this.verify = verify;
+		this.maxSizeBytes = maxSizeBytes;
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	/**
+	 * Starts using the cache for a single shader pack load. Old entries are evicted before the session is returned.
+	 *
+	 * @param graph The include graph with all options already applied.
+	 * @return the new session, or null if the cache directory is not usable
+	 */
+	@Nullable
+	public Session begin(IncludeGraph graph, OptionValues values, ShaderConstants constants) {
+		try {
+			Files.createDirectories(directory);
+			evict();
+		} catch (IOException e) {
+			Iris.logger.warn("Failed to prepare the preprocessed source cache at " + directory + ", it will not be used", e);
+
+			return null;
+		}
+
+		return new Session(graph, hashEnvironment(values, constants));
+	}
+
+	private static String hashEnvironment(OptionValues values, ShaderConstants constants) {
+		Hasher hasher = Hashing.sha256().newHasher();
+
+		hasher.putInt(FORMAT_VERSION);
+
+		// NB: The option maps are not guaranteed to be in any particular order, so sort them to get a stable hash.
+		Map<String, String> options = new TreeMap<>();
+
+		values.getOptionSet().getBooleanOptions().keySet().forEach(name ->
+			options.put(name, Boolean.toString(values.getBooleanValueOrDefault(name))));
+		values.getOptionSet().getStringOptions().keySet().forEach(name ->
+			options.put(name, values.getStringValueOrDefault(name)));
+
+		options.forEach((name, value) -> {
+			putString(hasher, name);
+			putString(hasher, value);
+		});
+
+		for (String define : constants.getDefineStrings()) {
+			putString(hasher, define);
+		}
+
+		return hasher.hash().toString();
+	}
+
+	private static void putString(Hasher hasher, String string) {
+		// Length-prefix every string so that different sequences of strings can't produce the same byte stream.
+		hasher.putInt(string.length());
+		hasher.putString(string, StandardCharsets.UTF_8);
+	}
+
+	private static byte[] encode(String source) {
+		byte[] contents = source.getBytes(StandardCharsets.UTF_8);
+		String header = HEADER_MAGIC + " " + FORMAT_VERSION + " " + contents.length + " "
+			+ Hashing.sha256().hashBytes(contents) + "\n";
+		byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+
+		byte[] encoded = new byte[headerBytes.length + contents.length];
+		System.arraycopy(headerBytes, 0, encoded, 0, headerBytes.length);
+		System.arraycopy(contents, 0, encoded, headerBytes.length, contents.length);
+
+		return encoded;
+	}
+
+	/**
+	 * Checks the header of a cache entry against the source that follows it.
+	 *
+	 * @return the cached source, or null if the entry is truncated, corrupt, or was written in a different format
+	 */
+	@Nullable
+	private static String decode(byte[] encoded) {
+		int headerEnd = -1;
+
+		for (int index = 0; index < encoded.length; index++) {
+			if (encoded[index] == '\n') {
+				headerEnd = index;
+				break;
+			}
+		}
+
+		if (headerEnd == -1) {
+			return null;
+		}
+
+		String[] header = new String(encoded, 0, headerEnd, StandardCharsets.UTF_8).split(" ");
+
+		if (header.length != 4 || !header[0].equals(HEADER_MAGIC) || !header[1].equals(Integer.toString(FORMAT_VERSION))) {
+			return null;
+		}
+
+		int length;
+
+		try {
+			length = Integer.parseInt(header[2]);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+
+		int start = headerEnd + 1;
+
+		if (length != encoded.length - start) {
+			return null;
+		}
+
+		if (!Hashing.sha256().hashBytes(encoded, start, length).toString().equals(header[3])) {
+			return null;
+		}
+
+		return new String(encoded, start, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Removes entries that haven't been used within the maximum age, and then removes the least recently used entries
+	 * until the total size of the cache is within the size limit.
+	 */
+	private void evict() throws IOException {
+		List<Path> entries;
+
+		try (Stream<Path> stream = Files.list(directory)) {
+			entries = stream.filter(path -> path.getFileName().toString().endsWith(EXTENSION)).collect(Collectors.toList());
+		}
+
+		long now = System.currentTimeMillis();
+		long totalSize = 0;
+		List<CachedEntry> remaining = new ArrayList<>();
+
+		for (Path entry : entries) {
+			try {
+				long lastUsed = Files.getLastModifiedTime(entry).toMillis();
+				long size = Files.size(entry);
+
+				if (now - lastUsed > maxAgeMillis) {
+					Files.deleteIfExists(entry);
+				} else {
+					remaining.add(new CachedEntry(entry, lastUsed, size));
+					totalSize += size;
+				}
+			} catch (NoSuchFileException e) {
+				// Removed by something else in the meantime, nothing to do.
+			}
+		}
+
+		if (totalSize <= maxSizeBytes) {
+			return;
+		}
+
+		remaining.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+
+		for (CachedEntry entry : remaining) {
+			if (totalSize <= maxSizeBytes) {
+				break;
+			}
+
+			Files.deleteIfExists(entry.path);
+			totalSize -= entry.size;
+		}
+	}
+
+	private static final class CachedEntry {
+		private final Path path;
+		private final long lastUsed;
+		private final long size;
+
+		private CachedEntry(Path path, long lastUsed, long size) {
+			this.path = path;
+			this.lastUsed = lastUsed;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * The cache state for a single shader pack load. Node hashes are memoized for the lifetime of the session, since
+	 * commonly included files such as settings files are shared by nearly every program.
+	 *
+	 * <p>This is safe to use from multiple threads at once.</p>
+	 */
+	public class Session {
+		private final IncludeGraph graph;
+		private final String environmentHash;
+		private final Map<AbsolutePackPath, String> nodeHashes;
+
+		private final AtomicInteger hits = new AtomicInteger();
+		private final AtomicInteger misses = new AtomicInteger();
+		private final AtomicInteger mismatches = new AtomicInteger();
+
+		private Session(IncludeGraph graph, String environmentHash) {
+			this.graph = graph;
+			this.environmentHash = environmentHash;
+			this.nodeHashes = new ConcurrentHashMap<>();
+		}
+
+		/**
+		 * Returns the preprocessed source of the given program, either from the cache, or by running the given
+		 * pipeline and storing its result.
+		 *
+		 * @param pipeline Runs the full preprocessing pipeline for this program. May return null if the program does
+		 *                 not exist.
+		 */
+		public String process(AbsolutePackPath path, Supplier<String> pipeline) {
+			String nodeHash = hashNode(path);
+
+			if (nodeHash == null) {
+				return pipeline.get();
+			}
+
+			String key = Hashing.sha256().newHasher()
+				.putString(environmentHash, StandardCharsets.UTF_8)
+				.putString(nodeHash, StandardCharsets.UTF_8)
+				.hash().toString();
+
+			Path entry = directory.resolve(key + EXTENSION);
+			String cached = read(entry);
+
+			if (cached == null) {
+				misses.incrementAndGet();
+
+				String source = pipeline.get();
+
+				if (source != null) {
+					write(entry, source);
+				}
+
+				return source;
+			}
+
+			hits.incrementAndGet();
+
+			if (verify) {
+				String expected = pipeline.get();
+
+				if (!cached.equals(expected)) {
+					mismatches.incrementAndGet();
+					reportMismatch(path, expected, cached);
+
+					if (expected != null) {
+						write(entry, expected);
+					}
+
+					return expected;
+				}
+			}
+
+			return cached;
+		}
+
+		/**
+		 * Computes a hash covering the contents of the given file and everything that it transitively includes. Since
+		 * the include graph is guaranteed to be acyclic at this point, the recursion always terminates.
+		 */
+		private String hashNode(AbsolutePackPath path) {
+			String hash = nodeHashes.get(path);
+
+			if (hash != null) {
+				return hash;
+			}
+
+			FileNode node = graph.getNodes().get(path);
+
+			if (node == null) {
+				return null;
+			}
+
+			Hasher hasher = Hashing.sha256().newHasher();
+			putString(hasher, path.getPathString());
+
+			List<String> lines = node.getLines();
+			hasher.putInt(lines.size());
+
+			for (int index = 0; index < lines.size(); index++) {
+				putString(hasher, lines.get(index));
+
+				AbsolutePackPath included = node.getIncludes().get(index);
+
+				if (included != null) {
+					String includedHash = hashNode(included);
+
+					if (includedHash == null) {
+						return null;
+					}
+
+					putString(hasher, includedHash);
+				}
+			}
+
+			hash = hasher.hash().toString();
+
+			// NB: computeIfAbsent can't be used here since this method is recursive.
+			String existing = nodeHashes.putIfAbsent(path, hash);
+
+			return existing != null ? existing : hash;
+		}
+
+		private String read(Path entry) {
+			try {
+				String source = decode(Files.readAllBytes(entry));
+
+				if (source == null) {
+					Iris.logger.warn("Discarding the corrupt preprocessed source cache entry at " + entry);
+					Files.deleteIfExists(entry);
+
+					return null;
+				}
+
+				// Mark the entry as recently used so that it is not evicted.
+				Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+
+				return source;
+			} catch (NoSuchFileException e) {
+				return null;
+			} catch (IOException e) {
+				Iris.logger.warn("Failed to read the cached preprocessed source at " + entry, e);
+
+				return null;
+			}
+		}
+
+		private void write(Path entry, String source) {
+			try {
+				// Write to a temporary file first, so that a crash or concurrent load never observes a partial entry.
+				Path temporary = Files.createTempFile(directory, "tmp", ".part");
+				Files.write(temporary, encode(source));
+				Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				Iris.logger.warn("Failed to write the preprocessed source cache entry at " + entry, e);
+			}
+		}
+
+		private void reportMismatch(AbsolutePackPath path, String expected, String cached) {
+			if (expected == null) {
+				Iris.logger.error("Preprocessed source cache verification failed for " + path.getPathString()
+					+ ": the cache contained an entry for a program that no longer exists");
+
+				return;
+			}
+
+			String[] expectedLines = expected.split("\n", -1);
+			String[] cachedLines = cached.split("\n", -1);
+			int line = 0;
+
+			while (line < expectedLines.length && line < cachedLines.length
+				&& expectedLines[line].equals(cachedLines[line])) {
+				line++;
+			}
+
+			String expectedLine = line < expectedLines.length ? expectedLines[line] : "<end of file>";
+			String cachedLine = line < cachedLines.length ? cachedLines[line] : "<end of file>";
+
+			Iris.logger.error("Preprocessed source cache verification failed for " + path.getPathString()
+				+ ": first difference on line " + (line + 1) + ", expected \"" + expectedLine + "\" but the cache had \""
+				+ cachedLine + "\"");
+		}
+
+		public int getHits() {
+			return hits.get();
+		}
+
+		public int getMisses() {
+			return misses.get();
+		}
+
+		public int getMismatches() {
+			return mismatches.get();
+		}
+
+		@Override
+		public String toString() {
+			String summary = hits.get() + " hits, " + misses.get() + " misses";
+
+			if (verify) {
+				summary += ", " + mismatches.get() + " verification mismatches";
+			}
+
+			return summary;
+		}
+	}
+}
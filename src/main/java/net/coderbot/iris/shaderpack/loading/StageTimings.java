@@ -0,0 +1,93 @@
+package net.coderbot.iris.shaderpack.loading;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records how long each stage of shader pack loading took, so that slow packs can be diagnosed from the log without
+ * needing to attach a profiler.
+ */
+public class StageTimings {
+	private final Map<String, Long> stages;
+	private final long start;
+	@Nullable
+	private final LoadProgress progress;
+
+	private String currentStage;
+	private long currentStageStart;
+
+	public StageTimings() {
+		this(null);
+	}
+
+	/**
+	 * @param progress If not null, every stage that begins is also reported to this progress tracker.
+	 */
+	public StageTimings(@Nullable LoadProgress progress) {
+		this.stages = new LinkedHashMap<>();
+		this.start = System.nanoTime();
+		this.progress = progress;
+	}
+
+	/**
+	 * Ends the current stage (if any) and starts timing a new one.
+	 *
+	 * @throws java.util.concurrent.CancellationException if the load that is being timed has been cancelled
+	 */
+	public void begin(String stage) {
+		end();
+
+		if (progress != null) {
+			progress.beginStage(stage);
+		}
+
+		currentStage = stage;
+		currentStageStart = System.nanoTime();
+	}
+
+	/**
+	 * Ends the current stage, if any.
+	 */
+	public void end() {
+		if (currentStage == null) {
+			return;
+		}
+
+		stages.merge(currentStage, System.nanoTime() - currentStageStart, Long::sum);
+		currentStage = null;
+	}
+
+	public Map<String, Long> getStageNanos() {
+		return stages;
+	}
+
+	public long getTotalNanos() {
+		return System.nanoTime() - start;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+
+		builder.append(formatMillis(getTotalNanos())).append(" total (");
+
+		boolean first = true;
+
+		for (Map.Entry<String, Long> stage : stages.entrySet()) {
+			if (!first) {
+				builder.append(", ");
+			}
+
+			builder.append(stage.getKey()).append(": ").append(formatMillis(stage.getValue()));
+			first = false;
+		}
+
+		return builder.append(')').toString();
+	}
+
+	private static String formatMillis(long nanos) {
+		return String.format("%.1fms", nanos / 1_000_000.0);
+	}
+}
@@ -0,0 +1,298 @@
+package net.coderbot.iris.shaderpack.loading;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A pack source that reads the entries of a zipped shader pack straight out of a memory-mapped view of the archive.
+ *
+ * <p>The central directory is parsed once when the archive is opened. Stored entries are returned as slices of the
+ * mapped archive without copying them, and deflated entries are inflated into direct buffers the first time that they
+ * are read. Decoded entries are kept for as long as the pack source is, and the archive of the current shader pack is
+ * reused by {@link #open(Path)} for as long as it is unchanged on disk, so reloading a shader pack doesn't need to
+ * inflate any of its files again.</p>
+ *
+ * <p>The archive is never explicitly unmapped, since stored entries are handed out as slices of the mapping, and the
+ * loaded shader pack keeps some of them around (such as custom textures) for as long as it is in use. Instead, the
+ * mapping is released by the garbage collector once nothing references it anymore. To make sure that this happens
+ * once the pack is unloaded, which matters on Windows where a mapped file can't be replaced or deleted, the cached
+ * pack source has to be dropped with {@link #releaseCachedExcept(PackSource)} whenever the current shader pack changes
+ * or shaders are disabled.</p>
+ *
+ * <p>Entries that can't be read this way, such as encrypted entries or entries using compression methods other than
+ * deflate, are read through the zip file system that the requested path belongs to instead.</p>
+ */
+public final class ZipPackSource implements PackSource {
+	private static final int LOCAL_FILE_HEADER = 0x04034b50;
+	private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+	private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+	private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+
+	private static final int FLAG_ENCRYPTED = 1;
+
+	private static ZipPackSource lastOpened;
+
+	private final Path archive;
+	private final long size;
+	private final FileTime lastModified;
+	private final ByteBuffer mapped;
+	private final Map<String, Entry> entries;
+
+	private ZipPackSource(Path archive, BasicFileAttributes attributes) throws IOException {
+		this.archive = archive;
+		this.size = attributes.size();
+		this.lastModified = attributes.lastModifiedTime();
+
+		if (size > Integer.MAX_VALUE) {
+			throw new ZipException("The archive is too large to be mapped into memory");
+		}
+
+		// NB: The mapping stays valid after the channel is closed.
+		try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+			this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		try {
+			this.entries = readCentralDirectory();
+		} catch (IndexOutOfBoundsException e) {
+			throw new ZipException("The central directory extends past the end of the archive");
+		}
+	}
+
+	/**
+	 * Opens a zipped shader pack, reusing the previously opened pack source if the same archive is opened again
+	 * without having been modified since.
+	 *
+	 * @throws ZipException if the archive is corrupt, or uses features that aren't supported, such as ZIP64
+	 */
+	public static synchronized ZipPackSource open(Path archive) throws IOException {
+		Path realPath = archive.toRealPath();
+		BasicFileAttributes attributes = Files.readAttributes(realPath, BasicFileAttributes.class);
+
+		if (lastOpened != null && lastOpened.isUnchanged(realPath, attributes)) {
+			return lastOpened;
+		}
+
+		// Let go of the previous archive before mapping the new one.
+		lastOpened = null;
+		lastOpened = new ZipPackSource(realPath, attributes);
+
+		return lastOpened;
+	}
+
+	/**
+	 * Stops reusing the cached archive, unless it is the given pack source. Called whenever the current shader pack
+	 * changes or is unloaded, so that the cache never keeps an archive mapped that no shader pack is using anymore.
+	 *
+	 * @param inUse the pack source of the shader pack that is now in use, or null if shaders are disabled
+	 */
+	public static synchronized void releaseCachedExcept(@Nullable PackSource inUse) {
+		if (lastOpened != inUse) {
+			lastOpened = null;
+		}
+	}
+
+	private boolean isUnchanged(Path realPath, BasicFileAttributes attributes) {
+		return archive.equals(realPath) && size == attributes.size()
+			&& lastModified.equals(attributes.lastModifiedTime());
+	}
+
+	@Override
+	public ByteBuffer read(Path path) throws IOException {
+		Entry entry = entries.get(getEntryName(path));
+
+		if (entry == null) {
+			// Either the entry does not exist, in which case this throws the appropriate NoSuchFileException, or it is
+			// one that we can't decode ourselves.
+			return PackSource.FILES.read(path);
+		}
+
+		return entry.getContents().asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return the number of entries that can be read directly out of the mapped archive
+	 */
+	public int getEntryCount() {
+		return entries.size();
+	}
+
+	private static String getEntryName(Path path) {
+		String name = path.toAbsolutePath().normalize().toString();
+
+		return name.startsWith("/") ? name.substring(1) : name;
+	}
+
+	private Map<String, Entry> readCentralDirectory() throws ZipException {
+		int end = findEndOfCentralDirectory();
+
+		int count = getUnsignedShort(end + 10);
+		long directoryOffset = getUnsignedInt(end + 16);
+
+		if (count == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+			throw new ZipException("ZIP64 archives are not supported");
+		}
+
+		Map<String, Entry> entries = new HashMap<>(count * 2);
+		int position = (int) directoryOffset;
+
+		for (int i = 0; i < count; i++) {
+			if (mapped.getInt(position) != CENTRAL_DIRECTORY_HEADER) {
+				throw new ZipException("Invalid central directory header at offset " + position);
+			}
+
+			int flags = getUnsignedShort(position + 8);
+			int method = getUnsignedShort(position + 10);
+			long compressedSize = getUnsignedInt(position + 20);
+			long uncompressedSize = getUnsignedInt(position + 24);
+			int nameLength = getUnsignedShort(position + 28);
+			int extraLength = getUnsignedShort(position + 30);
+			int commentLength = getUnsignedShort(position + 32);
+			long localHeaderOffset = getUnsignedInt(position + 42);
+
+			byte[] nameBytes = new byte[nameLength];
+			slice(position + 46, nameLength).get(nameBytes);
+			String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+			position += 46 + nameLength + extraLength + commentLength;
+
+			if (name.endsWith("/") || (flags & FLAG_ENCRYPTED) != 0 || (method != STORED && method != DEFLATED)) {
+				continue;
+			}
+
+			if (compressedSize > Integer.MAX_VALUE || uncompressedSize > Integer.MAX_VALUE
+				|| localHeaderOffset >= size) {
+				// ZIP64 entries mark their sizes and offset as 0xFFFFFFFF
+				continue;
+			}
+
+			entries.put(name, new Entry(method, (int) localHeaderOffset, (int) compressedSize, (int) uncompressedSize));
+		}
+
+		return entries;
+	}
+
+	private int findEndOfCentralDirectory() throws ZipException {
+		// The end of central directory record is followed by a variable length comment, so scan backwards for it.
+		int last = (int) size - END_OF_CENTRAL_DIRECTORY_SIZE;
+		int first = Math.max(0, last - MAX_COMMENT_LENGTH);
+
+		for (int position = last; position >= first; position--) {
+			if (mapped.getInt(position) == END_OF_CENTRAL_DIRECTORY) {
+				return position;
+			}
+		}
+
+		throw new ZipException("Could not find the end of the central directory, the archive is probably corrupt");
+	}
+
+	private int getUnsignedShort(int position) {
+		return mapped.getShort(position) & 0xFFFF;
+	}
+
+	private long getUnsignedInt(int position) {
+		return mapped.getInt(position) & 0xFFFFFFFFL;
+	}
+
+	private ByteBuffer slice(int position, int length) {
+		ByteBuffer view = mapped.duplicate();
+		view.limit(position + length);
+		view.position(position);
+
+		return view.slice();
+	}
+
+	private final class Entry {
+		private final int method;
+		private final int localHeaderOffset;
+		private final int compressedSize;
+		private final int uncompressedSize;
+
+		private ByteBuffer contents;
+
+		private Entry(int method, int localHeaderOffset, int compressedSize, int uncompressedSize) {
+			this.method = method;
+			this.localHeaderOffset = localHeaderOffset;
+			this.compressedSize = compressedSize;
+			this.uncompressedSize = uncompressedSize;
+		}
+
+		private synchronized ByteBuffer getContents() throws IOException {
+			if (contents == null) {
+				try {
+					contents = decode();
+				} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+					throw new ZipException("An entry extends past the end of the archive");
+				}
+			}
+
+			return contents;
+		}
+
+		private ByteBuffer decode() throws ZipException {
+			if (mapped.getInt(localHeaderOffset) != LOCAL_FILE_HEADER) {
+				throw new ZipException("Invalid local file header at offset " + localHeaderOffset);
+			}
+
+			// The local header has its own name and extra field lengths, which don't always match the central directory.
+			int nameLength = getUnsignedShort(localHeaderOffset + 26);
+			int extraLength = getUnsignedShort(localHeaderOffset + 28);
+
+			ByteBuffer data = slice(localHeaderOffset + 30 + nameLength + extraLength, compressedSize);
+
+			if (method == STORED) {
+				return data;
+			}
+
+			// NB: Inflater only accepts arrays as its input on Java 8, so the compressed data needs to be copied once.
+			byte[] input = new byte[compressedSize];
+			data.get(input);
+
+			Inflater inflater = new Inflater(true);
+			inflater.setInput(input);
+
+			ByteBuffer output = ByteBuffer.allocateDirect(uncompressedSize);
+			byte[] chunk = new byte[Math.min(uncompressedSize, 8192)];
+
+			try {
+				while (output.hasRemaining()) {
+					int inflated = inflater.inflate(chunk, 0, Math.min(chunk.length, output.remaining()));
+
+					if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+						throw new ZipException("An entry is shorter than the size recorded in the central directory");
+					}
+
+					output.put(chunk, 0, inflated);
+				}
+			} catch (DataFormatException e) {
+				throw new ZipException("Invalid compressed data: " + e.getMessage());
+			} finally {
+				inflater.end();
+			}
+
+			output.flip();
+
+			return output;
+		}
+	}
+}
@@ -2,15 +2,19 @@ package net.coderbot.iris.shaderpack.option;
 
 import com.google.common.collect.ImmutableMap;
 import net.coderbot.iris.shaderpack.include.AbsolutePackPath;
+import net.coderbot.iris.shaderpack.include.FileNode;
 import net.coderbot.iris.shaderpack.include.IncludeGraph;
 import net.coderbot.iris.shaderpack.option.values.MutableOptionValues;
 import net.coderbot.iris.shaderpack.option.values.OptionValues;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * A helper class that dispatches all the heavy lifting needed to discover, merge, and apply shader pack options to
@@ -29,11 +33,18 @@ public class ShaderPackOptions {
 			ImmutableMap.Builder<AbsolutePackPath, OptionAnnotatedSource> annotationBuilder = ImmutableMap.builder();
 			Set<String> referencedBooleanDefines = new HashSet<>();
 
-			subgraph.getNodes().forEach((path, node) -> {
-				OptionAnnotatedSource annotatedSource = new OptionAnnotatedSource(node.getLines());
-				annotationBuilder.put(path, annotatedSource);
+			// Annotating a file only depends on the contents of that file, so all files are annotated in parallel.
+			// The results are then merged in the original node order so that option merging stays deterministic.
+			List<Map.Entry<AbsolutePackPath, FileNode>> nodes = new ArrayList<>(subgraph.getNodes().entrySet());
+			List<OptionAnnotatedSource> annotatedSources = nodes.parallelStream()
+					.map(entry -> new OptionAnnotatedSource(entry.getValue().getLines()))
+					.collect(Collectors.toList());
+
+			for (int i = 0; i < nodes.size(); i++) {
+				OptionAnnotatedSource annotatedSource = annotatedSources.get(i);
+				annotationBuilder.put(nodes.get(i).getKey(), annotatedSource);
 				referencedBooleanDefines.addAll(annotatedSource.getBooleanDefineReferences().keySet());
-			});
+			}
 
 			ImmutableMap<AbsolutePackPath, OptionAnnotatedSource> annotations = annotationBuilder.build();
 			Set<String> referencedBooleanDefinesU = Collections.unmodifiableSet(referencedBooleanDefines);
@@ -0,0 +1,213 @@
+package net.coderbot.iris.shaderpack.preprocessor;
+
+import java.util.List;
+
+/**
+ * Evaluates the fully macro-expanded controlling expression of an #if or #elif directive using C integer arithmetic.
+ * Any identifiers that remain after macro expansion evaluate to zero.
+ */
+final class ExpressionEvaluator {
+	// Binary operators by increasing precedence
+	private static final String[][] OPERATORS = {
+		{"||"},
+		{"&&"},
+		{"|"},
+		{"^"},
+		{"&"},
+		{"==", "!="},
+		{"<", ">", "<=", ">="},
+		{"<<", ">>"},
+		{"+", "-"},
+		{"*", "/", "%"}
+	};
+
+	private final List<PreprocessorToken> tokens;
+	private int index;
+
+	ExpressionEvaluator(List<PreprocessorToken> tokens) {
+		this.tokens = tokens;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the expression is malformed
+	 */
+	long evaluate() {
+		if (peek() == null) {
+			throw new IllegalArgumentException("expected an expression");
+		}
+
+		long value = conditional();
+
+		if (peek() != null) {
+			throw new IllegalArgumentException("unexpected " + peek() + " in expression");
+		}
+
+		return value;
+	}
+
+	private long conditional() {
+		long condition = binary(0);
+
+		if (!accept("?")) {
+			return condition;
+		}
+
+		long ifTrue = conditional();
+		expect(":");
+		long ifFalse = conditional();
+
+		return condition != 0 ? ifTrue : ifFalse;
+	}
+
+	private long binary(int precedence) {
+		if (precedence == OPERATORS.length) {
+			return unary();
+		}
+
+		long left = binary(precedence + 1);
+
+		while (true) {
+			String operator = acceptAny(OPERATORS[precedence]);
+
+			if (operator == null) {
+				return left;
+			}
+
+			long right = binary(precedence + 1);
+			left = apply(operator, left, right);
+		}
+	}
+
+	private static long apply(String operator, long left, long right) {
+		switch (operator) {
+			case "||": return (left != 0 || right != 0) ? 1 : 0;
+			case "&&": return (left != 0 && right != 0) ? 1 : 0;
+			case "|": return left | right;
+			case "^": return left ^ right;
+			case "&": return left & right;
+			case "==": return left == right ? 1 : 0;
+			case "!=": return left != right ? 1 : 0;
+			case "<": return left < right ? 1 : 0;
+			case ">": return left > right ? 1 : 0;
+			case "<=": return left <= right ? 1 : 0;
+			case ">=": return left >= right ? 1 : 0;
+			case "<<": return left << right;
+			case ">>": return left >> right;
+			case "+": return left + right;
+			case "-": return left - right;
+			case "*": return left * right;
+			case "/":
+			case "%":
+				if (right == 0) {
+					throw new IllegalArgumentException("division by zero in expression");
+				}
+
+				return operator.equals("/") ? left / right : left % right;
+			default:
+				throw new IllegalStateException("unknown operator " + operator);
+		}
+	}
+
+	private long unary() {
+		PreprocessorToken token = next();
+
+		if (token == null) {
+			throw new IllegalArgumentException("unexpected end of expression");
+		}
+
+		switch (token.type) {
+			case GlslLexer.NUMBER:
+				return parseNumber(token.text);
+			case GlslLexer.IDENTIFIER:
+				return 0;
+			case GlslLexer.PUNCTUATOR:
+				switch (token.text) {
+					case "(":
+						long value = conditional();
+						expect(")");
+						return value;
+					case "+":
+						return unary();
+					case "-":
+						return -unary();
+					case "~":
+						return ~unary();
+					case "!":
+						return unary() == 0 ? 1 : 0;
+				}
+		}
+
+		throw new IllegalArgumentException("unexpected " + token + " in expression");
+	}
+
+	private static long parseNumber(String text) {
+		int end = text.length();
+
+		// Strip integer suffixes
+		while (end > 0 && "uUlL".indexOf(text.charAt(end - 1)) != -1) {
+			end--;
+		}
+
+		String digits = text.substring(0, end);
+
+		try {
+			if (digits.startsWith("0x") || digits.startsWith("0X")) {
+				return Long.parseLong(digits.substring(2), 16);
+			} else if (digits.length() > 1 && digits.startsWith("0")) {
+				return Long.parseLong(digits.substring(1), 8);
+			} else {
+				return Long.parseLong(digits);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid integer constant " + text + " in expression");
+		}
+	}
+
+	private PreprocessorToken peek() {
+		while (index < tokens.size() && tokens.get(index).isWhitespace()) {
+			index++;
+		}
+
+		return index < tokens.size() ? tokens.get(index) : null;
+	}
+
+	private PreprocessorToken next() {
+		PreprocessorToken token = peek();
+
+		if (token != null) {
+			index++;
+		}
+
+		return token;
+	}
+
+	private boolean accept(String punctuator) {
+		PreprocessorToken token = peek();
+
+		if (token != null && token.is(punctuator)) {
+			index++;
+			return true;
+		}
+
+		return false;
+	}
+
+	private String acceptAny(String[] punctuators) {
+		for (String punctuator : punctuators) {
+			if (accept(punctuator)) {
+				return punctuator;
+			}
+		}
+
+		return null;
+	}
+
+	private void expect(String punctuator) {
+		if (!accept(punctuator)) {
+			PreprocessorToken token = peek();
+
+			throw new IllegalArgumentException("expected " + punctuator + " but got "
+				+ (token != null ? token : "the end of the expression"));
+		}
+	}
+}
@@ -0,0 +1,345 @@
+package net.coderbot.iris.shaderpack.preprocessor;
+
+/**
+ * Splits GLSL source code into preprocessing tokens. The lexer does not allocate anything per token: the current token
+ * is described by its type and its start / end offsets within the source string, and the text of a token is only
+ * materialized on request.
+ *
+ * <p>Line continuations (a backslash immediately followed by a newline) are removed as part of lexing, just like in the
+ * C preprocessor. Tokens that contained a line continuation are flagged, so that callers copying token text directly
+ * out of the source know to strip them.</p>
+ */
+final class GlslLexer {
+	static final int EOF = 0;
+	static final int NEWLINE = 1;
+	static final int WHITESPACE = 2;
+	static final int LINE_COMMENT = 3;
+	static final int BLOCK_COMMENT = 4;
+	static final int IDENTIFIER = 5;
+	static final int NUMBER = 6;
+	static final int STRING = 7;
+	static final int CHARACTER = 8;
+	static final int PUNCTUATOR = 9;
+
+	private static final char END = '\uFFFF';
+
+	private final String source;
+	private final int length;
+
+	private int pos;
+	private int line;
+
+	private int type;
+	private int start;
+	private int end;
+	private int tokenLine;
+	private boolean spliced;
+	// The number of line continuations skipped since the last call to takeSplices()
+	private int splices;
+
+	GlslLexer(String source) {
+		this.source = source;
+		this.length = source.length();
+		this.pos = 0;
+		this.line = 1;
+	}
+
+	/**
+	 * Advances to the next token.
+	 *
+	 * @return the type of the new current token
+	 */
+	int next() {
+		spliced = false;
+		start = pos;
+		tokenLine = line;
+
+		char c = peek();
+
+		if (c == END) {
+			end = pos;
+			return type = EOF;
+		}
+
+		if (c == '\n') {
+			pos++;
+			line++;
+			end = pos;
+			return type = NEWLINE;
+		}
+
+		if (isWhitespace(c)) {
+			do {
+				pos++;
+			} while (isWhitespace(peek()));
+
+			end = pos;
+			return type = WHITESPACE;
+		}
+
+		if (isIdentifierStart(c)) {
+			do {
+				pos++;
+			} while (isIdentifierPart(peek()));
+
+			end = pos;
+			return type = IDENTIFIER;
+		}
+
+		if (isDigit(c)) {
+			return number();
+		}
+
+		pos++;
+
+		switch (c) {
+			case '/':
+				c = peek();
+
+				if (c == '/') {
+					// Line comments run up to, but not including, the next newline.
+					do {
+						pos++;
+					} while (peek() != '\n' && peek() != END);
+
+					end = pos;
+					return type = LINE_COMMENT;
+				} else if (c == '*') {
+					pos++;
+
+					while (true) {
+						c = peek();
+
+						if (c == END) {
+							// Unterminated block comment, treat it as running to the end of the source.
+							break;
+						}
+
+						pos++;
+
+						if (c == '\n') {
+							line++;
+						} else if (c == '*' && peek() == '/') {
+							pos++;
+							break;
+						}
+					}
+
+					end = pos;
+					return type = BLOCK_COMMENT;
+				}
+
+				return punctuator('=');
+			case '.':
+				if (isDigit(peek())) {
+					return number();
+				}
+
+				if (peek() == '.' && pos + 1 < length && source.charAt(pos + 1) == '.') {
+					pos += 2;
+				}
+
+				end = pos;
+				return type = PUNCTUATOR;
+			case '"':
+			case '\'':
+				return quoted(c);
+			case '#':
+				return punctuator('#');
+			case '<':
+			case '>':
+				if (peek() == c) {
+					pos++;
+				}
+
+				return punctuator('=');
+			case '&':
+			case '|':
+			case '+':
+			case '-':
+				if (peek() == c) {
+					pos++;
+					end = pos;
+					return type = PUNCTUATOR;
+				}
+
+				return punctuator('=');
+			default:
+				return punctuator('=');
+		}
+	}
+
+	private int number() {
+		// Matches the "preprocessing number" token of the C preprocessor, which is a superset of all valid numbers.
+		while (true) {
+			char c = peek();
+
+			if (c == 'e' || c == 'E' || c == 'p' || c == 'P') {
+				pos++;
+
+				c = peek();
+
+				if (c == '+' || c == '-') {
+					pos++;
+				}
+			} else if (isIdentifierPart(c) || c == '.') {
+				pos++;
+			} else {
+				break;
+			}
+		}
+
+		end = pos;
+		return type = NUMBER;
+	}
+
+	private int quoted(char quote) {
+		while (true) {
+			char c = peek();
+
+			if (c == END || c == '\n') {
+				// Unterminated literal, end it at the end of the line.
+				break;
+			}
+
+			pos++;
+
+			if (c == quote) {
+				break;
+			} else if (c == '\\' && peek() != END && peek() != '\n') {
+				pos++;
+			}
+		}
+
+		end = pos;
+		return type = quote == '"' ? STRING : CHARACTER;
+	}
+
+	private int punctuator(char second) {
+		if (peek() == second) {
+			pos++;
+		}
+
+		end = pos;
+		return type = PUNCTUATOR;
+	}
+
+	/**
+	 * Returns the character at the current position, skipping over any line continuations.
+	 */
+	private char peek() {
+		while (pos + 1 < length && source.charAt(pos) == '\\' && source.charAt(pos + 1) == '\n') {
+			pos += 2;
+			line++;
+			splices++;
+			spliced = true;
+		}
+
+		return pos < length ? source.charAt(pos) : END;
+	}
+
+	int getType() {
+		return type;
+	}
+
+	/**
+	 * @return the line that the current token starts on, counting from 1
+	 */
+	int getLine() {
+		return tokenLine;
+	}
+
+	/**
+	 * @return the current line of the lexer, counting from 1
+	 */
+	int getCurrentLine() {
+		return line;
+	}
+
+	/**
+	 * Appends the text of the current token to the given builder.
+	 */
+	void appendTo(StringBuilder builder) {
+		if (spliced) {
+			builder.append(getText());
+		} else {
+			builder.append(source, start, end);
+		}
+	}
+
+	String getText() {
+		String text = source.substring(start, end);
+
+		if (spliced) {
+			text = text.replace("\\\n", "");
+		}
+
+		return text;
+	}
+
+	/**
+	 * Checks whether the current token has exactly the given text, without allocating.
+	 */
+	boolean textEquals(String text) {
+		if (spliced) {
+			return getText().equals(text);
+		}
+
+		return end - start == text.length() && source.startsWith(text, start);
+	}
+
+	/**
+	 * @return the source text from the end of the current token up to, but not including, the next newline
+	 */
+	String getRestOfLine() {
+		int lineEnd = source.indexOf('\n', end);
+
+		if (lineEnd == -1) {
+			lineEnd = length;
+		}
+
+		return source.substring(end, lineEnd);
+	}
+
+	String getSource() {
+		return source;
+	}
+
+	int getStart() {
+		return start;
+	}
+
+	int getEnd() {
+		return end;
+	}
+
+	boolean isSpliced() {
+		return spliced;
+	}
+
+	/**
+	 * @return the number of line continuations that were skipped since the last call to this method
+	 */
+	int takeSplices() {
+		int count = splices;
+		splices = 0;
+
+		return count;
+	}
+
+	static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == '\u000B';
+	}
+
+	static boolean isIdentifierStart(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+	}
+
+	static boolean isIdentifierPart(char c) {
+		return isIdentifierStart(c) || isDigit(c);
+	}
+
+	static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+}
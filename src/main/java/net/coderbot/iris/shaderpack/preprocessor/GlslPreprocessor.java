@@ -0,0 +1,1067 @@
+package net.coderbot.iris.shaderpack.preprocessor;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.coderbot.iris.Iris;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A GLSL preprocessor that makes a single streaming pass over a program source. Text that does not involve any macros
+ * is copied straight from the source into the output, and only macro invocations and directives are ever turned into
+ * token objects.
+ *
+ * <p>The output matches what {@link JcppProcessor} used to produce, which shader packs have come to rely on: comments
+ * and whitespace are preserved, most directive lines are replaced by an empty line, and all #version and #extension
+ * directives in active code are hoisted to the very top of the output. Hoisting #extension directives is needed for
+ * shader packs written on lenient drivers that allow #extension directives to be placed anywhere to work on strict
+ * drivers like Mesa that require #extension directives to occur at the top. Since this happens during preprocessing,
+ * only the #extension directives that are actually used are hoisted.</p>
+ */
+public final class GlslPreprocessor {
+	static final Macro LINE = new Macro("__LINE__", -1, Collections.emptyList());
+	static final MacroTable BUILTINS = new MacroTable(null);
+
+	static {
+		BUILTINS.define(LINE);
+	}
+
+	// Stands in for an empty macro argument that is an operand of ##, see C99 6.10.3.3.
+	private static final PreprocessorToken PLACEMARKER = new PreprocessorToken(GlslLexer.WHITESPACE, "");
+
+	// Bits of the state of each level of #if nesting
+	private static final int ACTIVE = 1;
+	private static final int TAKEN = 2;
+	private static final int SEEN_ELSE = 4;
+	private static final int PARENT_ACTIVE = 8;
+
+	private final GlslLexer lexer;
+	private final MacroTable constants;
+	private final MacroTable macros;
+
+	private final StringBuilder output;
+	private final StringBuilder hoisted;
+	private final IntArrayList conditionals;
+
+	private boolean active;
+	private boolean constantsDefined;
+	// The number of lines that the constants take up, as if they were still inserted into the source
+	private int lineOffset;
+
+	// Whether only whitespace and comments have been seen so far on the current line
+	private boolean lineStart;
+
+	// A token that was read from the source while looking for the argument list of a macro invocation, but that turned
+	// out not to be one.
+	private PreprocessorToken pushback;
+	private boolean pushbackAtLineStart;
+	private boolean lastAtLineStart;
+
+	private GlslPreprocessor(String source, MacroTable constants, MacroTable macros) {
+		this.lexer = new GlslLexer(source);
+		this.constants = constants;
+		this.macros = macros;
+		this.output = new StringBuilder(source.length());
+		this.hoisted = new StringBuilder();
+		this.conditionals = new IntArrayList();
+		this.active = true;
+		this.lineStart = true;
+	}
+
+	/**
+	 * Preprocesses a single program source.
+	 *
+	 * @param constants The macros to define right after the first #version directive, created with
+	 *                  {@link MacroTable#fromConstants}. The table is never modified, so it can be shared by every
+	 *                  program of a shader pack.
+	 */
+	public static String process(String source, MacroTable constants) {
+		GlslPreprocessor preprocessor = new GlslPreprocessor(source, constants, new MacroTable(BUILTINS));
+		preprocessor.run();
+
+		return preprocessor.hoisted.append(preprocessor.output).append('\n').toString();
+	}
+
+	/**
+	 * Applies a list of #define and #undef lines to the given table.
+	 */
+	static void defineAll(MacroTable table, List<String> defines) {
+		for (String define : defines) {
+			new GlslPreprocessor(define, null, table).run();
+		}
+	}
+
+	/**
+	 * Expands all macros within a single line that isn't a directive.
+	 */
+	static String expandLine(String line, MacroTable macros) {
+		GlslPreprocessor preprocessor = new GlslPreprocessor(line, null, macros);
+		preprocessor.run();
+
+		return preprocessor.output.toString();
+	}
+
+	/**
+	 * Evaluates the controlling expression of an #if or #elif directive.
+	 */
+	static boolean evaluate(String expression, MacroTable macros) {
+		return new GlslPreprocessor(expression, null, macros).evaluate();
+	}
+
+	private void run() {
+		Expander expander = new Expander(new TokenSource() {
+			@Override
+			public PreprocessorToken next() {
+				return nextSourceToken();
+			}
+
+			@Override
+			public void pushback(PreprocessorToken token) {
+				pushback = token;
+				pushbackAtLineStart = lastAtLineStart;
+			}
+		}, null, false);
+
+		while (true) {
+			PreprocessorToken token = pushback;
+			boolean atLineStart;
+			int type;
+
+			if (token != null) {
+				pushback = null;
+				atLineStart = pushbackAtLineStart;
+				type = token.type;
+			} else {
+				atLineStart = lineStart;
+				type = lexer.next();
+			}
+
+			updateLineStart(type);
+
+			if (type == GlslLexer.EOF) {
+				break;
+			}
+
+			if (atLineStart && type == GlslLexer.PUNCTUATOR
+					&& (token != null ? token.text.equals("#") : lexer.textEquals("#"))) {
+				directive();
+				continue;
+			}
+
+			if (!active) {
+				if (type == GlslLexer.NEWLINE) {
+					newline();
+				} else if (type == GlslLexer.BLOCK_COMMENT) {
+					// Keep the line numbers of the rest of the source intact.
+					appendNewlines(token != null ? token.text : lexer.getText());
+				}
+
+				continue;
+			}
+
+			if (type == GlslLexer.IDENTIFIER && (token == null || !token.painted)) {
+				Macro macro;
+
+				if (token != null) {
+					macro = macros.get(token.text);
+				} else if (lexer.isSpliced()) {
+					macro = macros.get(lexer.getText());
+				} else {
+					macro = macros.get(lexer.getSource(), lexer.getStart(), lexer.getEnd());
+				}
+
+				if (macro != null) {
+					if (token == null) {
+						token = new PreprocessorToken(type, lexer.getText());
+					}
+
+					expander.expandAll(token, macro);
+					continue;
+				}
+			}
+
+			if (type == GlslLexer.NEWLINE) {
+				newline();
+			} else if (token != null) {
+				output.append(token.text);
+			} else {
+				lexer.appendTo(output);
+			}
+		}
+
+		if (!conditionals.isEmpty()) {
+			error("unterminated #if, #ifdef, or #ifndef");
+		}
+	}
+
+	private void updateLineStart(int type) {
+		if (type == GlslLexer.NEWLINE) {
+			lineStart = true;
+		} else if (!PreprocessorToken.isWhitespace(type)) {
+			lineStart = false;
+		}
+	}
+
+	/**
+	 * Ends a line of output. Lines joined by line continuations are made up for with empty lines at this point, so that
+	 * the line numbers of the rest of the source stay intact.
+	 */
+	private void newline() {
+		output.append('\n');
+
+		for (int i = lexer.takeSplices(); i > 0; i--) {
+			output.append('\n');
+		}
+	}
+
+	private void appendNewlines(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) == '\n') {
+				output.append('\n');
+			}
+		}
+	}
+
+	/**
+	 * Reads the next token of the source while expanding a macro invocation.
+	 *
+	 * @return the token, or null at the end of the source
+	 */
+	private PreprocessorToken nextSourceToken() {
+		PreprocessorToken token = pushback;
+
+		if (token != null) {
+			pushback = null;
+			lastAtLineStart = pushbackAtLineStart;
+			updateLineStart(token.type);
+
+			return token;
+		}
+
+		lastAtLineStart = lineStart;
+
+		int type = lexer.next();
+		updateLineStart(type);
+
+		if (type == GlslLexer.EOF) {
+			return null;
+		}
+
+		return new PreprocessorToken(type, lexer.getText());
+	}
+
+	/**
+	 * Handles a directive, starting right after the # token. The rest of the line is always consumed.
+	 */
+	private void directive() {
+		int type = nextInLine();
+
+		if (type != GlslLexer.IDENTIFIER) {
+			if (type == GlslLexer.NEWLINE || type == GlslLexer.EOF) {
+				// The null directive. Like the other directives that have no effect on the output, it doesn't leave an
+				// empty line behind in active code.
+				if (!active) {
+					endDirective(type);
+				}
+			} else {
+				if (active) {
+					error("invalid preprocessor directive");
+				}
+
+				endDirective(skipLine(type));
+			}
+
+			lineStart = true;
+			return;
+		}
+
+		String name = lexer.getText();
+
+		// The constants used to be inserted as #define lines after the first line starting with #version, so they are
+		// defined at exactly that point, and not at all if that line happens to be skipped.
+		boolean defineConstants = !constantsDefined && constants != null && name.equals("version")
+			&& startsLine("#version", lexer.getStart() - 1);
+		boolean wasActive = active;
+
+		switch (name) {
+			case "if":
+				beginConditional(active && evaluate());
+				break;
+			case "ifdef":
+			case "ifndef":
+				beginConditional(active && isDefined() == name.equals("ifdef"));
+				break;
+			case "elif":
+				elif();
+				break;
+			case "else":
+				elseDirective();
+				break;
+			case "endif":
+				endif();
+				break;
+			default:
+				if (active) {
+					activeDirective(name);
+				} else {
+					endDirective(skipLine(type));
+				}
+
+				break;
+		}
+
+		active = conditionals.isEmpty() || (conditionals.topInt() & ACTIVE) != 0;
+		lineStart = true;
+
+		if (defineConstants) {
+			constantsDefined = true;
+
+			if (wasActive) {
+				macros.inherit(constants);
+			}
+
+			lineOffset = constants.getDefinitionCount();
+
+			for (int i = 0; i < lineOffset; i++) {
+				output.append('\n');
+			}
+		}
+	}
+
+	private boolean startsLine(String text, int offset) {
+		String source = lexer.getSource();
+
+		return offset >= 0 && source.startsWith(text, offset) && (offset == 0 || source.charAt(offset - 1) == '\n');
+	}
+
+	private void activeDirective(String name) {
+		switch (name) {
+			case "define":
+				define();
+				break;
+			case "undef":
+				undefine();
+				break;
+			case "version":
+				hoist("#version ");
+				break;
+			case "extension":
+				hoist("#extension ");
+				break;
+			case "line":
+			case "pragma":
+				endDirective(skipLine(GlslLexer.IDENTIFIER));
+				break;
+			case "error":
+			case "warning":
+				error("#" + name + lexer.getRestOfLine());
+				skipLine(GlslLexer.IDENTIFIER);
+				break;
+			default:
+				error("unknown preprocessor directive #" + name);
+				endDirective(skipLine(GlslLexer.IDENTIFIER));
+				break;
+		}
+	}
+
+	private void hoist(String directive) {
+		hoisted.append(directive).append(lexer.getRestOfLine()).append('\n');
+		skipLine(GlslLexer.IDENTIFIER);
+	}
+
+	private void define() {
+		int type = nextInLine();
+
+		if (type != GlslLexer.IDENTIFIER) {
+			error("expected a macro name after #define");
+			endDirective(skipLine(type));
+			return;
+		}
+
+		String name = lexer.getText();
+		int nameEnd = lexer.getEnd();
+		List<String> parameters = null;
+
+		type = lexer.next();
+
+		// Only a parenthesis directly after the name makes this a function-like macro.
+		if (type == GlslLexer.PUNCTUATOR && lexer.getStart() == nameEnd && lexer.textEquals("(")) {
+			parameters = new ArrayList<>();
+			type = nextInLine();
+
+			if (!(type == GlslLexer.PUNCTUATOR && lexer.textEquals(")"))) {
+				while (true) {
+					if (type != GlslLexer.IDENTIFIER) {
+						error("invalid parameter list for macro " + name);
+						endDirective(skipLine(type));
+						return;
+					}
+
+					parameters.add(lexer.getText());
+					type = nextInLine();
+
+					if (type == GlslLexer.PUNCTUATOR && lexer.textEquals(")")) {
+						break;
+					} else if (!(type == GlslLexer.PUNCTUATOR && lexer.textEquals(","))) {
+						error("invalid parameter list for macro " + name);
+						endDirective(skipLine(type));
+						return;
+					}
+
+					type = nextInLine();
+				}
+			}
+
+			type = lexer.next();
+		}
+
+		List<PreprocessorToken> body = new ArrayList<>();
+		boolean pendingSpace = false;
+
+		for (; type != GlslLexer.NEWLINE && type != GlslLexer.EOF; type = lexer.next()) {
+			if (PreprocessorToken.isWhitespace(type)) {
+				// Whitespace and comments are collapsed into single spaces, and trimmed at both ends.
+				pendingSpace = !body.isEmpty();
+				continue;
+			}
+
+			if (pendingSpace) {
+				body.add(PreprocessorToken.SPACE);
+				pendingSpace = false;
+			}
+
+			String text = lexer.getText();
+			int parameter = type == GlslLexer.IDENTIFIER && parameters != null ? parameters.indexOf(text) : -1;
+
+			body.add(parameter != -1 ? PreprocessorToken.parameter(text, parameter) : new PreprocessorToken(type, text));
+		}
+
+		if (name.equals("defined")) {
+			error("\"defined\" cannot be used as a macro name");
+		} else {
+			macros.define(new Macro(name, parameters != null ? parameters.size() : -1, body));
+		}
+
+		endDirective(type);
+	}
+
+	private void undefine() {
+		int type = nextInLine();
+
+		if (type != GlslLexer.IDENTIFIER) {
+			error("expected a macro name after #undef");
+		} else {
+			macros.undefine(lexer.getText());
+		}
+
+		endDirective(skipLine(type));
+	}
+
+	private void beginConditional(boolean value) {
+		if (active) {
+			conditionals.push(PARENT_ACTIVE | (value ? ACTIVE | TAKEN : 0));
+		} else {
+			skipLine(lexer.getType());
+			conditionals.push(0);
+		}
+
+		newline();
+	}
+
+	private void elif() {
+		if (conditionals.isEmpty()) {
+			error("#elif without #if");
+			endDirective(skipLine(GlslLexer.IDENTIFIER));
+			return;
+		}
+
+		int state = conditionals.topInt();
+
+		if ((state & SEEN_ELSE) != 0) {
+			// Ignored entirely, without even leaving an empty line behind.
+			error("#elif after #else");
+			skipLine(GlslLexer.IDENTIFIER);
+			return;
+		}
+
+		conditionals.popInt();
+
+		if ((state & PARENT_ACTIVE) == 0 || (state & TAKEN) != 0) {
+			state &= ~ACTIVE;
+			skipLine(GlslLexer.IDENTIFIER);
+		} else if (evaluate()) {
+			state |= ACTIVE | TAKEN;
+		}
+
+		conditionals.push(state);
+		newline();
+	}
+
+	private void elseDirective() {
+		skipLine(GlslLexer.IDENTIFIER);
+
+		if (conditionals.isEmpty()) {
+			error("#else without #if");
+		} else {
+			int state = conditionals.popInt();
+
+			if ((state & SEEN_ELSE) != 0) {
+				error("#else after #else");
+			}
+
+			if ((state & PARENT_ACTIVE) != 0 && (state & TAKEN) == 0) {
+				state |= ACTIVE | TAKEN;
+			} else {
+				state &= ~ACTIVE;
+			}
+
+			conditionals.push(state | SEEN_ELSE);
+		}
+
+		newline();
+	}
+
+	private void endif() {
+		skipLine(GlslLexer.IDENTIFIER);
+
+		if (conditionals.isEmpty()) {
+			error("#endif without #if");
+		} else {
+			conditionals.popInt();
+		}
+
+		newline();
+	}
+
+	private boolean isDefined() {
+		int type = nextInLine();
+		boolean defined = false;
+
+		if (type == GlslLexer.IDENTIFIER) {
+			defined = macros.get(lexer.getText()) != null;
+		} else {
+			error("expected a macro name");
+		}
+
+		skipLine(type);
+
+		return defined;
+	}
+
+	/**
+	 * Evaluates the controlling expression of an #if or #elif directive, consuming the rest of the line.
+	 */
+	private boolean evaluate() {
+		List<PreprocessorToken> tokens = new ArrayList<>();
+		int type;
+
+		while ((type = lexer.next()) != GlslLexer.NEWLINE && type != GlslLexer.EOF) {
+			tokens.add(new PreprocessorToken(type, lexer.getText()));
+		}
+
+		List<PreprocessorToken> expanded = new ArrayList<>();
+		new Expander(new ListSource(tokens), null, true).expandInto(expanded);
+
+		try {
+			return new ExpressionEvaluator(expanded).evaluate() != 0;
+		} catch (IllegalArgumentException e) {
+			error(e.getMessage());
+
+			return false;
+		}
+	}
+
+	/**
+	 * Skips whitespace and comments on the current line.
+	 *
+	 * @return the type of the first other token
+	 */
+	private int nextInLine() {
+		int type;
+
+		do {
+			type = lexer.next();
+		} while (type == GlslLexer.WHITESPACE || type == GlslLexer.LINE_COMMENT || type == GlslLexer.BLOCK_COMMENT);
+
+		return type;
+	}
+
+	/**
+	 * Skips the rest of the current line, starting with the current token.
+	 *
+	 * @return NEWLINE if the line ended with a newline, or EOF if it ended at the end of the source
+	 */
+	private int skipLine(int type) {
+		while (type != GlslLexer.NEWLINE && type != GlslLexer.EOF) {
+			type = lexer.next();
+		}
+
+		return type;
+	}
+
+	private void endDirective(int type) {
+		if (type == GlslLexer.NEWLINE) {
+			newline();
+		}
+	}
+
+	private void error(String message) {
+		Iris.logger.warn("GLSL preprocessor error on line " + lexer.getLine() + ": " + message);
+	}
+
+	private interface TokenSource {
+		/**
+		 * @return the next token, or null if there are none left
+		 */
+		PreprocessorToken next();
+
+		/**
+		 * Returns the token that was just read, so that it is read again by the next call to {@link #next()}.
+		 */
+		void pushback(PreprocessorToken token);
+	}
+
+	private static final class ListSource implements TokenSource {
+		private final List<PreprocessorToken> tokens;
+		private int index;
+
+		private ListSource(List<PreprocessorToken> tokens) {
+			this.tokens = tokens;
+		}
+
+		@Override
+		public PreprocessorToken next() {
+			return index < tokens.size() ? tokens.get(index++) : null;
+		}
+
+		@Override
+		public void pushback(PreprocessorToken token) {
+			index--;
+		}
+	}
+
+	/**
+	 * The tokens produced by a single macro expansion, which are rescanned for further macros. The macro is disabled
+	 * while its frame is on the stack, which prevents infinite recursion.
+	 */
+	private static final class Frame {
+		private final Macro macro;
+		private final List<PreprocessorToken> tokens;
+		private int index;
+
+		private Frame(Macro macro, List<PreprocessorToken> tokens) {
+			this.macro = macro;
+			this.tokens = tokens;
+		}
+	}
+
+	/**
+	 * Expands macros using a stack of frames on top of a base token source. The base source is either the program
+	 * source itself, a macro argument, or the expression of an #if directive.
+	 */
+	private final class Expander {
+		private final TokenSource base;
+		private final Expander outer;
+		// Whether the defined operator is allowed, which is only the case in #if expressions.
+		private final boolean expression;
+		private final List<Frame> frames;
+
+		private Expander(TokenSource base, Expander outer, boolean expression) {
+			this.base = base;
+			this.outer = outer;
+			this.expression = expression;
+			this.frames = new ArrayList<>();
+		}
+
+		/**
+		 * Expands a macro found in the program source, writing the result to the output.
+		 */
+		private void expandAll(PreprocessorToken name, Macro macro) {
+			if (!expand(name, macro)) {
+				output.append(name.text);
+				return;
+			}
+
+			PreprocessorToken token;
+
+			while ((token = pullFrames()) != null) {
+				token = expandToken(token);
+
+				if (token != null) {
+					output.append(token.text);
+				}
+			}
+		}
+
+		/**
+		 * Fully expands the base source into the given list.
+		 */
+		private void expandInto(List<PreprocessorToken> result) {
+			PreprocessorToken token;
+
+			while ((token = pull()) != null) {
+				token = expandToken(token);
+
+				if (token != null) {
+					result.add(token);
+				}
+			}
+		}
+
+		/**
+		 * Expands the given token if it is a macro invocation, or the defined operator in an #if expression.
+		 *
+		 * @return the token to use in place of the given token, or null if it was expanded
+		 */
+		private PreprocessorToken expandToken(PreprocessorToken token) {
+			if (token.type != GlslLexer.IDENTIFIER || token.painted) {
+				return token;
+			}
+
+			if (expression && token.text.equals("defined")) {
+				pushFrame(null, Collections.singletonList(defined()));
+				return null;
+			}
+
+			Macro macro = macros.get(token.text);
+
+			if (macro == null) {
+				return token;
+			}
+
+			if (isDisabled(macro)) {
+				// This token must never be expanded again, even once the macro is no longer disabled.
+				return token.paint();
+			}
+
+			return expand(token, macro) ? null : token;
+		}
+
+		private PreprocessorToken defined() {
+			PreprocessorToken token = pullNonWhitespace();
+			boolean parenthesized = token != null && token.is("(");
+
+			if (parenthesized) {
+				token = pullNonWhitespace();
+			}
+
+			if (token == null || token.type != GlslLexer.IDENTIFIER) {
+				error("expected a macro name after defined");
+				return new PreprocessorToken(GlslLexer.NUMBER, "0");
+			}
+
+			boolean defined = macros.get(token.text) != null;
+
+			if (parenthesized) {
+				token = pullNonWhitespace();
+
+				if (token == null || !token.is(")")) {
+					error("expected ) after defined(");
+				}
+			}
+
+			return new PreprocessorToken(GlslLexer.NUMBER, defined ? "1" : "0");
+		}
+
+		/**
+		 * Expands a macro invocation, pushing the result as a new frame.
+		 *
+		 * @return false if a function-like macro wasn't followed by an argument list
+		 */
+		private boolean expand(PreprocessorToken name, Macro macro) {
+			if (macro == LINE) {
+				String line = Integer.toString(lexer.getLine() + lineOffset);
+				pushFrame(null, Collections.singletonList(new PreprocessorToken(GlslLexer.NUMBER, line)));
+
+				return true;
+			}
+
+			if (!macro.isFunctionLike()) {
+				pushFrame(macro, substitute(macro, Collections.emptyList()));
+				return true;
+			}
+
+			// NB: Any whitespace, newlines, and comments between the name and the argument list are dropped, even if
+			// there turns out to be no argument list.
+			PreprocessorToken next = pullNonWhitespace();
+
+			if (next == null || !next.is("(")) {
+				if (next != null) {
+					pushback(next);
+				}
+
+				return false;
+			}
+
+			List<List<PreprocessorToken>> arguments = collectArguments(macro);
+
+			if (macro.parameterCount == 0 && arguments.size() == 1 && arguments.get(0).isEmpty()) {
+				arguments = Collections.emptyList();
+			}
+
+			if (arguments.size() != macro.parameterCount) {
+				error("macro " + macro.name + " expects " + macro.parameterCount + " arguments, but got "
+					+ arguments.size());
+
+				// Drop the invocation, but keep the name of the macro.
+				pushFrame(null, Collections.singletonList(name.paint()));
+				return true;
+			}
+
+			pushFrame(macro, substitute(macro, arguments));
+
+			return true;
+		}
+
+		private List<List<PreprocessorToken>> collectArguments(Macro macro) {
+			List<List<PreprocessorToken>> arguments = new ArrayList<>();
+			List<PreprocessorToken> argument = new ArrayList<>();
+			int depth = 1;
+
+			while (true) {
+				PreprocessorToken token = pull();
+
+				if (token == null) {
+					throw new RuntimeException("GLSL source pre-processing failed: unterminated invocation of macro "
+						+ macro.name + " on line " + lexer.getLine());
+				}
+
+				if (token.is("(")) {
+					depth++;
+				} else if (token.is(")")) {
+					depth--;
+
+					if (depth == 0) {
+						arguments.add(normalize(argument));
+						return arguments;
+					}
+				} else if (depth == 1 && token.is(",")) {
+					arguments.add(normalize(argument));
+					argument = new ArrayList<>();
+					continue;
+				}
+
+				argument.add(token);
+			}
+		}
+
+		private List<PreprocessorToken> substitute(Macro macro, List<List<PreprocessorToken>> arguments) {
+			List<PreprocessorToken> body = macro.body;
+			List<PreprocessorToken> result = new ArrayList<>(body.size());
+			// Each argument is only fully expanded once, no matter how often it is used.
+			List<List<PreprocessorToken>> expandedArguments = new ArrayList<>(Collections.nCopies(arguments.size(), null));
+			boolean pasted = false;
+
+			for (int i = 0; i < body.size(); i++) {
+				PreprocessorToken token = body.get(i);
+
+				if (token.is("#") && macro.isFunctionLike()) {
+					int next = nextNonSpace(body, i);
+
+					if (next != -1 && body.get(next).parameter != -1) {
+						result.add(stringify(arguments.get(body.get(next).parameter)));
+						i = next;
+						continue;
+					}
+				}
+
+				if (token.is("##")) {
+					int next = nextNonSpace(body, i);
+
+					while (!result.isEmpty() && result.get(result.size() - 1) != PLACEMARKER
+							&& result.get(result.size() - 1).isWhitespace()) {
+						result.remove(result.size() - 1);
+					}
+
+					if (next == -1) {
+						continue;
+					}
+
+					PreprocessorToken right = body.get(next);
+					paste(result, right.parameter != -1 ? arguments.get(right.parameter) : Collections.singletonList(right));
+					pasted = true;
+					i = next;
+					continue;
+				}
+
+				if (token.parameter != -1) {
+					int next = nextNonSpace(body, i);
+					List<PreprocessorToken> argument = arguments.get(token.parameter);
+
+					if (next != -1 && body.get(next).is("##")) {
+						// Operands of ## are not macro expanded.
+						if (argument.isEmpty()) {
+							result.add(PLACEMARKER);
+						} else {
+							result.addAll(argument);
+						}
+					} else {
+						List<PreprocessorToken> expanded = expandedArguments.get(token.parameter);
+
+						if (expanded == null) {
+							expanded = new ArrayList<>();
+							new Expander(new ListSource(argument), this, expression).expandInto(expanded);
+							expandedArguments.set(token.parameter, expanded);
+						}
+
+						result.addAll(expanded);
+					}
+
+					continue;
+				}
+
+				result.add(token);
+			}
+
+			if (pasted) {
+				result.removeIf(token -> token == PLACEMARKER);
+			}
+
+			return result;
+		}
+
+		private boolean isDisabled(Macro macro) {
+			for (Frame frame : frames) {
+				if (frame.macro == macro) {
+					return true;
+				}
+			}
+
+			return outer != null && outer.isDisabled(macro);
+		}
+
+		private void pushFrame(Macro macro, List<PreprocessorToken> tokens) {
+			frames.add(new Frame(macro, tokens));
+		}
+
+		/**
+		 * Pulls the next token from the frames, popping any exhausted frames.
+		 *
+		 * @return the next token, or null once all frames have been exhausted
+		 */
+		private PreprocessorToken pullFrames() {
+			while (!frames.isEmpty()) {
+				Frame frame = frames.get(frames.size() - 1);
+
+				if (frame.index < frame.tokens.size()) {
+					return frame.tokens.get(frame.index++);
+				}
+
+				frames.remove(frames.size() - 1);
+			}
+
+			return null;
+		}
+
+		/**
+		 * Pulls the next token from the frames, falling back to the base source once they have been exhausted.
+		 */
+		private PreprocessorToken pull() {
+			PreprocessorToken token = pullFrames();
+
+			return token != null ? token : base.next();
+		}
+
+		private PreprocessorToken pullNonWhitespace() {
+			PreprocessorToken token;
+
+			do {
+				token = pull();
+			} while (token != null && token.isWhitespace());
+
+			return token;
+		}
+
+		/**
+		 * Returns the token that was just pulled. Exhausted frames are only popped when pulling the next token, so the
+		 * token came from the top frame if there is one, and from the base source otherwise.
+		 */
+		private void pushback(PreprocessorToken token) {
+			if (frames.isEmpty()) {
+				base.pushback(token);
+			} else {
+				frames.get(frames.size() - 1).index--;
+			}
+		}
+	}
+
+	private static int nextNonSpace(List<PreprocessorToken> body, int index) {
+		for (int i = index + 1; i < body.size(); i++) {
+			if (!body.get(i).isWhitespace()) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Collapses whitespace, newlines, and comments in a macro argument into single spaces, trimming both ends.
+	 */
+	private static List<PreprocessorToken> normalize(List<PreprocessorToken> argument) {
+		List<PreprocessorToken> normalized = new ArrayList<>(argument.size());
+		boolean pendingSpace = false;
+
+		for (PreprocessorToken token : argument) {
+			if (token.isWhitespace()) {
+				pendingSpace = !normalized.isEmpty();
+				continue;
+			}
+
+			if (pendingSpace) {
+				normalized.add(PreprocessorToken.SPACE);
+				pendingSpace = false;
+			}
+
+			normalized.add(token);
+		}
+
+		return normalized;
+	}
+
+	private static PreprocessorToken stringify(List<PreprocessorToken> argument) {
+		StringBuilder builder = new StringBuilder("\"");
+
+		for (PreprocessorToken token : argument) {
+			if (token.type == GlslLexer.STRING || token.type == GlslLexer.CHARACTER) {
+				builder.append(token.text.replace("\\", "\\\\").replace("\"", "\\\""));
+			} else {
+				builder.append(token.text);
+			}
+		}
+
+		return new PreprocessorToken(GlslLexer.STRING, builder.append('"').toString());
+	}
+
+	/**
+	 * Implements the ## operator by pasting the last token of the result together with the first of the given tokens,
+	 * and splitting the combined text into tokens again.
+	 */
+	private static void paste(List<PreprocessorToken> result, List<PreprocessorToken> right) {
+		if (right.isEmpty()) {
+			return;
+		}
+
+		if (result.isEmpty()) {
+			result.addAll(right);
+			return;
+		}
+
+		PreprocessorToken left = result.remove(result.size() - 1);
+
+		if (left == PLACEMARKER) {
+			result.addAll(right);
+			return;
+		}
+
+		GlslLexer lexer = new GlslLexer(left.text + right.get(0).text);
+		int type;
+
+		while ((type = lexer.next()) != GlslLexer.EOF) {
+			result.add(new PreprocessorToken(type, lexer.getText()));
+		}
+
+		result.addAll(right.subList(1, right.size()));
+	}
+}
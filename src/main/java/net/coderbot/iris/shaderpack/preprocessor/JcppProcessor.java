@@ -5,6 +5,10 @@ import org.anarres.cpp.Preprocessor;
 import org.anarres.cpp.StringLexerSource;
 import org.anarres.cpp.Token;
 
+/**
+ * The original JCPP-based preprocessing pipeline. Shader packs are now preprocessed with {@link GlslPreprocessor}, this
+ * is only kept around as the reference implementation that the output of {@link GlslPreprocessor} is tested against.
+ */
 public class JcppProcessor {
 	// Derived from GlShader from Canvas, licenced under LGPL
 	public static String glslPreprocessSource(String source) {
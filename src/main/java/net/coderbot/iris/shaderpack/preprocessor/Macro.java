@@ -0,0 +1,25 @@
+package net.coderbot.iris.shaderpack.preprocessor;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * A macro defined with #define, with its replacement list already split into tokens.
+ */
+final class Macro {
+	final String name;
+	// The number of parameters of a function-like macro, or -1 for an object-like macro.
+	final int parameterCount;
+	final ImmutableList<PreprocessorToken> body;
+
+	Macro(String name, int parameterCount, List<PreprocessorToken> body) {
+		this.name = name;
+		this.parameterCount = parameterCount;
+		this.body = ImmutableList.copyOf(body);
+	}
+
+	boolean isFunctionLike() {
+		return parameterCount >= 0;
+	}
+}
@@ -0,0 +1,153 @@
+package net.coderbot.iris.shaderpack.preprocessor;
+
+import net.coderbot.iris.gl.shader.ShaderConstants;
+
+import java.util.Collections;
+
+/**
+ * A table of defined macros that supports looking up macro names directly from a range of the source string, so that
+ * checking whether an identifier is a macro does not require allocating a string for every identifier in a shader.
+ *
+ * <p>A table may be layered on top of a shared parent table, such as the table of constants defined by Iris for every
+ * program. Definitions and removals only ever affect the child table, so the parent table is never copied.</p>
+ */
+public final class MacroTable {
+	private static final int INITIAL_CAPACITY = 64;
+
+	// Stored in place of a macro in a child table to hide a macro of the parent table after an #undef.
+	private static final Macro REMOVED = new Macro("", -1, Collections.emptyList());
+
+	private MacroTable parent;
+	// The number of #define lines that this table was parsed from.
+	private int definitionCount;
+
+	private String[] keys;
+	private Macro[] values;
+	private int size;
+
+	MacroTable(MacroTable parent) {
+		this.parent = parent;
+		this.keys = new String[INITIAL_CAPACITY];
+		this.values = new Macro[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Parses the given constants into a macro table once, so that they can be shared by every program of a shader pack
+	 * instead of being injected into and reparsed from the source of every single program.
+	 */
+	public static MacroTable fromConstants(ShaderConstants constants) {
+		MacroTable table = new MacroTable(GlslPreprocessor.BUILTINS);
+		GlslPreprocessor.defineAll(table, constants.getDefineStrings());
+		table.definitionCount = constants.getDefineStrings().size();
+
+		return table;
+	}
+
+	int getDefinitionCount() {
+		return definitionCount;
+	}
+
+	/**
+	 * Replaces the parent of this table. Local definitions of macros that are also defined by the new parent are
+	 * removed, as if the parent's macros were defined after them.
+	 */
+	void inherit(MacroTable parent) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null && values[i] != REMOVED && parent.get(keys[i]) != null) {
+				values[i] = REMOVED;
+			}
+		}
+
+		this.parent = parent;
+	}
+
+	Macro get(String name) {
+		return get(name, 0, name.length());
+	}
+
+	/**
+	 * Looks up the macro named by the given range of the given string.
+	 *
+	 * @return the macro, or null if no such macro is defined
+	 */
+	Macro get(String source, int start, int end) {
+		int mask = keys.length - 1;
+		int index = hash(source, start, end) & mask;
+
+		while (true) {
+			String key = keys[index];
+
+			if (key == null) {
+				break;
+			}
+
+			if (key.length() == end - start && key.regionMatches(0, source, start, end - start)) {
+				Macro macro = values[index];
+
+				return macro == REMOVED ? null : macro;
+			}
+
+			index = (index + 1) & mask;
+		}
+
+		return parent != null ? parent.get(source, start, end) : null;
+	}
+
+	void define(Macro macro) {
+		put(macro.name, macro);
+	}
+
+	void undefine(String name) {
+		if (get(name) != null) {
+			put(name, REMOVED);
+		}
+	}
+
+	private void put(String name, Macro macro) {
+		if ((size + 1) * 2 > keys.length) {
+			resize();
+		}
+
+		int mask = keys.length - 1;
+		int index = hash(name, 0, name.length()) & mask;
+
+		while (keys[index] != null) {
+			if (keys[index].equals(name)) {
+				values[index] = macro;
+				return;
+			}
+
+			index = (index + 1) & mask;
+		}
+
+		keys[index] = name;
+		values[index] = macro;
+		size++;
+	}
+
+	private void resize() {
+		String[] oldKeys = keys;
+		Macro[] oldValues = values;
+
+		keys = new String[oldKeys.length * 2];
+		values = new Macro[oldValues.length * 2];
+		size = 0;
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private static int hash(String source, int start, int end) {
+		int hash = 0;
+
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + source.charAt(i);
+		}
+
+		// Spread the low bits, since the table is indexed with a mask.
+		return hash ^ (hash >>> 16);
+	}
+}
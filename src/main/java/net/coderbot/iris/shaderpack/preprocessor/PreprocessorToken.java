@@ -0,0 +1,57 @@
+package net.coderbot.iris.shaderpack.preprocessor;
+
+/**
+ * A materialized token, used for macro bodies and while expanding macros. Ordinary source text that doesn't involve
+ * macros never gets turned into token objects.
+ */
+final class PreprocessorToken {
+	static final PreprocessorToken SPACE = new PreprocessorToken(GlslLexer.WHITESPACE, " ");
+
+	final int type;
+	final String text;
+	// The index of the macro parameter that this token refers to within a macro body, or -1 if it isn't one.
+	final int parameter;
+	// Set on identifiers that must never be expanded again, because they were encountered while the macro they name
+	// was already being expanded.
+	final boolean painted;
+
+	PreprocessorToken(int type, String text) {
+		this(type, text, -1, false);
+	}
+
+	private PreprocessorToken(int type, String text, int parameter, boolean painted) {
+		this.type = type;
+		this.text = text;
+		this.parameter = parameter;
+		this.painted = painted;
+	}
+
+	static PreprocessorToken parameter(String text, int parameter) {
+		return new PreprocessorToken(GlslLexer.IDENTIFIER, text, parameter, false);
+	}
+
+	PreprocessorToken paint() {
+		return new PreprocessorToken(type, text, parameter, true);
+	}
+
+	/**
+	 * Whitespace, newlines, and comments all separate tokens, but otherwise have no meaning to the preprocessor.
+	 */
+	boolean isWhitespace() {
+		return isWhitespace(type);
+	}
+
+	boolean is(String punctuator) {
+		return type == GlslLexer.PUNCTUATOR && text.equals(punctuator);
+	}
+
+	static boolean isWhitespace(int type) {
+		return type == GlslLexer.WHITESPACE || type == GlslLexer.NEWLINE
+			|| type == GlslLexer.LINE_COMMENT || type == GlslLexer.BLOCK_COMMENT;
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+}
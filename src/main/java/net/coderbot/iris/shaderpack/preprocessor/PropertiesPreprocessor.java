@@ -1,121 +1,231 @@
 package net.coderbot.iris.shaderpack.preprocessor;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.coderbot.iris.Iris;
 import net.coderbot.iris.gl.shader.StandardMacros;
 import net.coderbot.iris.shaderpack.option.ShaderPackOptions;
-import org.anarres.cpp.Feature;
-import org.anarres.cpp.LexerException;
-import org.anarres.cpp.Preprocessor;
-import org.anarres.cpp.StringLexerSource;
-import org.anarres.cpp.Token;
-
-import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.stream.Collectors;
+
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Preprocesses .properties files such as shaders.properties and the ID map files in a single pass over their lines.
+ *
+ * <p>Lines are handled according to the rules that shader packs have come to rely on:</p>
+ * <ul>
+ *     <li>Every line is trimmed, and lines ending with a backslash are joined with the next line.</li>
+ *     <li>Lines starting with # are preprocessor directives if they are one of #define, #undef, #if, #ifdef,
+ *     #ifndef, #elif, #else, or #endif, and comments otherwise.</li>
+ *     <li>Lines that contain a dotted name such as {@code block.1} or {@code program.composite.enabled} are passed
+ *     through without any macro expansion, and are moved before all other lines.</li>
+ *     <li>All macros in other lines are expanded, using the values of the shader pack options as macros.</li>
+ * </ul>
+ */
 public class PropertiesPreprocessor {
-	// Derived from ShaderProcessor.glslPreprocessSource, which is derived from GlShader from Canvas, licenced under LGPL
-	public static String preprocessSource(String source, ShaderPackOptions shaderPackOptions) {
-		if (source.contains(PropertyCollectingListener.PROPERTY_MARKER)) {
-			throw new RuntimeException("Some shader author is trying to exploit internal Iris implementation details, stop!");
-		}
+	// Bits of the state of each level of #if nesting
+	private static final int ACTIVE = 1;
+	private static final int TAKEN = 2;
+	private static final int PARENT_ACTIVE = 4;
 
-		List<String> booleanValues = getBooleanValues(shaderPackOptions);
-		Map<String, String> stringValues = getStringValues(shaderPackOptions);
+	public static String preprocessSource(String source, ShaderPackOptions shaderPackOptions) {
+		List<String> defines = new ArrayList<>();
 
-		@SuppressWarnings("resource")
-		final Preprocessor pp = new Preprocessor();
-		try {
-			for (String value : booleanValues) {
-				pp.addMacro(value);
-			}
-			pp.addMacro("MC_VERSION", StandardMacros.getMcVersion());
-		} catch (LexerException e) {
-				e.printStackTrace();
-		}
-		stringValues.forEach((name, value) -> {
-			try {
-				pp.addMacro(name, value);
-			} catch (LexerException e) {
-				e.printStackTrace();
+		shaderPackOptions.getOptionSet().getBooleanOptions().forEach((name, option) -> {
+			if (shaderPackOptions.getOptionValues().getBooleanValueOrDefault(name)) {
+				defines.add("#define " + name);
 			}
 		});
 
-		return process(pp, source);
+		defines.add("#define MC_VERSION " + StandardMacros.getMcVersion());
+
+		shaderPackOptions.getOptionSet().getStringOptions().forEach((name, option) ->
+			defines.add("#define " + name + " " + shaderPackOptions.getOptionValues().getStringValueOrDefault(name)));
+
+		return process(source, defines);
 	}
 
 	public static String preprocessSource(String source) {
-		if (source.contains(PropertyCollectingListener.PROPERTY_MARKER)) {
-			throw new RuntimeException("Some shader author is trying to exploit internal Iris implementation details, stop!");
-		}
+		return process(source, Collections.singletonList("#define MC_VERSION " + StandardMacros.getMcVersion()));
+	}
 
-		Preprocessor preprocessor = new Preprocessor();
+	private static String process(String source, List<String> defines) {
+		MacroTable macros = new MacroTable(GlslPreprocessor.BUILTINS);
+		GlslPreprocessor.defineAll(macros, defines);
 
-		try {
-			preprocessor.addMacro("MC_VERSION", StandardMacros.getMcVersion());
-		} catch (LexerException e) {
-			e.printStackTrace();
-		}
+		// Lines with dotted names are moved to the start, ahead of all other lines.
+		StringBuilder passthrough = new StringBuilder();
+		StringBuilder expanded = new StringBuilder();
+		IntArrayList conditionals = new IntArrayList();
+		boolean active = true;
 
-		return process(preprocessor, source);
-	}
+		int length = source.length();
+		int position = 0;
+
+		while (position < length) {
+			StringBuilder joined = null;
+			String line;
+
+			// Read the next logical line, joining lines that end with a backslash with the line after them.
+			while (true) {
+				int end = position;
+
+				while (end < length && source.charAt(end) != '\n' && source.charAt(end) != '\r') {
+					end++;
+				}
 
-	private static String process(Preprocessor preprocessor, String source) {
-		preprocessor.setListener(new PropertiesCommentListener());
-		PropertyCollectingListener listener = new PropertyCollectingListener();
-		source = source.replaceAll("([a-zA-Z]+\\.[a-zA-Z0-9]+)", "#warning IRIS_PASSTHROUGH $1");
-		preprocessor.setListener(listener);
+				String physical = source.substring(position, end).trim();
 
-		// Not super efficient, but this removes trailing whitespace on lines, fixing an issue with whitespace after
-		// line continuations (see PreprocessorTest#testWeirdPropertiesLineContinuation)
-		// Required for Voyager Shader
-		source = Arrays.stream(source.split("\\R")).map(String::trim).collect(Collectors.joining("\n"));
+				if (end < length && source.charAt(end) == '\r' && end + 1 < length && source.charAt(end + 1) == '\n') {
+					end++;
+				}
 
-		preprocessor.addInput(new StringLexerSource(source, true));
-		preprocessor.addFeature(Feature.KEEPCOMMENTS);
+				position = end + 1;
 
-		final StringBuilder builder = new StringBuilder();
+				boolean continued = physical.endsWith("\\") && position < length;
 
-		try {
-			for (;;) {
-				final Token tok = preprocessor.token();
-				if (tok == null) break;
-				if (tok.getType() == Token.EOF) break;
-				builder.append(tok.getText());
+				if (continued) {
+					physical = physical.substring(0, physical.length() - 1);
+				}
+
+				if (joined != null) {
+					joined.append(physical);
+				} else if (continued) {
+					joined = new StringBuilder(physical);
+				}
+
+				if (!continued) {
+					line = joined != null ? joined.toString() : physical;
+					break;
+				}
+			}
+
+			if (line.startsWith("#")) {
+				active = directive(line, macros, conditionals, active);
+			} else if (!active || line.isEmpty()) {
+				continue;
+			} else if (hasDottedName(line)) {
+				passthrough.append(line).append('\n');
+			} else {
+				expanded.append(GlslPreprocessor.expandLine(line, macros)).append('\n');
 			}
-		} catch (final Exception e) {
-			Iris.logger.error("Properties pre-processing failed", e);
 		}
 
-		source = builder.toString();
+		if (!conditionals.isEmpty()) {
+			Iris.logger.warn("Unterminated #if in properties file");
+		}
 
-		return listener.collectLines() + source;
+		return passthrough.append(expanded).toString();
 	}
 
-	private static List<String> getBooleanValues(ShaderPackOptions shaderPackOptions) {
-		List<String> booleanValues = new ArrayList<>();
+	/**
+	 * Handles a line starting with #, which is either a directive or a comment.
+	 *
+	 * @return whether the lines after this one are active
+	 */
+	private static boolean directive(String line, MacroTable macros, IntArrayList conditionals, boolean active) {
+		int start = 1;
 
-		shaderPackOptions.getOptionSet().getBooleanOptions().forEach((string, value) -> {
-			boolean trueValue = shaderPackOptions.getOptionValues().getBooleanValueOrDefault(string);
+		while (start < line.length() && Character.isWhitespace(line.charAt(start))) {
+			start++;
+		}
 
-			if (trueValue) {
-				booleanValues.add(string);
-			}
-		});
+		int end = readIdentifier(line, start);
+		String name = line.substring(start, end);
+		String rest = line.substring(end);
+
+		switch (name) {
+			case "define":
+			case "undef":
+				if (active) {
+					GlslPreprocessor.defineAll(macros, Collections.singletonList(line));
+				}
+
+				return active;
+			case "if":
+			case "ifdef":
+			case "ifndef":
+				if (!active) {
+					conditionals.push(0);
+					break;
+				}
+
+				boolean value = name.equals("if") ? GlslPreprocessor.evaluate(rest, macros)
+					: isDefined(rest, macros) == name.equals("ifdef");
+
+				conditionals.push(PARENT_ACTIVE | (value ? ACTIVE | TAKEN : 0));
+				break;
+			case "elif":
+			case "else":
+				if (conditionals.isEmpty()) {
+					Iris.logger.warn("#" + name + " without #if in properties file");
+					return active;
+				}
+
+				int state = conditionals.popInt() & ~ACTIVE;
+
+				if ((state & PARENT_ACTIVE) != 0 && (state & TAKEN) == 0
+						&& (name.equals("else") || GlslPreprocessor.evaluate(rest, macros))) {
+					state |= ACTIVE | TAKEN;
+				}
+
+				conditionals.push(state);
+				break;
+			case "endif":
+				if (conditionals.isEmpty()) {
+					Iris.logger.warn("#endif without #if in properties file");
+					return active;
+				}
+
+				conditionals.popInt();
+				break;
+			default:
+				// In .properties files, #'s are also used for comments
+				return active;
+		}
+
+		return conditionals.isEmpty() || (conditionals.topInt() & ACTIVE) != 0;
+	}
+
+	private static boolean isDefined(String rest, MacroTable macros) {
+		int start = 0;
 
-		return booleanValues;
+		while (start < rest.length() && Character.isWhitespace(rest.charAt(start))) {
+			start++;
+		}
+
+		return macros.get(rest, start, readIdentifier(rest, start)) != null;
 	}
 
-	private static Map<String, String> getStringValues(ShaderPackOptions shaderPackOptions) {
-		Map<String, String> stringValues = new HashMap<>();
+	private static int readIdentifier(String line, int start) {
+		int end = start;
 
-		shaderPackOptions.getOptionSet().getStringOptions().forEach(
-				(optionName, value) -> stringValues.put(optionName, shaderPackOptions.getOptionValues().getStringValueOrDefault(optionName)));
+		while (end < line.length() && GlslLexer.isIdentifierPart(line.charAt(end))) {
+			end++;
+		}
+
+		return end;
+	}
+
+	/**
+	 * Checks whether the line contains a letter followed by a dot and another letter or digit, such as in
+	 * {@code block.1} or {@code texture.noise}.
+	 */
+	private static boolean hasDottedName(String line) {
+		for (int i = 1; i < line.length() - 1; i++) {
+			if (line.charAt(i) == '.' && isLetter(line.charAt(i - 1)) && isLetterOrDigit(line.charAt(i + 1))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
 
-		return stringValues;
+	private static boolean isLetterOrDigit(char c) {
+		return isLetter(c) || (c >= '0' && c <= '9');
 	}
 }
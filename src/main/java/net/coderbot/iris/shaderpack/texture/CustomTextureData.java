@@ -4,6 +4,8 @@ import net.coderbot.iris.gl.texture.InternalTextureFormat;
 import net.coderbot.iris.gl.texture.PixelFormat;
 import net.coderbot.iris.gl.texture.PixelType;
 
+import java.nio.ByteBuffer;
+
 public abstract class CustomTextureData {
 	private CustomTextureData() {
 
@@ -11,9 +13,9 @@ public abstract class CustomTextureData {
 
 	public static final class PngData extends CustomTextureData {
 		private final TextureFilteringData filteringData;
-		private final byte[] content;
+		private final ByteBuffer content;
 
-		public PngData(TextureFilteringData filteringData, byte[] content) {
+		public PngData(TextureFilteringData filteringData, ByteBuffer content) {
 			this.filteringData = filteringData;
 			this.content = content;
 		}
@@ -22,8 +24,12 @@ public abstract class CustomTextureData {
 			return filteringData;
 		}
 
-		public byte[] getContent() {
-			return content;
+		/**
+		 * @return The encoded PNG image, between the position and the limit of the buffer. This may be a read-only
+		 *         view of data shared with the pack source that the texture was read from.
+		 */
+		public ByteBuffer getContent() {
+			return content.duplicate();
 		}
 	}
 
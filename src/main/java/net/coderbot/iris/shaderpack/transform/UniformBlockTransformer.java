@@ -0,0 +1,229 @@
+package net.coderbot.iris.shaderpack.transform;
+
+import net.coderbot.iris.gl.uniform.UniformBlock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewires plain uniform declarations to the members of a uniform block, so that their values are read from a uniform
+ * buffer instead of being set on each program.
+ *
+ * <p>Only declarations of a single uniform with exactly the type provided by the block are rewired. Anything else, such
+ * as a uniform declared with a different type or several uniforms declared in one statement, is left alone and keeps
+ * being set through its uniform location. The same goes for uniforms whose name is also used to declare something else,
+ * such as a local variable or a struct field, since renaming those would need a real GLSL parser to get right.</p>
+ *
+ * <p>Comments are never rewritten, and declarations that only appear within comments are ignored.</p>
+ */
+public class UniformBlockTransformer {
+	private static final Pattern VERSION = Pattern.compile("#version\\s+(\\d+)");
+
+	private final UniformBlock block;
+	private final List<RewirableMember> members;
+
+	public UniformBlockTransformer(UniformBlock block) {
+		this.block = block;
+		this.members = new ArrayList<>();
+
+		// NB: The patterns only depend on the block, so compile them once instead of for every source.
+		for (UniformBlock.Member member : block.getMembers()) {
+			members.add(new RewirableMember(member));
+		}
+	}
+
+	/**
+	 * @return the transformed source, or the source itself if it doesn't declare any of the uniforms in the block
+	 */
+	public String patch(String source) {
+		return patch(source, new ArrayList<>());
+	}
+
+	/**
+	 * Rewires the given source to read from the block. This doesn't mark any of the members as used, since the caller
+	 * only knows whether the rewired program is actually used once it has been built.
+	 *
+	 * @param rewired receives the members that the transformed source reads from the block
+	 * @return the transformed source, or the source itself if it doesn't declare any of the uniforms in the block
+	 */
+	public String patch(String source, Collection<UniformBlock.Member> rewired) {
+		if (!source.contains("#version")) {
+			// Not something that we can transform, let the compiler report the problem instead.
+			return source;
+		}
+
+		String code = blankComments(source);
+		List<Edit> edits = new ArrayList<>();
+
+		for (RewirableMember member : members) {
+			if (member.collectEdits(code, edits)) {
+				rewired.add(member.member);
+			}
+		}
+
+		if (edits.isEmpty()) {
+			return source;
+		}
+
+		edits.sort((a, b) -> Integer.compare(a.start, b.start));
+
+		StringBuilder patched = new StringBuilder(source.length());
+		int copied = 0;
+
+		for (Edit edit : edits) {
+			patched.append(source, copied, edit.start).append(edit.replacement);
+			copied = edit.end;
+		}
+
+		patched.append(source, copied, source.length());
+
+		StringTransformations transformations = new StringTransformations(patched.toString());
+
+		if (getVersion(transformations) < 140) {
+			transformations.injectLine(Transformations.InjectionPoint.DEFINES,
+				"#extension GL_ARB_uniform_buffer_object : require");
+		}
+
+		transformations.injectLine(Transformations.InjectionPoint.BEFORE_CODE, block.getDeclaration());
+
+		return transformations.toString();
+	}
+
+	/**
+	 * Replaces the contents of all comments with spaces, keeping line breaks, so that the offsets of everything else
+	 * stay the same.
+	 */
+	private static String blankComments(String source) {
+		char[] code = source.toCharArray();
+		int index = 0;
+
+		while (index < code.length - 1) {
+			if (code[index] == '/' && code[index + 1] == '/') {
+				while (index < code.length && code[index] != '\n') {
+					code[index++] = ' ';
+				}
+			} else if (code[index] == '/' && code[index + 1] == '*') {
+				int end = source.indexOf("*/", index + 2);
+				end = end == -1 ? code.length : end + 2;
+
+				for (; index < end; index++) {
+					if (code[index] != '\n') {
+						code[index] = ' ';
+					}
+				}
+			} else {
+				index++;
+			}
+		}
+
+		return new String(code);
+	}
+
+	private static int getVersion(Transformations transformations) {
+		Matcher matcher = VERSION.matcher(transformations.getPrefix());
+
+		if (!matcher.find()) {
+			// Assume the oldest version, since requiring an extension that is also core doesn't hurt.
+			return 110;
+		}
+
+		return Integer.parseInt(matcher.group(1));
+	}
+
+	private static final class RewirableMember {
+		private final UniformBlock.Member member;
+		private final Pattern declaration;
+		private final Pattern otherDeclaration;
+		private final Pattern reference;
+
+		private RewirableMember(UniformBlock.Member member) {
+			String name = Pattern.quote(member.getUniformName());
+
+			this.member = member;
+			this.declaration = Pattern.compile("\\buniform\\s+" + member.getGlslType() + "\\s+" + name + "\\s*;");
+			// Anything that looks like "type name;", "type name =", "type name,", "type name[", or "type name)" declares
+			// a variable, parameter, or struct field with that name.
+			this.otherDeclaration = Pattern.compile("\\b(?!return\\b|else\\b|case\\b)[A-Za-z_]\\w*\\s+" + name
+				+ "\\s*[;=,\\[)]");
+			this.reference = Pattern.compile("\\b" + name + "\\b");
+		}
+
+		/**
+		 * Adds the edits needed to rewire this member to the list.
+		 *
+		 * @param code the source with all comments blanked out
+		 * @return whether the member is rewired
+		 */
+		private boolean collectEdits(String code, List<Edit> edits) {
+			List<Edit> removals = new ArrayList<>();
+			Matcher matcher = declaration.matcher(code);
+
+			while (matcher.find()) {
+				removals.add(new Edit(matcher.start(), matcher.end(), ""));
+			}
+
+			if (removals.isEmpty()) {
+				return false;
+			}
+
+			matcher = otherDeclaration.matcher(code);
+
+			while (matcher.find()) {
+				if (!isWithin(removals, matcher.start())) {
+					return false;
+				}
+			}
+
+			List<Edit> renames = new ArrayList<>();
+			matcher = reference.matcher(code);
+
+			while (matcher.find()) {
+				if (isWithin(removals, matcher.start()) || isFieldAccess(code, matcher.start())) {
+					continue;
+				}
+
+				renames.add(new Edit(matcher.start(), matcher.end(), member.getMemberName()));
+			}
+
+			edits.addAll(removals);
+			edits.addAll(renames);
+
+			return true;
+		}
+
+		private static boolean isWithin(List<Edit> edits, int position) {
+			for (Edit edit : edits) {
+				if (position >= edit.start && position < edit.end) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		private static boolean isFieldAccess(String code, int start) {
+			int index = start - 1;
+
+			while (index >= 0 && Character.isWhitespace(code.charAt(index))) {
+				index--;
+			}
+
+			return index >= 0 && code.charAt(index) == '.';
+		}
+	}
+
+	private static final class Edit {
+		private final int start;
+		private final int end;
+		private final String replacement;
+
+		private Edit(int start, int end, String replacement) {
+			this.start = start;
+			this.end = end;
+			this.replacement = replacement;
+		}
+	}
+}
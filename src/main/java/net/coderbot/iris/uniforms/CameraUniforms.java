@@ -20,9 +20,12 @@ public class CameraUniforms {
 	public static void addCameraUniforms(UniformHolder uniforms, FrameUpdateNotifier notifier) {
 		CameraPositionTracker tracker = new CameraPositionTracker(notifier);
 
-		uniforms
-			.uniform1f(ONCE, "near", () -> 0.05)
-			.uniform1f(PER_FRAME, "far", CameraUniforms::getRenderDistanceInBlocks)
+		uniforms.uniform1f(ONCE, "near", () -> 0.05);
+
+		uniforms.dependingOn(UniformDependencies.SETTINGS)
+			.uniform1f(PER_FRAME, "far", CameraUniforms::getRenderDistanceInBlocks);
+
+		uniforms.dependingOn(UniformDependencies.CAMERA_POSITION)
 			.uniform3d(PER_FRAME, "cameraPosition", tracker::getCurrentCameraPosition)
 			.uniform3d(PER_FRAME, "previousCameraPosition", tracker::getPreviousCameraPosition);
 	}
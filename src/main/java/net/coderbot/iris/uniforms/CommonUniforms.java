@@ -4,23 +4,23 @@ import java.util.Objects;
 import java.util.function.IntSupplier;
 
 import com.mojang.blaze3d.platform.GlStateManager;
-import net.coderbot.iris.JomlConversions;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
 import net.coderbot.iris.gl.state.StateUpdateNotifiers;
 import net.coderbot.iris.gl.uniform.DynamicUniformHolder;
 import net.coderbot.iris.gl.uniform.UniformHolder;
+import net.coderbot.iris.gl.uniform.UniformValueCache;
 import net.coderbot.iris.layer.GbufferPrograms;
 import net.coderbot.iris.mixin.statelisteners.BooleanStateAccessor;
 import net.coderbot.iris.mixin.statelisteners.GlStateManagerAccessor;
 import net.coderbot.iris.samplers.TextureAtlasTracker;
-import net.coderbot.iris.shaderpack.IdMap;
 import net.coderbot.iris.shaderpack.PackDirectives;
-import net.coderbot.iris.uniforms.transforms.SmoothedFloat;
+import net.coderbot.iris.uniforms.custom.CustomUniforms;
+import net.coderbot.iris.uniforms.transforms.SmoothedSignals;
 import net.coderbot.iris.uniforms.transforms.SmoothedVec2f;
 import net.coderbot.iris.vendored.joml.Vector2f;
 import net.coderbot.iris.vendored.joml.Vector2i;
-import net.coderbot.iris.vendored.joml.Vector3d;
+import net.coderbot.iris.vendored.joml.Vector3f;
 import net.coderbot.iris.vendored.joml.Vector4f;
-import net.coderbot.iris.vendored.joml.Vector4i;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.player.LocalPlayer;
 import net.minecraft.client.renderer.GameRenderer;
@@ -32,6 +32,7 @@ import net.minecraft.world.effect.MobEffects;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.item.BlockItem;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.LightLayer;
 import net.minecraft.world.level.material.FluidState;
@@ -44,87 +45,120 @@ import static net.coderbot.iris.gl.uniform.UniformUpdateFrequency.PER_TICK;
 
 public final class CommonUniforms {
 	private static final Minecraft client = Minecraft.getInstance();
+	private static final BlockPos.MutableBlockPos eyeBlockPos = new BlockPos.MutableBlockPos();
 
 	private CommonUniforms() {
 		// no construction allowed
 	}
 
 	// Needs to use a LocationalUniformHolder as we need it for the common uniforms
-	public static void addCommonUniforms(DynamicUniformHolder uniforms, IdMap idMap, PackDirectives directives, FrameUpdateNotifier updateNotifier) {
+	public static void addCommonUniforms(DynamicUniformHolder holder, Reference2IntMap<Item> itemIdMap,
+										 PackDirectives directives, FrameUpdateNotifier updateNotifier,
+										 SmoothedSignals smoothedSignals, UniformValueCache uniformValues,
+										 CustomUniforms customUniforms) {
+		// NB: The custom uniforms of the pack go first, since the first uniform registered with a given name wins.
+		customUniforms.assignTo(holder);
+
+		addBuiltinUniforms(holder, itemIdMap, directives, updateNotifier, smoothedSignals, uniformValues);
+
+		if (customUniforms.isEmpty()) {
+			HardcodedCustomUniforms.addHardcodedCustomUniforms(uniformValues.wrap(holder), updateNotifier, smoothedSignals);
+		}
+	}
+
+	/**
+	 * Adds the uniforms that Iris provides by itself, which are also the ones that custom uniforms can read from.
+	 */
+	public static void addBuiltinUniforms(DynamicUniformHolder holder, Reference2IntMap<Item> itemIdMap,
+										  PackDirectives directives, FrameUpdateNotifier updateNotifier,
+										  SmoothedSignals smoothedSignals, UniformValueCache uniformValues) {
+		// Per-frame and per-tick values are computed once and then shared by every program of the pipeline.
+		DynamicUniformHolder uniforms = uniformValues.wrap(holder);
+
 		CameraUniforms.addCameraUniforms(uniforms, updateNotifier);
 		ViewportUniforms.addViewportUniforms(uniforms);
 		WorldTimeUniforms.addWorldTimeUniforms(uniforms);
 		SystemTimeUniforms.addSystemTimeUniforms(uniforms);
 		new CelestialUniforms(directives.getSunPathRotation()).addCelestialUniforms(uniforms);
-		IdMapUniforms.addIdMapUniforms(uniforms, idMap);
+		IdMapUniforms.addIdMapUniforms(uniforms, itemIdMap);
 		IrisExclusiveUniforms.addIrisExclusiveUniforms(uniforms);
 		MatrixUniforms.addMatrixUniforms(uniforms, directives);
-		HardcodedCustomUniforms.addHardcodedCustomUniforms(uniforms, updateNotifier);
 		FogUniforms.addFogUniforms(uniforms);
 
 		// TODO: OptiFine doesn't think that atlasSize is a "dynamic" uniform,
 		//       but we do. How will custom uniforms depending on atlasSize work?
-		uniforms.uniform2i("atlasSize", () -> {
+		uniforms.uniform2i("atlasSize", destination -> {
 			int glId = GlStateManagerAccessor.getTEXTURES()[0].binding;
 
 			Vec2 atlasSize = TextureAtlasTracker.INSTANCE.getAtlasSize(glId);
 
-			return new Vector2i((int) atlasSize.x, (int) atlasSize.y);
+			destination.set((int) atlasSize.x, (int) atlasSize.y);
 		}, StateUpdateNotifiers.atlasTextureNotifier);
 
-		uniforms.uniform4i("blendFunc", () -> {
+		uniforms.uniform4i("blendFunc", destination -> {
 			GlStateManager.BlendState blend = net.coderbot.iris.mixin.GlStateManagerAccessor.getBLEND();
 
 			if (((BooleanStateAccessor) blend.mode).isEnabled()) {
-				return new Vector4i(blend.srcRgb, blend.dstRgb, blend.srcAlpha, blend.dstAlpha);
+				destination.set(blend.srcRgb, blend.dstRgb, blend.srcAlpha, blend.dstAlpha);
 			} else {
-				return new Vector4i(0, 0, 0, 0);
+				destination.set(0, 0, 0, 0);
 			}
 		}, StateUpdateNotifiers.blendFuncNotifier);
 
 		uniforms.uniform1i("renderStage", () -> GbufferPrograms.getCurrentPhase().ordinal(), StateUpdateNotifiers.phaseChangeNotifier);
 
-		CommonUniforms.generalCommonUniforms(uniforms, updateNotifier);
+		CommonUniforms.generalCommonUniforms(uniforms, directives, smoothedSignals);
 	}
 
-	public static void generalCommonUniforms(UniformHolder uniforms, FrameUpdateNotifier updateNotifier){
+	public static void generalCommonUniforms(UniformHolder uniforms, PackDirectives directives, SmoothedSignals smoothedSignals){
 		ExternallyManagedUniforms.addExternallyManagedUniforms116(uniforms);
 
-		// TODO: Parse the value of const float eyeBrightnessHalflife from the shaderpack's fragment shader configuration
-		SmoothedVec2f eyeBrightnessSmooth = new SmoothedVec2f(10.0f, 10.0f, CommonUniforms::getEyeBrightness, updateNotifier);
+		float eyeBrightnessHalfLife = directives.getEyeBrightnessHalfLife();
+		SmoothedVec2f eyeBrightnessSmooth = smoothedSignals.smooth2f("eyeBrightness", eyeBrightnessHalfLife,
+			eyeBrightnessHalfLife, CommonUniforms::getEyeBrightness);
+		Vector2f smoothedEyeBrightness = new Vector2f();
 
-		uniforms
+		uniforms.dependingOn(UniformDependencies.SETTINGS)
 			.uniform1b(PER_FRAME, "hideGUI", () -> client.options.hideGui)
+			.uniform1f(PER_FRAME, "screenBrightness", () -> client.options.gamma);
+
+		uniforms.dependingOn(UniformDependencies.HELD_ITEMS)
+			.uniform1i(PER_FRAME, "heldBlockLightValue", new HeldItemLightingSupplier(InteractionHand.MAIN_HAND))
+			.uniform1i(PER_FRAME, "heldBlockLightValue2", new HeldItemLightingSupplier(InteractionHand.OFF_HAND));
+
+		uniforms.dependingOn(UniformDependencies.PLAYER_EFFECTS)
+			.uniform1f(PER_FRAME, "blindness", CommonUniforms::getBlindness)
+			.uniform1f(PER_FRAME, "nightVision", CommonUniforms::getNightVision);
+
+		uniforms
 			.uniform1f(PER_FRAME, "eyeAltitude", () -> Objects.requireNonNull(client.getCameraEntity()).getEyeY())
 			.uniform1i(PER_FRAME, "isEyeInWater", CommonUniforms::isEyeInWater)
-			.uniform1f(PER_FRAME, "blindness", CommonUniforms::getBlindness)
-			.uniform1i(PER_FRAME, "heldBlockLightValue", new HeldItemLightingSupplier(InteractionHand.MAIN_HAND))
-			.uniform1i(PER_FRAME, "heldBlockLightValue2", new HeldItemLightingSupplier(InteractionHand.OFF_HAND))
-			.uniform1f(PER_FRAME, "nightVision", CommonUniforms::getNightVision)
-			.uniform1f(PER_FRAME, "screenBrightness", () -> client.options.gamma)
 			// just a dummy value for shaders where entityColor isn't supplied through a vertex attribute (and thus is
 			// not available) - suppresses warnings. See AttributeShaderTransformer for the actual entityColor code.
 			.uniform4f(ONCE, "entityColor", Vector4f::new)
 			.uniform1f(PER_TICK, "playerMood", CommonUniforms::getPlayerMood)
 			.uniform2i(PER_FRAME, "eyeBrightness", CommonUniforms::getEyeBrightness)
-			.uniform2i(PER_FRAME, "eyeBrightnessSmooth", () -> {
-				Vector2f smoothed = eyeBrightnessSmooth.get();
-				return new Vector2i((int) smoothed.x(),(int) smoothed.y());
+			.uniform2i(PER_FRAME, "eyeBrightnessSmooth", destination -> {
+				eyeBrightnessSmooth.write(smoothedEyeBrightness);
+				destination.set((int) smoothedEyeBrightness.x(), (int) smoothedEyeBrightness.y());
 			})
 			.uniform1f(PER_TICK, "rainStrength", CommonUniforms::getRainStrength)
-			// TODO: Parse the value of const float wetnessHalfLife and const float drynessHalfLife from the shaderpack's fragment shader configuration
-			.uniform1f(PER_TICK, "wetness", new SmoothedFloat(600f, 600f, CommonUniforms::getRainStrength, updateNotifier))
-			.uniform3d(PER_FRAME, "skyColor", CommonUniforms::getSkyColor)
+			.uniform1f(PER_TICK, "wetness", smoothedSignals.smooth("wetness", directives.getWetnessHalfLife(),
+				directives.getDrynessHalfLife(), CommonUniforms::getRainStrength))
+			.uniform3f(PER_FRAME, "skyColor", CommonUniforms::getSkyColor)
 			.uniform3d(PER_FRAME, "fogColor", CapturedRenderingState.INSTANCE::getFogColor);
 	}
 
-	private static Vector3d getSkyColor() {
+	private static void getSkyColor(Vector3f destination) {
 		if (client.level == null || client.cameraEntity == null) {
-			return new Vector3d();
+			destination.zero();
+			return;
 		}
 
-		return JomlConversions.fromVec3(client.level.getSkyColor(client.cameraEntity.blockPosition(),
-				CapturedRenderingState.INSTANCE.getTickDelta()));
+		Vec3 skyColor = client.level.getSkyColor(client.cameraEntity.blockPosition(),
+				CapturedRenderingState.INSTANCE.getTickDelta());
+
+		destination.set((float) skyColor.x, (float) skyColor.y, (float) skyColor.z);
 	}
 
 	static float getBlindness() {
@@ -159,22 +193,23 @@ public final class CommonUniforms {
 		return client.level.getRainLevel(CapturedRenderingState.INSTANCE.getTickDelta());
 	}
 
-	private static Vector2i getEyeBrightness() {
+	private static void getEyeBrightness(Vector2i destination) {
 		if (client.cameraEntity == null || client.level == null) {
-			return new Vector2i(0, 0);
+			destination.set(0, 0);
+			return;
 		}
 
 		Vec3 feet = client.cameraEntity.position();
-		Vec3 eyes = new Vec3(feet.x, client.cameraEntity.getEyeY(), feet.z);
-		BlockPos eyeBlockPos = new BlockPos(eyes);
+		// NB: Only ever called from the render thread, so sharing a single mutable position is fine.
+		eyeBlockPos.set(feet.x, client.cameraEntity.getEyeY(), feet.z);
 
 		int blockLight = client.level.getBrightness(LightLayer.BLOCK, eyeBlockPos);
 		int skyLight = client.level.getBrightness(LightLayer.SKY, eyeBlockPos);
 
-		return new Vector2i(blockLight * 16, skyLight * 16);
+		destination.set(blockLight * 16, skyLight * 16);
 	}
 
-	private static float getNightVision() {
+	static float getNightVision() {
 		Entity cameraEntity = client.getCameraEntity();
 
 		if (cameraEntity instanceof LivingEntity) {
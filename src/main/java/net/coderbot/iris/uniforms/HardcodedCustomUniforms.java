@@ -6,6 +6,7 @@ import net.coderbot.iris.gl.uniform.UniformHolder;
 import net.coderbot.iris.gl.uniform.UniformUpdateFrequency;
 import net.coderbot.iris.mixin.DimensionTypeAccessor;
 import net.coderbot.iris.uniforms.transforms.SmoothedFloat;
+import net.coderbot.iris.uniforms.transforms.SmoothedSignals;
 import net.coderbot.iris.vendored.joml.Math;
 import net.minecraft.client.Minecraft;
 import net.minecraft.core.BlockPos;
@@ -16,29 +17,30 @@ import net.minecraft.world.phys.Vec3;
 
 // These expressions are copied directly from BSL and Complementary.
 
-// TODO: Remove once custom uniforms are actually supported, this is just a temporary thing to get BSL & Complementary
-// mostly working under Iris.
+// TODO: Remove once custom uniforms cover everything that BSL & Complementary need, for now these are only used for
+// packs that don't define any custom uniforms that Iris understands.
 public class HardcodedCustomUniforms {
 	private static final Minecraft client = Minecraft.getInstance();
 
-	public static void addHardcodedCustomUniforms(UniformHolder holder, FrameUpdateNotifier updateNotifier) {
+	public static void addHardcodedCustomUniforms(UniformHolder holder, FrameUpdateNotifier updateNotifier,
+												  SmoothedSignals smoothedSignals) {
 		CameraUniforms.CameraPositionTracker tracker = new CameraUniforms.CameraPositionTracker(updateNotifier);
 
-		SmoothedFloat eyeInCave = new SmoothedFloat(6, 12, HardcodedCustomUniforms::getEyeInCave, updateNotifier);
+		SmoothedFloat eyeInCave = smoothedSignals.smooth("eyeInCave", 6, 12, HardcodedCustomUniforms::getEyeInCave);
 
 		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "timeAngle", HardcodedCustomUniforms::getTimeAngle);
 		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "timeBrightness", HardcodedCustomUniforms::getTimeBrightness);
 		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "moonBrightness", HardcodedCustomUniforms::getMoonBrightness);
 		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "shadowFade", HardcodedCustomUniforms::getShadowFade);
-		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "rainStrengthS", rainStrengthS(updateNotifier));
+		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "rainStrengthS", rainStrengthS(smoothedSignals));
 		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "blindFactor", HardcodedCustomUniforms::getBlindFactor);
 		// The following uniforms are Complementary specific, used for the biome check and starter/TAA features.
-		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "isDry", new SmoothedFloat(20, 10, () -> getRawPrecipitation() == 0 ? 1 : 0, updateNotifier));
-		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "isRainy", new SmoothedFloat(20, 10, () -> getRawPrecipitation() == 1 ? 1 : 0, updateNotifier));
-		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "isSnowy", new SmoothedFloat(20, 10, () -> getRawPrecipitation() == 2 ? 1 : 0, updateNotifier));
+		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "isDry", smoothedSignals.smooth("isDry", 20, 10, () -> getRawPrecipitation() == 0 ? 1 : 0));
+		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "isRainy", smoothedSignals.smooth("isRainy", 20, 10, () -> getRawPrecipitation() == 1 ? 1 : 0));
+		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "isSnowy", smoothedSignals.smooth("isSnowy", 20, 10, () -> getRawPrecipitation() == 2 ? 1 : 0));
 		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "isEyeInCave", CommonUniforms.isEyeInWater() == 0 ? eyeInCave : () -> 0);
 		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "velocity", () -> getVelocity(tracker));
-		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "starter", getStarter(tracker, updateNotifier));
+		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "starter", getStarter(tracker, smoothedSignals));
 	}
 
 	private static float getEyeInCave() {
@@ -69,8 +71,9 @@ public class HardcodedCustomUniforms {
 		return Math.sqrt(difX*difX + difY*difY + difZ*difZ);
 	}
 
-	private static SmoothedFloat getStarter(CameraUniforms.CameraPositionTracker tracker, FrameUpdateNotifier notifier) {
-		return new SmoothedFloat(20, 20, new SmoothedFloat(0, 31536000, () -> getMoving(tracker), notifier), notifier);
+	private static SmoothedFloat getStarter(CameraUniforms.CameraPositionTracker tracker, SmoothedSignals smoothedSignals) {
+		return smoothedSignals.smooth("starter", 20, 20,
+			smoothedSignals.smooth("moving", 0, 31536000, () -> getMoving(tracker)));
 	}
 
 	private static float getMoving(CameraUniforms.CameraPositionTracker tracker) {
@@ -105,8 +108,8 @@ public class HardcodedCustomUniforms {
 		return (float) Math.clamp(0.0, 1.0, 1.0 - (java.lang.Math.abs(java.lang.Math.abs(CelestialUniforms.getSunAngle() - 0.5) - 0.25) - 0.23) * 100.0);
 	}
 
-	private static SmoothedFloat rainStrengthS(FrameUpdateNotifier updateNotifier) {
-		return new SmoothedFloat(15, 15, CommonUniforms::getRainStrength, updateNotifier);
+	private static SmoothedFloat rainStrengthS(SmoothedSignals smoothedSignals) {
+		return smoothedSignals.smooth("rainStrength", 15, 15, CommonUniforms::getRainStrength);
 	}
 
 	private static float getRawPrecipitation() {
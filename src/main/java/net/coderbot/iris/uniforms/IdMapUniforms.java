@@ -2,15 +2,12 @@ package net.coderbot.iris.uniforms;
 
 import java.util.function.IntSupplier;
 
-import it.unimi.dsi.fastutil.objects.Object2IntFunction;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
 import net.coderbot.iris.gl.uniform.DynamicUniformHolder;
 import net.coderbot.iris.gl.uniform.UniformUpdateFrequency;
-import net.coderbot.iris.shaderpack.IdMap;
-import net.coderbot.iris.shaderpack.materialmap.NamespacedId;
 import net.minecraft.client.Minecraft;
-import net.minecraft.core.Registry;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.InteractionHand;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 
 public final class IdMapUniforms {
@@ -18,12 +15,16 @@ public final class IdMapUniforms {
 	private IdMapUniforms() {
 	}
 
-	public static void addIdMapUniforms(DynamicUniformHolder uniforms, IdMap idMap) {
-		uniforms
+	/**
+	 * @param itemIdMap the item ID map of the shader pack, resolved once per pipeline through
+	 *                  {@link net.coderbot.iris.block_rendering.BlockMaterialMapping#createItemIdMap}
+	 */
+	public static void addIdMapUniforms(DynamicUniformHolder uniforms, Reference2IntMap<Item> itemIdMap) {
+		uniforms.dependingOn(UniformDependencies.HELD_ITEMS)
 			.uniform1i(UniformUpdateFrequency.PER_FRAME, "heldItemId",
-				new HeldItemSupplier(InteractionHand.MAIN_HAND, idMap.getItemIdMap()))
+				new HeldItemSupplier(InteractionHand.MAIN_HAND, itemIdMap))
 			.uniform1i(UniformUpdateFrequency.PER_FRAME, "heldItemId2",
-				new HeldItemSupplier(InteractionHand.OFF_HAND, idMap.getItemIdMap()));
+				new HeldItemSupplier(InteractionHand.OFF_HAND, itemIdMap));
 
 		uniforms.uniform1i("entityId", CapturedRenderingState.INSTANCE::getCurrentRenderedEntity,
 				CapturedRenderingState.INSTANCE.getEntityIdNotifier());
@@ -38,9 +39,9 @@ public final class IdMapUniforms {
 	 */
 	private static class HeldItemSupplier implements IntSupplier {
 		private final InteractionHand hand;
-		private final Object2IntFunction<NamespacedId> itemIdMap;
+		private final Reference2IntMap<Item> itemIdMap;
 
-		HeldItemSupplier(InteractionHand hand, Object2IntFunction<NamespacedId> itemIdMap) {
+		HeldItemSupplier(InteractionHand hand, Reference2IntMap<Item> itemIdMap) {
 			this.hand = hand;
 			this.itemIdMap = itemIdMap;
 		}
@@ -53,9 +54,8 @@ public final class IdMapUniforms {
 			}
 
 			ItemStack heldStack = Minecraft.getInstance().player.getItemInHand(hand);
-			ResourceLocation heldItemId = Registry.ITEM.getKey(heldStack.getItem());
 
-			return itemIdMap.applyAsInt(new NamespacedId(heldItemId.getNamespace(), heldItemId.getPath()));
+			return itemIdMap.getInt(heldStack.getItem());
 		}
 	}
 }
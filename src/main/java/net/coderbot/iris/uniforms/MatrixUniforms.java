@@ -7,9 +7,11 @@ import java.nio.FloatBuffer;
 import java.util.function.Supplier;
 
 import net.coderbot.iris.gl.uniform.UniformHolder;
+import net.coderbot.iris.gl.uniform.ValueWriter;
 
 import net.coderbot.iris.pipeline.ShadowRenderer;
 import net.coderbot.iris.shaderpack.PackDirectives;
+import net.coderbot.iris.shadows.Matrix4fAccess;
 import net.coderbot.iris.shadow.ShadowMatrices;
 
 public final class MatrixUniforms {
@@ -45,30 +47,26 @@ public final class MatrixUniforms {
 				.uniformJomlMatrix(PER_FRAME, "shadow" + name + "Inverse", new InvertedArrayMatrix(supplier));
 	}
 
-	private static class Inverted implements Supplier<net.coderbot.iris.vendored.joml.Matrix4f> {
+	private static class Inverted implements ValueWriter<net.coderbot.iris.vendored.joml.Matrix4f> {
 		private final Supplier<Matrix4f> parent;
+		private final FloatBuffer buffer = FloatBuffer.allocate(16);
 
 		Inverted(Supplier<Matrix4f> parent) {
 			this.parent = parent;
 		}
 
 		@Override
-		public net.coderbot.iris.vendored.joml.Matrix4f get() {
-			// PERF: Don't copy + allocate this matrix every time?
-			Matrix4f copy = parent.get().copy();
+		public void write(net.coderbot.iris.vendored.joml.Matrix4f destination) {
+			// NB: store doesn't modify the matrix or move the position of the buffer, so neither needs to be copied or
+			// rewound here.
+			parent.get().store(buffer);
 
-			FloatBuffer buffer = FloatBuffer.allocate(16);
-			copy.store(buffer);
-			buffer.rewind();
-
-			net.coderbot.iris.vendored.joml.Matrix4f matrix4f = new net.coderbot.iris.vendored.joml.Matrix4f(buffer);
-			matrix4f.invert();
-
-			return matrix4f;
+			destination.set(buffer);
+			destination.invert();
 		}
 	}
 
-	private static class InvertedArrayMatrix implements Supplier<net.coderbot.iris.vendored.joml.Matrix4f> {
+	private static class InvertedArrayMatrix implements ValueWriter<net.coderbot.iris.vendored.joml.Matrix4f> {
 		private final Supplier<float[]> parent;
 
 		InvertedArrayMatrix(Supplier<float[]> parent) {
@@ -76,34 +74,32 @@ public final class MatrixUniforms {
 		}
 
 		@Override
-		public net.coderbot.iris.vendored.joml.Matrix4f get() {
-			FloatBuffer buffer = FloatBuffer.allocate(16);
-			buffer.put(parent.get());
-			buffer.rewind();
-
-			net.coderbot.iris.vendored.joml.Matrix4f matrix4f = new net.coderbot.iris.vendored.joml.Matrix4f(buffer);
-			matrix4f.invert();
-
-			return matrix4f;
+		public void write(net.coderbot.iris.vendored.joml.Matrix4f destination) {
+			destination.set(parent.get());
+			destination.invert();
 		}
 	}
 
 	private static class Previous implements Supplier<Matrix4f> {
 		private final Supplier<Matrix4f> parent;
-		private Matrix4f previous;
+		private final Matrix4f previous;
+		private final FloatBuffer buffer = FloatBuffer.allocate(16);
+		private final float[] current;
 
 		Previous(Supplier<Matrix4f> parent) {
 			this.parent = parent;
 			this.previous = new Matrix4f();
+			this.current = new float[16];
 		}
 
 		@Override
 		public Matrix4f get() {
-			// PERF: Don't copy + allocate these matrices every time?
-			Matrix4f copy = parent.get().copy();
-			Matrix4f previous = this.previous.copy();
+			// NB: Keep the values in a matrix and an array allocated up front, instead of copying the matrix every frame.
+			((Matrix4fAccess) (Object) previous).copyFromArray(current);
 
-			this.previous = copy;
+			parent.get().store(buffer);
+			buffer.get(current);
+			buffer.rewind();
 
 			return previous;
 		}
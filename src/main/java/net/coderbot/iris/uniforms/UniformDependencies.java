@@ -0,0 +1,167 @@
+package net.coderbot.iris.uniforms;
+
+import com.google.common.collect.ImmutableList;
+import com.mojang.blaze3d.pipeline.RenderTarget;
+import net.coderbot.iris.gl.uniform.UniformDependency;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.player.LocalPlayer;
+import net.minecraft.world.InteractionHand;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Holds the standard dependencies of the built-in uniforms. Like the uniforms themselves, these are shared by every
+ * program of the current pipeline.
+ *
+ * <p>Most of these are detected by comparing against a copy of the state from the previous frame, which is only done
+ * once per frame instead of once for every uniform in every program.</p>
+ */
+public final class UniformDependencies {
+	private static final Minecraft client = Minecraft.getInstance();
+
+	/**
+	 * The position of the camera. Since {@code previousCameraPosition} lags behind by a frame, this also changes on
+	 * the first frame after the camera stops moving.
+	 */
+	public static final UniformDependency CAMERA_POSITION = new UniformDependency("camera position", new CameraPositionDetector());
+
+	/**
+	 * The size of the main framebuffer.
+	 */
+	public static final UniformDependency VIEWPORT = new UniformDependency("viewport", new ViewportDetector());
+
+	/**
+	 * The video settings that uniforms expose directly, like the render distance.
+	 */
+	public static final UniformDependency SETTINGS = new UniformDependency("settings", new SettingsDetector());
+
+	/**
+	 * The items held in both hands of the player.
+	 */
+	public static final UniformDependency HELD_ITEMS = new UniformDependency("held items", new HeldItemsDetector());
+
+	/**
+	 * The strength of the status effects that change what the player sees.
+	 */
+	public static final UniformDependency PLAYER_EFFECTS = new UniformDependency("player effects", new PlayerEffectsDetector());
+
+	private static final ImmutableList<UniformDependency> ALL =
+		ImmutableList.of(CAMERA_POSITION, VIEWPORT, SETTINGS, HELD_ITEMS, PLAYER_EFFECTS);
+
+	private UniformDependencies() {
+		// no construction allowed
+	}
+
+	/**
+	 * Checks every dependency for changes. Must be called once at the start of each frame, after the camera has been
+	 * set up and before any program is used.
+	 */
+	public static void update() {
+		for (int i = 0; i < ALL.size(); i++) {
+			ALL.get(i).update();
+		}
+	}
+
+	private static final class CameraPositionDetector implements BooleanSupplier {
+		private double x = Double.NaN;
+		private double y;
+		private double z;
+		private boolean movedLastFrame = true;
+
+		@Override
+		public boolean getAsBoolean() {
+			Vec3 position = client.gameRenderer.getMainCamera().getPosition();
+			boolean moved = position.x != x || position.y != y || position.z != z;
+			boolean changed = moved || movedLastFrame;
+
+			x = position.x;
+			y = position.y;
+			z = position.z;
+			movedLastFrame = moved;
+
+			return changed;
+		}
+	}
+
+	private static final class ViewportDetector implements BooleanSupplier {
+		// NB: The main render target is never replaced, only resized.
+		private final RenderTarget framebuffer = client.getMainRenderTarget();
+		private int width = -1;
+		private int height = -1;
+
+		@Override
+		public boolean getAsBoolean() {
+			boolean changed = framebuffer.width != width || framebuffer.height != height;
+
+			width = framebuffer.width;
+			height = framebuffer.height;
+
+			return changed;
+		}
+	}
+
+	private static final class SettingsDetector implements BooleanSupplier {
+		private int renderDistance = -1;
+		private boolean hideGui;
+		private double gamma = Double.NaN;
+
+		@Override
+		public boolean getAsBoolean() {
+			boolean changed = client.options.renderDistance != renderDistance || client.options.hideGui != hideGui
+				|| client.options.gamma != gamma;
+
+			renderDistance = client.options.renderDistance;
+			hideGui = client.options.hideGui;
+			gamma = client.options.gamma;
+
+			return changed;
+		}
+	}
+
+	private static final class HeldItemsDetector implements BooleanSupplier {
+		private LocalPlayer player;
+		private Item mainHand;
+		private Item offHand;
+		private boolean first = true;
+
+		@Override
+		public boolean getAsBoolean() {
+			LocalPlayer player = client.player;
+			Item mainHand = player != null ? player.getItemInHand(InteractionHand.MAIN_HAND).getItem() : null;
+			Item offHand = player != null ? player.getItemInHand(InteractionHand.OFF_HAND).getItem() : null;
+
+			// NB: Items are singletons, and the held item uniforms only look at the item and not at the rest of the
+			// stack, so comparing by identity is enough.
+			boolean changed = first || player != this.player || mainHand != this.mainHand || offHand != this.offHand;
+
+			this.player = player;
+			this.mainHand = mainHand;
+			this.offHand = offHand;
+			first = false;
+
+			return changed;
+		}
+	}
+
+	private static final class PlayerEffectsDetector implements BooleanSupplier {
+		private float blindness = Float.NaN;
+		private float nightVision = Float.NaN;
+
+		@Override
+		public boolean getAsBoolean() {
+			// Both of these fade in and out depending on the remaining duration of the effect and on the partial tick,
+			// so there's no simpler state to compare against than the values themselves.
+			float blindness = CommonUniforms.getBlindness();
+			float nightVision = CommonUniforms.getNightVision();
+			boolean changed = Float.compare(blindness, this.blindness) != 0
+				|| Float.compare(nightVision, this.nightVision) != 0;
+
+			this.blindness = blindness;
+			this.nightVision = nightVision;
+
+			return changed;
+		}
+	}
+}
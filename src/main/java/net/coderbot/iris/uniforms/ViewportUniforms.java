@@ -30,7 +30,7 @@ public final class ViewportUniforms {
 	 */
 	public static void addViewportUniforms(UniformHolder uniforms) {
 		// TODO: What about the custom scale.composite3 property?
-		uniforms
+		uniforms.dependingOn(UniformDependencies.VIEWPORT)
 			.uniform1f(PER_FRAME, "viewHeight", () -> FRAMEBUFFER.height)
 			.uniform1f(PER_FRAME, "viewWidth", () -> FRAMEBUFFER.width)
 			.uniform1f(PER_FRAME, "aspectRatio", ViewportUniforms::getAspectRatio);
@@ -0,0 +1,47 @@
+package net.coderbot.iris.uniforms.custom;
+
+/**
+ * A custom uniform or variable defined in shaders.properties, such as
+ * {@code uniform.float.timeAngle = worldTime / 24000.0}. Variables can be used in the expressions of other definitions
+ * just like uniforms can, but they are never made available to programs.
+ */
+public final class CustomUniformDefinition {
+	private final CustomUniformType type;
+	private final String name;
+	private final String expression;
+	private final boolean uniform;
+
+	public CustomUniformDefinition(CustomUniformType type, String name, String expression, boolean uniform) {
+		this.type = type;
+		this.name = name;
+		this.expression = expression;
+		this.uniform = uniform;
+	}
+
+	public CustomUniformType getType() {
+		return type;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the unparsed expression
+	 */
+	public String getExpression() {
+		return expression;
+	}
+
+	/**
+	 * @return true if this defines a uniform, false if this defines a variable
+	 */
+	public boolean isUniform() {
+		return uniform;
+	}
+
+	@Override
+	public String toString() {
+		return (uniform ? "uniform." : "variable.") + type + "." + name + " = " + expression;
+	}
+}
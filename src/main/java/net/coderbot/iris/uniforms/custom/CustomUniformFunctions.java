@@ -0,0 +1,172 @@
+package net.coderbot.iris.uniforms.custom;
+
+import kroppeb.stareval.parser.BinaryOp;
+import kroppeb.stareval.parser.ParserOptions;
+import kroppeb.stareval.parser.UnaryOp;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The operators and functions that can be used in the expressions of custom uniforms, matching the ones that OptiFine
+ * supports.
+ *
+ * <p>Every operator and function is a single shared instance, so expressions that use the same function can be told
+ * apart from ones that don't just by comparing the functions.</p>
+ */
+final class CustomUniformFunctions {
+	static final ParserOptions OPTIONS;
+
+	private static final Map<BinaryOp, DoubleBinaryOperator> BINARY_OPERATORS = new IdentityHashMap<>();
+	private static final Map<UnaryOp, DoubleUnaryOperator> UNARY_OPERATORS = new IdentityHashMap<>();
+	private static final Map<String, DoubleUnaryOperator> UNARY_FUNCTIONS = new HashMap<>();
+	private static final Map<String, DoubleBinaryOperator> BINARY_FUNCTIONS = new HashMap<>();
+	private static final Map<String, VariadicFunction> VARIADIC_FUNCTIONS = new HashMap<>();
+
+	static {
+		ParserOptions.Builder builder = new ParserOptions.Builder();
+
+		// NB: Lower priorities bind more tightly, this follows the precedence of the operators in GLSL.
+		addBinaryOperator(builder, "*", 0, (a, b) -> a * b);
+		addBinaryOperator(builder, "/", 0, (a, b) -> a / b);
+		addBinaryOperator(builder, "%", 0, (a, b) -> a % b);
+		addBinaryOperator(builder, "+", 1, Double::sum);
+		addBinaryOperator(builder, "-", 1, (a, b) -> a - b);
+		addBinaryOperator(builder, "<", 2, (a, b) -> toDouble(a < b));
+		addBinaryOperator(builder, ">", 2, (a, b) -> toDouble(a > b));
+		addBinaryOperator(builder, "<=", 2, (a, b) -> toDouble(a <= b));
+		addBinaryOperator(builder, ">=", 2, (a, b) -> toDouble(a >= b));
+		addBinaryOperator(builder, "==", 3, (a, b) -> toDouble(a == b));
+		addBinaryOperator(builder, "!=", 3, (a, b) -> toDouble(a != b));
+		addBinaryOperator(builder, "&&", 4, (a, b) -> toDouble(a != 0.0 && b != 0.0));
+		addBinaryOperator(builder, "||", 5, (a, b) -> toDouble(a != 0.0 || b != 0.0));
+
+		addUnaryOperator(builder, "-", a -> -a);
+		addUnaryOperator(builder, "!", a -> toDouble(a == 0.0));
+
+		OPTIONS = builder.build();
+
+		UNARY_FUNCTIONS.put("sin", Math::sin);
+		UNARY_FUNCTIONS.put("cos", Math::cos);
+		UNARY_FUNCTIONS.put("asin", Math::asin);
+		UNARY_FUNCTIONS.put("acos", Math::acos);
+		UNARY_FUNCTIONS.put("tan", Math::tan);
+		UNARY_FUNCTIONS.put("atan", Math::atan);
+		UNARY_FUNCTIONS.put("torad", Math::toRadians);
+		UNARY_FUNCTIONS.put("todeg", Math::toDegrees);
+		UNARY_FUNCTIONS.put("abs", Math::abs);
+		UNARY_FUNCTIONS.put("floor", Math::floor);
+		UNARY_FUNCTIONS.put("ceil", Math::ceil);
+		UNARY_FUNCTIONS.put("round", a -> (double) Math.round(a));
+		UNARY_FUNCTIONS.put("frac", a -> a - Math.floor(a));
+		UNARY_FUNCTIONS.put("exp", Math::exp);
+		UNARY_FUNCTIONS.put("log", Math::log);
+		UNARY_FUNCTIONS.put("sqrt", Math::sqrt);
+		UNARY_FUNCTIONS.put("signum", Math::signum);
+
+		BINARY_FUNCTIONS.put("atan2", Math::atan2);
+		BINARY_FUNCTIONS.put("pow", Math::pow);
+		BINARY_FUNCTIONS.put("fmod", (a, b) -> a % b);
+
+		VARIADIC_FUNCTIONS.put("min", new VariadicFunction(2, Integer.MAX_VALUE, arguments -> {
+			double min = arguments[0];
+
+			for (int i = 1; i < arguments.length; i++) {
+				min = Math.min(min, arguments[i]);
+			}
+
+			return min;
+		}));
+		VARIADIC_FUNCTIONS.put("max", new VariadicFunction(2, Integer.MAX_VALUE, arguments -> {
+			double max = arguments[0];
+
+			for (int i = 1; i < arguments.length; i++) {
+				max = Math.max(max, arguments[i]);
+			}
+
+			return max;
+		}));
+		VARIADIC_FUNCTIONS.put("clamp", new VariadicFunction(3, 3,
+			arguments -> Math.max(arguments[1], Math.min(arguments[2], arguments[0]))));
+		VARIADIC_FUNCTIONS.put("between", new VariadicFunction(3, 3,
+			arguments -> toDouble(arguments[0] >= arguments[1] && arguments[0] <= arguments[2])));
+		VARIADIC_FUNCTIONS.put("equals", new VariadicFunction(3, 3,
+			arguments -> toDouble(Math.abs(arguments[0] - arguments[1]) <= arguments[2])));
+		VARIADIC_FUNCTIONS.put("in", new VariadicFunction(2, Integer.MAX_VALUE, arguments -> {
+			for (int i = 1; i < arguments.length; i++) {
+				if (arguments[0] == arguments[i]) {
+					return 1.0;
+				}
+			}
+
+			return 0.0;
+		}));
+	}
+
+	private CustomUniformFunctions() {
+		// no construction allowed
+	}
+
+	private static void addBinaryOperator(ParserOptions.Builder builder, String symbol, int priority,
+										  DoubleBinaryOperator operator) {
+		BinaryOp op = new BinaryOp(symbol, priority);
+
+		builder.addBinaryOp(symbol, op);
+		BINARY_OPERATORS.put(op, operator);
+	}
+
+	private static void addUnaryOperator(ParserOptions.Builder builder, String symbol, DoubleUnaryOperator operator) {
+		UnaryOp op = new UnaryOp(symbol);
+
+		builder.addUnaryOp(symbol, op);
+		UNARY_OPERATORS.put(op, operator);
+	}
+
+	static double toDouble(boolean value) {
+		return value ? 1.0 : 0.0;
+	}
+
+	static DoubleBinaryOperator getBinaryOperator(BinaryOp op) {
+		return BINARY_OPERATORS.get(op);
+	}
+
+	static DoubleUnaryOperator getUnaryOperator(UnaryOp op) {
+		return UNARY_OPERATORS.get(op);
+	}
+
+	static DoubleUnaryOperator getUnaryFunction(String name) {
+		return UNARY_FUNCTIONS.get(name);
+	}
+
+	static DoubleBinaryOperator getBinaryFunction(String name) {
+		return BINARY_FUNCTIONS.get(name);
+	}
+
+	static VariadicFunction getVariadicFunction(String name) {
+		return VARIADIC_FUNCTIONS.get(name);
+	}
+
+	static final class VariadicFunction {
+		private final int minArguments;
+		private final int maxArguments;
+		private final ToDoubleFunction<double[]> function;
+
+		private VariadicFunction(int minArguments, int maxArguments, ToDoubleFunction<double[]> function) {
+			this.minArguments = minArguments;
+			this.maxArguments = maxArguments;
+			this.function = function;
+		}
+
+		boolean accepts(int arguments) {
+			return arguments >= minArguments && arguments <= maxArguments;
+		}
+
+		ToDoubleFunction<double[]> getFunction() {
+			return function;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package net.coderbot.iris.uniforms.custom;
+
+import java.util.Optional;
+
+/**
+ * The types that custom uniforms and variables can be declared with in shaders.properties.
+ */
+public enum CustomUniformType {
+	FLOAT("float", 1),
+	INT("int", 1),
+	BOOL("bool", 1),
+	VEC2("vec2", 2),
+	VEC3("vec3", 3),
+	VEC4("vec4", 4);
+
+	private final String name;
+	private final int components;
+
+	CustomUniformType(String name, int components) {
+		this.name = name;
+		this.components = components;
+	}
+
+	public static Optional<CustomUniformType> fromName(String name) {
+		for (CustomUniformType type : values()) {
+			if (type.name.equals(name)) {
+				return Optional.of(type);
+			}
+		}
+
+		return Optional.empty();
+	}
+
+	public int getComponents() {
+		return components;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
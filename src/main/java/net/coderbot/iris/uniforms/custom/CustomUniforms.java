@@ -0,0 +1,833 @@
+package net.coderbot.iris.uniforms.custom;
+
+import com.google.common.collect.ImmutableList;
+import com.mojang.math.Matrix4f;
+import kroppeb.stareval.element.ExpressionElement;
+import kroppeb.stareval.element.token.IdToken;
+import kroppeb.stareval.element.token.NumberToken;
+import kroppeb.stareval.element.tree.AccessExpressionElement;
+import kroppeb.stareval.element.tree.BinaryExpressionElement;
+import kroppeb.stareval.element.tree.FunctionCall;
+import kroppeb.stareval.element.tree.UnaryExpressionElement;
+import kroppeb.stareval.exception.ParseException;
+import kroppeb.stareval.expression.BinaryFunctionExpression;
+import kroppeb.stareval.expression.CallExpression;
+import kroppeb.stareval.expression.ConditionalExpression;
+import kroppeb.stareval.expression.ConstantExpression;
+import kroppeb.stareval.expression.Expression;
+import kroppeb.stareval.expression.UnaryFunctionExpression;
+import kroppeb.stareval.expression.VariableExpression;
+import kroppeb.stareval.parser.Parser;
+import net.coderbot.iris.Iris;
+import net.coderbot.iris.gl.uniform.DynamicUniformHolder;
+import net.coderbot.iris.gl.uniform.FloatSupplier;
+import net.coderbot.iris.gl.uniform.UniformHolder;
+import net.coderbot.iris.gl.uniform.UniformType;
+import net.coderbot.iris.gl.uniform.UniformUpdateFrequency;
+import net.coderbot.iris.gl.uniform.ValueUpdateNotifier;
+import net.coderbot.iris.gl.uniform.ValueWriter;
+import net.coderbot.iris.vendored.joml.Vector2f;
+import net.coderbot.iris.vendored.joml.Vector2i;
+import net.coderbot.iris.vendored.joml.Vector3d;
+import net.coderbot.iris.vendored.joml.Vector3f;
+import net.coderbot.iris.vendored.joml.Vector4f;
+import net.coderbot.iris.vendored.joml.Vector4i;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates the custom uniforms and variables defined by a shader pack.
+ *
+ * <p>Each definition is parsed into an expression over the built-in uniforms and the other definitions, and the
+ * definitions are sorted so that every one of them comes after everything that it depends on. {@link #update()} then
+ * evaluates all of them in that order once per frame, and the results are shared by every program that they are
+ * assigned to.</p>
+ *
+ * <p>All values live in a single array of doubles, with vectors taking up one element per component. Built-in uniforms
+ * are copied into that array at the start of each update, but only if an expression actually reads them.</p>
+ */
+public class CustomUniforms {
+	private static final CustomUniforms EMPTY = new CustomUniforms(new double[0], new Input[0], new int[0],
+		new InterpretedProgram(new Expression[0], new int[0]), ImmutableList.of());
+
+	private final double[] values;
+	private final Input[] inputs;
+	private final int[] inputOffsets;
+	private final ExpressionProgram program;
+	private final ImmutableList<ResolvedUniform> uniforms;
+
+	private CustomUniforms(double[] values, Input[] inputs, int[] inputOffsets, ExpressionProgram program,
+						   ImmutableList<ResolvedUniform> uniforms) {
+		this.values = values;
+		this.inputs = inputs;
+		this.inputOffsets = inputOffsets;
+		this.program = program;
+		this.uniforms = uniforms;
+	}
+
+	public static CustomUniforms empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * @param lastFrameTime the time that the last frame took, in seconds. Used by {@code smooth()}.
+	 */
+	public static Builder builder(List<CustomUniformDefinition> definitions, FloatSupplier lastFrameTime) {
+		return new Builder(definitions, lastFrameTime);
+	}
+
+	/**
+	 * @return true if no custom uniforms are available to programs
+	 */
+	public boolean isEmpty() {
+		return uniforms.isEmpty();
+	}
+
+	/**
+	 * Evaluates every custom uniform and variable. This must be called exactly once per frame, after the built-in
+	 * uniforms are ready for the frame and before any program is used.
+	 */
+	public void update() {
+		// NB: Use indices instead of iterators, since this runs every frame.
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i].read(values, inputOffsets[i]);
+		}
+
+		program.evaluate(values);
+	}
+
+	/**
+	 * Makes the values computed by the last update available to a program.
+	 */
+	public void assignTo(UniformHolder holder) {
+		for (ResolvedUniform uniform : uniforms) {
+			String name = uniform.name;
+			int offset = uniform.offset;
+
+			switch (uniform.type) {
+				case FLOAT:
+					holder.uniform1f(UniformUpdateFrequency.PER_FRAME, name, () -> (float) values[offset]);
+					break;
+				case INT:
+					holder.uniform1i(UniformUpdateFrequency.PER_FRAME, name, () -> (int) values[offset]);
+					break;
+				case BOOL:
+					holder.uniform1b(UniformUpdateFrequency.PER_FRAME, name, () -> values[offset] != 0.0);
+					break;
+				case VEC2:
+					Vector2f vector2 = new Vector2f();
+
+					holder.uniform2f(UniformUpdateFrequency.PER_FRAME, name,
+						() -> vector2.set((float) values[offset], (float) values[offset + 1]));
+					break;
+				case VEC3:
+					holder.uniform3f(UniformUpdateFrequency.PER_FRAME, name, destination ->
+						destination.set((float) values[offset], (float) values[offset + 1], (float) values[offset + 2]));
+					break;
+				case VEC4:
+					Vector4f vector4 = new Vector4f();
+
+					holder.uniform4f(UniformUpdateFrequency.PER_FRAME, name, () -> vector4.set((float) values[offset],
+						(float) values[offset + 1], (float) values[offset + 2], (float) values[offset + 3]));
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Copies the current value of a built-in uniform into the value array.
+	 */
+	@FunctionalInterface
+	private interface Input {
+		void read(double[] values, int offset);
+	}
+
+	private static final class ResolvedUniform {
+		private final CustomUniformType type;
+		private final String name;
+		private final int offset;
+
+		private ResolvedUniform(CustomUniformType type, String name, int offset) {
+			this.type = type;
+			this.name = name;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * The location of a resolved definition or built-in uniform in the value array.
+	 */
+	private static final class Slot {
+		private final int offset;
+		private final int components;
+
+		private Slot(int offset, int components) {
+			this.offset = offset;
+			this.components = components;
+		}
+	}
+
+	private static final class Builtin {
+		private final int components;
+		private final Input input;
+
+		private Builtin(int components, Input input) {
+			this.components = components;
+			this.input = input;
+		}
+	}
+
+	/**
+	 * Resolves the definitions of a pack against the built-in uniforms, which are registered through the
+	 * {@link DynamicUniformHolder} interface. Matrices can't be used in expressions, and neither can dynamic uniforms,
+	 * since their values change while a frame is being rendered but custom uniforms are only computed once per frame.
+	 */
+	public static final class Builder implements DynamicUniformHolder {
+		private final List<CustomUniformDefinition> definitions;
+		private final FloatSupplier lastFrameTime;
+		private final Map<String, Builtin> builtins;
+		private boolean compileExpressions;
+
+		private final Map<String, Slot> slots;
+		private final List<Input> inputs;
+		private final List<Integer> inputOffsets;
+		private int size;
+
+		private Builder(List<CustomUniformDefinition> definitions, FloatSupplier lastFrameTime) {
+			this.definitions = definitions;
+			this.lastFrameTime = lastFrameTime;
+			this.builtins = new HashMap<>();
+			this.slots = new HashMap<>();
+			this.inputs = new ArrayList<>();
+			this.inputOffsets = new ArrayList<>();
+		}
+
+		/**
+		 * Sets whether the expressions should be compiled to bytecode, instead of being interpreted. Compiled
+		 * expressions are faster to evaluate, but take longer to set up.
+		 */
+		public Builder compileExpressions(boolean compileExpressions) {
+			this.compileExpressions = compileExpressions;
+
+			return this;
+		}
+
+		public CustomUniforms build() {
+			Map<String, CustomUniformDefinition> byName = new LinkedHashMap<>();
+
+			for (CustomUniformDefinition definition : definitions) {
+				if (byName.remove(definition.getName()) != null) {
+					Iris.logger.warn("Custom uniform or variable " + definition.getName() + " is defined more than once, only the last definition is used");
+				}
+
+				byName.put(definition.getName(), definition);
+			}
+
+			Map<String, ExpressionElement> parsed = new HashMap<>();
+
+			for (CustomUniformDefinition definition : byName.values()) {
+				try {
+					parsed.put(definition.getName(), Parser.parse(definition.getExpression(), CustomUniformFunctions.OPTIONS));
+				} catch (ParseException | RuntimeException e) {
+					Iris.logger.error("Failed to parse the expression of custom " + definition, e);
+				}
+			}
+
+			// Only the definitions that some uniform ends up depending on need to be evaluated.
+			List<CustomUniformDefinition> ordered = new ArrayList<>();
+			Map<String, Boolean> visited = new HashMap<>();
+
+			for (CustomUniformDefinition definition : byName.values()) {
+				if (definition.isUniform()) {
+					visit(definition.getName(), byName, parsed, visited, ordered);
+				}
+			}
+
+			List<Expression> expressions = new ArrayList<>();
+			List<Integer> expressionOffsets = new ArrayList<>();
+			ImmutableList.Builder<ResolvedUniform> uniforms = ImmutableList.builder();
+
+			for (CustomUniformDefinition definition : ordered) {
+				CustomUniformType type = definition.getType();
+				Expression[] components;
+
+				try {
+					components = resolve(parsed.get(definition.getName()), type.getComponents());
+				} catch (RuntimeException e) {
+					Iris.logger.error("Failed to resolve custom " + definition + ": " + e.getMessage());
+					continue;
+				}
+
+				int offset = allocate(definition.getName(), type.getComponents());
+
+				for (int i = 0; i < components.length; i++) {
+					expressions.add(components[i]);
+					expressionOffsets.add(offset + i);
+				}
+
+				if (definition.isUniform()) {
+					uniforms.add(new ResolvedUniform(type, definition.getName(), offset));
+				}
+			}
+
+			return new CustomUniforms(new double[size], inputs.toArray(new Input[0]), toIntArray(inputOffsets),
+				createProgram(expressions.toArray(new Expression[0]), toIntArray(expressionOffsets)), uniforms.build());
+		}
+
+		private ExpressionProgram createProgram(Expression[] expressions, int[] offsets) {
+			if (compileExpressions && expressions.length > 0) {
+				try {
+					return ExpressionCompiler.compile(expressions, offsets);
+				} catch (RuntimeException | LinkageError e) {
+					Iris.logger.warn("Failed to compile the expressions of custom uniforms, falling back to interpreting them", e);
+				}
+			}
+
+			return new InterpretedProgram(expressions, offsets);
+		}
+
+		/**
+		 * Adds a definition to the evaluation order after everything that it depends on, through a depth-first search.
+		 *
+		 * @param visited whether each definition has been fully visited (true), or is still being visited (false)
+		 * @return false if the definition can't be evaluated
+		 */
+		private static boolean visit(String name, Map<String, CustomUniformDefinition> byName,
+									 Map<String, ExpressionElement> parsed, Map<String, Boolean> visited,
+									 List<CustomUniformDefinition> ordered) {
+			Boolean done = visited.get(name);
+
+			if (done != null) {
+				if (!done) {
+					Iris.logger.error("Custom uniform or variable " + name + " is part of a circular dependency");
+				}
+
+				return done && parsed.containsKey(name);
+			}
+
+			visited.put(name, false);
+
+			ExpressionElement element = parsed.get(name);
+			boolean valid = element != null;
+
+			if (valid) {
+				Set<String> dependencies = new HashSet<>();
+				collectIdentifiers(element, dependencies);
+
+				for (String dependency : dependencies) {
+					if (byName.containsKey(dependency) && !visit(dependency, byName, parsed, visited, ordered)) {
+						Iris.logger.error("Custom uniform or variable " + name + " depends on " + dependency + ", which can't be evaluated");
+						valid = false;
+						break;
+					}
+				}
+			}
+
+			visited.put(name, true);
+
+			if (valid) {
+				ordered.add(byName.get(name));
+			} else {
+				// Make sure that anything depending on this fails as well.
+				parsed.remove(name);
+			}
+
+			return valid;
+		}
+
+		private static void collectIdentifiers(ExpressionElement element, Set<String> identifiers) {
+			if (element instanceof IdToken) {
+				identifiers.add(((IdToken) element).getId());
+			} else if (element instanceof AccessExpressionElement) {
+				collectIdentifiers(((AccessExpressionElement) element).getBase(), identifiers);
+			} else if (element instanceof UnaryExpressionElement) {
+				collectIdentifiers(((UnaryExpressionElement) element).getInner(), identifiers);
+			} else if (element instanceof BinaryExpressionElement) {
+				collectIdentifiers(((BinaryExpressionElement) element).getLeft(), identifiers);
+				collectIdentifiers(((BinaryExpressionElement) element).getRight(), identifiers);
+			} else if (element instanceof FunctionCall) {
+				for (ExpressionElement argument : ((FunctionCall) element).getArgs()) {
+					collectIdentifiers(argument, identifiers);
+				}
+			}
+		}
+
+		private int allocate(String name, int components) {
+			int offset = size;
+
+			size += components;
+			slots.put(name, new Slot(offset, components));
+
+			return offset;
+		}
+
+		/**
+		 * Finds a resolved definition, or otherwise a built-in uniform, which is then read on every update from now on.
+		 */
+		private Slot lookup(String name) {
+			Slot slot = slots.get(name);
+
+			if (slot != null) {
+				return slot;
+			}
+
+			Builtin builtin = builtins.get(name);
+
+			if (builtin == null) {
+				return null;
+			}
+
+			int offset = allocate(name, builtin.components);
+			inputs.add(builtin.input);
+			inputOffsets.add(offset);
+
+			return slots.get(name);
+		}
+
+		/**
+		 * @return an expression for each component of the value
+		 */
+		private Expression[] resolve(ExpressionElement element, int components) {
+			if (components == 1) {
+				return new Expression[] { resolveScalar(element) };
+			}
+
+			if (element instanceof FunctionCall && ((FunctionCall) element).getId().equals("vec" + components)) {
+				List<? extends ExpressionElement> args = ((FunctionCall) element).getArgs();
+
+				if (args.size() != components) {
+					throw new IllegalArgumentException("vec" + components + " needs exactly " + components + " arguments");
+				}
+
+				Expression[] resolved = new Expression[components];
+
+				for (int i = 0; i < components; i++) {
+					resolved[i] = resolveScalar(args.get(i));
+				}
+
+				return resolved;
+			}
+
+			if (element instanceof IdToken) {
+				String name = ((IdToken) element).getId();
+				Slot slot = lookup(name);
+
+				if (slot != null && slot.components == components) {
+					Expression[] resolved = new Expression[components];
+
+					for (int i = 0; i < components; i++) {
+						resolved[i] = new VariableExpression(slot.offset + i);
+					}
+
+					return resolved;
+				}
+			}
+
+			throw new IllegalArgumentException("Expected a vec" + components + "(...) call or a vector with " + components + " components");
+		}
+
+		private Expression resolveScalar(ExpressionElement element) {
+			if (element instanceof NumberToken) {
+				return new ConstantExpression(parseNumber(((NumberToken) element).getNumber()));
+			} else if (element instanceof IdToken) {
+				return resolveIdentifier(((IdToken) element).getId());
+			} else if (element instanceof AccessExpressionElement) {
+				return resolveAccess((AccessExpressionElement) element);
+			} else if (element instanceof UnaryExpressionElement) {
+				UnaryExpressionElement unary = (UnaryExpressionElement) element;
+				DoubleUnaryOperator operator = CustomUniformFunctions.getUnaryOperator(unary.getOp());
+
+				if (operator == null) {
+					throw new IllegalArgumentException("Unknown unary operator " + unary.getOp());
+				}
+
+				return new UnaryFunctionExpression(operator, resolveScalar(unary.getInner()));
+			} else if (element instanceof BinaryExpressionElement) {
+				BinaryExpressionElement binary = (BinaryExpressionElement) element;
+				DoubleBinaryOperator operator = CustomUniformFunctions.getBinaryOperator(binary.getOp());
+
+				if (operator == null) {
+					throw new IllegalArgumentException("Unknown binary operator " + binary.getOp());
+				}
+
+				return new BinaryFunctionExpression(operator, resolveScalar(binary.getLeft()), resolveScalar(binary.getRight()));
+			} else if (element instanceof FunctionCall) {
+				return resolveCall((FunctionCall) element);
+			}
+
+			throw new IllegalArgumentException("Unexpected element " + element);
+		}
+
+		private static double parseNumber(String number) {
+			// GLSL-style float suffixes are allowed
+			if (number.endsWith("f") || number.endsWith("F")) {
+				number = number.substring(0, number.length() - 1);
+			}
+
+			try {
+				return Double.parseDouble(number);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid number " + number);
+			}
+		}
+
+		private Expression resolveIdentifier(String name) {
+			Slot slot = lookup(name);
+
+			if (slot != null) {
+				if (slot.components != 1) {
+					throw new IllegalArgumentException(name + " is a vector, use one of its components instead");
+				}
+
+				return new VariableExpression(slot.offset);
+			}
+
+			switch (name) {
+				case "pi":
+					return new ConstantExpression(Math.PI);
+				case "true":
+					return new ConstantExpression(1.0);
+				case "false":
+					return new ConstantExpression(0.0);
+				default:
+					throw new IllegalArgumentException("Unknown uniform or variable " + name);
+			}
+		}
+
+		private Expression resolveAccess(AccessExpressionElement access) {
+			if (!(access.getBase() instanceof IdToken)) {
+				throw new IllegalArgumentException("Only the components of uniforms and variables can be accessed");
+			}
+
+			String name = ((IdToken) access.getBase()).getId();
+			Slot slot = lookup(name);
+
+			if (slot == null) {
+				throw new IllegalArgumentException("Unknown uniform or variable " + name);
+			}
+
+			int component = getComponentIndex(access.getIndex());
+
+			if (component < 0 || component >= slot.components) {
+				throw new IllegalArgumentException(name + " has no component " + access.getIndex());
+			}
+
+			return new VariableExpression(slot.offset + component);
+		}
+
+		private static int getComponentIndex(String component) {
+			switch (component) {
+				case "x":
+				case "r":
+				case "0":
+					return 0;
+				case "y":
+				case "g":
+				case "1":
+					return 1;
+				case "z":
+				case "b":
+				case "2":
+					return 2;
+				case "w":
+				case "a":
+				case "3":
+					return 3;
+				default:
+					return -1;
+			}
+		}
+
+		private Expression resolveCall(FunctionCall call) {
+			String name = call.getId();
+			List<? extends ExpressionElement> args = call.getArgs();
+
+			if (name.equals("if")) {
+				// if(condition, value, [condition2, value2, ...], fallback)
+				if (args.size() < 3 || args.size() % 2 == 0) {
+					throw new IllegalArgumentException("if needs pairs of conditions and values followed by a fallback value");
+				}
+
+				int branches = args.size() / 2;
+				Expression[] conditions = new Expression[branches];
+				Expression[] values = new Expression[branches];
+
+				for (int i = 0; i < branches; i++) {
+					conditions[i] = resolveScalar(args.get(i * 2));
+					values[i] = resolveScalar(args.get(i * 2 + 1));
+				}
+
+				return new ConditionalExpression(conditions, values, resolveScalar(args.get(args.size() - 1)));
+			}
+
+			if (name.equals("smooth")) {
+				return resolveSmooth(args);
+			}
+
+			if (name.equals("random") && args.isEmpty()) {
+				return new RandomExpression();
+			}
+
+			if (args.size() == 1) {
+				DoubleUnaryOperator function = CustomUniformFunctions.getUnaryFunction(name);
+
+				if (function != null) {
+					return new UnaryFunctionExpression(function, resolveScalar(args.get(0)));
+				}
+			}
+
+			if (args.size() == 2) {
+				DoubleBinaryOperator function = CustomUniformFunctions.getBinaryFunction(name);
+
+				if (function != null) {
+					return new BinaryFunctionExpression(function, resolveScalar(args.get(0)), resolveScalar(args.get(1)));
+				}
+			}
+
+			CustomUniformFunctions.VariadicFunction function = CustomUniformFunctions.getVariadicFunction(name);
+
+			if (function != null && function.accepts(args.size())) {
+				Expression[] arguments = new Expression[args.size()];
+
+				for (int i = 0; i < arguments.length; i++) {
+					arguments[i] = resolveScalar(args.get(i));
+				}
+
+				return new CallExpression(function.getFunction(), arguments);
+			}
+
+			throw new IllegalArgumentException("Unknown function " + name + " with " + args.size() + " arguments");
+		}
+
+		private Expression resolveSmooth(List<? extends ExpressionElement> args) {
+			// smooth([id,] value, [fadeUpTime, [fadeDownTime]])
+			// NB: The id is only used by OptiFine to keep track of the state, here every call has its own state anyway.
+			List<? extends ExpressionElement> remaining = args.size() == 4 ? args.subList(1, 4) : args;
+
+			if (remaining.isEmpty() || remaining.size() > 3) {
+				throw new IllegalArgumentException("smooth needs between 1 and 4 arguments");
+			}
+
+			Expression value = resolveScalar(remaining.get(0));
+			Expression fadeUpTime = remaining.size() > 1 ? resolveScalar(remaining.get(1)) : new ConstantExpression(1.0);
+			Expression fadeDownTime = remaining.size() > 2 ? resolveScalar(remaining.get(2)) : fadeUpTime;
+
+			return new SmoothExpression(value, fadeUpTime, fadeDownTime, lastFrameTime);
+		}
+
+		private static int[] toIntArray(List<Integer> list) {
+			int[] array = new int[list.size()];
+
+			for (int i = 0; i < array.length; i++) {
+				array[i] = list.get(i);
+			}
+
+			return array;
+		}
+
+		private Builder builtin(String name, int components, Input input) {
+			// The first registration of a name wins, like it does for programs.
+			builtins.putIfAbsent(name, new Builtin(components, input));
+
+			return this;
+		}
+
+		@Override
+		public Builder uniform1f(UniformUpdateFrequency updateFrequency, String name, FloatSupplier value) {
+			return builtin(name, 1, (values, offset) -> values[offset] = value.getAsFloat());
+		}
+
+		@Override
+		public Builder uniform1f(UniformUpdateFrequency updateFrequency, String name, IntSupplier value) {
+			return builtin(name, 1, (values, offset) -> values[offset] = value.getAsInt());
+		}
+
+		@Override
+		public Builder uniform1f(UniformUpdateFrequency updateFrequency, String name, DoubleSupplier value) {
+			return builtin(name, 1, (values, offset) -> values[offset] = (float) value.getAsDouble());
+		}
+
+		@Override
+		public Builder uniform1i(UniformUpdateFrequency updateFrequency, String name, IntSupplier value) {
+			return builtin(name, 1, (values, offset) -> values[offset] = value.getAsInt());
+		}
+
+		@Override
+		public Builder uniform1b(UniformUpdateFrequency updateFrequency, String name, BooleanSupplier value) {
+			return builtin(name, 1, (values, offset) -> values[offset] = CustomUniformFunctions.toDouble(value.getAsBoolean()));
+		}
+
+		@Override
+		public Builder uniform2f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector2f> value) {
+			return builtin(name, 2, (values, offset) -> {
+				Vector2f vector = value.get();
+
+				values[offset] = vector.x;
+				values[offset + 1] = vector.y;
+			});
+		}
+
+		@Override
+		public Builder uniform2i(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector2i> value) {
+			return builtin(name, 2, (values, offset) -> {
+				Vector2i vector = value.get();
+
+				values[offset] = vector.x;
+				values[offset + 1] = vector.y;
+			});
+		}
+
+		@Override
+		public Builder uniform2i(UniformUpdateFrequency updateFrequency, String name, ValueWriter<Vector2i> value) {
+			Vector2i vector = new Vector2i();
+
+			return builtin(name, 2, (values, offset) -> {
+				value.write(vector);
+
+				values[offset] = vector.x;
+				values[offset + 1] = vector.y;
+			});
+		}
+
+		@Override
+		public Builder uniform3f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector3f> value) {
+			return builtin(name, 3, (values, offset) -> {
+				Vector3f vector = value.get();
+
+				values[offset] = vector.x;
+				values[offset + 1] = vector.y;
+				values[offset + 2] = vector.z;
+			});
+		}
+
+		@Override
+		public Builder uniform3f(UniformUpdateFrequency updateFrequency, String name, ValueWriter<Vector3f> value) {
+			Vector3f vector = new Vector3f();
+
+			return builtin(name, 3, (values, offset) -> {
+				value.write(vector);
+
+				values[offset] = vector.x;
+				values[offset + 1] = vector.y;
+				values[offset + 2] = vector.z;
+			});
+		}
+
+		@Override
+		public Builder uniformTruncated3f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector4f> value) {
+			return builtin(name, 3, (values, offset) -> {
+				Vector4f vector = value.get();
+
+				values[offset] = vector.x;
+				values[offset + 1] = vector.y;
+				values[offset + 2] = vector.z;
+			});
+		}
+
+		@Override
+		public Builder uniform3d(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector3d> value) {
+			// NB: Programs only ever see the single precision value, so expressions shouldn't see anything more precise.
+			return builtin(name, 3, (values, offset) -> {
+				Vector3d vector = value.get();
+
+				values[offset] = (float) vector.x;
+				values[offset + 1] = (float) vector.y;
+				values[offset + 2] = (float) vector.z;
+			});
+		}
+
+		@Override
+		public Builder uniform4f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector4f> value) {
+			return builtin(name, 4, (values, offset) -> {
+				Vector4f vector = value.get();
+
+				values[offset] = vector.x;
+				values[offset + 1] = vector.y;
+				values[offset + 2] = vector.z;
+				values[offset + 3] = vector.w;
+			});
+		}
+
+		@Override
+		public Builder uniformMatrix(UniformUpdateFrequency updateFrequency, String name, Supplier<Matrix4f> value) {
+			return this;
+		}
+
+		@Override
+		public Builder uniformJomlMatrix(UniformUpdateFrequency updateFrequency, String name, Supplier<net.coderbot.iris.vendored.joml.Matrix4f> value) {
+			return this;
+		}
+
+		@Override
+		public Builder uniformJomlMatrix(UniformUpdateFrequency updateFrequency, String name, ValueWriter<net.coderbot.iris.vendored.joml.Matrix4f> value) {
+			return this;
+		}
+
+		@Override
+		public Builder uniformMatrixFromArray(UniformUpdateFrequency updateFrequency, String name, Supplier<float[]> value) {
+			return this;
+		}
+
+		@Override
+		public Builder externallyManagedUniform(String name, UniformType type) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform1f(String name, FloatSupplier value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform1f(String name, IntSupplier value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform1f(String name, DoubleSupplier value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform1i(String name, IntSupplier value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform2i(String name, Supplier<Vector2i> value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform2i(String name, ValueWriter<Vector2i> value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform4f(String name, Supplier<Vector4f> value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform4i(String name, Supplier<Vector4i> value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+
+		@Override
+		public Builder uniform4i(String name, ValueWriter<Vector4i> value, ValueUpdateNotifier notifier) {
+			return this;
+		}
+	}
+}
@@ -0,0 +1,522 @@
+package net.coderbot.iris.uniforms.custom;
+
+import kroppeb.stareval.expression.BinaryFunctionExpression;
+import kroppeb.stareval.expression.CallExpression;
+import kroppeb.stareval.expression.ConditionalExpression;
+import kroppeb.stareval.expression.ConstantExpression;
+import kroppeb.stareval.expression.Expression;
+import kroppeb.stareval.expression.UnaryFunctionExpression;
+import kroppeb.stareval.expression.VariableExpression;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Compiles all of the expressions of a pack into a single generated class, so that evaluating them is a straight run
+ * of bytecode instead of a walk over the expression trees.
+ *
+ * <p>Before generating any code, the expressions are merged into one graph in which equal subexpressions are the same
+ * node. This is what allows the compiler to:</p>
+ * <ul>
+ *     <li>Fold every subexpression that only depends on constants into a constant.</li>
+ *     <li>Evaluate a subexpression that is used in more than one place, possibly across different custom uniforms,
+ *     only once and keep the result in a local variable.</li>
+ * </ul>
+ *
+ * <p>Both of these assume that the functions of the standard expression types are pure, which is true for all of the
+ * functions in {@link CustomUniformFunctions}. Any other kind of expression, such as {@link SmoothExpression} and
+ * {@link RandomExpression}, is left alone and is called as-is by the generated code.</p>
+ */
+final class ExpressionCompiler {
+	private static final String PROGRAM = Type.getInternalName(ExpressionProgram.class);
+	private static final String EXPRESSION = Type.getInternalName(Expression.class);
+	private static final String UNARY = Type.getInternalName(DoubleUnaryOperator.class);
+	private static final String BINARY = Type.getInternalName(DoubleBinaryOperator.class);
+	private static final String VARIADIC = Type.getInternalName(ToDoubleFunction.class);
+
+	private static final AtomicInteger COUNTER = new AtomicInteger();
+
+	/**
+	 * Doubles take up two local variable slots, and the first two are taken by {@code this} and the value array. The
+	 * JVM allows at most 65535 slots, this stays well below that.
+	 */
+	private static final int MAX_LOCALS = 30000;
+
+	private final String name;
+	private final Map<Node, Node> canonical = new HashMap<>();
+	private final List<Object> constants = new ArrayList<>();
+	private final Map<Object, String> fields = new IdentityHashMap<>();
+	private final Map<Node, String> scratchArrays = new IdentityHashMap<>();
+	private int locals;
+
+	private ExpressionCompiler(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param expressions the expressions to evaluate, in order
+	 * @param offsets the slot in the value array that the result of each expression is stored in
+	 * @throws RuntimeException if the program can't be compiled, for example because it would be too big for a single
+	 *                          method
+	 */
+	static ExpressionProgram compile(Expression[] expressions, int[] offsets) {
+		String name = "net/coderbot/iris/uniforms/custom/generated/CompiledProgram" + COUNTER.getAndIncrement();
+
+		return new ExpressionCompiler(name).compileProgram(expressions, offsets);
+	}
+
+	private ExpressionProgram compileProgram(Expression[] expressions, int[] offsets) {
+		Node[] roots = new Node[expressions.length];
+
+		for (int i = 0; i < expressions.length; i++) {
+			roots[i] = intern(expressions[i]);
+		}
+
+		countUses(roots);
+
+		byte[] bytes = generate(roots, offsets);
+
+		Class<?> programClass = new GeneratedClassLoader(ExpressionCompiler.class.getClassLoader())
+			.define(name.replace('/', '.'), bytes);
+
+		try {
+			return (ExpressionProgram) programClass.getConstructor(Object[].class)
+				.newInstance((Object) constants.toArray());
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Failed to create the compiled program " + name, e);
+		}
+	}
+
+	/**
+	 * Converts an expression into a node of the graph, folding it into a constant if possible and reusing an existing
+	 * node if there already is an equal one.
+	 */
+	private Node intern(Expression expression) {
+		Node node;
+
+		if (expression instanceof ConstantExpression) {
+			node = Node.constant(((ConstantExpression) expression).getValue());
+		} else if (expression instanceof VariableExpression) {
+			node = new Node(Kind.VARIABLE, 0.0, ((VariableExpression) expression).getIndex(), null, new Node[0]);
+		} else if (expression instanceof UnaryFunctionExpression) {
+			UnaryFunctionExpression unary = (UnaryFunctionExpression) expression;
+			Node inner = intern(unary.getInner());
+
+			if (inner.kind == Kind.CONSTANT) {
+				node = Node.constant(unary.getFunction().applyAsDouble(inner.value));
+			} else {
+				node = new Node(Kind.UNARY, 0.0, 0, unary.getFunction(), new Node[] { inner });
+			}
+		} else if (expression instanceof BinaryFunctionExpression) {
+			BinaryFunctionExpression binary = (BinaryFunctionExpression) expression;
+			Node left = intern(binary.getLeft());
+			Node right = intern(binary.getRight());
+
+			if (left.kind == Kind.CONSTANT && right.kind == Kind.CONSTANT) {
+				node = Node.constant(binary.getFunction().applyAsDouble(left.value, right.value));
+			} else {
+				node = new Node(Kind.BINARY, 0.0, 0, binary.getFunction(), new Node[] { left, right });
+			}
+		} else if (expression instanceof CallExpression) {
+			CallExpression call = (CallExpression) expression;
+			Expression[] arguments = call.getArguments();
+			Node[] children = new Node[arguments.length];
+			boolean constant = true;
+
+			for (int i = 0; i < arguments.length; i++) {
+				children[i] = intern(arguments[i]);
+				constant &= children[i].kind == Kind.CONSTANT;
+			}
+
+			if (constant) {
+				double[] values = new double[children.length];
+
+				for (int i = 0; i < children.length; i++) {
+					values[i] = children[i].value;
+				}
+
+				node = Node.constant(call.getFunction().applyAsDouble(values));
+			} else {
+				node = new Node(Kind.CALL, 0.0, 0, call.getFunction(), children);
+			}
+		} else if (expression instanceof ConditionalExpression) {
+			node = internConditional((ConditionalExpression) expression);
+		} else {
+			// We don't know anything about this expression, so it has to be evaluated exactly when and where the
+			// interpreter would evaluate it. Comparing by identity makes sure that it is never merged with anything.
+			node = new Node(Kind.OPAQUE, 0.0, 0, expression, new Node[0]);
+		}
+
+		Node existing = canonical.putIfAbsent(node, node);
+
+		return existing != null ? existing : node;
+	}
+
+	private Node internConditional(ConditionalExpression conditional) {
+		Expression[] conditions = conditional.getConditions();
+		Expression[] values = conditional.getValues();
+		List<Node> children = new ArrayList<>();
+		Node fallback = null;
+
+		for (int i = 0; i < conditions.length; i++) {
+			Node condition = intern(conditions[i]);
+
+			if (condition.kind != Kind.CONSTANT) {
+				children.add(condition);
+				children.add(intern(values[i]));
+			} else if (condition.value != 0.0) {
+				// Every branch after this one is unreachable.
+				fallback = intern(values[i]);
+				break;
+			}
+		}
+
+		if (fallback == null) {
+			fallback = intern(conditional.getFallback());
+		}
+
+		if (children.isEmpty()) {
+			return fallback;
+		}
+
+		children.add(fallback);
+
+		return new Node(Kind.CONDITIONAL, 0.0, 0, null, children.toArray(new Node[0]));
+	}
+
+	/**
+	 * Counts the number of places that each node is used in, which decides whether it's worth keeping its value
+	 * around in a local variable.
+	 */
+	private void countUses(Node[] roots) {
+		Map<Node, Boolean> visited = new IdentityHashMap<>();
+		List<Node> pending = new ArrayList<>();
+
+		for (Node root : roots) {
+			root.uses++;
+			pending.add(root);
+		}
+
+		while (!pending.isEmpty()) {
+			Node node = pending.remove(pending.size() - 1);
+
+			if (visited.put(node, true) != null) {
+				continue;
+			}
+
+			for (Node child : node.children) {
+				child.uses++;
+				pending.add(child);
+			}
+		}
+	}
+
+	private byte[] generate(Node[] roots, int[] offsets) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+			@Override
+			protected String getCommonSuperClass(String type1, String type2) {
+				// NB: The generated code never merges two different reference types, and the default implementation
+				// would have to load classes to find out.
+				return "java/lang/Object";
+			}
+		};
+
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, name, null,
+			"java/lang/Object", new String[] { PROGRAM });
+
+		MethodVisitor evaluate = writer.visitMethod(Opcodes.ACC_PUBLIC, "evaluate", "([D)V", null, null);
+		evaluate.visitCode();
+
+		for (int i = 0; i < roots.length; i++) {
+			evaluate.visitVarInsn(Opcodes.ALOAD, 1);
+			pushInt(evaluate, offsets[i]);
+			emit(evaluate, roots[i], true);
+			evaluate.visitInsn(Opcodes.DASTORE);
+		}
+
+		evaluate.visitInsn(Opcodes.RETURN);
+		evaluate.visitMaxs(0, 0);
+		evaluate.visitEnd();
+
+		// The fields are only known once all of the code has been generated.
+		MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", null, null);
+		constructor.visitCode();
+		constructor.visitVarInsn(Opcodes.ALOAD, 0);
+		constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+
+		for (int i = 0; i < constants.size(); i++) {
+			Object constant = constants.get(i);
+			String field = fields.get(constant);
+			String descriptor = getFieldDescriptor(constant);
+
+			writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, field, descriptor, null, null).visitEnd();
+
+			constructor.visitVarInsn(Opcodes.ALOAD, 0);
+			constructor.visitVarInsn(Opcodes.ALOAD, 1);
+			pushInt(constructor, i);
+			constructor.visitInsn(Opcodes.AALOAD);
+			constructor.visitTypeInsn(Opcodes.CHECKCAST, Type.getType(descriptor).getInternalName());
+			constructor.visitFieldInsn(Opcodes.PUTFIELD, name, field, descriptor);
+		}
+
+		constructor.visitInsn(Opcodes.RETURN);
+		constructor.visitMaxs(0, 0);
+		constructor.visitEnd();
+
+		writer.visitEnd();
+
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Generates code that leaves the value of a node on the stack.
+	 *
+	 * @param unconditional whether the generated code always runs. Only values computed by code that always runs can
+	 *                      be reused by code that comes after it.
+	 */
+	private void emit(MethodVisitor method, Node node, boolean unconditional) {
+		if (node.stored) {
+			method.visitVarInsn(Opcodes.DLOAD, node.local);
+			return;
+		}
+
+		switch (node.kind) {
+			case CONSTANT:
+				method.visitLdcInsn(node.value);
+				// Nothing to reuse, loading a constant is as cheap as loading a local variable.
+				return;
+			case VARIABLE:
+				method.visitVarInsn(Opcodes.ALOAD, 1);
+				pushInt(method, node.index);
+				method.visitInsn(Opcodes.DALOAD);
+				return;
+			case UNARY:
+				loadConstant(method, node.function, UNARY);
+				emit(method, node.children[0], unconditional);
+				method.visitMethodInsn(Opcodes.INVOKEINTERFACE, UNARY, "applyAsDouble", "(D)D", true);
+				break;
+			case BINARY:
+				loadConstant(method, node.function, BINARY);
+				emit(method, node.children[0], unconditional);
+				emit(method, node.children[1], unconditional);
+				method.visitMethodInsn(Opcodes.INVOKEINTERFACE, BINARY, "applyAsDouble", "(DD)D", true);
+				break;
+			case CALL:
+				loadConstant(method, node.function, VARIADIC);
+				loadScratchArray(method, node);
+
+				for (int i = 0; i < node.children.length; i++) {
+					method.visitInsn(Opcodes.DUP);
+					pushInt(method, i);
+					emit(method, node.children[i], unconditional);
+					method.visitInsn(Opcodes.DASTORE);
+				}
+
+				method.visitMethodInsn(Opcodes.INVOKEINTERFACE, VARIADIC, "applyAsDouble", "(Ljava/lang/Object;)D", true);
+				break;
+			case CONDITIONAL:
+				emitConditional(method, node, unconditional);
+				break;
+			case OPAQUE:
+				loadConstant(method, node.function, EXPRESSION);
+				method.visitVarInsn(Opcodes.ALOAD, 1);
+				method.visitMethodInsn(Opcodes.INVOKEINTERFACE, EXPRESSION, "evaluate", "([D)D", true);
+				// Opaque expressions are never shared, so there's no point in storing their value.
+				return;
+		}
+
+		if (unconditional && node.uses > 1 && locals < MAX_LOCALS) {
+			node.local = 2 + locals * 2;
+			node.stored = true;
+			locals++;
+
+			method.visitInsn(Opcodes.DUP2);
+			method.visitVarInsn(Opcodes.DSTORE, node.local);
+		}
+	}
+
+	private void emitConditional(MethodVisitor method, Node node, boolean unconditional) {
+		Label end = new Label();
+		int branches = node.children.length / 2;
+
+		for (int i = 0; i < branches; i++) {
+			Label next = new Label();
+
+			// NB: Only the first condition is always evaluated, everything else depends on the conditions before it.
+			emit(method, node.children[i * 2], unconditional && i == 0);
+			method.visitInsn(Opcodes.DCONST_0);
+			// DCMPL pushes -1 for NaN, so NaN counts as true just like it does with != 0.0 in the interpreter.
+			method.visitInsn(Opcodes.DCMPL);
+			method.visitJumpInsn(Opcodes.IFEQ, next);
+			emit(method, node.children[i * 2 + 1], false);
+			method.visitJumpInsn(Opcodes.GOTO, end);
+			method.visitLabel(next);
+		}
+
+		emit(method, node.children[node.children.length - 1], false);
+		method.visitLabel(end);
+	}
+
+	private void loadConstant(MethodVisitor method, Object constant, String type) {
+		String field = fields.get(constant);
+
+		if (field == null) {
+			field = "constant" + constants.size();
+			fields.put(constant, field);
+			constants.add(constant);
+		}
+
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitFieldInsn(Opcodes.GETFIELD, name, field, "L" + type + ";");
+	}
+
+	private void loadScratchArray(MethodVisitor method, Node node) {
+		// NB: A call can't be nested inside of itself, so every call only needs a single array for its arguments.
+		String field = scratchArrays.get(node);
+
+		if (field == null) {
+			field = "arguments" + constants.size();
+
+			double[] array = new double[node.children.length];
+			fields.put(array, field);
+			constants.add(array);
+			scratchArrays.put(node, field);
+		}
+
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitFieldInsn(Opcodes.GETFIELD, name, field, "[D");
+	}
+
+	private String getFieldDescriptor(Object constant) {
+		if (constant instanceof double[]) {
+			return "[D";
+		} else if (constant instanceof Expression) {
+			return "L" + EXPRESSION + ";";
+		} else if (constant instanceof DoubleUnaryOperator) {
+			return "L" + UNARY + ";";
+		} else if (constant instanceof DoubleBinaryOperator) {
+			return "L" + BINARY + ";";
+		} else {
+			return "L" + VARIADIC + ";";
+		}
+	}
+
+	private static void pushInt(MethodVisitor method, int value) {
+		if (value >= -1 && value <= 5) {
+			method.visitInsn(Opcodes.ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			method.visitIntInsn(Opcodes.BIPUSH, value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			method.visitIntInsn(Opcodes.SIPUSH, value);
+		} else {
+			method.visitLdcInsn(value);
+		}
+	}
+
+	private enum Kind {
+		CONSTANT,
+		VARIABLE,
+		UNARY,
+		BINARY,
+		CALL,
+		CONDITIONAL,
+		OPAQUE
+	}
+
+	/**
+	 * A node of the merged expression graph. Two nodes are equal if they do the same thing with the same children,
+	 * functions are compared by identity since every function of {@link CustomUniformFunctions} is a single instance.
+	 */
+	private static final class Node {
+		private final Kind kind;
+		private final double value;
+		private final int index;
+		private final Object function;
+		private final Node[] children;
+
+		private int uses;
+		private int local;
+		private boolean stored;
+
+		private Node(Kind kind, double value, int index, Object function, Node[] children) {
+			this.kind = kind;
+			this.value = value;
+			this.index = index;
+			this.function = function;
+			this.children = children;
+		}
+
+		private static Node constant(double value) {
+			return new Node(Kind.CONSTANT, value, 0, null, new Node[0]);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+
+			if (!(obj instanceof Node)) {
+				return false;
+			}
+
+			Node other = (Node) obj;
+
+			if (kind != other.kind || index != other.index || function != other.function
+				|| Double.doubleToLongBits(value) != Double.doubleToLongBits(other.value)
+				|| children.length != other.children.length) {
+				return false;
+			}
+
+			// NB: Children are always canonical nodes already, so they can be compared by identity.
+			for (int i = 0; i < children.length; i++) {
+				if (children[i] != other.children[i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = Objects.hash(kind, Double.doubleToLongBits(value), index, System.identityHashCode(function));
+
+			for (Node child : children) {
+				hash = 31 * hash + System.identityHashCode(child);
+			}
+
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			return kind + "{" + (kind == Kind.CONSTANT ? String.valueOf(value) : kind == Kind.VARIABLE ?
+				String.valueOf(index) : Arrays.toString(children)) + "}";
+		}
+	}
+
+	private static final class GeneratedClassLoader extends ClassLoader {
+		private GeneratedClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		private Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package net.coderbot.iris.uniforms.custom;
+
+/**
+ * Evaluates all of the expressions of a pack's custom uniforms in dependency order, storing each result in its slot of
+ * the value array.
+ *
+ * <p>NB: This has to be public, since compiled programs are defined by a separate class loader and can't implement a
+ * package-private interface.</p>
+ */
+public interface ExpressionProgram {
+	void evaluate(double[] values);
+}
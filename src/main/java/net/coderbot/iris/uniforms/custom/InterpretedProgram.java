@@ -0,0 +1,25 @@
+package net.coderbot.iris.uniforms.custom;
+
+import kroppeb.stareval.expression.Expression;
+
+/**
+ * Walks the expression trees directly. This works with every expression, but goes through a virtual call for every
+ * node of every expression on each frame.
+ */
+final class InterpretedProgram implements ExpressionProgram {
+	private final Expression[] expressions;
+	private final int[] offsets;
+
+	InterpretedProgram(Expression[] expressions, int[] offsets) {
+		this.expressions = expressions;
+		this.offsets = offsets;
+	}
+
+	@Override
+	public void evaluate(double[] values) {
+		// NB: Use indices instead of iterators, since this runs every frame.
+		for (int i = 0; i < expressions.length; i++) {
+			values[offsets[i]] = expressions[i].evaluate(values);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package net.coderbot.iris.uniforms.custom;
+
+import kroppeb.stareval.expression.Expression;
+
+/**
+ * Implements the {@code random()} function of custom uniforms. This is its own expression instead of a function call
+ * so that it isn't mistaken for a pure function: two calls to {@code random()} must never be merged into one, and a
+ * call must never be replaced by a constant.
+ */
+class RandomExpression implements Expression {
+	@Override
+	public double evaluate(double[] variables) {
+		return Math.random();
+	}
+
+	@Override
+	public String toString() {
+		return "Random{}";
+	}
+}
@@ -0,0 +1,66 @@
+package net.coderbot.iris.uniforms.custom;
+
+import kroppeb.stareval.expression.Expression;
+import net.coderbot.iris.gl.uniform.FloatSupplier;
+
+/**
+ * Implements the {@code smooth(value, fadeUpTime, fadeDownTime)} function of custom uniforms, which exponentially
+ * smooths a value over time. Like in OptiFine, the fade times are given in seconds, and are the time that it takes for
+ * the smoothed value to get within 1% of a new value.
+ *
+ * <p>Unlike the other expressions, this one has state, so it must be evaluated exactly once per frame.</p>
+ */
+class SmoothExpression implements Expression {
+	/**
+	 * Natural logarithm of 100, ie. {@code ln(100)}, since e^(-ln(100)) is 1%.
+	 */
+	private static final double LN_OF_100 = Math.log(100.0);
+
+	private final Expression value;
+	private final Expression fadeUpTime;
+	private final Expression fadeDownTime;
+	private final FloatSupplier lastFrameTime;
+
+	private double accumulator;
+	private boolean hasInitialValue;
+
+	SmoothExpression(Expression value, Expression fadeUpTime, Expression fadeDownTime, FloatSupplier lastFrameTime) {
+		this.value = value;
+		this.fadeUpTime = fadeUpTime;
+		this.fadeDownTime = fadeDownTime;
+		this.lastFrameTime = lastFrameTime;
+	}
+
+	@Override
+	public double evaluate(double[] variables) {
+		double newValue = value.evaluate(variables);
+
+		if (!hasInitialValue) {
+			// There's nothing to smooth with yet.
+			accumulator = newValue;
+			hasInitialValue = true;
+
+			return accumulator;
+		}
+
+		double fadeTime = (newValue > accumulator ? fadeUpTime : fadeDownTime).evaluate(variables);
+
+		if (fadeTime <= 0.0) {
+			accumulator = newValue;
+
+			return accumulator;
+		}
+
+		// α = 1 - e^(-k𝚫t), where k = ln(100) / fadeTime
+		double smoothingFactor = 1.0 - Math.exp(-LN_OF_100 * lastFrameTime.getAsFloat() / fadeTime);
+
+		accumulator += (newValue - accumulator) * smoothingFactor;
+
+		return accumulator;
+	}
+
+	@Override
+	public String toString() {
+		return "Smooth{" + value + " up {" + fadeUpTime + "} down {" + fadeDownTime + "} }";
+	}
+}
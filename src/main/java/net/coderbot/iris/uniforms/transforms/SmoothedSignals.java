@@ -0,0 +1,88 @@
+package net.coderbot.iris.uniforms.transforms;
+
+import net.coderbot.iris.gl.uniform.FloatSupplier;
+import net.coderbot.iris.gl.uniform.ValueWriter;
+import net.coderbot.iris.uniforms.FrameUpdateNotifier;
+import net.coderbot.iris.vendored.joml.Vector2i;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps track of the smoothed values of a pipeline. The common uniforms are added separately to every program, but a
+ * smoothed value only needs to be smoothed once per frame, so every program that asks for the same source with the same
+ * half lives is given the same instance.
+ *
+ * <p>Sources are identified by name, since there's no way to tell whether two suppliers compute the same thing. The
+ * unsmoothed supplier that was passed in first is the one that ends up being used.</p>
+ */
+public class SmoothedSignals {
+	private final FrameUpdateNotifier updateNotifier;
+	private final Map<Key, SmoothedFloat> floats;
+	private final Map<Key, SmoothedVec2f> vectors;
+
+	public SmoothedSignals(FrameUpdateNotifier updateNotifier) {
+		this.updateNotifier = updateNotifier;
+		this.floats = new HashMap<>();
+		this.vectors = new HashMap<>();
+	}
+
+	/**
+	 * @param halfLifeUp the half life used when the value is increasing, in tenths of a second
+	 * @param halfLifeDown the half life used when the value is decreasing, in tenths of a second
+	 * @see SmoothedFloat#SmoothedFloat
+	 */
+	public SmoothedFloat smooth(String source, float halfLifeUp, float halfLifeDown, FloatSupplier unsmoothed) {
+		return floats.computeIfAbsent(new Key(source, halfLifeUp, halfLifeDown),
+			key -> new SmoothedFloat(halfLifeUp, halfLifeDown, unsmoothed, updateNotifier));
+	}
+
+	/**
+	 * The two component version of {@link #smooth}. Shares names with it, but not instances.
+	 */
+	public SmoothedVec2f smooth2f(String source, float halfLifeUp, float halfLifeDown, ValueWriter<Vector2i> unsmoothed) {
+		return vectors.computeIfAbsent(new Key(source, halfLifeUp, halfLifeDown),
+			key -> new SmoothedVec2f(halfLifeUp, halfLifeDown, unsmoothed, updateNotifier));
+	}
+
+	/**
+	 * @return the number of distinct values being smoothed every frame
+	 */
+	public int size() {
+		return floats.size() + vectors.size();
+	}
+
+	private static final class Key {
+		private final String source;
+		private final float halfLifeUp;
+		private final float halfLifeDown;
+
+		Key(String source, float halfLifeUp, float halfLifeDown) {
+			this.source = source;
+			this.halfLifeUp = halfLifeUp;
+			this.halfLifeDown = halfLifeDown;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+
+			Key key = (Key) o;
+
+			return Float.compare(key.halfLifeUp, halfLifeUp) == 0 && Float.compare(key.halfLifeDown, halfLifeDown) == 0
+				&& source.equals(key.source);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(source, halfLifeUp, halfLifeDown);
+		}
+	}
+}
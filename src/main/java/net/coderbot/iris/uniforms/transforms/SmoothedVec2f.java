@@ -1,21 +1,28 @@
 package net.coderbot.iris.uniforms.transforms;
 
+import net.coderbot.iris.gl.uniform.ValueWriter;
 import net.coderbot.iris.uniforms.FrameUpdateNotifier;
 import net.coderbot.iris.vendored.joml.Vector2f;
 import net.coderbot.iris.vendored.joml.Vector2i;
-import java.util.function.Supplier;
 
-public class SmoothedVec2f implements Supplier<Vector2f> {
+public class SmoothedVec2f implements ValueWriter<Vector2f> {
 	private final SmoothedFloat x;
 	private final SmoothedFloat y;
+	private final Vector2i unsmoothedValue = new Vector2i();
 
-	public SmoothedVec2f(float halfLifeUp, float halfLifeDown, Supplier<Vector2i> unsmoothed, FrameUpdateNotifier updateNotifier) {
-		x = new SmoothedFloat(halfLifeUp, halfLifeDown, () -> unsmoothed.get().x, updateNotifier);
-		y = new SmoothedFloat(halfLifeUp, halfLifeDown, () -> unsmoothed.get().y, updateNotifier);
+	public SmoothedVec2f(float halfLifeUp, float halfLifeDown, ValueWriter<Vector2i> unsmoothed, FrameUpdateNotifier updateNotifier) {
+		x = new SmoothedFloat(halfLifeUp, halfLifeDown, () -> {
+			unsmoothed.write(unsmoothedValue);
+			return unsmoothedValue.x;
+		}, updateNotifier);
+		y = new SmoothedFloat(halfLifeUp, halfLifeDown, () -> {
+			unsmoothed.write(unsmoothedValue);
+			return unsmoothedValue.y;
+		}, updateNotifier);
 	}
 
 	@Override
-	public Vector2f get() {
-		return new Vector2f(x.getAsFloat(), y.getAsFloat());
+	public void write(Vector2f destination) {
+		destination.set(x.getAsFloat(), y.getAsFloat());
 	}
 }
@@ -1,12 +1,12 @@
 package net.coderbot.iris.compat.sodium.mixin.block_id;
 
-import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import me.jellysquid.mods.sodium.client.model.vertex.VertexSink;
 import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferView;
 import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPassManager;
 import net.coderbot.iris.block_rendering.BlockRenderingSettings;
+import net.coderbot.iris.block_rendering.BlockStateIdTable;
 import net.coderbot.iris.compat.sodium.impl.block_id.ChunkBuildBuffersExt;
 import net.coderbot.iris.compat.sodium.impl.block_id.MaterialIdAwareVertexWriter;
 import net.coderbot.iris.block_rendering.MaterialIdHolder;
@@ -29,7 +29,7 @@ public class MixinChunkBuildBuffers implements ChunkBuildBuffersExt {
 
     @Inject(method = "<init>", at = @At("RETURN"), remap = false)
     private void iris$onConstruct(ChunkVertexType vertexType, BlockRenderPassManager renderPassManager, CallbackInfo ci) {
-        Object2IntMap<BlockState> blockStateIds = BlockRenderingSettings.INSTANCE.getBlockStateIds();
+        BlockStateIdTable blockStateIds = BlockRenderingSettings.INSTANCE.getBlockStateIdTable();
 
         if (blockStateIds != null) {
             this.idHolder = new MaterialIdHolder(blockStateIds);
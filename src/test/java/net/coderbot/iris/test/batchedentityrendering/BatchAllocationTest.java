@@ -0,0 +1,217 @@
+package net.coderbot.iris.test.batchedentityrendering;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.coderbot.batchedentityrendering.impl.ObjectPool;
+import net.coderbot.batchedentityrendering.impl.ReusableGroups;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs batches through the same pooling as FullyBufferedMultiBufferSource and SegmentedBufferBuilder, with strings
+ * standing in for render types, and checks that finishing a batch doesn't allocate once the pools have grown.
+ */
+public class BatchAllocationTest {
+	private static final int ENTITIES = 5000;
+	private static final int RENDER_TYPES = 300;
+	private static final int BUILDERS = 32;
+	private static final int WARMUP_BATCHES = 500;
+	private static final int MEASURED_BATCHES = 500;
+
+	private final String[] renderTypes = new String[RENDER_TYPES];
+	private final Builder[] builders = new Builder[BUILDERS];
+	private final ReusableGroups<String, Segment> typeToSegment = new ReusableGroups<>();
+	private int batch;
+
+	@Test
+	void testFinishingBatchesDoesNotAllocate() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		Assumptions.assumeTrue(threads instanceof com.sun.management.ThreadMXBean,
+			"allocation tracking is not available on this JVM");
+
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+
+		Assumptions.assumeTrue(allocations.isThreadAllocatedMemorySupported()
+			&& allocations.isThreadAllocatedMemoryEnabled(), "allocation tracking is disabled");
+
+		for (int i = 0; i < RENDER_TYPES; i++) {
+			renderTypes[i] = "entity_cutout_" + i;
+		}
+
+		for (int i = 0; i < BUILDERS; i++) {
+			builders[i] = new Builder();
+		}
+
+		runBatches(WARMUP_BATCHES);
+
+		int created = getCreatedSegments();
+
+		long threadId = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(threadId);
+		long segments = runBatches(MEASURED_BATCHES);
+		long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+		// NB: Querying the allocated bytes may allocate a little by itself, so only fail when something is allocated
+		// on (nearly) every batch.
+		Assertions.assertTrue(allocated < MEASURED_BATCHES,
+			"finishing batches allocated " + allocated + " bytes over " + MEASURED_BATCHES + " batches");
+
+		Assertions.assertEquals(created, getCreatedSegments(), "the segment pools kept growing");
+		Assertions.assertTrue(segments > (long) MEASURED_BATCHES * RENDER_TYPES, "every render type has segments");
+	}
+
+	@Test
+	void testGroupsAreEmptyAfterClearing() {
+		ReusableGroups<String, Integer> groups = new ReusableGroups<>();
+
+		groups.add("a", 1);
+		groups.add("b", 2);
+		groups.add("a", 3);
+
+		List<Integer> a = groups.get("a");
+
+		Assertions.assertEquals(2, a.size());
+		Assertions.assertEquals(1, groups.get("b").size());
+
+		groups.clear();
+
+		Assertions.assertNull(groups.get("a"));
+		Assertions.assertNull(groups.get("b"));
+		Assertions.assertTrue(a.isEmpty(), "the list is cleared to be reused");
+
+		groups.add("c", 4);
+
+		Assertions.assertSame(a, groups.get("c"));
+		Assertions.assertEquals(1, groups.get("c").size());
+	}
+
+	private long runBatches(int batches) {
+		long segments = 0;
+
+		for (int i = 0; i < batches; i++) {
+			batch++;
+
+			// Each entity uses a couple of render types, like its body, its armor and its shadow. The order shifts from
+			// one batch to the next, as entities move around the camera.
+			for (int entity = 0; entity < ENTITIES; entity++) {
+				int offset = entity + batch;
+
+				getBuffer(renderTypes[offset % RENDER_TYPES]);
+				getBuffer(renderTypes[(offset * 7) % RENDER_TYPES]);
+				getBuffer(renderTypes[(offset * 13) % RENDER_TYPES]);
+			}
+
+			segments += endBatch();
+		}
+
+		return segments;
+	}
+
+	private void getBuffer(String renderType) {
+		// NB: FullyBufferedMultiBufferSource assigns builders through an LRU cache, which doesn't matter here.
+		builders[(renderType.hashCode() & Integer.MAX_VALUE) % BUILDERS].getBuffer(renderType);
+	}
+
+	private long endBatch() {
+		for (Builder builder : builders) {
+			List<Segment> segments = builder.getSegments();
+
+			for (int i = 0; i < segments.size(); i++) {
+				Segment segment = segments.get(i);
+				typeToSegment.add(segment.renderType, segment);
+			}
+		}
+
+		long segments = 0;
+
+		for (String renderType : renderTypes) {
+			List<Segment> segmentsOfType = typeToSegment.get(renderType);
+
+			if (segmentsOfType != null) {
+				for (int i = 0; i < segmentsOfType.size(); i++) {
+					segments += segmentsOfType.get(i).vertexCount > 0 ? 1 : 0;
+				}
+			}
+		}
+
+		typeToSegment.clear();
+
+		return segments;
+	}
+
+	private int getCreatedSegments() {
+		int created = 0;
+
+		for (Builder builder : builders) {
+			created += builder.segmentPool.getCreated();
+		}
+
+		return created;
+	}
+
+	/**
+	 * Splits what is rendered into segments like SegmentedBufferBuilder, without a buffer behind them.
+	 */
+	private static class Builder {
+		private final ObjectPool<Segment> segmentPool = new ObjectPool<>(Segment::new);
+		private final List<Segment> segments = new ArrayList<>();
+		private final List<String> usedTypes = new ArrayList<>();
+		private final IntList vertexCounts = new IntArrayList();
+		private String currentType;
+		private int vertexCount;
+
+		void getBuffer(String renderType) {
+			if (!renderType.equals(currentType)) {
+				if (currentType != null) {
+					endCurrentType();
+				}
+
+				currentType = renderType;
+			}
+
+			vertexCount += 4;
+		}
+
+		List<Segment> getSegments() {
+			segments.clear();
+			segmentPool.releaseAll();
+
+			if (currentType == null) {
+				return segments;
+			}
+
+			endCurrentType();
+			currentType = null;
+
+			for (int i = 0; i < usedTypes.size(); i++) {
+				Segment segment = segmentPool.take();
+				segment.renderType = usedTypes.get(i);
+				segment.vertexCount = vertexCounts.getInt(i);
+				segments.add(segment);
+			}
+
+			usedTypes.clear();
+			vertexCounts.clear();
+
+			return segments;
+		}
+
+		private void endCurrentType() {
+			usedTypes.add(currentType);
+			vertexCounts.add(vertexCount);
+			vertexCount = 0;
+		}
+	}
+
+	private static class Segment {
+		private String renderType;
+		private int vertexCount;
+	}
+}
@@ -0,0 +1,116 @@
+package net.coderbot.iris.test.batchedentityrendering;
+
+import net.coderbot.batchedentityrendering.impl.BufferSizeHistory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class BufferSizeHistoryTest {
+	private static final int MEGABYTE = 1024 * 1024;
+
+	@Test
+	void testNoRegrowthInSteadyState() {
+		SimulatedBuffer buffer = new SimulatedBuffer(2 * MEGABYTE);
+		Random random = new Random(0);
+
+		for (int i = 0; i < 100; i++) {
+			buffer.runBatch(3 * MEGABYTE + random.nextInt(2 * MEGABYTE));
+		}
+
+		int regrowthsAfterWarmup = buffer.history.getRegrowths();
+
+		for (int i = 0; i < 5000; i++) {
+			buffer.runBatch(3 * MEGABYTE + random.nextInt(2 * MEGABYTE));
+		}
+
+		Assertions.assertEquals(regrowthsAfterWarmup, buffer.history.getRegrowths());
+		Assertions.assertTrue(buffer.capacity >= 5 * MEGABYTE);
+	}
+
+	@Test
+	void testGrowsBeforeTheNextBatch() {
+		SimulatedBuffer buffer = new SimulatedBuffer(2 * MEGABYTE);
+
+		buffer.runBatch(7 * MEGABYTE / 2);
+
+		Assertions.assertEquals(1, buffer.history.getRegrowths());
+		Assertions.assertEquals(1, buffer.history.getResizes());
+
+		// 3.5 MB plus headroom, which is more than the 4 MB that it grew to
+		Assertions.assertTrue(buffer.capacity > 4 * MEGABYTE);
+
+		buffer.runBatch(7 * MEGABYTE / 2);
+
+		Assertions.assertEquals(1, buffer.history.getRegrowths());
+		Assertions.assertEquals(7 * MEGABYTE / 2, buffer.history.getHighWaterMark());
+	}
+
+	@Test
+	void testShrinksAfterSustainedLowUsage() {
+		SimulatedBuffer buffer = new SimulatedBuffer(2 * MEGABYTE);
+
+		for (int i = 0; i < 100; i++) {
+			buffer.runBatch(16 * MEGABYTE);
+		}
+
+		int peakCapacity = buffer.capacity;
+
+		// Shorter lulls don't shrink the buffer
+		for (int i = 0; i < 300; i++) {
+			buffer.runBatch(MEGABYTE);
+		}
+
+		Assertions.assertEquals(peakCapacity, buffer.capacity);
+
+		for (int i = 0; i < 1000; i++) {
+			buffer.runBatch(MEGABYTE);
+		}
+
+		Assertions.assertTrue(buffer.capacity < 2 * MEGABYTE);
+		Assertions.assertTrue(buffer.capacity >= MEGABYTE);
+		Assertions.assertEquals(16 * MEGABYTE, buffer.history.getHighWaterMark());
+	}
+
+	@Test
+	void testIgnoresRareSpikes() {
+		SimulatedBuffer buffer = new SimulatedBuffer(2 * MEGABYTE);
+
+		for (int i = 0; i < 100; i++) {
+			buffer.runBatch(i == 50 ? 20 * MEGABYTE : MEGABYTE);
+		}
+
+		// The buffer had to grow to fit the spike, but it shouldn't be presized for another one.
+		Assertions.assertEquals(1, buffer.history.getRegrowths());
+		Assertions.assertEquals(0, buffer.history.getResizes());
+		Assertions.assertTrue(buffer.history.getTargetCapacity() < 2 * MEGABYTE);
+	}
+
+	/**
+	 * Grows in the same way as a BufferBuilder does when a batch doesn't fit.
+	 */
+	private static class SimulatedBuffer {
+		private static final int GROWTH = 2 * MEGABYTE;
+
+		private final BufferSizeHistory history = new BufferSizeHistory();
+		private int capacity;
+
+		SimulatedBuffer(int capacity) {
+			this.capacity = capacity;
+		}
+
+		void runBatch(int usedBytes) {
+			int initialCapacity = capacity;
+
+			while (capacity < usedBytes) {
+				capacity += GROWTH;
+			}
+
+			int newCapacity = history.recordBatch(usedBytes, initialCapacity, capacity);
+
+			if (newCapacity != -1) {
+				capacity = newCapacity;
+			}
+		}
+	}
+}
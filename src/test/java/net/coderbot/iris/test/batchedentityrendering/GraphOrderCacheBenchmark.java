@@ -0,0 +1,73 @@
+package net.coderbot.iris.test.batchedentityrendering;
+
+import de.odysseus.ithaka.digraph.Digraph;
+import de.odysseus.ithaka.digraph.util.fas.SimpleFeedbackArcSetProvider;
+import net.coderbot.batchedentityrendering.impl.ordering.GraphOrderCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares reusing the render order through a {@link GraphOrderCache} with computing it from scratch every frame, over
+ * the frames of a busy {@link SyntheticScene}. This isn't run as part of the tests, since its results depend on the
+ * machine; run the main method directly instead.
+ */
+public final class GraphOrderCacheBenchmark {
+	private static final int RENDER_TYPES = 200;
+	private static final int ENTITIES = 2000;
+	private static final int FRAMES = 1000;
+	private static final int ROUNDS = 10;
+
+	private GraphOrderCacheBenchmark() {
+		// no construction allowed
+	}
+
+	public static void main(String[] args) {
+		SimpleFeedbackArcSetProvider feedbackArcSetProvider = new SimpleFeedbackArcSetProvider();
+
+		for (double cyclicChance : new double[] {0.0, 0.01}) {
+			SyntheticScene scene = new SyntheticScene(0, RENDER_TYPES, ENTITIES, cyclicChance);
+			List<List<String[]>> frames = new ArrayList<>();
+
+			for (int frame = 0; frame < FRAMES; frame++) {
+				frames.add(scene.nextFrame());
+			}
+
+			for (int round = 0; round < ROUNDS; round++) {
+				// NB: Breaking cycles removes edges from the graph, so each run needs graphs of its own.
+				List<Digraph<String>> cachedGraphs = buildGraphs(frames);
+				List<Digraph<String>> recomputedGraphs = buildGraphs(frames);
+
+				GraphOrderCache<String> cache = new GraphOrderCache<>(feedbackArcSetProvider);
+				long start = System.nanoTime();
+
+				for (Digraph<String> graph : cachedGraphs) {
+					cache.update(graph);
+				}
+
+				long cachedTime = System.nanoTime() - start;
+				start = System.nanoTime();
+
+				for (Digraph<String> graph : recomputedGraphs) {
+					new GraphOrderCache<String>(feedbackArcSetProvider).update(graph);
+				}
+
+				long recomputedTime = System.nanoTime() - start;
+
+				System.out.printf("cyclic chance %.2f, round %d: cached %.1f us/frame (%d hits, %d misses), "
+						+ "recomputed %.1f us/frame%n", cyclicChance, round, cachedTime / 1e3 / FRAMES,
+					cache.getCacheHits(), cache.getCacheMisses(), recomputedTime / 1e3 / FRAMES);
+			}
+		}
+	}
+
+	private static List<Digraph<String>> buildGraphs(List<List<String[]>> frames) {
+		List<Digraph<String>> graphs = new ArrayList<>(frames.size());
+
+		for (List<String[]> frame : frames) {
+			graphs.add(SyntheticScene.buildGraph(frame));
+		}
+
+		return graphs;
+	}
+}
@@ -0,0 +1,180 @@
+package net.coderbot.iris.test.batchedentityrendering;
+
+import de.odysseus.ithaka.digraph.Digraph;
+import de.odysseus.ithaka.digraph.util.fas.SimpleFeedbackArcSetProvider;
+import net.coderbot.batchedentityrendering.impl.ordering.GraphOrderCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class GraphOrderCacheTest {
+	private final SimpleFeedbackArcSetProvider feedbackArcSetProvider = new SimpleFeedbackArcSetProvider();
+
+	@Test
+	void testUnchangedGraphReusesOrder() {
+		GraphOrderCache<String> cache = new GraphOrderCache<>(feedbackArcSetProvider);
+
+		List<String> first = new ArrayList<>(cache.update(graph("a b c", "b d")));
+		assertCounts(cache, 0, 1);
+		assertValidOrder(graph("a b c", "b d"), first);
+
+		Assertions.assertEquals(first, cache.update(graph("a b c", "b d")));
+		assertCounts(cache, 1, 1);
+	}
+
+	@Test
+	void testAddedVertexWithoutEdgesIsAppended() {
+		GraphOrderCache<String> cache = new GraphOrderCache<>(feedbackArcSetProvider);
+
+		List<String> first = new ArrayList<>(cache.update(graph("a b", "c")));
+		List<String> second = cache.update(graph("a b", "c", "new"));
+
+		assertCounts(cache, 1, 1);
+		Assertions.assertEquals(first, second.subList(0, first.size()));
+		Assertions.assertEquals("new", second.get(second.size() - 1));
+	}
+
+	@Test
+	void testAddedVertexWithEdgesIsSorted() {
+		GraphOrderCache<String> cache = new GraphOrderCache<>(feedbackArcSetProvider);
+
+		cache.update(graph("a b"));
+		List<String> order = cache.update(graph("a b", "new a"));
+
+		assertCounts(cache, 0, 2);
+		assertValidOrder(graph("a b", "new a"), order);
+	}
+
+	@Test
+	void testRemovedVertexIsDropped() {
+		GraphOrderCache<String> cache = new GraphOrderCache<>(feedbackArcSetProvider);
+
+		cache.update(graph("a b c", "d"));
+		List<String> order = cache.update(graph("a c", "d"));
+
+		assertCounts(cache, 1, 1);
+		Assertions.assertFalse(order.contains("b"));
+		assertValidOrder(graph("a c", "d"), order);
+	}
+
+	@Test
+	void testReversedEdgeIsSorted() {
+		GraphOrderCache<String> cache = new GraphOrderCache<>(feedbackArcSetProvider);
+
+		List<String> first = new ArrayList<>(cache.update(graph("a b")));
+		List<String> second = cache.update(graph("b a"));
+
+		assertCounts(cache, 0, 2);
+		assertValidOrder(graph("b a"), second);
+		Assertions.assertNotEquals(first, second);
+	}
+
+	@Test
+	void testSelfEdgesAreIgnored() {
+		GraphOrderCache<String> cache = new GraphOrderCache<>(feedbackArcSetProvider);
+
+		cache.update(graph("a b"));
+		List<String> order = cache.update(graph("a a b b"));
+
+		assertCounts(cache, 1, 1);
+		Assertions.assertEquals(Arrays.asList("a", "b"), order);
+	}
+
+	@Test
+	void testFeedbackArcsAreIgnored() {
+		GraphOrderCache<String> cache = new GraphOrderCache<>(feedbackArcSetProvider);
+
+		// The edge from b to a has the lowest weight, so that's the one removed to break the cycle.
+		List<String> first = new ArrayList<>(cache.update(graph("a b", "a b", "b a")));
+
+		assertCounts(cache, 0, 1);
+		Assertions.assertEquals(Arrays.asList("a", "b"), first);
+
+		// The same cycle again, which only needs the same edge removed.
+		Assertions.assertEquals(first, cache.update(graph("a b", "a b", "b a")));
+		assertCounts(cache, 1, 1);
+
+		// Only the removed edge is left, which still doesn't need a full sort.
+		Assertions.assertEquals(first, cache.update(graph("b a")));
+		assertCounts(cache, 2, 1);
+	}
+
+	@Test
+	void testMatchesFullRecomputeOnAcyclicScenes() {
+		SyntheticScene scene = new SyntheticScene(0, 60, 300, 0.0);
+		GraphOrderCache<String> cache = new GraphOrderCache<>(feedbackArcSetProvider);
+		int frames = 2000;
+
+		for (int frame = 0; frame < frames; frame++) {
+			List<String[]> groups = scene.nextFrame();
+
+			Digraph<String> graph = SyntheticScene.buildGraph(groups);
+			List<String> order = cache.update(graph);
+
+			// The order computed from scratch may differ from the cached one, but both need to satisfy every edge.
+			Digraph<String> recomputedGraph = SyntheticScene.buildGraph(groups);
+			List<String> recomputed = new GraphOrderCache<String>(feedbackArcSetProvider).update(recomputedGraph);
+
+			Assertions.assertEquals(new HashSet<>(recomputed), new HashSet<>(order), "frame " + frame);
+			assertValidOrder(SyntheticScene.buildGraph(groups), order);
+			assertValidOrder(SyntheticScene.buildGraph(groups), recomputed);
+		}
+
+		Assertions.assertEquals(frames, cache.getCacheHits() + cache.getCacheMisses());
+		Assertions.assertTrue(cache.getCacheHits() > cache.getCacheMisses(),
+			"only reused the order " + cache.getCacheHits() + " times over " + frames + " frames");
+	}
+
+	@Test
+	void testCyclicScenesKeepEveryVertex() {
+		SyntheticScene scene = new SyntheticScene(1, 60, 300, 0.02);
+		GraphOrderCache<String> cache = new GraphOrderCache<>(feedbackArcSetProvider);
+		int frames = 500;
+
+		for (int frame = 0; frame < frames; frame++) {
+			Digraph<String> graph = SyntheticScene.buildGraph(scene.nextFrame());
+			Set<String> vertices = new HashSet<>();
+			graph.vertices().forEach(vertices::add);
+
+			List<String> order = cache.update(graph);
+
+			Assertions.assertEquals(vertices.size(), order.size(), "frame " + frame);
+			Assertions.assertEquals(vertices, new HashSet<>(order), "frame " + frame);
+		}
+
+		Assertions.assertEquals(frames, cache.getCacheHits() + cache.getCacheMisses());
+	}
+
+	private static Digraph<String> graph(String... groups) {
+		List<String[]> frame = new ArrayList<>();
+
+		for (String group : groups) {
+			frame.add(group.split(" "));
+		}
+
+		return SyntheticScene.buildGraph(frame);
+	}
+
+	private static void assertCounts(GraphOrderCache<?> cache, int hits, int misses) {
+		Assertions.assertEquals(hits, cache.getCacheHits(), "cache hits");
+		Assertions.assertEquals(misses, cache.getCacheMisses(), "cache misses");
+	}
+
+	private static void assertValidOrder(Digraph<String> graph, List<String> order) {
+		Assertions.assertEquals(graph.getVertexCount(), order.size(), "every vertex exactly once: " + order);
+
+		for (String source : graph.vertices()) {
+			for (String target : graph.targets(source)) {
+				if (!source.equals(target)) {
+					Assertions.assertTrue(order.indexOf(source) < order.indexOf(target),
+						source + " -> " + target + " points backwards in " + order);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package net.coderbot.iris.test.batchedentityrendering;
+
+import net.coderbot.batchedentityrendering.impl.MultiDrawBatch;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MultiDrawBatchTest {
+	private static final int VERTEX_SIZE = 4;
+
+	@Test
+	void testSegmentsAreMergedInOrder() {
+		MultiDrawBatch batch = new MultiDrawBatch();
+		RecordingSink sink = new RecordingSink();
+
+		batch.add(segment(1, 4), 4);
+		batch.add(segment(2, 3), 3);
+		batch.add(segment(3, 5), 5);
+		batch.flush(sink);
+
+		Assertions.assertEquals(1, sink.draws.size());
+
+		Draw draw = sink.draws.get(0);
+
+		Assertions.assertArrayEquals(new int[] {0, 4, 7}, draw.firsts);
+		Assertions.assertArrayEquals(new int[] {4, 3, 5}, draw.counts);
+		Assertions.assertArrayEquals(new int[] {1, 1, 1, 1, 2, 2, 2, 3, 3, 3, 3, 3}, draw.vertices);
+	}
+
+	@Test
+	void testFlushClearsTheBatch() {
+		MultiDrawBatch batch = new MultiDrawBatch();
+		RecordingSink sink = new RecordingSink();
+
+		batch.add(segment(1, 2), 2);
+		batch.flush(sink);
+
+		Assertions.assertTrue(batch.isEmpty());
+
+		batch.add(segment(2, 3), 3);
+		batch.flush(sink);
+
+		Assertions.assertEquals(2, sink.draws.size());
+		Assertions.assertArrayEquals(new int[] {0}, sink.draws.get(1).firsts);
+		Assertions.assertArrayEquals(new int[] {2, 2, 2}, sink.draws.get(1).vertices);
+	}
+
+	@Test
+	void testEmptyBatchesAreNotSubmitted() {
+		MultiDrawBatch batch = new MultiDrawBatch();
+		RecordingSink sink = new RecordingSink();
+
+		batch.flush(sink);
+		batch.add(segment(1, 0), 0);
+		batch.flush(sink);
+
+		Assertions.assertTrue(sink.draws.isEmpty());
+	}
+
+	@Test
+	void testSlicesAreNotModified() {
+		MultiDrawBatch batch = new MultiDrawBatch();
+		ByteBuffer slice = segment(1, 3);
+
+		batch.add(slice, 3);
+
+		Assertions.assertEquals(0, slice.position());
+		Assertions.assertEquals(3 * VERTEX_SIZE, slice.remaining());
+	}
+
+	@Test
+	void testGrowsPastInitialCapacity() {
+		MultiDrawBatch batch = new MultiDrawBatch();
+		RecordingSink sink = new RecordingSink();
+		int segments = 1000;
+		int verticesPerSegment = 100;
+
+		for (int i = 0; i < segments; i++) {
+			batch.add(segment(i, verticesPerSegment), verticesPerSegment);
+		}
+
+		batch.flush(sink);
+
+		Draw draw = sink.draws.get(0);
+
+		Assertions.assertEquals(segments, draw.firsts.length);
+		Assertions.assertEquals(segments * verticesPerSegment, draw.vertices.length);
+		Assertions.assertEquals((segments - 1) * verticesPerSegment, draw.firsts[segments - 1]);
+		Assertions.assertEquals(segments - 1, draw.vertices[draw.vertices.length - 1]);
+	}
+
+	/**
+	 * Creates a segment where every vertex is a single int holding the given value.
+	 */
+	private static ByteBuffer segment(int value, int vertexCount) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(vertexCount * VERTEX_SIZE);
+
+		for (int i = 0; i < vertexCount; i++) {
+			buffer.putInt(value);
+		}
+
+		buffer.flip();
+
+		return buffer;
+	}
+
+	private static int[] toArray(IntBuffer buffer) {
+		int[] array = new int[buffer.remaining()];
+		buffer.duplicate().get(array);
+
+		return array;
+	}
+
+	private static class Draw {
+		private final int[] vertices;
+		private final int[] firsts;
+		private final int[] counts;
+
+		Draw(int[] vertices, int[] firsts, int[] counts) {
+			this.vertices = vertices;
+			this.firsts = firsts;
+			this.counts = counts;
+		}
+	}
+
+	private static class RecordingSink implements MultiDrawBatch.Sink {
+		private final List<Draw> draws = new ArrayList<>();
+
+		@Override
+		public void multiDraw(ByteBuffer vertices, IntBuffer firsts, IntBuffer counts) {
+			// NB: The vertices were written with the default big-endian order.
+			IntBuffer vertexInts = vertices.duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+
+			draws.add(new Draw(toArray(vertexInts), toArray(firsts), toArray(counts)));
+		}
+	}
+}
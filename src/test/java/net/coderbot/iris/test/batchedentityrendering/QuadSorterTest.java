@@ -0,0 +1,203 @@
+package net.coderbot.iris.test.batchedentityrendering;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import net.coderbot.batchedentityrendering.impl.QuadSorter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+public class QuadSorterTest {
+	// NEW_ENTITY, and the extended entity format that Iris swaps in
+	private static final int[] VERTEX_SIZES = {36, 52};
+
+	@Test
+	void testMatchesSerialSortOfRecordedSegments() {
+		List<RecordedSegment> serial = recordSegments(new Random(42));
+		List<RecordedSegment> parallel = recordSegments(new Random(42));
+
+		for (RecordedSegment segment : serial) {
+			// NB: Vanilla sorts the quads before the segment is sliced off, while the buffer still has the native
+			// byte order.
+			vanillaSortQuads(segment.vertices.duplicate().order(ByteOrder.nativeOrder()), segment.vertexCount,
+				segment.vertexSize);
+		}
+
+		parallel.parallelStream().forEach(segment -> QuadSorter.sortQuads(segment.vertices, segment.vertexCount));
+
+		Assertions.assertEquals(serial.size(), parallel.size());
+
+		for (int i = 0; i < serial.size(); i++) {
+			ByteBuffer expected = serial.get(i).vertices;
+			ByteBuffer actual = parallel.get(i).vertices;
+
+			expected.clear();
+			actual.clear();
+
+			Assertions.assertEquals(expected, actual, "segment " + i + " differs");
+		}
+	}
+
+	@Test
+	void testQuadsAtTheSameDistanceKeepTheirOrder() {
+		int vertexSize = 36;
+		ByteBuffer buffer = allocate(3 * 4 * vertexSize);
+
+		// Two identical quads with different payloads, and a farther quad that should move to the front
+		putQuad(buffer, vertexSize, 1.0F, 1);
+		putQuad(buffer, vertexSize, 1.0F, 2);
+		putQuad(buffer, vertexSize, 5.0F, 3);
+		buffer.flip();
+
+		QuadSorter.sortQuads(buffer.slice(), 12);
+
+		Assertions.assertEquals(3, buffer.getInt(12));
+		Assertions.assertEquals(1, buffer.getInt(4 * vertexSize + 12));
+		Assertions.assertEquals(2, buffer.getInt(8 * vertexSize + 12));
+	}
+
+	/**
+	 * Emulates a frame's worth of translucent entity segments: a mix of sizes and vertex formats, with many quads at
+	 * the same distance like the faces of identical entities. Like the segments of a BufferBuilder, they are all
+	 * written to one buffer in the native byte order, and then sliced off of it.
+	 */
+	private static List<RecordedSegment> recordSegments(Random random) {
+		ByteBuffer buffer = allocate(64 * 200 * 4 * VERTEX_SIZES[VERTEX_SIZES.length - 1]);
+		List<RecordedSegment> segments = new ArrayList<>();
+
+		for (int i = 0; i < 64; i++) {
+			int vertexSize = VERTEX_SIZES[random.nextInt(VERTEX_SIZES.length)];
+			int quads = random.nextInt(200);
+			int start = buffer.position();
+
+			for (int quad = 0; quad < quads; quad++) {
+				putQuad(buffer, vertexSize, random.nextInt(16) - 8.0F + random.nextInt(4) * 0.25F, random.nextInt());
+			}
+
+			int end = buffer.position();
+
+			// NB: This is what BufferBuilder.popNextBuffer does, which leaves the slice in big endian byte order.
+			buffer.position(start);
+			buffer.limit(end);
+			segments.add(new RecordedSegment(buffer.slice(), vertexSize, quads * 4));
+
+			buffer.limit(buffer.capacity());
+			buffer.position(end);
+		}
+
+		return segments;
+	}
+
+	private static void putQuad(ByteBuffer segment, int vertexSize, float offset, int payload) {
+		for (int vertex = 0; vertex < 4; vertex++) {
+			int start = segment.position();
+
+			segment.putFloat(offset + (vertex & 1));
+			segment.putFloat(offset * 0.5F);
+			segment.putFloat(-offset + (vertex >> 1));
+			segment.putInt(payload);
+
+			while (segment.position() < start + vertexSize) {
+				segment.put((byte) vertex);
+			}
+		}
+	}
+
+	private static ByteBuffer allocate(int bytes) {
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * A copy of BufferBuilder.sortQuads from vanilla with the camera at the origin, which is the serial path that the
+	 * sorter has to match.
+	 */
+	private static void vanillaSortQuads(ByteBuffer buffer, int vertexCount, int vertexSize) {
+		buffer.clear();
+		FloatBuffer floatBuffer = buffer.asFloatBuffer();
+		int integerSize = vertexSize / 4;
+		int quads = vertexCount / 4;
+		float[] distances = new float[quads];
+
+		for (int j = 0; j < quads; ++j) {
+			distances[j] = getQuadDistanceFromPlayer(floatBuffer, integerSize, j * vertexSize);
+		}
+
+		int[] order = new int[quads];
+
+		for (int k = 0; k < order.length; ++k) {
+			order[k] = k;
+		}
+
+		IntArrays.mergeSort(order, (a, b) -> Float.compare(distances[b], distances[a]));
+		BitSet bitSet = new BitSet();
+		FloatBuffer saved = FloatBuffer.allocate(integerSize * 4);
+
+		for (int l = bitSet.nextClearBit(0); l < order.length; l = bitSet.nextClearBit(l + 1)) {
+			int m = order[l];
+
+			if (m != l) {
+				limitToQuad(floatBuffer, integerSize, m);
+				saved.clear();
+				saved.put(floatBuffer);
+				int n = m;
+
+				for (int o = order[m]; n != l; o = order[o]) {
+					limitToQuad(floatBuffer, integerSize, o);
+					FloatBuffer source = floatBuffer.slice();
+					limitToQuad(floatBuffer, integerSize, n);
+					floatBuffer.put(source);
+					bitSet.set(n);
+					n = o;
+				}
+
+				limitToQuad(floatBuffer, integerSize, l);
+				saved.flip();
+				floatBuffer.put(saved);
+			}
+		}
+	}
+
+	private static void limitToQuad(FloatBuffer buffer, int integerSize, int quad) {
+		int quadSize = integerSize * 4;
+		buffer.limit((quad + 1) * quadSize);
+		buffer.position(quad * quadSize);
+	}
+
+	private static float getQuadDistanceFromPlayer(FloatBuffer buffer, int stride, int offset) {
+		float x0 = buffer.get(offset);
+		float y0 = buffer.get(offset + 1);
+		float z0 = buffer.get(offset + 2);
+		float x1 = buffer.get(offset + stride);
+		float y1 = buffer.get(offset + stride + 1);
+		float z1 = buffer.get(offset + stride + 2);
+		float x2 = buffer.get(offset + stride * 2);
+		float y2 = buffer.get(offset + stride * 2 + 1);
+		float z2 = buffer.get(offset + stride * 2 + 2);
+		float x3 = buffer.get(offset + stride * 3);
+		float y3 = buffer.get(offset + stride * 3 + 1);
+		float z3 = buffer.get(offset + stride * 3 + 2);
+		float x = (x0 + x1 + x2 + x3) * 0.25F;
+		float y = (y0 + y1 + y2 + y3) * 0.25F;
+		float z = (z0 + z1 + z2 + z3) * 0.25F;
+
+		return x * x + y * y + z * z;
+	}
+
+	private static class RecordedSegment {
+		private final ByteBuffer vertices;
+		private final int vertexSize;
+		private final int vertexCount;
+
+		RecordedSegment(ByteBuffer vertices, int vertexSize, int vertexCount) {
+			this.vertices = vertices;
+			this.vertexSize = vertexSize;
+			this.vertexCount = vertexCount;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package net.coderbot.iris.test.batchedentityrendering;
+
+import de.odysseus.ithaka.digraph.Digraph;
+import de.odysseus.ithaka.digraph.MapDigraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the render types used by the entities of a scene over a sequence of frames, like a busy scene would. Most
+ * entities stay from one frame to the next, with a few of them leaving or appearing in every frame. Each entity renders
+ * a group of render types in the same order every frame, such as its body, its armor and then its glint.
+ */
+final class SyntheticScene {
+	private final Random random;
+	private final int renderTypes;
+	private final double cyclicChance;
+	private final List<String[]> entities;
+
+	/**
+	 * @param cyclicChance how likely a new entity is to render its types in a different order than every other
+	 *                     entity, which makes the graph cyclic
+	 */
+	SyntheticScene(long seed, int renderTypes, int entities, double cyclicChance) {
+		this.random = new Random(seed);
+		this.renderTypes = renderTypes;
+		this.cyclicChance = cyclicChance;
+		this.entities = new ArrayList<>();
+
+		for (int i = 0; i < entities; i++) {
+			this.entities.add(createEntity());
+		}
+	}
+
+	/**
+	 * @return the groups of render types rendered in the next frame
+	 */
+	List<String[]> nextFrame() {
+		for (int i = 0; i < entities.size(); i++) {
+			if (random.nextInt(2000) == 0) {
+				entities.set(i, createEntity());
+			}
+		}
+
+		List<String[]> frame = new ArrayList<>();
+
+		for (String[] entity : entities) {
+			// Some entities are culled in some frames.
+			if (random.nextInt(50) != 0) {
+				frame.add(entity);
+			}
+		}
+
+		return frame;
+	}
+
+	private String[] createEntity() {
+		String[] group = new String[1 + random.nextInt(3)];
+		int type = random.nextInt(renderTypes);
+
+		for (int i = 0; i < group.length; i++) {
+			group[i] = "type" + type;
+
+			// Types are usually used in ascending order, so that the graph stays acyclic. Using the same type again
+			// gives it an edge to itself.
+			if (random.nextInt(10) != 0) {
+				type = Math.min(type + 1 + random.nextInt(3), renderTypes - 1);
+			}
+		}
+
+		if (random.nextDouble() < cyclicChance) {
+			for (int i = 0; i < group.length / 2; i++) {
+				String swapped = group[i];
+				group[i] = group[group.length - 1 - i];
+				group[group.length - 1 - i] = swapped;
+			}
+		}
+
+		return group;
+	}
+
+	/**
+	 * Builds the graph of a frame the same way that GraphTranslucencyRenderOrderManager does, with an edge from each
+	 * render type to the next one in the same group, weighted by how often that happens.
+	 */
+	static Digraph<String> buildGraph(List<String[]> frame) {
+		Digraph<String> graph = new MapDigraph<>();
+
+		for (String[] group : frame) {
+			String previous = null;
+
+			for (String type : group) {
+				graph.add(type);
+
+				if (previous != null) {
+					graph.put(previous, type, graph.get(previous, type).orElse(0) + 1);
+				}
+
+				previous = type;
+			}
+		}
+
+		return graph;
+	}
+}
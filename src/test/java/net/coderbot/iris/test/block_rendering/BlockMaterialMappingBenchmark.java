@@ -0,0 +1,152 @@
+package net.coderbot.iris.test.block_rendering;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.coderbot.iris.block_rendering.BlockMaterialMapping;
+import net.coderbot.iris.shaderpack.materialmap.BlockEntry;
+import net.coderbot.iris.shaderpack.materialmap.NamespacedId;
+import net.minecraft.core.Registry;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.StateDefinition;
+import net.minecraft.world.level.block.state.properties.Property;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Times resolving a synthetic block.properties file with 10,000 entries against the vanilla blocks, comparing
+ * {@link BlockMaterialMapping#createBlockStateIdMap} with the single-threaded string comparison that it replaced. This
+ * isn't run as part of the tests, since it needs to bootstrap the registries and its results depend on the machine;
+ * run the main method directly instead.
+ */
+public final class BlockMaterialMappingBenchmark {
+	private static final int ENTRIES = 10000;
+	private static final int MATERIAL_IDS = 1000;
+	private static final int ROUNDS = 10;
+
+	private BlockMaterialMappingBenchmark() {
+		// no construction allowed
+	}
+
+	public static void main(String[] args) {
+		Bootstrap.bootStrap();
+
+		Int2ObjectMap<List<BlockEntry>> blockPropertiesMap = createBlockProperties(new Random(0));
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			Object2IntMap<BlockState> parallelIds = BlockMaterialMapping.createBlockStateIdMap(blockPropertiesMap);
+			long parallelTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			Object2IntMap<BlockState> sequentialIds = createBlockStateIdMapSequentially(blockPropertiesMap);
+			long sequentialTime = System.nanoTime() - start;
+
+			if (!parallelIds.equals(sequentialIds)) {
+				throw new IllegalStateException("The parallel and the sequential ID maps disagree");
+			}
+
+			System.out.printf("round %d: %d states, parallel %.2f ms, sequential %.2f ms%n", round, parallelIds.size(),
+				parallelTime / 1e6, sequentialTime / 1e6);
+		}
+	}
+
+	/**
+	 * Creates entries like the ones in a block.properties file, each naming a random block with property predicates on
+	 * about half of its properties. Some of the predicates use a value that doesn't exist, like a typo would.
+	 */
+	private static Int2ObjectMap<List<BlockEntry>> createBlockProperties(Random random) {
+		List<Block> blocks = new ArrayList<>();
+		Registry.BLOCK.forEach(blocks::add);
+
+		Int2ObjectMap<List<BlockEntry>> blockPropertiesMap = new Int2ObjectOpenHashMap<>();
+
+		for (int i = 0; i < ENTRIES; i++) {
+			Block block = blocks.get(random.nextInt(blocks.size()));
+			StringBuilder entry = new StringBuilder(Registry.BLOCK.getKey(block).toString());
+
+			for (Property<?> property : block.getStateDefinition().getProperties()) {
+				if (random.nextBoolean()) {
+					entry.append(':').append(property.getName()).append('=').append(randomValueName(property, random));
+				}
+			}
+
+			blockPropertiesMap.computeIfAbsent(random.nextInt(MATERIAL_IDS), id -> new ArrayList<>())
+				.add(BlockEntry.parse(entry.toString()));
+		}
+
+		return blockPropertiesMap;
+	}
+
+	private static <T extends Comparable<T>> String randomValueName(Property<T> property, Random random) {
+		if (random.nextInt(500) == 0) {
+			return "typo";
+		}
+
+		Collection<T> values = property.getPossibleValues();
+		int index = random.nextInt(values.size());
+
+		for (T value : values) {
+			if (index-- == 0) {
+				return property.getName(value);
+			}
+		}
+
+		throw new AssertionError();
+	}
+
+	/**
+	 * What {@link BlockMaterialMapping#createBlockStateIdMap} did before it resolved entries in parallel, used both as
+	 * the baseline and to check that the results stay the same.
+	 */
+	private static Object2IntMap<BlockState> createBlockStateIdMapSequentially(Int2ObjectMap<List<BlockEntry>> blockPropertiesMap) {
+		Object2IntMap<BlockState> blockStateIds = new Object2IntOpenHashMap<>();
+
+		blockPropertiesMap.forEach((intId, entries) -> {
+			for (BlockEntry entry : entries) {
+				NamespacedId id = entry.getId();
+				Block block = Registry.BLOCK.get(new ResourceLocation(id.getNamespace(), id.getName()));
+
+				if (block == Blocks.AIR) {
+					continue;
+				}
+
+				StateDefinition<Block, BlockState> stateManager = block.getStateDefinition();
+
+				for (BlockState state : stateManager.getPossibleStates()) {
+					if (checkState(stateManager, state, entry.getPropertyPredicates())) {
+						blockStateIds.put(state, (int) intId);
+					}
+				}
+			}
+		});
+
+		return blockStateIds;
+	}
+
+	private static boolean checkState(StateDefinition<Block, BlockState> stateManager, BlockState state,
+									  Map<String, String> propertyPredicates) {
+		for (Map.Entry<String, String> predicate : propertyPredicates.entrySet()) {
+			Property<?> property = stateManager.getProperty(predicate.getKey());
+
+			if (property != null && !predicate.getValue().equals(getValueName(state, property))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static <T extends Comparable<T>> String getValueName(BlockState state, Property<T> property) {
+		return property.getName(state.getValue(property));
+	}
+}
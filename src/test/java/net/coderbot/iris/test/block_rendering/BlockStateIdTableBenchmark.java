@@ -0,0 +1,89 @@
+package net.coderbot.iris.test.block_rendering;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.coderbot.iris.block_rendering.BlockStateIdTable;
+
+import java.util.Random;
+
+/**
+ * Compares looking material IDs up through a {@link BlockStateIdTable} with the hash map lookup that it replaced, using
+ * about as many states as vanilla has. This isn't run as part of the tests, since its results depend on the machine;
+ * run the main method directly instead.
+ */
+public final class BlockStateIdTableBenchmark {
+	private static final int STATES = 20000;
+	private static final int LOOKUPS = 1 << 22;
+	private static final int ROUNDS = 10;
+
+	private BlockStateIdTableBenchmark() {
+		// no construction allowed
+	}
+
+	public static void main(String[] args) {
+		FakeBlockStateRegistry registry = new FakeBlockStateRegistry();
+		FakeBlockStateRegistry.State[] states = new FakeBlockStateRegistry.State[STATES];
+		Object2IntMap<FakeBlockStateRegistry.State> ids = new Object2IntOpenHashMap<>();
+		Random random = new Random(0);
+
+		ids.defaultReturnValue(-1);
+
+		for (int i = 0; i < STATES; i++) {
+			states[i] = registry.add("state" + i);
+
+			// Packs usually only assign IDs to some of the states.
+			if (random.nextInt(3) == 0) {
+				ids.put(states[i], random.nextInt(1000));
+			}
+		}
+
+		BlockStateIdTable table = BlockStateIdTable.create(registry, ids);
+
+		// The blocks of a chunk, which mostly repeat a few states with some variety mixed in.
+		FakeBlockStateRegistry.State[] blocks = new FakeBlockStateRegistry.State[LOOKUPS];
+
+		for (int i = 0; i < LOOKUPS; i++) {
+			blocks[i] = random.nextInt(4) == 0 ? states[random.nextInt(STATES)] : states[random.nextInt(16)];
+		}
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			long mapSum = lookUpInMap(ids, blocks);
+			long mapTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			long tableSum = lookUpInTable(registry, table, blocks);
+			long tableTime = System.nanoTime() - start;
+
+			if (mapSum != tableSum) {
+				throw new IllegalStateException("The table and the map disagree: " + tableSum + " != " + mapSum);
+			}
+
+			System.out.printf("round %d: map %.2f ns/lookup, table %.2f ns/lookup%n", round,
+				(double) mapTime / LOOKUPS, (double) tableTime / LOOKUPS);
+		}
+	}
+
+	private static long lookUpInMap(Object2IntMap<FakeBlockStateRegistry.State> ids,
+									FakeBlockStateRegistry.State[] blocks) {
+		long sum = 0;
+
+		for (FakeBlockStateRegistry.State block : blocks) {
+			sum += ids.getInt(block);
+		}
+
+		return sum;
+	}
+
+	private static long lookUpInTable(FakeBlockStateRegistry registry, BlockStateIdTable table,
+									  FakeBlockStateRegistry.State[] blocks) {
+		long sum = 0;
+
+		for (FakeBlockStateRegistry.State block : blocks) {
+			// NB: This is the same field read and array load as BlockStateIdTable#get(BlockState).
+			sum += table.getByRegistryId(registry.getCachedId(block));
+		}
+
+		return sum;
+	}
+}
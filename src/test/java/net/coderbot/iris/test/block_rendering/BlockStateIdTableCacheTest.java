@@ -0,0 +1,131 @@
+package net.coderbot.iris.test.block_rendering;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.coderbot.iris.block_rendering.BlockStateIdTable;
+import net.coderbot.iris.block_rendering.BlockStateIdTableCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class BlockStateIdTableCacheTest {
+	private final FakeBlockStateRegistry registry = new FakeBlockStateRegistry();
+	private final FakeBlockStateRegistry.State stone = registry.add("stone");
+	private final FakeBlockStateRegistry.State grass = registry.add("grass_block[snowy=false]");
+	private final FakeBlockStateRegistry.State snowyGrass = registry.add("grass_block[snowy=true]");
+	private final FakeBlockStateRegistry.State water = registry.add("water[level=0]");
+
+	@Test
+	void testNullMap() {
+		BlockStateIdTableCache<FakeBlockStateRegistry.State> cache = new BlockStateIdTableCache<>(registry);
+
+		Assertions.assertFalse(cache.update(null), "nothing to clear yet");
+		Assertions.assertNull(cache.getIds());
+		Assertions.assertNull(cache.getTable());
+
+		Assertions.assertTrue(cache.update(ids(stone, 1)));
+		Assertions.assertNotNull(cache.getTable());
+
+		Assertions.assertTrue(cache.update(null), "clearing the IDs changes the table");
+		Assertions.assertNull(cache.getIds());
+		Assertions.assertNull(cache.getTable());
+
+		Assertions.assertFalse(cache.update(null));
+	}
+
+	@Test
+	void testUnchangedIdsDoNotRebuild() {
+		BlockStateIdTableCache<FakeBlockStateRegistry.State> cache = new BlockStateIdTableCache<>(registry);
+
+		Assertions.assertTrue(cache.update(ids(stone, 1, grass, 2)));
+
+		BlockStateIdTable table = cache.getTable();
+		int writes = registry.cachedIdWrites;
+
+		// An equal map, like the one created when the same pack is loaded again.
+		Assertions.assertFalse(cache.update(ids(stone, 1, grass, 2)));
+		Assertions.assertSame(table, cache.getTable());
+		Assertions.assertEquals(writes, registry.cachedIdWrites, "the registry IDs must not be cached again");
+
+		assertIds(cache.getTable(), 1, 2, -1, -1);
+	}
+
+	@Test
+	void testChangedIdsRebuild() {
+		BlockStateIdTableCache<FakeBlockStateRegistry.State> cache = new BlockStateIdTableCache<>(registry);
+
+		Assertions.assertTrue(cache.update(ids(stone, 1, grass, 2)));
+		BlockStateIdTable table = cache.getTable();
+
+		Assertions.assertTrue(cache.update(ids(stone, 1, snowyGrass, 3, water, 8)));
+		Assertions.assertNotSame(table, cache.getTable());
+
+		assertIds(cache.getTable(), 1, -1, 3, 8);
+	}
+
+	@Test
+	void testRegistryResizeRebuilds() {
+		BlockStateIdTableCache<FakeBlockStateRegistry.State> cache = new BlockStateIdTableCache<>(registry);
+
+		Assertions.assertTrue(cache.update(ids(stone, 1, water, 8)));
+		BlockStateIdTable table = cache.getTable();
+
+		// A state that was added after the table was created doesn't have an entry yet.
+		FakeBlockStateRegistry.State lava = registry.add("lava[level=0]");
+		Assertions.assertEquals(-1, table.getByRegistryId(4));
+
+		Assertions.assertTrue(cache.update(ids(stone, 1, water, 8)), "the same IDs, but a larger registry");
+		Assertions.assertNotSame(table, cache.getTable());
+		assertIds(cache.getTable(), 1, -1, -1, 8, -1);
+
+		Assertions.assertTrue(cache.update(ids(stone, 1, water, 8, lava, 9)));
+		Assertions.assertNotSame(table, cache.getTable());
+		Assertions.assertEquals(4, lava.getRegistryId());
+
+		assertIds(cache.getTable(), 1, -1, -1, 8, 9);
+	}
+
+	@Test
+	void testRemappedRegistryRebuilds() {
+		BlockStateIdTableCache<FakeBlockStateRegistry.State> cache = new BlockStateIdTableCache<>(registry);
+
+		Assertions.assertTrue(cache.update(ids(stone, 1, water, 8)));
+		BlockStateIdTable table = cache.getTable();
+
+		// Same size, but different IDs.
+		registry.swap(stone, water);
+
+		Assertions.assertTrue(cache.update(ids(stone, 1, water, 8)));
+		Assertions.assertNotSame(table, cache.getTable());
+		Assertions.assertEquals(3, stone.getRegistryId());
+		Assertions.assertEquals(0, water.getRegistryId());
+
+		assertIds(cache.getTable(), 8, -1, -1, 1);
+	}
+
+	@Test
+	void testLookupOutsideOfTable() {
+		BlockStateIdTable table = BlockStateIdTable.create(registry, ids(stone, 1));
+
+		Assertions.assertEquals(1, table.getByRegistryId(0));
+		Assertions.assertEquals(-1, table.getByRegistryId(-1), "states that aren't in the registry");
+		Assertions.assertEquals(-1, table.getByRegistryId(100));
+		Assertions.assertEquals(-1, BlockStateIdTable.EMPTY.getByRegistryId(0));
+	}
+
+	private static void assertIds(BlockStateIdTable table, int... expected) {
+		for (int registryId = 0; registryId < expected.length; registryId++) {
+			Assertions.assertEquals(expected[registryId], table.getByRegistryId(registryId),
+				"registry ID " + registryId);
+		}
+	}
+
+	private static Object2IntMap<FakeBlockStateRegistry.State> ids(Object... statesAndIds) {
+		Object2IntMap<FakeBlockStateRegistry.State> ids = new Object2IntOpenHashMap<>();
+
+		for (int i = 0; i < statesAndIds.length; i += 2) {
+			ids.put((FakeBlockStateRegistry.State) statesAndIds[i], (int) (Integer) statesAndIds[i + 1]);
+		}
+
+		return ids;
+	}
+}
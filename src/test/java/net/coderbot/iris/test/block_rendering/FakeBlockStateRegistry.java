@@ -0,0 +1,76 @@
+package net.coderbot.iris.test.block_rendering;
+
+import net.coderbot.iris.block_rendering.RegistryIdSource;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stands in for the block state registry, with plain objects standing in for block states.
+ */
+final class FakeBlockStateRegistry implements RegistryIdSource<FakeBlockStateRegistry.State> {
+	private final List<State> states = new ArrayList<>();
+	int cachedIdWrites;
+
+	State add(String name) {
+		State state = new State(name);
+		states.add(state);
+
+		return state;
+	}
+
+	/**
+	 * Swaps the registry IDs of two states, like joining a server that orders its blocks differently.
+	 */
+	void swap(State a, State b) {
+		int indexA = states.indexOf(a);
+		int indexB = states.indexOf(b);
+
+		states.set(indexA, b);
+		states.set(indexB, a);
+	}
+
+	@Override
+	public int size() {
+		return states.size();
+	}
+
+	@Nullable
+	@Override
+	public State byId(int registryId) {
+		return registryId >= 0 && registryId < states.size() ? states.get(registryId) : null;
+	}
+
+	@Override
+	public int getCachedId(State state) {
+		return state.registryId;
+	}
+
+	@Override
+	public void setCachedId(State state, int registryId) {
+		cachedIdWrites += 1;
+		state.registryId = registryId;
+	}
+
+	/**
+	 * Like a block state, this is only equal to itself.
+	 */
+	static final class State {
+		private final String name;
+		private int registryId = -1;
+
+		private State(String name) {
+			this.name = name;
+		}
+
+		int getRegistryId() {
+			return registryId;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+}
@@ -0,0 +1,364 @@
+package net.coderbot.iris.test.gl;
+
+import net.coderbot.iris.gl.shader.ProgramBinary;
+import net.coderbot.iris.gl.shader.ProgramBinaryCache;
+import net.coderbot.iris.gl.shader.ProgramCompiler;
+import net.coderbot.iris.gl.shader.ProgramCompilerBackend;
+import net.coderbot.iris.gl.shader.ShaderType;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ProgramCompilerTest {
+	private static final String VERTEX = "#version 120\nvoid main() { gl_Position = ftransform(); }\n";
+	private static final String FRAGMENT = "#version 120\nvoid main() { gl_FragColor = vec4(1.0); }\n";
+	private static final String OTHER_FRAGMENT = "#version 120\nvoid main() { gl_FragColor = vec4(0.5); }\n";
+	private static final String BROKEN_FRAGMENT = "#version 120\nvoid main() { BROKEN }\n";
+
+	@TempDir
+	Path temp;
+
+	@Test
+	void testIssuesEverythingBeforeQueryingStatus() {
+		FakeBackend backend = new FakeBackend();
+		ProgramCompiler compiler = new ProgramCompiler(backend, null);
+
+		compiler.queue("first", VERTEX, null, FRAGMENT);
+		compiler.queue("second", VERTEX, null, OTHER_FRAGMENT);
+
+		Assertions.assertEquals(0, backend.statusQueries, "queueing must not wait for the driver");
+
+		int first = compiler.compile("first", VERTEX, null, FRAGMENT);
+
+		// Both programs were issued before the first status query, but only the requested one was waited on
+		Assertions.assertEquals(backend.issued, backend.issuedBeforeFirstQuery);
+		Assertions.assertEquals(2, backend.linked.size());
+		Assertions.assertEquals(Collections.singleton(first), backend.queriedPrograms);
+
+		compiler.compile("second", VERTEX, null, OTHER_FRAGMENT);
+		Assertions.assertEquals(backend.issued, backend.issuedBeforeFirstQuery);
+	}
+
+	@Test
+	void testIsReadyDoesNotBlock() {
+		FakeBackend backend = new FakeBackend();
+		backend.completeImmediately = false;
+		ProgramCompiler compiler = new ProgramCompiler(backend, null);
+
+		ProgramCompiler.QueuedProgram queued = compiler.queue("first", VERTEX, null, FRAGMENT);
+
+		Assertions.assertFalse(compiler.isReady(queued));
+
+		backend.incomplete.clear();
+
+		Assertions.assertTrue(compiler.isReady(queued));
+		Assertions.assertEquals(0, backend.statusQueries, "checking readiness must not wait for the driver");
+
+		// Queueing the same program again returns the same handle
+		Assertions.assertSame(queued, compiler.queue("second", VERTEX, null, FRAGMENT));
+	}
+
+	@Test
+	void testDeduplicatesShadersAndPrograms() {
+		FakeBackend backend = new FakeBackend();
+		ProgramCompiler compiler = new ProgramCompiler(backend, null);
+
+		int first = compiler.compile("gbuffers_textured", VERTEX, null, FRAGMENT);
+		int second = compiler.compile("gbuffers_textured_lit", VERTEX, null, FRAGMENT);
+		int third = compiler.compile("gbuffers_basic", VERTEX, null, OTHER_FRAGMENT);
+
+		// The shared vertex shader is only compiled once
+		Assertions.assertEquals(3, compiler.getShadersCompiled());
+		Assertions.assertEquals(2, compiler.getProgramsLinked());
+		Assertions.assertEquals(1, compiler.getDuplicatePrograms());
+
+		// Every request still gets its own program object, the duplicate being created from a binary
+		Assertions.assertNotEquals(first, second);
+		Assertions.assertNotEquals(first, third);
+		Assertions.assertTrue(backend.fromBinary.contains(second));
+
+		compiler.close();
+
+		Assertions.assertTrue(backend.liveShaders.isEmpty());
+		Assertions.assertTrue(backend.livePrograms.contains(first));
+		Assertions.assertTrue(backend.livePrograms.contains(second));
+		Assertions.assertTrue(backend.livePrograms.contains(third));
+	}
+
+	@Test
+	void testRelinksDuplicatesWithoutBinarySupport() {
+		FakeBackend backend = new FakeBackend();
+		backend.binaries = false;
+		ProgramCompiler compiler = new ProgramCompiler(backend, null);
+
+		int first = compiler.compile("first", VERTEX, null, FRAGMENT);
+		int second = compiler.compile("second", VERTEX, null, FRAGMENT);
+
+		Assertions.assertNotEquals(first, second);
+		Assertions.assertEquals(2, compiler.getShadersCompiled());
+		Assertions.assertEquals(2, compiler.getProgramsLinked());
+		Assertions.assertTrue(backend.linked.contains(second));
+	}
+
+	@Test
+	void testFailureOnlyAffectsBrokenProgram() {
+		FakeBackend backend = new FakeBackend();
+		ProgramCompiler compiler = new ProgramCompiler(backend, null);
+
+		compiler.queue("broken", VERTEX, null, BROKEN_FRAGMENT);
+		compiler.queue("working", VERTEX, null, FRAGMENT);
+
+		RuntimeException error = Assertions.assertThrows(RuntimeException.class,
+			() -> compiler.compile("broken", VERTEX, null, BROKEN_FRAGMENT));
+		Assertions.assertTrue(error.getMessage().contains("FRAGMENT"), error.getMessage());
+
+		int working = compiler.compile("working", VERTEX, null, FRAGMENT);
+		Assertions.assertTrue(backend.livePrograms.contains(working));
+
+		compiler.close();
+
+		// The program object of the broken program must not leak
+		Assertions.assertEquals(1, backend.livePrograms.size());
+	}
+
+	@Test
+	void testDeletesUnusedQueuedPrograms() {
+		FakeBackend backend = new FakeBackend();
+		ProgramCompiler compiler = new ProgramCompiler(backend, null);
+
+		compiler.queue("unused", VERTEX, null, OTHER_FRAGMENT);
+		int used = compiler.compile("used", VERTEX, null, FRAGMENT);
+
+		compiler.close();
+
+		Assertions.assertEquals(1, backend.livePrograms.size());
+		Assertions.assertTrue(backend.livePrograms.contains(used));
+	}
+
+	@Test
+	void testLoadsCachedBinariesOnLaterLaunches() {
+		ProgramBinaryCache cache = new ProgramBinaryCache(temp);
+
+		FakeBackend firstLaunch = new FakeBackend();
+		ProgramCompiler first = new ProgramCompiler(firstLaunch, cache);
+		first.compile("composite", VERTEX, null, FRAGMENT);
+		first.close();
+
+		Assertions.assertEquals(0, first.getBinaryCacheHits());
+
+		FakeBackend secondLaunch = new FakeBackend();
+		ProgramCompiler second = new ProgramCompiler(secondLaunch, cache);
+		int program = second.compile("composite", VERTEX, null, FRAGMENT);
+
+		Assertions.assertEquals(1, second.getBinaryCacheHits());
+		Assertions.assertEquals(0, second.getShadersCompiled());
+		Assertions.assertTrue(secondLaunch.fromBinary.contains(program));
+
+		// A different driver never sees binaries created by another one
+		FakeBackend otherDriver = new FakeBackend();
+		otherDriver.driver = "Other Vendor";
+		ProgramCompiler third = new ProgramCompiler(otherDriver, cache);
+		third.compile("composite", VERTEX, null, FRAGMENT);
+
+		Assertions.assertEquals(0, third.getBinaryCacheHits());
+		Assertions.assertEquals(2, third.getShadersCompiled());
+	}
+
+	@Test
+	void testFallsBackWhenCachedBinaryIsRejected() {
+		ProgramBinaryCache cache = new ProgramBinaryCache(temp);
+
+		ProgramCompiler first = new ProgramCompiler(new FakeBackend(), cache);
+		first.compile("composite", VERTEX, null, FRAGMENT);
+
+		FakeBackend updatedDriver = new FakeBackend();
+		updatedDriver.acceptBinaries = false;
+		ProgramCompiler second = new ProgramCompiler(updatedDriver, cache);
+		int program = second.compile("composite", VERTEX, null, FRAGMENT);
+
+		Assertions.assertEquals(0, second.getBinaryCacheHits());
+		Assertions.assertEquals(2, second.getShadersCompiled());
+		Assertions.assertTrue(updatedDriver.linked.contains(program));
+		Assertions.assertEquals(1, updatedDriver.livePrograms.size());
+	}
+
+	/**
+	 * Simulates just enough of a driver to track objects and the order in which commands are issued. Fragment shaders
+	 * containing "BROKEN" fail to compile.
+	 */
+	private static final class FakeBackend implements ProgramCompilerBackend {
+		private static final int BINARY_FORMAT = 0x1234;
+
+		private int nextId = 1;
+		private int issued;
+		private int issuedBeforeFirstQuery = -1;
+		private int statusQueries;
+
+		private boolean binaries = true;
+		private boolean acceptBinaries = true;
+		private String driver = "Fake Vendor";
+		private boolean completeImmediately = true;
+
+		private final Map<Integer, String> liveShaders = new HashMap<>();
+		private final Set<Integer> livePrograms = new HashSet<>();
+		private final Map<Integer, List<Integer>> attached = new HashMap<>();
+		private final Map<Integer, String> linkedSources = new HashMap<>();
+		private final Set<Integer> linked = new HashSet<>();
+		private final Set<Integer> fromBinary = new HashSet<>();
+		private final Set<Integer> queriedPrograms = new HashSet<>();
+		private final Set<Integer> incomplete = new HashSet<>();
+
+		private void issue() {
+			issued++;
+		}
+
+		private void query() {
+			if (statusQueries++ == 0) {
+				issuedBeforeFirstQuery = issued;
+			}
+		}
+
+		@Override
+		public int compileShader(ShaderType type, String source) {
+			issue();
+			int id = nextId++;
+			liveShaders.put(id, source);
+
+			return id;
+		}
+
+		@Override
+		public boolean getCompileStatus(int shader) {
+			query();
+
+			return !liveShaders.get(shader).contains("BROKEN");
+		}
+
+		@Override
+		public String getShaderInfoLog(int shader) {
+			return "";
+		}
+
+		@Override
+		public void deleteShader(int shader) {
+			liveShaders.remove(shader);
+		}
+
+		@Override
+		public int createProgram() {
+			int id = nextId++;
+			livePrograms.add(id);
+			attached.put(id, new ArrayList<>());
+
+			return id;
+		}
+
+		@Override
+		public void bindAttributeLocation(int program, int index, String name) {
+		}
+
+		@Override
+		public void attachShader(int program, int shader) {
+			attached.get(program).add(shader);
+		}
+
+		@Override
+		public void detachShader(int program, int shader) {
+			attached.get(program).remove((Integer) shader);
+		}
+
+		@Override
+		public void linkProgram(int program) {
+			issue();
+
+			if (!completeImmediately) {
+				incomplete.add(program);
+			}
+
+			StringBuilder sources = new StringBuilder();
+			boolean success = true;
+
+			for (int shader : attached.get(program)) {
+				String source = liveShaders.get(shader);
+				sources.append(source);
+				success &= !source.contains("BROKEN");
+			}
+
+			if (success) {
+				linked.add(program);
+				linkedSources.put(program, sources.toString());
+			}
+		}
+
+		@Override
+		public boolean getLinkStatus(int program) {
+			query();
+			queriedPrograms.add(program);
+			incomplete.remove(program);
+
+			return linked.contains(program) || fromBinary.contains(program);
+		}
+
+		@Override
+		public boolean isLinkComplete(int program) {
+			return !incomplete.contains(program);
+		}
+
+		@Override
+		public String getProgramInfoLog(int program) {
+			return "";
+		}
+
+		@Override
+		public void deleteProgram(int program) {
+			Assertions.assertTrue(livePrograms.remove(program), "deleted a program that doesn't exist");
+		}
+
+		@Override
+		public boolean supportsProgramBinaries() {
+			return binaries;
+		}
+
+		@Nullable
+		@Override
+		public ProgramBinary getProgramBinary(int program) {
+			String sources = linkedSources.get(program);
+
+			if (sources == null) {
+				return null;
+			}
+
+			byte[] bytes = sources.getBytes(StandardCharsets.UTF_8);
+			ByteBuffer data = ByteBuffer.allocateDirect(bytes.length);
+			data.put(bytes).flip();
+
+			return new ProgramBinary(BINARY_FORMAT, data);
+		}
+
+		@Override
+		public void loadProgramBinary(int program, ProgramBinary binary) {
+			issue();
+
+			if (acceptBinaries && binary.getFormat() == BINARY_FORMAT) {
+				fromBinary.add(program);
+			}
+		}
+
+		@Override
+		public String getDriverString() {
+			return driver;
+		}
+	}
+}
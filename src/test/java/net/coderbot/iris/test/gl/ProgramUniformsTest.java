@@ -0,0 +1,466 @@
+package net.coderbot.iris.test.gl;
+
+import com.google.common.collect.ImmutableList;
+import com.mojang.math.Matrix4f;
+import net.coderbot.iris.gl.IrisRenderSystem;
+import net.coderbot.iris.gl.program.ProgramUniforms;
+import net.coderbot.iris.gl.uniform.FloatSupplier;
+import net.coderbot.iris.gl.uniform.LocationalUniformHolder;
+import net.coderbot.iris.gl.uniform.Uniform;
+import net.coderbot.iris.gl.uniform.UniformDependency;
+import net.coderbot.iris.gl.uniform.UniformHolder;
+import net.coderbot.iris.gl.uniform.UniformType;
+import net.coderbot.iris.gl.uniform.UniformUpdateFrequency;
+import net.coderbot.iris.vendored.joml.Vector2f;
+import net.coderbot.iris.vendored.joml.Vector4f;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Drives the real uniform classes through {@link ProgramUniforms}, with a fake sink standing in for OpenGL.
+ */
+public class ProgramUniformsTest {
+	private static final int WARMUP_FRAMES = 20000;
+	private static final int MEASURED_FRAMES = 10000;
+
+	private final RecordingSink sink = new RecordingSink();
+	private final Matrix4f scale = Matrix4f.createScaleMatrix(2.0F, 3.0F, 4.0F);
+	private final Vector2f viewSize = new Vector2f(1920.0F, 1080.0F);
+	private final Vector4f fogColor = new Vector4f(0.25F, 0.5F, 0.75F, 1.0F);
+
+	private int frame = 1;
+	private int tick = 1;
+
+	@BeforeEach
+	void installSink() {
+		IrisRenderSystem.setUniformSink(sink);
+	}
+
+	@AfterEach
+	void removeSink() {
+		IrisRenderSystem.setUniformSink(null);
+	}
+
+	@Test
+	void testUploadsChangedValuesOnly() {
+		TestHolder holder = new TestHolder();
+		ProgramUniforms uniforms = createUniforms(holder);
+
+		uniforms.update(0, 0);
+
+		Assertions.assertEquals(8, sink.calls, "every uniform is uploaded the first time");
+		Assertions.assertEquals(1.0F, sink.floats(holder.get("frameTimeCounter"))[0]);
+		Assertions.assertEquals(1, sink.ints(holder.get("worldTime"))[0]);
+		Assertions.assertEquals(1.0F, sink.floats(holder.get("rainStrength"))[0]);
+		assertValues(sink.floats(holder.get("viewSize")), 1920.0F, 1080.0F);
+		assertValues(sink.floats(holder.get("skyColor")), 1.0F, 0.5F, 0.25F);
+		assertValues(sink.floats(holder.get("fogColor")), 0.25F, 0.5F, 0.75F, 1.0F);
+
+		float[] gbufferProjection = sink.floats(holder.get("gbufferProjection"));
+		assertValues(new float[] {gbufferProjection[0], gbufferProjection[5], gbufferProjection[10], gbufferProjection[15]},
+			2.0F, 3.0F, 4.0F, 1.0F);
+		Assertions.assertEquals(1.0F, sink.floats(holder.get("gbufferModelViewInverse"))[12], "translation x");
+
+		// Nothing changes within a frame
+		sink.calls = 0;
+		uniforms.update(0, 0);
+		Assertions.assertEquals(0, sink.calls);
+
+		// Only the per-frame uniforms whose values changed are uploaded on the next frame
+		frame = 2;
+		uniforms.update(0, 1);
+		Assertions.assertEquals(3, sink.calls, "frameTimeCounter, skyColor, and gbufferModelViewInverse change");
+		Assertions.assertEquals(2.0F, sink.floats(holder.get("frameTimeCounter"))[0]);
+		assertValues(sink.floats(holder.get("skyColor")), 2.0F, 0.5F, 0.25F);
+		Assertions.assertEquals(2.0F, sink.floats(holder.get("gbufferModelViewInverse"))[12], "translation x");
+
+		// Per-tick uniforms only change with the tick, even if their value would have changed earlier
+		sink.calls = 0;
+		tick = 2;
+		uniforms.update(0, 1);
+		Assertions.assertEquals(0, sink.calls);
+
+		uniforms.update(1, 1);
+		Assertions.assertEquals(1, sink.calls);
+		Assertions.assertEquals(2.0F, sink.floats(holder.get("rainStrength"))[0]);
+	}
+
+	@Test
+	void testPerFrameUpdatesDoNotAllocate() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		Assumptions.assumeTrue(threads instanceof com.sun.management.ThreadMXBean,
+			"allocation tracking is not available on this JVM");
+
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+
+		Assumptions.assumeTrue(allocations.isThreadAllocatedMemorySupported()
+			&& allocations.isThreadAllocatedMemoryEnabled(), "allocation tracking is disabled");
+
+		TestHolder holder = new TestHolder();
+		ProgramUniforms uniforms = createUniforms(holder);
+
+		runFrames(uniforms, WARMUP_FRAMES);
+
+		long threadId = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(threadId);
+		runFrames(uniforms, MEASURED_FRAMES);
+		long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+		// NB: Querying the allocated bytes may allocate a little by itself, so only fail when something is allocated
+		// on (nearly) every frame.
+		Assertions.assertTrue(allocated < MEASURED_FRAMES,
+			"updating uniforms allocated " + allocated + " bytes over " + MEASURED_FRAMES + " frames");
+
+		Assertions.assertEquals((float) frame, sink.floats(holder.get("frameTimeCounter"))[0]);
+	}
+
+	@Test
+	void testDependentUniformsAreSkippedWhileUnchanged() {
+		boolean[] changed = new boolean[1];
+		UniformDependency dependency = new UniformDependency("viewport", () -> changed[0]);
+		PolledValue frameTimeCounter = new PolledValue(0.0F);
+		PolledValue viewWidth = new PolledValue(1920.0F);
+
+		TestBuilder builder = new TestBuilder();
+		builder.uniform1f(UniformUpdateFrequency.PER_FRAME, "frameTimeCounter", frameTimeCounter);
+		builder.dependingOn(dependency).uniform1f(UniformUpdateFrequency.PER_FRAME, "viewWidth", viewWidth);
+
+		ProgramUniforms uniforms = builder.buildUniforms();
+		uniforms.update(0, 0);
+
+		for (int frame = 1; frame <= 10; frame++) {
+			dependency.update();
+			frameTimeCounter.value = frame;
+			uniforms.update(0, frame);
+		}
+
+		Assertions.assertEquals(11, frameTimeCounter.polls, "plain per-frame uniforms are polled on every frame");
+		Assertions.assertEquals(1, viewWidth.polls, "dependent uniforms are skipped while the version is unchanged");
+		Assertions.assertEquals(10.0F, sink.floats(builder.get("frameTimeCounter"))[0]);
+
+		// A change detected at the start of the frame is picked up on the next use of the program
+		changed[0] = true;
+		viewWidth.value = 1280.0F;
+		dependency.update();
+		uniforms.update(0, 11);
+
+		Assertions.assertEquals(2, viewWidth.polls);
+		Assertions.assertEquals(1280.0F, sink.floats(builder.get("viewWidth"))[0]);
+	}
+
+	@Test
+	void testDependentUniformsArePolledAfterInvalidate() {
+		UniformDependency dependency = new UniformDependency("settings", () -> false);
+		PolledValue renderDistance = new PolledValue(12.0F);
+
+		TestBuilder builder = new TestBuilder();
+		builder.dependingOn(dependency).uniform1f(UniformUpdateFrequency.PER_FRAME, "far", renderDistance);
+
+		ProgramUniforms uniforms = builder.buildUniforms();
+		uniforms.update(0, 0);
+		uniforms.update(0, 0);
+
+		Assertions.assertEquals(1, renderDistance.polls);
+
+		// NB: This can happen in the middle of a frame, so the group must be polled again even though the frame is the
+		// same.
+		renderDistance.value = 16.0F;
+		dependency.invalidate();
+		uniforms.update(0, 0);
+
+		Assertions.assertEquals(2, renderDistance.polls);
+		Assertions.assertEquals(16.0F, sink.floats(builder.get("far"))[0]);
+
+		uniforms.update(0, 1);
+		Assertions.assertEquals(2, renderDistance.polls, "the new version is only polled once");
+	}
+
+	@Test
+	void testFirstUpdatePollsEveryGroup() {
+		UniformDependency unchanged = new UniformDependency("unchanged", () -> false);
+		UniformDependency invalidated = new UniformDependency("invalidated", () -> false);
+		PolledValue first = new PolledValue(1.0F);
+		PolledValue second = new PolledValue(2.0F);
+
+		// The version of a dependency that never changed matches the initial version that a program remembers, so only
+		// forcing the first update makes sure that the group is uploaded at all.
+		invalidated.invalidate();
+
+		TestBuilder builder = new TestBuilder();
+		builder.dependingOn(unchanged).uniform1f(UniformUpdateFrequency.PER_FRAME, "first", first);
+		builder.dependingOn(invalidated).uniform1f(UniformUpdateFrequency.PER_FRAME, "second", second);
+
+		ProgramUniforms uniforms = builder.buildUniforms();
+		uniforms.update(0, 0);
+
+		Assertions.assertEquals(1, first.polls);
+		Assertions.assertEquals(1, second.polls);
+		Assertions.assertEquals(2, sink.calls);
+		Assertions.assertEquals(1.0F, sink.floats(builder.get("first"))[0]);
+		Assertions.assertEquals(2.0F, sink.floats(builder.get("second"))[0]);
+
+		// A program built later on still starts out by polling everything.
+		TestBuilder laterBuilder = new TestBuilder();
+		laterBuilder.dependingOn(unchanged).uniform1f(UniformUpdateFrequency.PER_FRAME, "first", first);
+
+		laterBuilder.buildUniforms().update(0, 5);
+		Assertions.assertEquals(2, first.polls);
+	}
+
+	@Test
+	void testNameRegisteredAsDependentAndPerFrame() {
+		UniformDependency dependency = new UniformDependency("camera position", () -> false);
+
+		// Only the first registration of a name is used, wherever it was registered.
+		PolledValue dependent = new PolledValue(1.0F);
+		PolledValue plain = new PolledValue(2.0F);
+
+		TestBuilder builder = new TestBuilder();
+		builder.dependingOn(dependency).uniform1f(UniformUpdateFrequency.PER_FRAME, "cameraPosition", dependent);
+		builder.uniform1f(UniformUpdateFrequency.PER_FRAME, "cameraPosition", plain);
+
+		ProgramUniforms uniforms = builder.buildUniforms();
+
+		for (int frame = 0; frame < 5; frame++) {
+			uniforms.update(0, frame);
+		}
+
+		Assertions.assertEquals(1, dependent.polls);
+		Assertions.assertEquals(0, plain.polls);
+		Assertions.assertEquals(1, sink.calls);
+		Assertions.assertEquals(1.0F, sink.floats(builder.get("cameraPosition"))[0]);
+
+		// The other way around, the uniform keeps being polled on every frame.
+		dependent = new PolledValue(1.0F);
+		plain = new PolledValue(2.0F);
+
+		builder = new TestBuilder();
+		builder.uniform1f(UniformUpdateFrequency.PER_FRAME, "cameraPosition", plain);
+		builder.dependingOn(dependency).uniform1f(UniformUpdateFrequency.PER_FRAME, "cameraPosition", dependent);
+
+		uniforms = builder.buildUniforms();
+
+		for (int frame = 0; frame < 5; frame++) {
+			uniforms.update(0, frame);
+		}
+
+		Assertions.assertEquals(0, dependent.polls);
+		Assertions.assertEquals(5, plain.polls);
+		Assertions.assertEquals(2.0F, sink.floats(builder.get("cameraPosition"))[0]);
+	}
+
+	private void runFrames(ProgramUniforms uniforms, int frames) {
+		for (int i = 0; i < frames; i++) {
+			frame++;
+
+			if (frame % 3 == 0) {
+				tick++;
+			}
+
+			uniforms.update(tick, frame);
+		}
+	}
+
+	private ProgramUniforms createUniforms(TestHolder holder) {
+		holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "frameTimeCounter", () -> (float) frame)
+			.uniform1i(UniformUpdateFrequency.ONCE, "worldTime", () -> 1)
+			.uniform1f(UniformUpdateFrequency.PER_TICK, "rainStrength", () -> (float) tick)
+			.uniform2f(UniformUpdateFrequency.PER_FRAME, "viewSize", () -> viewSize)
+			.uniform3f(UniformUpdateFrequency.PER_FRAME, "skyColor",
+				destination -> destination.set((float) frame, 0.5F, 0.25F))
+			.uniform4f(UniformUpdateFrequency.PER_FRAME, "fogColor", () -> fogColor)
+			.uniformMatrix(UniformUpdateFrequency.PER_FRAME, "gbufferProjection", () -> scale)
+			.uniformJomlMatrix(UniformUpdateFrequency.PER_FRAME, "gbufferModelViewInverse",
+				destination -> destination.translation((float) frame, 0.0F, 0.0F));
+
+		return new ProgramUniforms(ImmutableList.copyOf(holder.once), ImmutableList.copyOf(holder.perTick),
+			ImmutableList.copyOf(holder.perFrame), ImmutableList.of(), ImmutableList.of(), ImmutableList.of());
+	}
+
+	private static void assertValues(float[] actual, float... expected) {
+		for (int i = 0; i < expected.length; i++) {
+			Assertions.assertEquals(expected[i], actual[i], "component " + i);
+		}
+	}
+
+	private static final class TestHolder implements LocationalUniformHolder {
+		private final Map<String, Integer> locations = new HashMap<>();
+		private final List<Uniform> once = new ArrayList<>();
+		private final List<Uniform> perTick = new ArrayList<>();
+		private final List<Uniform> perFrame = new ArrayList<>();
+
+		@Override
+		public TestHolder addUniform(UniformUpdateFrequency updateFrequency, Uniform uniform) {
+			switch (updateFrequency) {
+				case ONCE:
+					once.add(uniform);
+					break;
+				case PER_TICK:
+					perTick.add(uniform);
+					break;
+				case PER_FRAME:
+					perFrame.add(uniform);
+					break;
+			}
+
+			return this;
+		}
+
+		@Override
+		public OptionalInt location(String name, UniformType type) {
+			int location = locations.size();
+			locations.put(name, location);
+
+			return OptionalInt.of(location);
+		}
+
+		@Override
+		public UniformHolder externallyManagedUniform(String name, UniformType type) {
+			return this;
+		}
+
+		private int get(String name) {
+			return locations.get(name);
+		}
+	}
+
+	/**
+	 * Builds uniforms with the real builder, without a program to look their locations up in.
+	 */
+	private static final class TestBuilder extends ProgramUniforms.Builder {
+		private final Map<String, Integer> locations = new HashMap<>();
+
+		private TestBuilder() {
+			super("test", 1);
+		}
+
+		@Override
+		protected int getUniformLocation(String name) {
+			Integer location = locations.get(name);
+
+			if (location == null) {
+				location = locations.size();
+				locations.put(name, location);
+			}
+
+			return location;
+		}
+
+		@Override
+		protected int getActiveUniformCount() {
+			// Skips checking for unsupported uniforms.
+			return 0;
+		}
+
+		private int get(String name) {
+			return locations.get(name);
+		}
+	}
+
+	private static final class PolledValue implements FloatSupplier {
+		private float value;
+		private int polls;
+
+		private PolledValue(float value) {
+			this.value = value;
+		}
+
+		@Override
+		public float getAsFloat() {
+			polls++;
+
+			return value;
+		}
+	}
+
+	/**
+	 * Records the last value uploaded to each location, without allocating.
+	 */
+	private static final class RecordingSink implements IrisRenderSystem.UniformSink {
+		private final float[][] floats = new float[16][16];
+		private final int[][] ints = new int[16][4];
+		private int calls;
+
+		private float[] floats(int location) {
+			return floats[location];
+		}
+
+		private int[] ints(int location) {
+			return ints[location];
+		}
+
+		@Override
+		public void uniformMatrix4fv(int location, boolean transpose, FloatBuffer matrix) {
+			calls++;
+
+			for (int i = 0; i < 16; i++) {
+				floats[location][i] = matrix.get(matrix.position() + i);
+			}
+		}
+
+		@Override
+		public void uniform1f(int location, float v0) {
+			calls++;
+			floats[location][0] = v0;
+		}
+
+		@Override
+		public void uniform1i(int location, int v0) {
+			calls++;
+			ints[location][0] = v0;
+		}
+
+		@Override
+		public void uniform2f(int location, float v0, float v1) {
+			calls++;
+			floats[location][0] = v0;
+			floats[location][1] = v1;
+		}
+
+		@Override
+		public void uniform2i(int location, int v0, int v1) {
+			calls++;
+			ints[location][0] = v0;
+			ints[location][1] = v1;
+		}
+
+		@Override
+		public void uniform3f(int location, float v0, float v1, float v2) {
+			calls++;
+			floats[location][0] = v0;
+			floats[location][1] = v1;
+			floats[location][2] = v2;
+		}
+
+		@Override
+		public void uniform4f(int location, float v0, float v1, float v2, float v3) {
+			calls++;
+			floats[location][0] = v0;
+			floats[location][1] = v1;
+			floats[location][2] = v2;
+			floats[location][3] = v3;
+		}
+
+		@Override
+		public void uniform4i(int location, int v0, int v1, int v2, int v3) {
+			calls++;
+			ints[location][0] = v0;
+			ints[location][1] = v1;
+			ints[location][2] = v2;
+			ints[location][3] = v3;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package net.coderbot.iris.test.gl;
+
+import net.coderbot.iris.gl.uniform.DynamicUniformHolder;
+import net.coderbot.iris.gl.uniform.UniformBlock;
+import net.coderbot.iris.gl.uniform.UniformUpdateFrequency;
+import net.coderbot.iris.gl.uniform.UniformValueCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class UniformAllocationTest {
+	private static final int WARMUP_FRAMES = 20000;
+	private static final int MEASURED_FRAMES = 10000;
+
+	private int frame;
+
+	@Test
+	void testPerFrameUpdatesDoNotAllocate() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		Assumptions.assumeTrue(threads instanceof com.sun.management.ThreadMXBean,
+			"allocation tracking is not available on this JVM");
+
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+
+		Assumptions.assumeTrue(allocations.isThreadAllocatedMemorySupported()
+			&& allocations.isThreadAllocatedMemoryEnabled(), "allocation tracking is disabled");
+
+		UniformValueCache cache = new UniformValueCache(() -> frame / 3);
+		UniformBlock.Builder builder = UniformBlock.builder("iris_CommonUniforms");
+		DynamicUniformHolder uniforms = cache.wrap(builder);
+
+		uniforms.uniform1f(UniformUpdateFrequency.PER_FRAME, "frameTimeCounter", () -> frame * 0.05F);
+		uniforms.uniform1f(UniformUpdateFrequency.PER_TICK, "rainStrength", () -> frame % 2);
+		uniforms.uniform2i(UniformUpdateFrequency.PER_FRAME, "eyeBrightness",
+			destination -> destination.set(frame % 240, 240));
+		uniforms.uniform3f(UniformUpdateFrequency.PER_FRAME, "skyColor",
+			destination -> destination.set(0.5F, 0.75F, frame % 2));
+		uniforms.uniformJomlMatrix(UniformUpdateFrequency.PER_FRAME, "gbufferProjectionInverse",
+			destination -> destination.identity().m30(frame));
+
+		UniformBlock block = builder.build();
+
+		for (UniformBlock.Member member : block.getMembers()) {
+			block.markUsed(member.getUniformName());
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(block.getSize()).order(ByteOrder.nativeOrder());
+
+		runFrames(cache, block, buffer, WARMUP_FRAMES);
+
+		long threadId = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(threadId);
+		runFrames(cache, block, buffer, MEASURED_FRAMES);
+		long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+		// NB: Querying the allocated bytes may allocate a little by itself, so only fail when something is allocated
+		// on (nearly) every frame.
+		Assertions.assertTrue(allocated < MEASURED_FRAMES,
+			"updating uniforms allocated " + allocated + " bytes over " + MEASURED_FRAMES + " frames");
+
+		Assertions.assertEquals(frame % 240, buffer.getInt(getMember(block, "eyeBrightness").getOffset()));
+	}
+
+	private void runFrames(UniformValueCache cache, UniformBlock block, ByteBuffer buffer, int frames) {
+		for (int i = 0; i < frames; i++) {
+			frame++;
+			cache.beginFrame();
+			block.write(buffer);
+		}
+	}
+
+	private static UniformBlock.Member getMember(UniformBlock block, String uniform) {
+		return block.getMembers().stream()
+			.filter(member -> member.getUniformName().equals(uniform))
+			.findFirst()
+			.orElseThrow(() -> new AssertionError("No member for " + uniform));
+	}
+}
@@ -0,0 +1,363 @@
+package net.coderbot.iris.test.gl;
+
+import com.mojang.math.Matrix4f;
+import net.coderbot.iris.gl.uniform.DynamicUniformHolder;
+import net.coderbot.iris.gl.uniform.FloatSupplier;
+import net.coderbot.iris.gl.uniform.UniformDependency;
+import net.coderbot.iris.gl.uniform.UniformType;
+import net.coderbot.iris.gl.uniform.UniformUpdateFrequency;
+import net.coderbot.iris.gl.uniform.UniformValueCache;
+import net.coderbot.iris.gl.uniform.ValueUpdateNotifier;
+import net.coderbot.iris.gl.uniform.ValueWriter;
+import net.coderbot.iris.vendored.joml.Vector2f;
+import net.coderbot.iris.vendored.joml.Vector2i;
+import net.coderbot.iris.vendored.joml.Vector3d;
+import net.coderbot.iris.vendored.joml.Vector3f;
+import net.coderbot.iris.vendored.joml.Vector4f;
+import net.coderbot.iris.vendored.joml.Vector4i;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+public class UniformValueCacheTest {
+	private long tick;
+
+	@Test
+	void testComputesPerFrameValuesOncePerFrame() {
+		UniformValueCache cache = new UniformValueCache(() -> tick);
+		int[] calls = new int[2];
+
+		RecordingHolder first = new RecordingHolder();
+		RecordingHolder second = new RecordingHolder();
+
+		cache.wrap(first).uniform1f(UniformUpdateFrequency.PER_FRAME, "sunAngle", () -> ++calls[0]);
+		cache.wrap(second).uniform1f(UniformUpdateFrequency.PER_FRAME, "sunAngle", () -> ++calls[1]);
+
+		cache.beginFrame();
+
+		Assertions.assertEquals(1.0F, first.getFloat("sunAngle"));
+		Assertions.assertEquals(1.0F, second.getFloat("sunAngle"));
+		Assertions.assertEquals(1.0F, second.getFloat("sunAngle"));
+
+		// Only the supplier registered first is ever used
+		Assertions.assertEquals(1, calls[0]);
+		Assertions.assertEquals(0, calls[1]);
+
+		cache.beginFrame();
+
+		Assertions.assertEquals(2.0F, second.getFloat("sunAngle"));
+		Assertions.assertEquals(2.0F, first.getFloat("sunAngle"));
+		Assertions.assertEquals(2, calls[0]);
+
+		Assertions.assertEquals(3, cache.getRequestedLastFrame());
+		Assertions.assertEquals(1, cache.getComputedLastFrame());
+	}
+
+	@Test
+	void testComputesPerTickValuesOncePerTick() {
+		UniformValueCache cache = new UniformValueCache(() -> tick);
+		int[] calls = new int[1];
+
+		RecordingHolder holder = new RecordingHolder();
+		cache.wrap(holder).uniform1f(UniformUpdateFrequency.PER_TICK, "rainStrength", () -> ++calls[0]);
+
+		tick = 10;
+		cache.beginFrame();
+		holder.getFloat("rainStrength");
+
+		cache.beginFrame();
+		holder.getFloat("rainStrength");
+
+		Assertions.assertEquals(1, calls[0], "the value must be reused within the same tick");
+
+		tick = 11;
+		cache.beginFrame();
+
+		Assertions.assertEquals(2.0F, holder.getFloat("rainStrength"));
+	}
+
+	@Test
+	void testDoesNotCacheOnceOrDynamicUniforms() {
+		UniformValueCache cache = new UniformValueCache(() -> tick);
+		RecordingHolder holder = new RecordingHolder();
+
+		FloatSupplier once = () -> 1.0F;
+		FloatSupplier dynamic = () -> 2.0F;
+
+		DynamicUniformHolder wrapped = cache.wrap(holder);
+		wrapped.uniform1f(UniformUpdateFrequency.ONCE, "near", once);
+		wrapped.uniform1f("dynamic", dynamic, listener -> {});
+
+		Assertions.assertSame(once, holder.suppliers.get("near"));
+		Assertions.assertSame(dynamic, holder.suppliers.get("dynamic"));
+	}
+
+	@Test
+	void testSeparatesValuesOfDifferentTypes() {
+		UniformValueCache cache = new UniformValueCache(() -> tick);
+		RecordingHolder ints = new RecordingHolder();
+		RecordingHolder floats = new RecordingHolder();
+
+		cache.wrap(ints).uniform1i(UniformUpdateFrequency.PER_FRAME, "framemod8", () -> 3);
+		cache.wrap(floats).uniform1f(UniformUpdateFrequency.PER_FRAME, "framemod8", () -> 3.5F);
+
+		cache.beginFrame();
+
+		Assertions.assertEquals(3, ((IntSupplier) ints.suppliers.get("framemod8")).getAsInt());
+		Assertions.assertEquals(3.5F, floats.getFloat("framemod8"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testWritesCachedValuesIntoEachDestination() {
+		UniformValueCache cache = new UniformValueCache(() -> tick);
+		int[] calls = new int[1];
+
+		RecordingHolder holder = new RecordingHolder();
+		cache.wrap(holder).uniform3f(UniformUpdateFrequency.PER_FRAME, "skyColor",
+			destination -> destination.set(++calls[0], 0.0F, 0.0F));
+
+		ValueWriter<Vector3f> writer = (ValueWriter<Vector3f>) holder.suppliers.get("skyColor");
+		Vector3f first = new Vector3f();
+		Vector3f second = new Vector3f();
+
+		cache.beginFrame();
+		writer.write(first);
+		writer.write(second);
+
+		Assertions.assertEquals(1.0F, first.x);
+		Assertions.assertEquals(1.0F, second.x);
+		Assertions.assertEquals(1, calls[0]);
+
+		cache.beginFrame();
+		writer.write(first);
+
+		Assertions.assertEquals(2.0F, first.x);
+		Assertions.assertEquals(1.0F, second.x, "destinations must not share state with the cache");
+	}
+
+	@Test
+	void testForwardsDependencies() {
+		UniformValueCache cache = new UniformValueCache(() -> tick);
+		UniformDependency viewport = new UniformDependency("viewport", () -> false);
+		int[] calls = new int[1];
+
+		RecordingHolder holder = new RecordingHolder();
+		DynamicUniformHolder uniforms = cache.wrap(holder);
+
+		uniforms.dependingOn(viewport).uniform1f(UniformUpdateFrequency.PER_FRAME, "viewWidth", () -> ++calls[0]);
+		uniforms.uniform1f(UniformUpdateFrequency.PER_FRAME, "frameTime", () -> 0.05F);
+
+		Assertions.assertSame(viewport, holder.dependencies.get("viewWidth"));
+		Assertions.assertNull(holder.dependencies.get("frameTime"));
+
+		// Declaring a dependency doesn't stop the value from being cached
+		cache.beginFrame();
+
+		Assertions.assertEquals(1.0F, holder.getFloat("viewWidth"));
+		Assertions.assertEquals(1.0F, holder.getFloat("viewWidth"));
+		Assertions.assertEquals(1, calls[0]);
+	}
+
+	@Test
+	void testDependencyVersionOnlyChangesWithState() {
+		boolean[] changed = new boolean[1];
+		UniformDependency dependency = new UniformDependency("test", () -> changed[0]);
+		int initial = dependency.getVersion();
+
+		dependency.update();
+		Assertions.assertEquals(initial, dependency.getVersion());
+
+		changed[0] = true;
+		dependency.update();
+		int afterChange = dependency.getVersion();
+		Assertions.assertNotEquals(initial, afterChange);
+
+		changed[0] = false;
+		dependency.update();
+		Assertions.assertEquals(afterChange, dependency.getVersion());
+
+		dependency.invalidate();
+		Assertions.assertNotEquals(afterChange, dependency.getVersion());
+	}
+
+	/**
+	 * Records the supplier registered for each uniform, along with the dependency that it was declared with.
+	 */
+	private static final class RecordingHolder implements DynamicUniformHolder {
+		private final Map<String, Object> suppliers;
+		private final Map<String, UniformDependency> dependencies;
+		private final UniformDependency dependency;
+
+		private RecordingHolder() {
+			this(new HashMap<>(), new HashMap<>(), null);
+		}
+
+		private RecordingHolder(Map<String, Object> suppliers, Map<String, UniformDependency> dependencies,
+								UniformDependency dependency) {
+			this.suppliers = suppliers;
+			this.dependencies = dependencies;
+			this.dependency = dependency;
+		}
+
+		private float getFloat(String name) {
+			return ((FloatSupplier) suppliers.get(name)).getAsFloat();
+		}
+
+		private RecordingHolder record(String name, Object supplier) {
+			suppliers.put(name, supplier);
+
+			if (dependency != null) {
+				dependencies.put(name, dependency);
+			}
+
+			return this;
+		}
+
+		@Override
+		public RecordingHolder uniform1f(UniformUpdateFrequency updateFrequency, String name, FloatSupplier value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform1f(UniformUpdateFrequency updateFrequency, String name, IntSupplier value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform1f(UniformUpdateFrequency updateFrequency, String name, DoubleSupplier value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform1i(UniformUpdateFrequency updateFrequency, String name, IntSupplier value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform1b(UniformUpdateFrequency updateFrequency, String name, BooleanSupplier value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform2f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector2f> value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform2i(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector2i> value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform2i(UniformUpdateFrequency updateFrequency, String name, ValueWriter<Vector2i> value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform3f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector3f> value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform3f(UniformUpdateFrequency updateFrequency, String name, ValueWriter<Vector3f> value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniformTruncated3f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector4f> value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform3d(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector3d> value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform4f(UniformUpdateFrequency updateFrequency, String name, Supplier<Vector4f> value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniformMatrix(UniformUpdateFrequency updateFrequency, String name, Supplier<Matrix4f> value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniformJomlMatrix(UniformUpdateFrequency updateFrequency, String name, Supplier<net.coderbot.iris.vendored.joml.Matrix4f> value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniformJomlMatrix(UniformUpdateFrequency updateFrequency, String name, ValueWriter<net.coderbot.iris.vendored.joml.Matrix4f> value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniformMatrixFromArray(UniformUpdateFrequency updateFrequency, String name, Supplier<float[]> value) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder externallyManagedUniform(String name, UniformType type) {
+			return this;
+		}
+
+		@Override
+		public RecordingHolder uniform1f(String name, FloatSupplier value, ValueUpdateNotifier notifier) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform1f(String name, IntSupplier value, ValueUpdateNotifier notifier) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform1f(String name, DoubleSupplier value, ValueUpdateNotifier notifier) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform1i(String name, IntSupplier value, ValueUpdateNotifier notifier) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform2i(String name, Supplier<Vector2i> value, ValueUpdateNotifier notifier) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform2i(String name, ValueWriter<Vector2i> value, ValueUpdateNotifier notifier) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform4f(String name, Supplier<Vector4f> value, ValueUpdateNotifier notifier) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform4i(String name, Supplier<Vector4i> value, ValueUpdateNotifier notifier) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder uniform4i(String name, ValueWriter<Vector4i> value, ValueUpdateNotifier notifier) {
+			return record(name, value);
+		}
+
+		@Override
+		public RecordingHolder dependingOn(UniformDependency dependency) {
+			return new RecordingHolder(suppliers, dependencies, dependency);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package net.coderbot.iris.test.shaderpack;
+
+import net.coderbot.iris.shaderpack.loading.BackgroundPackLoader;
+import net.coderbot.iris.shaderpack.loading.LoadProgress;
+import net.coderbot.iris.shaderpack.loading.StageTimings;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+public class BackgroundPackLoaderTest {
+	/**
+	 * Runs submitted loads only when asked to, standing in for the loader thread.
+	 */
+	private final Queue<Runnable> queued = new ArrayDeque<>();
+	private final List<String> applied = new ArrayList<>();
+	private final List<String> discarded = new ArrayList<>();
+	private final BackgroundPackLoader<String> loader = new BackgroundPackLoader<>(queued::add, discarded::add);
+
+	private void runQueued() {
+		while (!queued.isEmpty()) {
+			queued.remove().run();
+		}
+	}
+
+	@Test
+	void testAppliesOnlyWhenPolled() {
+		CompletableFuture<String> future = loader.submit(progress -> "pack", applied::add);
+
+		loader.poll();
+		Assertions.assertTrue(applied.isEmpty());
+		Assertions.assertTrue(loader.getProgress().isPresent());
+
+		runQueued();
+		Assertions.assertTrue(applied.isEmpty(), "loads must only be applied from poll()");
+
+		loader.poll();
+		Assertions.assertEquals(1, applied.size());
+		Assertions.assertEquals("pack", future.join());
+		Assertions.assertFalse(loader.getProgress().isPresent());
+	}
+
+	@Test
+	void testSupersededLoadIsDiscarded() {
+		CompletableFuture<String> first = loader.submit(progress -> "first", applied::add);
+		CompletableFuture<String> second = loader.submit(progress -> "second", applied::add);
+
+		Assertions.assertTrue(first.isCancelled());
+
+		runQueued();
+		loader.poll();
+
+		Assertions.assertEquals(1, applied.size());
+		Assertions.assertEquals("second", applied.get(0));
+		Assertions.assertEquals("second", second.join());
+		Assertions.assertEquals(1, discarded.size());
+		Assertions.assertEquals("first", discarded.get(0));
+	}
+
+	@Test
+	void testCancellationStopsAtNextStage() {
+		List<String> stagesRun = new ArrayList<>();
+
+		CompletableFuture<String> first = loader.submit(progress -> {
+			StageTimings timings = new StageTimings(progress);
+
+			for (String stage : new String[] {"a", "b", "c"}) {
+				timings.begin(stage);
+				stagesRun.add(stage);
+
+				if (stage.equals("a")) {
+					// Simulate the user applying different options while this load is running.
+					loader.submit(p -> "second", applied::add);
+				}
+			}
+
+			return "first";
+		}, applied::add);
+
+		runQueued();
+		loader.poll();
+
+		Assertions.assertEquals(1, stagesRun.size(), "stages run after cancellation: " + stagesRun);
+		Assertions.assertThrows(CancellationException.class, first::join);
+		Assertions.assertEquals(1, applied.size());
+		Assertions.assertEquals("second", applied.get(0));
+		Assertions.assertTrue(discarded.isEmpty());
+	}
+
+	@Test
+	void testFailedLoadIsNotApplied() {
+		CompletableFuture<String> future = loader.submit(progress -> {
+			throw new IllegalStateException("broken pack");
+		}, applied::add);
+
+		runQueued();
+		loader.poll();
+
+		Assertions.assertTrue(applied.isEmpty());
+		Assertions.assertTrue(future.isCompletedExceptionally());
+	}
+
+	@Test
+	void testProgressFraction() {
+		LoadProgress progress = new LoadProgress();
+		progress.expectStages(4);
+
+		Assertions.assertEquals(0.0f, progress.getFraction());
+
+		progress.beginStage("one");
+		progress.beginStage("two");
+		progress.beginStage("three");
+
+		Assertions.assertEquals("three", progress.getStage());
+		Assertions.assertEquals(0.5f, progress.getFraction());
+
+		progress.cancel();
+		Assertions.assertThrows(CancellationException.class, () -> progress.beginStage("four"));
+	}
+}
@@ -0,0 +1,128 @@
+package net.coderbot.iris.test.shaderpack;
+
+import com.google.common.collect.ImmutableList;
+import net.coderbot.iris.gl.shader.GlShader;
+import net.coderbot.iris.gl.shader.ShaderConstants;
+import net.coderbot.iris.shaderpack.include.AbsolutePackPath;
+import net.coderbot.iris.shaderpack.include.IncludeGraph;
+import net.coderbot.iris.shaderpack.include.IncludeProcessor;
+import net.coderbot.iris.shaderpack.include.IncludedSource;
+import net.coderbot.iris.shaderpack.preprocessor.GlslPreprocessor;
+import net.coderbot.iris.shaderpack.preprocessor.JcppProcessor;
+import net.coderbot.iris.shaderpack.preprocessor.MacroTable;
+import net.coderbot.iris.shaderpack.transform.line.VersionDirectiveNormalizer;
+import net.coderbot.iris.test.IrisTests;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class GlslPreprocessorTest {
+	private static final ShaderConstants CONSTANTS = ShaderConstants.builder()
+		.define("MC_VERSION", "11605")
+		.define("MC_GL_VENDOR_NVIDIA")
+		.define("IS_IRIS")
+		.build();
+
+	private static final MacroTable MACRO_CONSTANTS = MacroTable.fromConstants(CONSTANTS);
+
+	/**
+	 * Checks that every program of the test shader packs preprocesses to exactly the same output as the previous JCPP
+	 * based pipeline.
+	 */
+	@Test
+	void testMatchesJcpp() throws IOException {
+		List<Executable> checks = new ArrayList<>();
+
+		for (String pack : new String[] {"preprocessor", "includes", "options"}) {
+			Path root = IrisTests.getTestShaderPackPath(pack);
+			List<AbsolutePackPath> programs;
+
+			try (Stream<Path> files = Files.walk(root)) {
+				programs = files
+					.map(file -> root.relativize(file).toString().replace('\\', '/'))
+					.filter(name -> name.endsWith(".vsh") || name.endsWith(".gsh") || name.endsWith(".fsh"))
+					.map(name -> AbsolutePackPath.fromAbsolutePath("/" + name))
+					.collect(Collectors.toList());
+			}
+
+			IncludeGraph graph = new IncludeGraph(root, ImmutableList.copyOf(programs));
+			IncludeProcessor processor = new IncludeProcessor(graph);
+
+			Assertions.assertTrue(graph.getFailures().isEmpty(), "Unexpected include failures: " + graph.getFailures());
+
+			for (AbsolutePackPath program : programs) {
+				IncludedSource included = processor.getIncludedSource(program);
+				String source = included.flatten(VersionDirectiveNormalizer.INSTANCE);
+
+				checks.add(() -> Assertions.assertEquals(
+					JcppProcessor.glslPreprocessSource(GlShader.processShader(source, CONSTANTS)),
+					GlslPreprocessor.process(source, MACRO_CONSTANTS),
+					pack + program.getPathString()));
+			}
+		}
+
+		Assertions.assertFalse(checks.isEmpty());
+		Assertions.assertAll(checks);
+	}
+
+	@Test
+	void testExtensionHoisting() {
+		String source = "#version 120\n"
+			+ "#ifdef IS_IRIS\n"
+			+ "#extension GL_EXT_gpu_shader4 : require\n"
+			+ "#else\n"
+			+ "#extension GL_ARB_unused : require\n"
+			+ "#endif\n"
+			+ "void main() {}\n";
+
+		// NB: The hoisted directives keep the whitespace after the directive name, with one extra space.
+		String expected = "#version  120\n"
+			+ "#extension  GL_EXT_gpu_shader4 : require\n"
+			// Three empty lines for the constants, and four for the conditional directives
+			+ "\n\n\n\n\n\n\n"
+			+ "void main() {}\n"
+			+ "\n";
+
+		Assertions.assertEquals(expected, GlslPreprocessor.process(source, MACRO_CONSTANTS));
+	}
+
+	@Test
+	void testConstantsDefinedAfterVersion() {
+		String source = "#ifdef IS_IRIS\n"
+			+ "before\n"
+			+ "#endif\n"
+			+ "#version 120\n"
+			+ "#ifdef IS_IRIS\n"
+			+ "after\n"
+			+ "#endif\n";
+
+		String processed = GlslPreprocessor.process(source, MACRO_CONSTANTS);
+
+		Assertions.assertFalse(processed.contains("before"));
+		Assertions.assertTrue(processed.contains("after"));
+	}
+
+	@Test
+	void testSelfReferentialMacros() {
+		String source = "#define F(x) <x>\n"
+			+ "#define H(x) F(x) H\n"
+			+ "#define R R + 1\n"
+			+ "H(5) R\n";
+
+		Assertions.assertEquals("\n\n\n<5> H R + 1\n\n", GlslPreprocessor.process(source, MACRO_CONSTANTS));
+	}
+
+	@Test
+	void testUnterminatedInvocation() {
+		Assertions.assertThrows(RuntimeException.class,
+			() -> GlslPreprocessor.process("#define F(x) x\nF(1, \n", MACRO_CONSTANTS));
+	}
+}
@@ -0,0 +1,110 @@
+package net.coderbot.iris.test.shaderpack;
+
+import com.google.common.collect.ImmutableList;
+import net.coderbot.iris.shaderpack.include.AbsolutePackPath;
+import net.coderbot.iris.shaderpack.include.IncludeGraph;
+import net.coderbot.iris.shaderpack.include.IncludeProcessor;
+import net.coderbot.iris.shaderpack.include.IncludedSource;
+import net.coderbot.iris.shaderpack.transform.line.VersionDirectiveNormalizer;
+import net.coderbot.iris.test.IrisTests;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+public class IncludeProcessorTest {
+	private static final AbsolutePackPath COMPOSITE = AbsolutePackPath.fromAbsolutePath("/composite.fsh");
+	private static final AbsolutePackPath FINAL = AbsolutePackPath.fromAbsolutePath("/final.fsh");
+
+	private static final ImmutableList<String> SETTINGS = ImmutableList.of(
+		"#define SHADOWS",
+		"#define SHADOW_QUALITY 2 // [1 2 4]"
+	);
+
+	private static final ImmutableList<String> COMMON = ImmutableList.<String>builder()
+		.addAll(SETTINGS)
+		.add("")
+		.add("float luminance(vec3 color) {")
+		.add("\treturn dot(color, vec3(0.2125, 0.7154, 0.0721));")
+		.add("}")
+		.build();
+
+	@Test
+	void testNestedIncludes() {
+		IncludeProcessor processor = createProcessor();
+
+		ImmutableList<String> expected = ImmutableList.<String>builder()
+			.add("  #version 120")
+			.add("")
+			.addAll(COMMON)
+			.add("")
+			.add("void main() {")
+			.add("\tgl_FragColor = vec4(luminance(vec3(1.0)));")
+			.add("}")
+			.build();
+
+		IncludedSource source = processor.getIncludedSource(COMPOSITE);
+
+		Assertions.assertEquals(expected, source.toLines());
+		Assertions.assertEquals(expected.size(), source.getLineCount());
+	}
+
+	@Test
+	void testFlatten() {
+		IncludeProcessor processor = createProcessor();
+		IncludedSource source = processor.getIncludedSource(COMPOSITE);
+
+		StringBuilder expected = new StringBuilder();
+
+		for (String line : source.toLines()) {
+			expected.append(line).append('\n');
+		}
+
+		Assertions.assertEquals(expected.toString(), source.flatten((index, line) -> line));
+		Assertions.assertEquals(expected.length(), source.getLength());
+
+		// Line transforms must see the same indices as they would on the flattened list of lines.
+		ImmutableList<String> lines = source.toLines();
+		String transformed = source.flatten((index, line) -> {
+			Assertions.assertEquals(lines.get(index), line);
+
+			return line;
+		});
+
+		Assertions.assertEquals(expected.toString(), transformed);
+		Assertions.assertTrue(source.flatten(VersionDirectiveNormalizer.INSTANCE).startsWith("#version 120\n\n#define SHADOWS\n"));
+	}
+
+	@Test
+	void testRepeatedIncludes() {
+		IncludeProcessor processor = createProcessor();
+
+		ImmutableList<String> expected = ImmutableList.<String>builder()
+			.add("#version 120")
+			.addAll(SETTINGS)
+			.addAll(COMMON)
+			.add("")
+			.add("void main() {")
+			.add("\tgl_FragColor = vec4(1.0);")
+			.add("}")
+			.build();
+
+		Assertions.assertEquals(expected, processor.getIncludedSource(FINAL).toLines());
+	}
+
+	@Test
+	void testMissingFile() {
+		IncludeProcessor processor = createProcessor();
+
+		Assertions.assertNull(processor.getIncludedSource(AbsolutePackPath.fromAbsolutePath("/gbuffers_basic.fsh")));
+	}
+
+	private static IncludeProcessor createProcessor() {
+		Path root = IrisTests.getTestShaderPackPath("includes");
+		IncludeGraph graph = new IncludeGraph(root, ImmutableList.of(COMPOSITE, FINAL));
+
+		Assertions.assertTrue(graph.getFailures().isEmpty(), "Unexpected include failures: " + graph.getFailures());
+
+		return new IncludeProcessor(graph);
+	}
+}
@@ -0,0 +1,212 @@
+package net.coderbot.iris.test.shaderpack;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import net.coderbot.iris.gl.shader.ShaderConstants;
+import net.coderbot.iris.shaderpack.include.AbsolutePackPath;
+import net.coderbot.iris.shaderpack.include.IncludeGraph;
+import net.coderbot.iris.shaderpack.loading.PreprocessedSourceCache;
+import net.coderbot.iris.shaderpack.option.BooleanOption;
+import net.coderbot.iris.shaderpack.option.OptionLocation;
+import net.coderbot.iris.shaderpack.option.OptionSet;
+import net.coderbot.iris.shaderpack.option.OptionType;
+import net.coderbot.iris.shaderpack.option.values.MutableOptionValues;
+import net.coderbot.iris.shaderpack.option.values.OptionValues;
+import net.coderbot.iris.test.IrisTests;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class PreprocessedSourceCacheTest {
+	private static final AbsolutePackPath COMPOSITE = AbsolutePackPath.fromAbsolutePath("/composite.fsh");
+
+	@TempDir
+	Path temp;
+
+	@Test
+	void testKeyChangesWithOptionsAndDefines() {
+		PreprocessedSourceCache cache = new PreprocessedSourceCache(temp, false);
+		ShaderConstants noDefines = ShaderConstants.builder().build();
+
+		Assertions.assertEquals(1, countPipelineRuns(cache, options("true"), noDefines));
+		Assertions.assertEquals(0, countPipelineRuns(cache, options("true"), noDefines));
+
+		Assertions.assertEquals(1, countPipelineRuns(cache, options("false"), noDefines),
+			"changing an option must change the key");
+		Assertions.assertEquals(1, countPipelineRuns(cache, options("true"),
+			ShaderConstants.builder().define("MC_GL_VENDOR_NVIDIA").build()),
+			"changing the injected defines must change the key");
+		Assertions.assertEquals(1, countPipelineRuns(cache, options("true"),
+			ShaderConstants.builder().define("MC_GL_VENDOR_NVIDIA", "2").build()),
+			"changing the value of a define must change the key");
+
+		Assertions.assertEquals(0, countPipelineRuns(cache, options("false"), noDefines));
+	}
+
+	@Test
+	void testEvictsLeastRecentlyUsedFirst() throws IOException {
+		long now = System.currentTimeMillis();
+
+		Path oldest = entry("oldest.glsl", now - 3000);
+		Path older = entry("older.glsl", now - 2000);
+		Path newest = entry("newest.glsl", now - 1000);
+		Path unrelated = entry("unrelated.txt", now - 4000);
+
+		// Every entry is 100 bytes, so only two of them fit.
+		PreprocessedSourceCache cache = new PreprocessedSourceCache(temp, false, 250, TimeUnit.DAYS.toMillis(1));
+		Assertions.assertNotNull(cache.begin(graph(), options("true"), ShaderConstants.builder().build()));
+
+		Assertions.assertFalse(Files.exists(oldest));
+		Assertions.assertTrue(Files.exists(older));
+		Assertions.assertTrue(Files.exists(newest));
+		Assertions.assertTrue(Files.exists(unrelated), "files that aren't cache entries must never be evicted");
+	}
+
+	@Test
+	void testEvictsExpiredEntries() throws IOException {
+		long now = System.currentTimeMillis();
+
+		Path expired = entry("expired.glsl", now - TimeUnit.HOURS.toMillis(2));
+		Path recent = entry("recent.glsl", now - TimeUnit.MINUTES.toMillis(5));
+
+		PreprocessedSourceCache cache = new PreprocessedSourceCache(temp, false, 1024, TimeUnit.HOURS.toMillis(1));
+		Assertions.assertNotNull(cache.begin(graph(), options("true"), ShaderConstants.builder().build()));
+
+		Assertions.assertFalse(Files.exists(expired));
+		Assertions.assertTrue(Files.exists(recent));
+	}
+
+	@Test
+	void testRejectsTruncatedEntries() throws IOException {
+		PreprocessedSourceCache cache = new PreprocessedSourceCache(temp, false);
+
+		process(cache, "void main() {}\n");
+
+		Path entry = onlyEntry();
+		byte[] contents = Files.readAllBytes(entry);
+		Files.write(entry, Arrays.copyOf(contents, contents.length - 3));
+
+		PreprocessedSourceCache.Session session = begin(cache);
+		Assertions.assertEquals("void main() {}\n", session.process(COMPOSITE, () -> "void main() {}\n"));
+		Assertions.assertEquals(0, session.getHits());
+		Assertions.assertEquals(1, session.getMisses());
+
+		// The entry should have been replaced with an intact one.
+		Assertions.assertEquals(0, countPipelineRuns(cache, options("true"), ShaderConstants.builder().build()));
+	}
+
+	@Test
+	void testRejectsCorruptEntries() throws IOException {
+		PreprocessedSourceCache cache = new PreprocessedSourceCache(temp, false);
+
+		process(cache, "void main() {}\n");
+
+		Path entry = onlyEntry();
+		String contents = new String(Files.readAllBytes(entry), StandardCharsets.UTF_8);
+		Files.write(entry, contents.replace("main", "mian").getBytes(StandardCharsets.UTF_8));
+
+		PreprocessedSourceCache.Session session = begin(cache);
+		Assertions.assertEquals("void main() {}\n", session.process(COMPOSITE, () -> "void main() {}\n"));
+		Assertions.assertEquals(1, session.getMisses());
+
+		// An entry without any header at all, for example one written by an older version.
+		Files.write(onlyEntry(), "void mian() {}\n".getBytes(StandardCharsets.UTF_8));
+
+		session = begin(cache);
+		Assertions.assertEquals("void main() {}\n", session.process(COMPOSITE, () -> "void main() {}\n"));
+		Assertions.assertEquals(1, session.getMisses());
+	}
+
+	@Test
+	void testVerifyCatchesMismatch() {
+		PreprocessedSourceCache cache = new PreprocessedSourceCache(temp, false);
+		PreprocessedSourceCache verifyingCache = new PreprocessedSourceCache(temp, true);
+
+		// Simulates a pipeline change that wasn't reflected in the key.
+		process(cache, "#define OLD\n");
+
+		PreprocessedSourceCache.Session session = begin(verifyingCache);
+		Assertions.assertEquals("#define NEW\n", session.process(COMPOSITE, () -> "#define NEW\n"));
+		Assertions.assertEquals(1, session.getHits());
+		Assertions.assertEquals(1, session.getMismatches());
+
+		// The mismatching entry is replaced, so verification passes from now on.
+		session = begin(verifyingCache);
+		Assertions.assertEquals("#define NEW\n", session.process(COMPOSITE, () -> "#define NEW\n"));
+		Assertions.assertEquals(0, session.getMismatches());
+
+		Assertions.assertEquals("#define NEW\n", process(cache, "#define OLD\n"));
+	}
+
+	private static int countPipelineRuns(PreprocessedSourceCache cache, OptionValues values, ShaderConstants constants) {
+		PreprocessedSourceCache.Session session = cache.begin(graph(), values, constants);
+		AtomicInteger runs = new AtomicInteger();
+
+		Assertions.assertNotNull(session);
+		Assertions.assertEquals("void main() {}\n", session.process(COMPOSITE, () -> {
+			runs.incrementAndGet();
+
+			return "void main() {}\n";
+		}));
+
+		return runs.get();
+	}
+
+	private static String process(PreprocessedSourceCache cache, String source) {
+		return begin(cache).process(COMPOSITE, () -> source);
+	}
+
+	private static PreprocessedSourceCache.Session begin(PreprocessedSourceCache cache) {
+		PreprocessedSourceCache.Session session = cache.begin(graph(), options("true"), ShaderConstants.builder().build());
+		Assertions.assertNotNull(session);
+
+		return session;
+	}
+
+	private Path entry(String name, long lastModified) throws IOException {
+		Path entry = temp.resolve(name);
+
+		Files.write(entry, new byte[100]);
+		Files.setLastModifiedTime(entry, FileTime.fromMillis(lastModified));
+
+		return entry;
+	}
+
+	private Path onlyEntry() throws IOException {
+		List<Path> entries;
+
+		try (Stream<Path> stream = Files.list(temp)) {
+			entries = stream.collect(Collectors.toList());
+		}
+
+		Assertions.assertEquals(1, entries.size(), "Expected a single cache entry: " + entries);
+
+		return entries.get(0);
+	}
+
+	private static IncludeGraph graph() {
+		Path root = IrisTests.getTestShaderPackPath("includes");
+
+		return new IncludeGraph(root, ImmutableList.of(COMPOSITE));
+	}
+
+	private static OptionValues options(String shadows) {
+		OptionSet.Builder builder = OptionSet.builder();
+		builder.addBooleanOption(new OptionLocation(COMPOSITE, 0),
+			new BooleanOption(OptionType.DEFINE, "SHADOWS", null, true));
+
+		return new MutableOptionValues(builder.build(), ImmutableMap.of("SHADOWS", shadows));
+	}
+}
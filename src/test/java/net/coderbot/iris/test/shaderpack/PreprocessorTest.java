@@ -16,4 +16,44 @@ public class PreprocessorTest {
 		// This weirdness shows up in Voyager Shaders.
 		Assertions.assertEquals("Test Test\n", PropertiesPreprocessor.preprocessSource("Test \\\nTest"));
 	}
+
+	@Test
+	void testPropertiesPassthroughLines() {
+		// Lines with dotted names are moved to the top, and macros within them are not expanded.
+		Assertions.assertEquals("some.key=VALUE\nkey=3\n",
+			PropertiesPreprocessor.preprocessSource("#define VALUE 3\nkey=VALUE\nsome.key=VALUE\n"));
+	}
+
+	@Test
+	void testPropertiesConditionals() {
+		String source = "#define A\n"
+			+ "#ifdef A\n"
+			+ "x=1\n"
+			+ "#else\n"
+			+ "x=2\n"
+			+ "#endif\n"
+			+ "#if defined(A) && B == 0\n"
+			+ "y=1\n"
+			+ "#elif 1\n"
+			+ "y=2\n"
+			+ "#endif\n"
+			+ "#undef A\n"
+			+ "#ifndef A // comment\n"
+			+ "z=1\n"
+			+ "#endif\n";
+
+		Assertions.assertEquals("x=1\ny=1\nz=1\n", PropertiesPreprocessor.preprocessSource(source));
+	}
+
+	@Test
+	void testPropertiesComments() {
+		Assertions.assertEquals("a=1\n",
+			PropertiesPreprocessor.preprocessSource("# comment\n#block.9=x\n#\tindented comment\na=1\n"));
+	}
+
+	@Test
+	void testPropertiesLineEndings() {
+		Assertions.assertEquals("block.1=a b\nindented = 1\nwindows=1\n",
+			PropertiesPreprocessor.preprocessSource("block.1=a \\\n  b\n  indented = 1  \r\nwindows=1\r\n"));
+	}
 }
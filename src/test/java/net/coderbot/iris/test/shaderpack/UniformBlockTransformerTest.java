@@ -0,0 +1,184 @@
+package net.coderbot.iris.test.shaderpack;
+
+import net.coderbot.iris.gl.uniform.UniformBlock;
+import net.coderbot.iris.gl.uniform.UniformUpdateFrequency;
+import net.coderbot.iris.shaderpack.transform.UniformBlockTransformer;
+import net.coderbot.iris.vendored.joml.Vector3d;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class UniformBlockTransformerTest {
+	private static UniformBlock createBlock() {
+		UniformBlock.Builder builder = UniformBlock.builder("iris_CommonUniforms");
+
+		builder.uniform1f(UniformUpdateFrequency.PER_TICK, "rainStrength", () -> 0.5F);
+		builder.uniform3d(UniformUpdateFrequency.PER_FRAME, "skyColor", () -> new Vector3d(1.0, 2.0, 3.0));
+		builder.uniform1i(UniformUpdateFrequency.PER_FRAME, "worldTime", () -> 6000);
+		builder.uniform2i(UniformUpdateFrequency.PER_FRAME, "eyeBrightness", () -> null);
+		builder.uniformMatrixFromArray(UniformUpdateFrequency.PER_FRAME, "gbufferProjection", () -> new float[16]);
+		builder.uniform1f(UniformUpdateFrequency.ONCE, "near", () -> 0.05F);
+		builder.uniform1f("dynamic", () -> 1.0F, listener -> {});
+		builder.uniform1i(UniformUpdateFrequency.PER_FRAME, "rainStrength", () -> 1);
+
+		return builder.build();
+	}
+
+	@Test
+	void testStd140Layout() {
+		UniformBlock block = createBlock();
+
+		// Uniforms set once or set dynamically stay plain uniforms, and the first registration of a name wins
+		Assertions.assertEquals(5, block.getMembers().size());
+
+		Assertions.assertEquals(0, block.getMembers().get(0).getOffset(), "float");
+		Assertions.assertEquals(16, block.getMembers().get(1).getOffset(), "vec3 is aligned to 16 bytes");
+		Assertions.assertEquals(28, block.getMembers().get(2).getOffset(), "int fills the end of the vec3");
+		Assertions.assertEquals(32, block.getMembers().get(3).getOffset(), "ivec2 is aligned to 8 bytes");
+		Assertions.assertEquals(48, block.getMembers().get(4).getOffset(), "mat4 is aligned to 16 bytes");
+		Assertions.assertEquals(112, block.getSize());
+
+		Assertions.assertEquals("layout(std140) uniform iris_CommonUniforms {\n" +
+			"\tfloat iris_rainStrength;\n" +
+			"\tvec3 iris_skyColor;\n" +
+			"\tint iris_worldTime;\n" +
+			"\tivec2 iris_eyeBrightness;\n" +
+			"\tmat4 iris_gbufferProjection;\n" +
+			"};", block.getDeclaration());
+	}
+
+	@Test
+	void testOnlyWritesUsedMembers() {
+		UniformBlock block = createBlock();
+		block.markUsed("skyColor");
+		block.markUsed("worldTime");
+
+		ByteBuffer buffer = ByteBuffer.allocate(block.getSize()).order(ByteOrder.nativeOrder());
+		block.write(buffer);
+
+		Assertions.assertEquals(0.0F, buffer.getFloat(0), "unused members are not written");
+		Assertions.assertEquals(1.0F, buffer.getFloat(16));
+		Assertions.assertEquals(2.0F, buffer.getFloat(20));
+		Assertions.assertEquals(3.0F, buffer.getFloat(24));
+		Assertions.assertEquals(6000, buffer.getInt(28));
+	}
+
+	@Test
+	void testRewiresMatchingDeclarations() {
+		UniformBlock block = createBlock();
+		UniformBlockTransformer transformer = new UniformBlockTransformer(block);
+
+		String source = "#version 120\n" +
+			"uniform float rainStrength;\n" +
+			"uniform float worldTime;\n" +
+			"void main() { gl_FragColor = vec4(rainStrength, worldTime, 0.0, 1.0); }\n";
+
+		List<UniformBlock.Member> rewired = new ArrayList<>();
+		String patched = transformer.patch(source, rewired);
+
+		Assertions.assertTrue(patched.contains("#extension GL_ARB_uniform_buffer_object : require"), patched);
+		Assertions.assertTrue(patched.contains(block.getDeclaration()), patched);
+		Assertions.assertTrue(patched.contains("vec4(iris_rainStrength, worldTime, 0.0, 1.0)"), patched);
+		Assertions.assertFalse(patched.contains("uniform float rainStrength;"), patched);
+		Assertions.assertFalse(patched.contains("#define"), patched);
+
+		// worldTime is provided as an int, so the float declaration is left for the per-program path
+		Assertions.assertTrue(patched.contains("uniform float worldTime;"), patched);
+
+		Assertions.assertEquals(Collections.singletonList(getMember(block, "rainStrength")), rewired);
+
+		// Members are only marked as used once the program reading them has been built
+		Assertions.assertFalse(getMember(block, "rainStrength").isUsed());
+	}
+
+	@Test
+	void testIgnoresComments() {
+		UniformBlockTransformer transformer = new UniformBlockTransformer(createBlock());
+
+		String source = "#version 120\n" +
+			"// uniform float rainStrength;\n" +
+			"/* uniform vec3 skyColor;\n" +
+			"uniform int worldTime; */\n" +
+			"void main() {}\n";
+
+		Assertions.assertSame(source, transformer.patch(source));
+
+		String commented = "#version 120\n" +
+			"uniform float rainStrength; // rainStrength is read from the block\n" +
+			"void main() { gl_FragColor = vec4(rainStrength); /* not rainStrength */ }\n";
+
+		String patched = transformer.patch(commented);
+
+		Assertions.assertTrue(patched.contains("// rainStrength is read from the block"), patched);
+		Assertions.assertTrue(patched.contains("vec4(iris_rainStrength); /* not rainStrength */"), patched);
+	}
+
+	@Test
+	void testLeavesOtherDeclarationsOfTheNameAlone() {
+		UniformBlockTransformer transformer = new UniformBlockTransformer(createBlock());
+
+		String local = "#version 120\n" +
+			"uniform float rainStrength;\n" +
+			"float wet() { float rainStrength = 1.0; return rainStrength; }\n";
+
+		Assertions.assertSame(local, transformer.patch(local));
+
+		String field = "#version 120\n" +
+			"uniform vec3 skyColor;\n" +
+			"struct Sky { vec3 skyColor; };\n" +
+			"void main() {}\n";
+
+		Assertions.assertSame(field, transformer.patch(field));
+
+		String parameter = "#version 120\n" +
+			"uniform int worldTime;\n" +
+			"float day(int worldTime) { return float(worldTime); }\n";
+
+		Assertions.assertSame(parameter, transformer.patch(parameter));
+	}
+
+	@Test
+	void testDoesNotRenameFieldAccesses() {
+		UniformBlockTransformer transformer = new UniformBlockTransformer(createBlock());
+
+		String patched = transformer.patch("#version 120\n" +
+			"uniform vec3 skyColor;\n" +
+			"void main() { gl_FragColor = vec4(skyColor + weather.skyColor, 1.0); }\n");
+
+		Assertions.assertTrue(patched.contains("vec4(iris_skyColor + weather.skyColor, 1.0)"), patched);
+	}
+
+	@Test
+	void testLeavesUnrelatedSourcesAlone() {
+		UniformBlockTransformer transformer = new UniformBlockTransformer(createBlock());
+
+		String source = "#version 150\n" +
+			"uniform vec3 skyColor, fogColor;\n" +
+			"uniform float rainStrength2;\n" +
+			"void main() {}\n";
+
+		Assertions.assertSame(source, transformer.patch(source));
+	}
+
+	@Test
+	void testNoExtensionOnNewerVersions() {
+		UniformBlockTransformer transformer = new UniformBlockTransformer(createBlock());
+
+		String patched = transformer.patch("#version 330 compatibility\nuniform mat4 gbufferProjection;\nvoid main() {}\n");
+
+		Assertions.assertFalse(patched.contains("#extension"), patched);
+		Assertions.assertFalse(patched.contains("uniform mat4 gbufferProjection;"), patched);
+	}
+
+	private static UniformBlock.Member getMember(UniformBlock block, String uniform) {
+		return block.getMembers().stream()
+			.filter(member -> member.getUniformName().equals(uniform))
+			.findFirst()
+			.orElseThrow(() -> new AssertionError("No member for " + uniform));
+	}
+}
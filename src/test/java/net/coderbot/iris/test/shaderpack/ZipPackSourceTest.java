@@ -0,0 +1,162 @@
+package net.coderbot.iris.test.shaderpack;
+
+import net.coderbot.iris.shaderpack.ShaderPack;
+import net.coderbot.iris.shaderpack.loading.ZipPackSource;
+import net.coderbot.iris.test.IrisTests;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ZipPackSourceTest {
+	@TempDir
+	Path temp;
+
+	@Test
+	void testReadsStoredAndDeflatedEntries() throws IOException {
+		Path root = IrisTests.getTestShaderPackPath("language_maps").getParent();
+		Path archive = zip(root, temp.resolve("language_maps.zip"));
+
+		ZipPackSource source = ZipPackSource.open(archive);
+
+		try (FileSystem zipSystem = FileSystems.newFileSystem(archive, (ClassLoader) null);
+			 Stream<Path> walk = Files.walk(root)) {
+			List<Path> files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+
+			Assertions.assertEquals(files.size(), source.getEntryCount());
+
+			for (Path file : files) {
+				Path entry = zipSystem.getPath(root.relativize(file).toString().replace('\\', '/'));
+				ByteBuffer contents = source.read(entry);
+
+				Assertions.assertTrue(contents.isDirect(), entry + " should be read into a direct buffer");
+				Assertions.assertEquals(ByteBuffer.wrap(Files.readAllBytes(file)), contents, entry.toString());
+			}
+
+			Assertions.assertThrows(NoSuchFileException.class,
+				() -> source.read(zipSystem.getPath("shaders/missing.fsh")));
+		}
+	}
+
+	@Test
+	void testLoadsShaderPack() throws IOException {
+		Path root = IrisTests.getTestShaderPackPath("language_maps").getParent();
+		Path archive = zip(root, temp.resolve("language_maps.zip"));
+
+		try (FileSystem zipSystem = FileSystems.newFileSystem(archive, (ClassLoader) null)) {
+			ShaderPack shaderPack = new ShaderPack(zipSystem.getPath("shaders"), Collections.emptyMap(), null,
+				ZipPackSource.open(archive), null);
+
+			Assertions.assertEquals("Écran de test",
+				shaderPack.getLanguageMap().getTranslations("fr_fr").get("screen.TEST"));
+		}
+	}
+
+	@Test
+	void testReusesUnchangedArchive() throws IOException {
+		Path archive = temp.resolve("pack.zip");
+		Path other = temp.resolve("other.zip");
+		writeSingleEntry(archive, "first");
+		writeSingleEntry(other, "other");
+
+		ZipPackSource first = ZipPackSource.open(archive);
+		Assertions.assertSame(first, ZipPackSource.open(archive));
+
+		// Touching the archive is enough to count as a change
+		Files.setLastModifiedTime(archive, FileTime.fromMillis(Files.getLastModifiedTime(archive).toMillis() + 2000));
+
+		ZipPackSource second = ZipPackSource.open(archive);
+		Assertions.assertNotSame(first, second);
+
+		// Only the most recently opened archive is kept around
+		Assertions.assertNotSame(ZipPackSource.open(other), second);
+		Assertions.assertNotSame(second, ZipPackSource.open(archive));
+
+		try (FileSystem zipSystem = FileSystems.newFileSystem(archive, (ClassLoader) null)) {
+			Assertions.assertEquals("first",
+				second.readString(zipSystem.getPath("shaders/shaders.properties"), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	void testReleasesCachedArchive() throws IOException {
+		Path archive = temp.resolve("pack.zip");
+		writeSingleEntry(archive, "first");
+
+		ZipPackSource first = ZipPackSource.open(archive);
+
+		// Reloading the same pack keeps it cached
+		ZipPackSource.releaseCachedExcept(first);
+		Assertions.assertSame(first, ZipPackSource.open(archive));
+
+		// Disabling shaders or switching to another pack drops it
+		ZipPackSource.releaseCachedExcept(null);
+		Assertions.assertNotSame(first, ZipPackSource.open(archive));
+	}
+
+	@Test
+	void testRejectsCorruptArchive() throws IOException {
+		Path archive = temp.resolve("corrupt.zip");
+		Files.write(archive, "this is not a zip file".getBytes(StandardCharsets.UTF_8));
+
+		Assertions.assertThrows(IOException.class, () -> ZipPackSource.open(archive));
+	}
+
+	/**
+	 * Zips a directory, storing every other file without compression so that both kinds of entries are covered.
+	 */
+	private static Path zip(Path directory, Path archive) throws IOException {
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(archive));
+			 Stream<Path> walk = Files.walk(directory)) {
+			List<Path> files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+			boolean stored = false;
+
+			for (Path file : files) {
+				byte[] contents = Files.readAllBytes(file);
+				ZipEntry entry = new ZipEntry(directory.relativize(file).toString().replace('\\', '/'));
+
+				if (stored) {
+					CRC32 crc = new CRC32();
+					crc.update(contents);
+
+					entry.setMethod(ZipEntry.STORED);
+					entry.setSize(contents.length);
+					entry.setCrc(crc.getValue());
+				}
+
+				out.putNextEntry(entry);
+				out.write(contents);
+				out.closeEntry();
+
+				stored = !stored;
+			}
+		}
+
+		return archive;
+	}
+
+	private static void writeSingleEntry(Path archive, String contents) throws IOException {
+		try (OutputStream file = Files.newOutputStream(archive); ZipOutputStream out = new ZipOutputStream(file)) {
+			out.putNextEntry(new ZipEntry("shaders/shaders.properties"));
+			out.write(contents.getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+	}
+}
@@ -0,0 +1,411 @@
+package net.coderbot.iris.test.uniforms;
+
+import net.coderbot.iris.gl.uniform.UniformBlock;
+import net.coderbot.iris.gl.uniform.UniformUpdateFrequency;
+import net.coderbot.iris.uniforms.custom.CustomUniformDefinition;
+import net.coderbot.iris.uniforms.custom.CustomUniformType;
+import net.coderbot.iris.uniforms.custom.CustomUniforms;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class CustomUniformsTest {
+	private static final float EPSILON = 1.0E-5F;
+
+	private int worldTime;
+	private float rainStrength;
+
+	@Test
+	void testEvaluatesExpressions() {
+		Evaluated evaluated = evaluate(
+			uniform(CustomUniformType.FLOAT, "halfTime", "worldTime / 2.0"),
+			uniform(CustomUniformType.INT, "dayPhase", "floor(worldTime / 6000)"),
+			uniform(CustomUniformType.BOOL, "isRaining", "rainStrength > 0.5 && worldTime >= 0"),
+			uniform(CustomUniformType.FLOAT, "clamped", "clamp(worldTime * 0.001, 0, 10)"),
+			uniform(CustomUniformType.FLOAT, "lowest", "min(4, worldTime, 3.5)"),
+			uniform(CustomUniformType.FLOAT, "choice", "if(rainStrength > 0.9, 1, rainStrength > 0.5, 2, 3)"));
+
+		worldTime = 13000;
+		rainStrength = 0.75F;
+		evaluated.update();
+
+		Assertions.assertEquals(6500.0F, evaluated.getFloat("halfTime"), EPSILON);
+		Assertions.assertEquals(2, evaluated.getInt("dayPhase"));
+		Assertions.assertEquals(1, evaluated.getInt("isRaining"));
+		Assertions.assertEquals(10.0F, evaluated.getFloat("clamped"), EPSILON);
+		Assertions.assertEquals(3.5F, evaluated.getFloat("lowest"), EPSILON);
+		Assertions.assertEquals(2.0F, evaluated.getFloat("choice"), EPSILON);
+	}
+
+	@Test
+	void testResolvesDependenciesInAnyOrder() {
+		Evaluated evaluated = evaluate(
+			uniform(CustomUniformType.FLOAT, "c", "b + 1"),
+			variable(CustomUniformType.FLOAT, "b", "a * 2"),
+			variable(CustomUniformType.FLOAT, "a", "worldTime + 1"));
+
+		worldTime = 4;
+		evaluated.update();
+
+		Assertions.assertEquals(11.0F, evaluated.getFloat("c"), EPSILON);
+		Assertions.assertFalse(evaluated.has("a"), "variables must not be exposed as uniforms");
+		Assertions.assertFalse(evaluated.has("b"), "variables must not be exposed as uniforms");
+	}
+
+	@Test
+	void testVectorComponents() {
+		Evaluated evaluated = evaluate(
+			variable(CustomUniformType.VEC3, "color", "vec3(worldTime, 2.0, rainStrength)"),
+			uniform(CustomUniformType.VEC2, "swizzled", "vec2(color.z, color.r)"),
+			uniform(CustomUniformType.VEC3, "copied", "color"));
+
+		worldTime = 5;
+		rainStrength = 0.25F;
+		evaluated.update();
+
+		Assertions.assertEquals(0.25F, evaluated.getFloat("swizzled", 0), EPSILON);
+		Assertions.assertEquals(5.0F, evaluated.getFloat("swizzled", 1), EPSILON);
+		Assertions.assertEquals(5.0F, evaluated.getFloat("copied", 0), EPSILON);
+		Assertions.assertEquals(2.0F, evaluated.getFloat("copied", 1), EPSILON);
+		Assertions.assertEquals(0.25F, evaluated.getFloat("copied", 2), EPSILON);
+	}
+
+	@Test
+	void testRejectsInvalidDefinitions() {
+		Evaluated evaluated = evaluate(
+			uniform(CustomUniformType.FLOAT, "cycleA", "cycleB + 1"),
+			uniform(CustomUniformType.FLOAT, "cycleB", "cycleA + 1"),
+			uniform(CustomUniformType.FLOAT, "unknown", "notAUniform * 2"),
+			uniform(CustomUniformType.FLOAT, "dependsOnUnknown", "unknown + 1"),
+			uniform(CustomUniformType.FLOAT, "syntaxError", "worldTime +* 2"),
+			uniform(CustomUniformType.VEC2, "wrongComponents", "vec3(1, 2, 3)"),
+			uniform(CustomUniformType.FLOAT, "valid", "worldTime"));
+
+		worldTime = 7;
+		evaluated.update();
+
+		Assertions.assertEquals(7.0F, evaluated.getFloat("valid"), EPSILON);
+
+		for (String name : Arrays.asList("cycleA", "cycleB", "unknown", "dependsOnUnknown", "syntaxError",
+			"wrongComponents")) {
+			Assertions.assertFalse(evaluated.has(name), name + " should have been rejected");
+		}
+	}
+
+	@Test
+	void testLastDefinitionWins() {
+		Evaluated evaluated = evaluate(
+			uniform(CustomUniformType.FLOAT, "value", "1"),
+			uniform(CustomUniformType.FLOAT, "value", "2"));
+
+		evaluated.update();
+
+		Assertions.assertEquals(2.0F, evaluated.getFloat("value"), EPSILON);
+	}
+
+	@Test
+	void testCompiledMatchesInterpreted() {
+		Random random = new Random(0x1415);
+
+		for (int pack = 0; pack < 50; pack++) {
+			ExpressionGenerator generator = new ExpressionGenerator(random);
+			List<CustomUniformDefinition> definitions = new ArrayList<>();
+
+			definitions.add(variable(CustomUniformType.VEC3, "color", "vec3(worldTime * 0.01, rainStrength, -1.5)"));
+
+			for (int i = 0; i < 40; i++) {
+				definitions.add(uniform(CustomUniformType.FLOAT, "v" + i, generator.generate(i, 4)));
+			}
+
+			Evaluated interpreted = evaluate(definitions, false);
+			Evaluated compiled = evaluate(definitions, true);
+
+			for (int frame = 0; frame < 20; frame++) {
+				worldTime = random.nextInt(24000) - 100;
+				rainStrength = random.nextInt(5) / 4.0F;
+
+				interpreted.update();
+				compiled.update();
+
+				for (CustomUniformDefinition definition : definitions) {
+					if (!definition.isUniform()) {
+						continue;
+					}
+
+					String name = definition.getName();
+
+					Assertions.assertEquals(interpreted.has(name), compiled.has(name), name);
+
+					if (interpreted.has(name)) {
+						Assertions.assertEquals(interpreted.getFloat(name), compiled.getFloat(name),
+							() -> "value of " + definition + " differs in frame " + worldTime);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void testCompilerNeverMergesRandom() {
+		Evaluated evaluated = evaluate(Arrays.asList(
+			uniform(CustomUniformType.FLOAT, "first", "random() * 1000000"),
+			uniform(CustomUniformType.FLOAT, "second", "random() * 1000000"),
+			uniform(CustomUniformType.FLOAT, "sameCall", "random() - random()")), true);
+
+		int differences = 0;
+
+		for (int i = 0; i < 10; i++) {
+			evaluated.update();
+
+			if (evaluated.getFloat("first") != evaluated.getFloat("second") && evaluated.getFloat("sameCall") != 0.0F) {
+				differences++;
+			}
+		}
+
+		Assertions.assertTrue(differences > 0, "random() must be called every time that it appears");
+	}
+
+	@Test
+	void testLargePackUpdatesDoNotAllocate() {
+		assertUpdatesDoNotAllocate(false);
+	}
+
+	@Test
+	void testCompiledLargePackUpdatesDoNotAllocate() {
+		assertUpdatesDoNotAllocate(true);
+	}
+
+	private void assertUpdatesDoNotAllocate(boolean compile) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		Assumptions.assumeTrue(threads instanceof com.sun.management.ThreadMXBean,
+			"allocation tracking is not available on this JVM");
+
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+
+		Assumptions.assumeTrue(allocations.isThreadAllocatedMemorySupported()
+			&& allocations.isThreadAllocatedMemoryEnabled(), "allocation tracking is disabled");
+
+		// Roughly the size of the custom uniforms of the biggest packs around, with each one depending on the last.
+		List<CustomUniformDefinition> definitions = new ArrayList<>();
+		definitions.add(variable(CustomUniformType.FLOAT, "v0", "worldTime * 0.001"));
+
+		for (int i = 1; i < 200; i++) {
+			String previous = "v" + (i - 1);
+			String expression;
+
+			switch (i % 4) {
+				case 0:
+					expression = "clamp(" + previous + " + sin(worldTime * 0.01), -100, 100)";
+					break;
+				case 1:
+					expression = "if(rainStrength > 0.5, " + previous + " * 0.5, max(" + previous + ", 1))";
+					break;
+				case 2:
+					expression = "smooth(" + i + ", " + previous + ", 2, 4)";
+					break;
+				default:
+					expression = "fmod(" + previous + " + rainStrength, 64)";
+					break;
+			}
+
+			definitions.add(variable(CustomUniformType.FLOAT, "v" + i, expression));
+		}
+
+		definitions.add(uniform(CustomUniformType.FLOAT, "result", "v199"));
+		definitions.add(uniform(CustomUniformType.VEC4, "packed", "vec4(v1, v2, v3, v4)"));
+
+		Evaluated evaluated = evaluate(definitions, compile);
+
+		runFrames(evaluated, 20000);
+
+		long threadId = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(threadId);
+		runFrames(evaluated, 10000);
+		long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+		// NB: Querying the allocated bytes may allocate a little by itself, so only fail when something is allocated
+		// on (nearly) every frame.
+		Assertions.assertTrue(allocated < 10000,
+			"updating custom uniforms allocated " + allocated + " bytes over 10000 frames");
+	}
+
+	private void runFrames(Evaluated evaluated, int frames) {
+		for (int i = 0; i < frames; i++) {
+			worldTime++;
+			rainStrength = (worldTime % 100) / 100.0F;
+			evaluated.update();
+		}
+	}
+
+	private static CustomUniformDefinition uniform(CustomUniformType type, String name, String expression) {
+		return new CustomUniformDefinition(type, name, expression, true);
+	}
+
+	private static CustomUniformDefinition variable(CustomUniformType type, String name, String expression) {
+		return new CustomUniformDefinition(type, name, expression, false);
+	}
+
+	private Evaluated evaluate(CustomUniformDefinition... definitions) {
+		return evaluate(Arrays.asList(definitions), false);
+	}
+
+	private Evaluated evaluate(List<CustomUniformDefinition> definitions, boolean compile) {
+		CustomUniforms.Builder builder = CustomUniforms.builder(definitions, () -> 1.0F / 60.0F)
+			.compileExpressions(compile);
+
+		builder.uniform1i(UniformUpdateFrequency.PER_FRAME, "worldTime", () -> worldTime);
+		builder.uniform1f(UniformUpdateFrequency.PER_TICK, "rainStrength", () -> rainStrength);
+
+		CustomUniforms customUniforms = builder.build();
+
+		UniformBlock.Builder blockBuilder = UniformBlock.builder("CustomUniforms");
+		customUniforms.assignTo(blockBuilder);
+		UniformBlock block = blockBuilder.build();
+
+		for (UniformBlock.Member member : block.getMembers()) {
+			block.markUsed(member.getUniformName());
+		}
+
+		return new Evaluated(customUniforms, block);
+	}
+
+	/**
+	 * Generates random expressions that use every operator and function, and that often repeat their own
+	 * subexpressions and only use constants, so that the compiler has something to merge and fold.
+	 */
+	private static final class ExpressionGenerator {
+		private static final String[] BINARY_OPERATORS = { "*", "/", "%", "+", "-", "<", ">", "<=", ">=", "==", "!=",
+			"&&", "||" };
+		private static final String[] UNARY_FUNCTIONS = { "sin", "cos", "asin", "acos", "tan", "atan", "torad",
+			"todeg", "abs", "floor", "ceil", "round", "frac", "exp", "log", "sqrt", "signum" };
+		private static final String[] BINARY_FUNCTIONS = { "atan2", "pow", "fmod" };
+		private static final String[] LEAVES = { "worldTime", "rainStrength", "color.x", "color.g", "color.2", "0",
+			"1", "2.5", "0.25", "100", "pi", "true", "false" };
+
+		private final Random random;
+		private final List<String> generated = new ArrayList<>();
+
+		private ExpressionGenerator(Random random) {
+			this.random = random;
+		}
+
+		String generate(int definition, int depth) {
+			if (!generated.isEmpty() && random.nextInt(6) == 0) {
+				return pick(generated);
+			}
+
+			String expression = generateNew(definition, depth);
+
+			generated.add(expression);
+
+			return expression;
+		}
+
+		private String generateNew(int definition, int depth) {
+			if (depth == 0 || random.nextInt(5) == 0) {
+				if (definition > 0 && random.nextInt(4) == 0) {
+					return "v" + random.nextInt(definition);
+				}
+
+				return pick(Arrays.asList(LEAVES));
+			}
+
+			int next = depth - 1;
+
+			switch (random.nextInt(9)) {
+				case 0:
+					return "-(" + generate(definition, next) + ")";
+				case 1:
+					return "!(" + generate(definition, next) + ")";
+				case 2:
+					return pick(Arrays.asList(UNARY_FUNCTIONS)) + "(" + generate(definition, next) + ")";
+				case 3:
+					return pick(Arrays.asList(BINARY_FUNCTIONS)) + "(" + generate(definition, next) + ", "
+						+ generate(definition, next) + ")";
+				case 4:
+					return pick(Arrays.asList("min", "max", "in")) + "(" + generate(definition, next) + ", "
+						+ generate(definition, next) + ", " + generate(definition, next) + ")";
+				case 5:
+					return pick(Arrays.asList("clamp", "between", "equals")) + "(" + generate(definition, next) + ", "
+						+ generate(definition, next) + ", " + generate(definition, next) + ")";
+				case 6:
+					return "if(" + generate(definition, next) + ", " + generate(definition, next) + ", "
+						+ generate(definition, next) + ", " + generate(definition, next) + ", "
+						+ generate(definition, next) + ")";
+				case 7:
+					return "smooth(" + generate(definition, next) + ", 1, 0.5)";
+				default:
+					return "(" + generate(definition, next) + " " + pick(Arrays.asList(BINARY_OPERATORS)) + " "
+						+ generate(definition, next) + ")";
+			}
+		}
+
+		private String pick(List<String> options) {
+			return options.get(random.nextInt(options.size()));
+		}
+	}
+
+	/**
+	 * Reads back the values of custom uniforms through a uniform block, just like a program would see them.
+	 */
+	private static final class Evaluated {
+		private final CustomUniforms customUniforms;
+		private final UniformBlock block;
+		private final ByteBuffer buffer;
+
+		private Evaluated(CustomUniforms customUniforms, UniformBlock block) {
+			this.customUniforms = customUniforms;
+			this.block = block;
+			this.buffer = ByteBuffer.allocateDirect(Math.max(block.getSize(), 16)).order(ByteOrder.nativeOrder());
+		}
+
+		void update() {
+			customUniforms.update();
+			block.write(buffer);
+		}
+
+		boolean has(String name) {
+			return find(name) != null;
+		}
+
+		float getFloat(String name) {
+			return getFloat(name, 0);
+		}
+
+		float getFloat(String name, int component) {
+			return buffer.getFloat(get(name).getOffset() + component * Float.BYTES);
+		}
+
+		int getInt(String name) {
+			return buffer.getInt(get(name).getOffset());
+		}
+
+		private UniformBlock.Member get(String name) {
+			UniformBlock.Member member = find(name);
+
+			Assertions.assertNotNull(member, "missing uniform " + name);
+
+			return member;
+		}
+
+		private UniformBlock.Member find(String name) {
+			for (UniformBlock.Member member : block.getMembers()) {
+				if (member.getUniformName().equals(name)) {
+					return member;
+				}
+			}
+
+			return null;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package net.coderbot.iris.test.uniforms;
+
+import net.coderbot.iris.uniforms.FrameUpdateNotifier;
+import net.coderbot.iris.uniforms.transforms.SmoothedFloat;
+import net.coderbot.iris.uniforms.transforms.SmoothedSignals;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SmoothedSignalsTest {
+	@Test
+	void testSameSourceIsSmoothedOnce() {
+		FrameUpdateNotifier notifier = new FrameUpdateNotifier();
+		SmoothedSignals signals = new SmoothedSignals(notifier);
+		int[] samples = new int[1];
+
+		SmoothedFloat first = signals.smooth("rainStrength", 600, 600, () -> {
+			samples[0] += 1;
+			return 1.0f;
+		});
+		SmoothedFloat second = signals.smooth("rainStrength", 600, 600, () -> {
+			throw new AssertionError("only the first supplier should be used");
+		});
+
+		Assertions.assertSame(first, second);
+		Assertions.assertEquals(1, signals.size());
+
+		notifier.onNewFrame();
+		notifier.onNewFrame();
+
+		Assertions.assertEquals(2, samples[0]);
+	}
+
+	@Test
+	void testDifferentHalfLivesAreSeparate() {
+		SmoothedSignals signals = new SmoothedSignals(new FrameUpdateNotifier());
+
+		SmoothedFloat slow = signals.smooth("rainStrength", 600, 600, () -> 1.0f);
+		SmoothedFloat rainStrengthS = signals.smooth("rainStrength", 15, 15, () -> 1.0f);
+		SmoothedFloat wetness = signals.smooth("wetness", 600, 600, () -> 1.0f);
+
+		Assertions.assertNotSame(slow, rainStrengthS);
+		Assertions.assertNotSame(slow, wetness);
+		Assertions.assertEquals(3, signals.size());
+	}
+}
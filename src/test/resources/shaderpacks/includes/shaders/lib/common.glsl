@@ -0,0 +1,5 @@
+#include "settings.glsl"
+
+float luminance(vec3 color) {
+	return dot(color, vec3(0.2125, 0.7154, 0.0721));
+}
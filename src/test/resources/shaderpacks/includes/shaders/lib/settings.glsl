@@ -0,0 +1,2 @@
+#define SHADOWS
+#define SHADOW_QUALITY 2 // [1 2 4]
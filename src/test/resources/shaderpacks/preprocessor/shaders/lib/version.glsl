@@ -0,0 +1,10 @@
+#if MC_VERSION >= 11500 && defined IS_IRIS
+#define NEW_LIGHTING
+#extension GL_ARB_shader_texture_lod : require
+#endif
+
+#ifdef MC_GL_VENDOR_NVIDIA
+#define VENDOR_WORKAROUND 1
+#else
+#define VENDOR_WORKAROUND 0
+#endif